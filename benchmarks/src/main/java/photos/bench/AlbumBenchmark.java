@@ -0,0 +1,87 @@
+package photos.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import photos.model.Album;
+import photos.model.Photo;
+
+import java.util.Calendar;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures adding photos to a large album and reading its date range,
+ * both when the range is cached and when removing the earliest photo
+ * forces a rescan.
+ * 
+ * @author Krish Patel, Darshan Surti
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+@State(Scope.Benchmark)
+public class AlbumBenchmark {
+    
+    @Param({ "1000", "10000", "100000", "1000000" })
+    private int photos;
+    
+    private Album album;
+    private Photo extraPhoto;
+    private Photo earliestPhoto;
+    
+    /**
+     * Builds the album.
+     */
+    @Setup
+    public void setUp() {
+        LibraryGenerator generator = BenchmarkData.createGenerator(10);
+        album = new Album("album");
+        for (int i = 0; i < photos; i++) {
+            Photo photo = BenchmarkData.createPhoto(generator, i);
+            album.addPhoto(photo);
+            if (earliestPhoto == null || photo.getDateTaken().before(earliestPhoto.getDateTaken())) {
+                earliestPhoto = photo;
+            }
+        }
+        extraPhoto = BenchmarkData.createPhoto(generator, photos);
+        album.getDateRange();
+    }
+    
+    /**
+     * Adds a photo and removes it again, so the album keeps the same size between calls.
+     * 
+     * @return true if both steps succeeded
+     */
+    @Benchmark
+    public boolean addAndRemovePhoto() {
+        return album.addPhoto(extraPhoto) & album.removePhoto(extraPhoto);
+    }
+    
+    @Benchmark
+    public Calendar[] getDateRange() {
+        return album.getDateRange();
+    }
+    
+    /**
+     * Removes the earliest photo, reads the date range, and puts the photo back.
+     * 
+     * @return the date range without the earliest photo
+     */
+    @Benchmark
+    public Calendar[] getDateRangeAfterRemovingEarliest() {
+        album.removePhoto(earliestPhoto);
+        Calendar[] range = album.getDateRange();
+        album.addPhoto(earliestPhoto);
+        return range;
+    }
+}
\ No newline at end of file
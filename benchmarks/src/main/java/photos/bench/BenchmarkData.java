@@ -0,0 +1,121 @@
+package photos.bench;
+
+import photos.model.Photo;
+import photos.model.User;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Calendar;
+
+/**
+ * Builds the synthetic users the benchmarks run against, with a
+ * {@link LibraryGenerator} set up so that search costs are easy to predict.
+ * Photos are spread over {@value #ALBUM_COUNT} albums, with one in ten
+ * shared by a second album. Each photo has a location tag drawn evenly from
+ * a chosen number of values, a person tag drawn evenly from 100 values, a
+ * caption, and a date taken spread over ten years. The same arguments
+ * always build the same user.
+ * 
+ * @author Krish Patel, Darshan Surti
+ */
+public class BenchmarkData {
+    
+    /** The number of albums in each built user. */
+    public static final int ALBUM_COUNT = 20;
+    
+    /** A location value every built user has, for tag searches. */
+    public static final String COMMON_LOCATION = "location1";
+    
+    /** A person value every built user has, for tag searches. */
+    public static final String COMMON_PERSON = "person1";
+    
+    private static final LocalDate START = LocalDate.of(2015, 1, 1);
+    private static final LocalDate END = START.plusYears(10);
+    
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private BenchmarkData() {
+    }
+    
+    /**
+     * Creates a generator with the benchmark settings.
+     * 
+     * @param locationCount the number of distinct location tag values
+     * @return the generator
+     */
+    public static LibraryGenerator createGenerator(int locationCount) {
+        LibraryGenerator generator = new LibraryGenerator(42);
+        generator.clearTagNames();
+        // An exponent of 0 makes every value equally common
+        generator.addTagName("location", locationCount, 0, 1);
+        generator.addTagName("person", 100, 0, 1);
+        generator.setAlbumCount(ALBUM_COUNT);
+        generator.setSharing(0.1, 2);
+        generator.setCaptionProbability(1);
+        generator.setDateRange(START, END);
+        return generator;
+    }
+    
+    /**
+     * Builds a user.
+     * 
+     * @param username the username
+     * @param photoCount the number of distinct photos
+     * @param locationCount the number of distinct location tag values
+     * @return the user
+     */
+    public static User createUser(String username, int photoCount, int locationCount) {
+        User user = new User(username);
+        populate(user, photoCount, locationCount);
+        return user;
+    }
+    
+    /**
+     * Adds albums of synthetic photos to an existing user,
+     * such as one created through the user manager.
+     * 
+     * @param user the user to fill
+     * @param photoCount the number of distinct photos
+     * @param locationCount the number of distinct location tag values
+     */
+    public static void populate(User user, int photoCount, int locationCount) {
+        try {
+            createGenerator(locationCount).populate(user, photoCount);
+        } catch (IOException e) {
+            // Only writing placeholder images can fail, and the benchmarks write none
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    /**
+     * Builds a photo that isn't in any album.
+     * 
+     * @param generator a generator from {@link #createGenerator(int)}
+     * @param index a number unique to the photo, used in its path
+     * @return the photo
+     */
+    public static Photo createPhoto(LibraryGenerator generator, int index) {
+        try {
+            return generator.createPhoto("photo" + index);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    /**
+     * Gets a date inside the range built photos are taken in.
+     * 
+     * @param fraction how far into the range, from 0 to 1
+     * @return the date
+     */
+    public static Calendar dateAt(double fraction) {
+        long start = START.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        long end = END.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        Calendar date = Calendar.getInstance();
+        date.setTimeInMillis(start + (long) (fraction * (end - start)));
+        return date;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,437 @@
+package photos.bench;
+
+import photos.model.Album;
+import photos.model.Photo;
+import photos.model.PhotoCatalog;
+import photos.model.SearchQuery;
+import photos.model.SearchUtil;
+import photos.model.Tag;
+import photos.model.User;
+import photos.model.UserManager;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Checks the user manager's thread-safety contract by changing, searching
+ * and saving users from many threads at once, and exits with a failure
+ * status if any thread sees an inconsistent user or fails.
+ * <p>
+ * For the length of the run:
+ * <ul>
+ * <li>writers tag, untag, caption, add and move photos in two generated
+ *     users, each change through the ordinary model methods and moves as
+ *     one {@link UserManager#runBatch(User, Runnable) batch}</li>
+ * <li>readers hold a user's read lock and check that its catalog matches its
+ *     albums, that its tag index matches its photos' tags, and that
+ *     {@link SearchUtil#search(User, SearchQuery)} agrees with checking every
+ *     photo directly</li>
+ * <li>a saver saves repeatedly and reads each saved user back to check it
+ *     was written whole</li>
+ * </ul>
+ * Before that, while the generated users are still empty, two threads race
+ * to add and then remove the same users, and each user must be added and
+ * removed exactly once.
+ * <pre>
+ * java -cp target/benchmarks.jar photos.bench.ConcurrencyStress [photos=20000] [writers=4] [readers=4] [seconds=20]
+ * </pre>
+ * Run from the {@code benchmarks} directory; the user manager saves to
+ * {@code data/} under the working directory. The generated users are
+ * removed when the run ends.
+ * 
+ * @author Krish Patel, Darshan Surti
+ */
+public class ConcurrencyStress {
+    
+    private static final String[] USERNAMES = { "stress-a", "stress-b" };
+    private static final String RACE_PREFIX = "stress-race-";
+    private static final int RACE_USERS = 200;
+    private static final int MAX_REPORTED_FAILURES = 10;
+    
+    private final UserManager userManager;
+    private final User[] users;
+    private final long seed;
+    private final AtomicLong writes = new AtomicLong();
+    private final AtomicLong reads = new AtomicLong();
+    private final AtomicLong saves = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private volatile boolean running = true;
+    
+    /**
+     * Creates a stress run over generated users.
+     * 
+     * @param userManager the user manager
+     * @param users the users to change and read
+     * @param seed the seed for each thread's random choices
+     */
+    ConcurrencyStress(UserManager userManager, User[] users, long seed) {
+        this.userManager = userManager;
+        this.users = users;
+        this.seed = seed;
+    }
+    
+    /**
+     * Runs every thread for a length of time and waits for them to finish.
+     * 
+     * @param writers the number of writer threads
+     * @param readers the number of reader threads
+     * @param seconds how long to run
+     * @throws InterruptedException if interrupted while waiting
+     */
+    void run(int writers, int readers, int seconds) throws InterruptedException {
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < writers; i++) {
+            LibraryGenerator generator = new LibraryGenerator(seed + i);
+            int writer = i;
+            threads.add(start("writer-" + i, () -> write(generator, writer)));
+        }
+        for (int i = 0; i < readers; i++) {
+            LibraryGenerator generator = new LibraryGenerator(seed + writers + i);
+            threads.add(start("reader-" + i, () -> read(generator)));
+        }
+        threads.add(start("saver", this::save));
+        
+        TimeUnit.SECONDS.sleep(seconds);
+        running = false;
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+    
+    /**
+     * Races two threads to add and then remove the same users and checks
+     * that each user was added and removed exactly once.
+     * Every add and remove saves, so this runs while the library is small.
+     * 
+     * @throws InterruptedException if interrupted while waiting
+     */
+    void race() throws InterruptedException {
+        AtomicInteger added = new AtomicInteger();
+        AtomicInteger removed = new AtomicInteger();
+        List<Thread> racers = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            racers.add(start("racer-" + i, () -> race(added, removed)));
+        }
+        for (Thread thread : racers) {
+            thread.join();
+        }
+        
+        if (added.get() != RACE_USERS || removed.get() != RACE_USERS) {
+            fail("Racing threads added " + added + " and removed " + removed + " of " + RACE_USERS + " users");
+        }
+    }
+    
+    /**
+     * Starts a thread that counts any exception it throws as a failure.
+     * 
+     * @param name the thread name
+     * @param work the thread's work
+     * @return the started thread
+     */
+    private Thread start(String name, Runnable work) {
+        Thread thread = new Thread(() -> {
+            try {
+                work.run();
+            } catch (RuntimeException e) {
+                fail(Thread.currentThread().getName() + " threw " + e);
+            }
+        }, "stress-" + name);
+        thread.start();
+        return thread;
+    }
+    
+    /**
+     * Changes random photos until the run ends.
+     * 
+     * @param generator the generator for new photos, tags and captions
+     * @param writer the writer number, used to name new photos
+     */
+    private void write(LibraryGenerator generator, int writer) {
+        Random random = generator.getRandom();
+        int added = 0;
+        while (running) {
+            User user = users[random.nextInt(users.length)];
+            Photo photo = randomPhoto(user, random);
+            switch (random.nextInt(5)) {
+                case 0:
+                    photo.addTag(generator.randomTag());
+                    break;
+                case 1:
+                    List<Tag> tags = new ArrayList<>(photo.getTags());
+                    if (!tags.isEmpty()) {
+                        photo.removeTag(tags.get(random.nextInt(tags.size())));
+                    }
+                    break;
+                case 2:
+                    photo.setCaption(generator.randomCaption());
+                    break;
+                case 3:
+                    try {
+                        randomAlbum(user, random).addPhoto(generator.createPhoto("stress-" + writer + "-" + added++));
+                    } catch (IOException e) {
+                        throw new IllegalStateException(e);
+                    }
+                    break;
+                default:
+                    Album source = randomAlbum(user, random);
+                    Album target = randomAlbum(user, random);
+                    userManager.runBatch(user, () -> {
+                        if (source != target && source.getPhotos().contains(photo) && target.addPhoto(photo)) {
+                            source.removePhoto(photo);
+                        }
+                    });
+                    break;
+            }
+            writes.incrementAndGet();
+        }
+    }
+    
+    /**
+     * Checks users under their read locks until the run ends.
+     * 
+     * @param generator the generator for queries
+     */
+    private void read(LibraryGenerator generator) {
+        Random random = generator.getRandom();
+        while (running) {
+            User user = users[random.nextInt(users.length)];
+            SearchQuery query = generator.randomQuery();
+            Lock lock = user.getLock().readLock();
+            lock.lock();
+            try {
+                check(user, "in memory");
+                
+                List<Photo> found = SearchUtil.search(user, query);
+                int expected = 0;
+                for (Photo photo : user.getCatalog().getPhotos()) {
+                    if (query.matches(photo)) {
+                        expected++;
+                    }
+                }
+                if (found.size() != expected) {
+                    fail("Search for " + query + " found " + found.size() + " photos; checking each found " + expected);
+                }
+            } finally {
+                lock.unlock();
+            }
+            reads.incrementAndGet();
+        }
+    }
+    
+    /**
+     * Saves repeatedly until the run ends, checking the saved users each time.
+     */
+    private void save() {
+        Set<String> stressUsers = new HashSet<>();
+        for (User user : users) {
+            stressUsers.add(user.getUsername());
+        }
+        
+        while (running) {
+            userManager.saveUsers();
+            try {
+                userManager.forEachStoredUser((user, storedBytes) -> {
+                    if (stressUsers.contains(user.getUsername())) {
+                        check(user, "as saved");
+                    }
+                });
+            } catch (IOException e) {
+                fail("Reading the saved users failed: " + e);
+            }
+            saves.incrementAndGet();
+        }
+    }
+    
+    /**
+     * Adds and then removes the same set of users as the other racing thread.
+     * 
+     * @param added counts the adds that succeeded
+     * @param removed counts the removes that succeeded
+     */
+    private void race(AtomicInteger added, AtomicInteger removed) {
+        for (int i = 0; i < RACE_USERS; i++) {
+            if (userManager.addUser(RACE_PREFIX + i) != null) {
+                added.incrementAndGet();
+            }
+        }
+        for (int i = 0; i < RACE_USERS; i++) {
+            if (userManager.removeUser(RACE_PREFIX + i)) {
+                removed.incrementAndGet();
+            }
+        }
+    }
+    
+    /**
+     * Checks that a user's catalog holds exactly the photos in its albums and
+     * that its tag index counts exactly its photos' tags.
+     * 
+     * @param user the user, with its read lock held if other threads may change it
+     * @param where where the user came from, for failure messages
+     */
+    private void check(User user, String where) {
+        PhotoCatalog catalog = user.getCatalog();
+        Set<Integer> ids = new HashSet<>();
+        for (Album album : user.getAlbums()) {
+            for (int id : album.getPhotoIds()) {
+                if (catalog.getPhoto(id) == null) {
+                    fail(user.getUsername() + " " + where + ": album " + album.getName() + " has uncataloged photo " + id);
+                }
+                ids.add(id);
+            }
+        }
+        if (ids.size() != catalog.size()) {
+            fail(user.getUsername() + " " + where + ": albums hold " + ids.size() + " photos but the catalog has "
+                    + catalog.size());
+        }
+        
+        // Count one tag name's values directly and compare with the index
+        List<Photo> photos = catalog.getPhotos();
+        if (photos.isEmpty() || photos.get(0).getTags().isEmpty()) {
+            return;
+        }
+        Tag sample = photos.get(0).getTags().get(0);
+        int count = 0;
+        for (Photo photo : photos) {
+            if (photo.hasTag(sample.getName(), sample.getValue())) {
+                count++;
+            }
+        }
+        int indexed = user.getTagIndex().getCount(sample.getName(), sample.getValue());
+        if (count != indexed) {
+            fail(user.getUsername() + " " + where + ": " + count + " photos have " + sample + " but the index counts "
+                    + indexed);
+        }
+    }
+    
+    /**
+     * Picks a random photo from a user's catalog.
+     * 
+     * @param user the user
+     * @param random the random source
+     * @return the photo
+     */
+    private static Photo randomPhoto(User user, Random random) {
+        PhotoCatalog catalog = user.getCatalog();
+        Lock lock = user.getLock().readLock();
+        lock.lock();
+        try {
+            while (true) {
+                Photo photo = catalog.getPhoto(random.nextInt(catalog.getIdBound()));
+                if (photo != null) {
+                    return photo;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Picks a random album of a user.
+     * 
+     * @param user the user
+     * @param random the random source
+     * @return the album
+     */
+    private static Album randomAlbum(User user, Random random) {
+        Lock lock = user.getLock().readLock();
+        lock.lock();
+        try {
+            List<Album> albums = user.getAlbums();
+            return albums.get(random.nextInt(albums.size()));
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Records a failure, printing the first few.
+     * 
+     * @param message what went wrong
+     */
+    private void fail(String message) {
+        if (failures.incrementAndGet() <= MAX_REPORTED_FAILURES) {
+            System.err.println("FAILED: " + message);
+        }
+    }
+    
+    /**
+     * Generates the users and runs the stress test on them.
+     * 
+     * @param args optional {@code name=value} settings: photos, writers, readers, seconds and seed
+     * @throws IOException if a photo can't be created
+     * @throws InterruptedException if interrupted while waiting for the threads
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int photos = 20_000;
+        int writers = 4;
+        int readers = 4;
+        int seconds = 20;
+        long seed = 42;
+        for (String arg : args) {
+            String[] pair = arg.split("=", 2);
+            if (pair.length < 2) {
+                System.err.println("Settings are name=value: " + arg);
+                return;
+            }
+            switch (pair[0]) {
+                case "photos":
+                    photos = Integer.parseInt(pair[1]);
+                    break;
+                case "writers":
+                    writers = Integer.parseInt(pair[1]);
+                    break;
+                case "readers":
+                    readers = Integer.parseInt(pair[1]);
+                    break;
+                case "seconds":
+                    seconds = Integer.parseInt(pair[1]);
+                    break;
+                case "seed":
+                    seed = Long.parseLong(pair[1]);
+                    break;
+                default:
+                    System.err.println("Unknown setting: " + arg);
+                    return;
+            }
+        }
+        
+        UserManager userManager = UserManager.getInstance();
+        User[] users = new User[USERNAMES.length];
+        LibraryGenerator generator = new LibraryGenerator(seed);
+        for (int i = 0; i < users.length; i++) {
+            userManager.removeUser(USERNAMES[i]);
+            users[i] = userManager.addUser(USERNAMES[i]);
+        }
+        
+        ConcurrencyStress stress = new ConcurrencyStress(userManager, users, seed + 1);
+        try {
+            stress.race();
+            for (User user : users) {
+                generator.populate(user, photos);
+            }
+            stress.run(writers, readers, seconds);
+        } finally {
+            for (String username : USERNAMES) {
+                userManager.removeUser(username);
+            }
+            userManager.saveUsers();
+        }
+        
+        System.out.printf("%d writes, %d checked reads and %d saves in %d s by %d writers and %d readers%n",
+                stress.writes.get(), stress.reads.get(), stress.saves.get(), seconds, writers, readers);
+        if (stress.failures.get() > 0) {
+            System.out.println(stress.failures.get() + " failures");
+            System.exit(1);
+        }
+        System.out.println("No failures");
+    }
+}
\ No newline at end of file
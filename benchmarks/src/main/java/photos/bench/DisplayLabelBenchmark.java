@@ -0,0 +1,126 @@
+package photos.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import photos.model.Photo;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the album screen's photo list cells building their text for
+ * each photo, as they used to, with the label each photo caches, by
+ * scrolling once through an album's photos.
+ * <p>
+ * A list view keeps a cell for each visible row and reuses them while
+ * scrolling: as a photo scrolls into view, the cell checks whether its
+ * item changed and, if so, takes the photo and its text. The old cells
+ * built the text, a caption or a placeholder with the file name, both in
+ * that check and again to show it. The cached label is built once per
+ * photo, so after the first pass scrolling builds no strings at all. Run
+ * with {@link RunBenchmarks} to see the allocation per scroll.
+ *
+ * @author Krish Patel, Darshan Surti
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DisplayLabelBenchmark {
+    
+    /** The rows a list view of the album screen's size shows at once. */
+    private static final int VISIBLE_ROWS = 30;
+    
+    @Param({ "100000" })
+    private int photos;
+    
+    private List<Photo> albumPhotos;
+    private Cell[] cells;
+    
+    /**
+     * Generates the photos, with and without captions, and the visible cells.
+     *
+     * @throws IOException never, since no placeholder images are written
+     */
+    @Setup
+    public void setUp() throws IOException {
+        albumPhotos = new LibraryGenerator(42).generateUser("bench", photos).getCatalog().getPhotos();
+        cells = new Cell[VISIBLE_ROWS];
+        for (int i = 0; i < cells.length; i++) {
+            cells[i] = new Cell();
+        }
+    }
+    
+    /**
+     * Scrolls through the album with cells that build their text every time.
+     *
+     * @return the text of the last cell updated
+     */
+    @Benchmark
+    public String scrollBuildingLabels() {
+        String text = null;
+        for (int row = 0; row < albumPhotos.size(); row++) {
+            Photo photo = albumPhotos.get(row);
+            Cell cell = cells[row % VISIBLE_ROWS];
+            if (cell.item != photo || !buildLabel(photo).equals(cell.text)) {
+                cell.item = photo;
+                cell.text = buildLabel(photo);
+            }
+            text = cell.text;
+        }
+        return text;
+    }
+    
+    /**
+     * Scrolls through the album with cells that show each photo's cached label.
+     *
+     * @return the text of the last cell updated
+     */
+    @Benchmark
+    public String scrollCachedLabels() {
+        String text = null;
+        for (int row = 0; row < albumPhotos.size(); row++) {
+            Photo photo = albumPhotos.get(row);
+            Cell cell = cells[row % VISIBLE_ROWS];
+            if (cell.item != photo || photo.getDisplayLabel() != cell.text) {
+                cell.item = photo;
+                cell.text = photo.getDisplayLabel();
+            }
+            text = cell.text;
+        }
+        return text;
+    }
+    
+    /**
+     * Builds a photo's text the way the album screen's cells did before labels were cached.
+     *
+     * @param photo the photo
+     * @return the caption, or a placeholder with the file name if there is no caption
+     */
+    private static String buildLabel(Photo photo) {
+        return photo.getCaption().isEmpty() ?
+               "(No caption) - " + new File(photo.getFilePath()).getName() :
+               photo.getCaption();
+    }
+    
+    /**
+     * A list cell's item and text.
+     */
+    private static final class Cell {
+        private Photo item;
+        private String text;
+    }
+}
\ No newline at end of file
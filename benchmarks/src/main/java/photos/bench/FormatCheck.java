@@ -0,0 +1,218 @@
+package photos.bench;
+
+import photos.model.Album;
+import photos.model.Photo;
+import photos.model.SearchUtil;
+import photos.model.Tag;
+import photos.model.User;
+import photos.model.UserManager;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Checks that a users file saved by the first version of the application
+ * still loads, and that the users read the same after being saved again in
+ * the current format. Exits with a failure status if anything differs.
+ * <p>
+ * The old file, {@code baseline-users.dat}, holds the admin and stock users,
+ * a user {@code alice} whose albums share photos, and a user {@code bob}
+ * whose two albums each hold a separate photo of the same file with its own
+ * caption and tags, as that version saved them: one map of users, with each
+ * album's photos in a plain list. It is
+ * copied to {@code data/users.dat} under the working directory for the
+ * check; a users file already there is put back afterwards.
+ * <pre>
+ * java -cp target/benchmarks.jar photos.bench.FormatCheck
+ * </pre>
+ * Run from the {@code benchmarks} directory. It also runs as part of
+ * {@code mvn verify -Pregression}.
+ * 
+ * @author Krish Patel, Darshan Surti
+ */
+public class FormatCheck {
+    
+    private static final String BASELINE_FILE = "baseline-users.dat";
+    private static final File USERS_FILE = new File("data", "users.dat");
+    
+    private final List<String> failures = new ArrayList<>();
+    
+    /**
+     * Records a failure if a condition doesn't hold.
+     * 
+     * @param condition the condition
+     * @param message what went wrong if it doesn't
+     */
+    private void check(boolean condition, String message) {
+        if (!condition) {
+            failures.add(message);
+            System.err.println("FAILED: " + message);
+        }
+    }
+    
+    /**
+     * Checks the users read from the old file against what it was saved with.
+     * 
+     * @param userManager the user manager that loaded the file
+     */
+    private void checkLoaded(UserManager userManager) {
+        check(userManager.getAllUsernames().size() == 4, "Expected 4 users but read " + userManager.getAllUsernames());
+        check(userManager.userExists("admin"), "The admin user is missing");
+        User stock = userManager.getUser("stock");
+        check(stock != null && stock.findAlbumByName("stock") != null
+                && stock.findAlbumByName("stock").getPhotoCount() == 5, "The stock album should have 5 photos");
+        
+        User alice = userManager.getUser("alice");
+        if (alice == null) {
+            check(false, "The user alice is missing");
+            return;
+        }
+        Album trip = alice.findAlbumByName("Trip");
+        Album favorites = alice.findAlbumByName("Favorites");
+        Album empty = alice.findAlbumByName("Empty");
+        check(alice.getAlbums().size() == 3, "alice should have 3 albums but has " + alice.getAlbums().size());
+        if (trip == null || favorites == null || empty == null) {
+            check(false, "alice's albums are " + alice.getAlbums());
+            return;
+        }
+        check(trip.getPhotoCount() == 4, "Trip should have 4 photos but has " + trip.getPhotoCount());
+        check(favorites.getPhotoCount() == 3, "Favorites should have 3 photos but has " + favorites.getPhotoCount());
+        check(empty.getPhotoCount() == 0, "Empty should have no photos but has " + empty.getPhotoCount());
+        check(alice.getCatalog().size() == 5, "alice's catalog should hold 5 photos but holds "
+                + alice.getCatalog().size());
+        
+        Photo first = trip.getPhotos().get(0);
+        check(first.getFilePath().equals("/photos/trip/img_0.jpg"), "Trip's photos are out of order");
+        check(first.getCaption().equals("Day 0 at the beach"), "The caption was lost: " + first.getCaption());
+        check(first.hasTag("location", "Beach") && first.hasTag("person", "p0"), "The tags were lost: "
+                + first.getTags());
+        check(favorites.getPhotos().get(0) == first, "A photo in two albums was read as two photos");
+        check(alice.getCatalog().getPhoto(alice.getCatalog().idOf(first)) == first,
+                "The catalog doesn't hold the albums' photo");
+        
+        check(SearchUtil.searchByTag(alice.getAlbums(), "location", "Beach").size() == 4,
+                "Searching by tag should find 4 photos");
+        check(alice.getTagIndex().completeValues("location", "Be", 8).contains("Beach"),
+                "The tag index doesn't know the loaded tags");
+        check(alice.findAlbumsContaining(first).size() == 2, "The first photo should be in 2 albums");
+        checkSameFile(userManager.getUser("bob"));
+    }
+    
+    /**
+     * Checks that two separate photos of the same file, in different albums,
+     * were read as two photos that each kept their own caption and tags.
+     * 
+     * @param bob the user holding them
+     */
+    private void checkSameFile(User bob) {
+        Album one = bob == null ? null : bob.findAlbumByName("one");
+        Album two = bob == null ? null : bob.findAlbumByName("two");
+        if (one == null || two == null || one.getPhotoCount() != 1 || two.getPhotoCount() != 1) {
+            check(false, "bob should have albums one and two with a photo each");
+            return;
+        }
+        Photo first = one.getPhotos().get(0);
+        Photo second = two.getPhotos().get(0);
+        check(first != second, "Two photos of the same file were read as one");
+        check(first.getCaption().equals("first caption") && first.hasTag("person", "alice")
+                && !first.hasTag("person", "bob"), "The first photo of the file changed: " + describe(bob));
+        check(second.getCaption().equals("second caption") && second.hasTag("person", "bob")
+                && !second.hasTag("person", "alice"), "The second photo of the file changed: " + describe(bob));
+        check(bob.getCatalog().size() == 2, "bob's catalog should hold 2 photos but holds " + bob.getCatalog().size());
+        check(bob.findAlbumsContaining(second).size() == 1, "The second photo should be in 1 album");
+    }
+    
+    /**
+     * Describes everything saved for a user, so two copies can be compared.
+     * 
+     * @param user the user
+     * @return the description
+     */
+    private static String describe(User user) {
+        StringBuilder description = new StringBuilder(user.getUsername());
+        for (Album album : user.getAlbums()) {
+            description.append("\n  ").append(album.getName());
+            for (Photo photo : album.getPhotos()) {
+                description.append("\n    ").append(photo.getFilePath())
+                        .append(" \"").append(photo.getCaption()).append("\" ")
+                        .append(photo.getDateTaken().getTimeInMillis());
+                for (Tag tag : photo.getTags()) {
+                    description.append(' ').append(tag.getName()).append('=').append(tag.getValue());
+                }
+            }
+        }
+        return description.toString();
+    }
+    
+    /**
+     * Saves the loaded users in the current format and checks they read back the same.
+     * 
+     * @param userManager the user manager that loaded the old file
+     * @throws IOException if the saved file can't be read
+     */
+    private void checkSavedAgain(UserManager userManager) throws IOException {
+        userManager.saveUsers();
+        List<String> names = new ArrayList<>();
+        userManager.forEachStoredUser((stored, bytes) -> {
+            names.add(stored.getUsername());
+            User loaded = userManager.getUser(stored.getUsername());
+            check(loaded != null && describe(loaded).equals(describe(stored)),
+                    "User " + stored.getUsername() + " changed when saved again:\n" + describe(stored));
+            Album favorites = stored.findAlbumByName("Favorites");
+            Album trip = stored.findAlbumByName("Trip");
+            if (favorites != null && trip != null) {
+                check(favorites.getPhotos().get(0) == trip.getPhotos().get(0),
+                        "A photo in two albums was read back as two photos");
+            }
+            if (stored.getUsername().equals("bob")) {
+                checkSameFile(stored);
+            }
+        });
+        check(names.size() == 4, "Expected 4 users saved but read " + names);
+    }
+    
+    /**
+     * Loads the old users file, checks it, saves it again and checks the result.
+     * 
+     * @param args unused
+     * @throws IOException if the users files can't be copied or read
+     */
+    public static void main(String[] args) throws IOException {
+        File kept = new File(USERS_FILE.getPath() + ".format-check");
+        if (USERS_FILE.exists()) {
+            Files.move(USERS_FILE.toPath(), kept.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        
+        FormatCheck check = new FormatCheck();
+        try {
+            USERS_FILE.getParentFile().mkdirs();
+            try (InputStream baseline = FormatCheck.class.getResourceAsStream(BASELINE_FILE)) {
+                if (baseline == null) {
+                    throw new IOException("Missing " + BASELINE_FILE);
+                }
+                Files.copy(baseline, USERS_FILE.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            
+            UserManager userManager = UserManager.getInstance();
+            check.checkLoaded(userManager);
+            check.checkSavedAgain(userManager);
+        } finally {
+            if (kept.exists()) {
+                Files.move(kept.toPath(), USERS_FILE.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } else {
+                Files.deleteIfExists(USERS_FILE.toPath());
+            }
+        }
+        
+        if (!check.failures.isEmpty()) {
+            System.out.println(check.failures.size() + " failures");
+            System.exit(1);
+        }
+        System.out.println("No failures");
+    }
+}
\ No newline at end of file
@@ -0,0 +1,394 @@
+package photos.bench;
+
+import photos.model.Album;
+import photos.model.Photo;
+import photos.model.SearchQuery;
+import photos.model.Tag;
+import photos.model.User;
+import photos.model.UserManager;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates photo libraries of any size with realistic shapes, for
+ * benchmarks, load tests, and trying the application on more than the
+ * stock photos.
+ * <p>
+ * Tag values and caption words are drawn from Zipf distributions, so a few
+ * values are very common and most are rare, as in real libraries. Each tag
+ * name is applied to a photo with its own probability. Some photos are
+ * shared by several albums, and dates taken are spread evenly over a range.
+ * <p>
+ * Photos normally point at files that don't exist. If a placeholder
+ * directory is set, a tiny PNG is written for each photo with its modified
+ * time set to the photo's date, so the application can open the photos and
+ * reads their dates from the files as it would for real ones.
+ * <p>
+ * The same seed and settings always generate the same library.
+ * 
+ * @author Krish Patel, Darshan Surti
+ */
+public class LibraryGenerator {
+    
+    // A 1x1 transparent PNG
+    private static final byte[] PLACEHOLDER_PNG = {
+        (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n',
+        0, 0, 0, 13, 'I', 'H', 'D', 'R', 0, 0, 0, 1, 0, 0, 0, 1, 8, 6, 0, 0, 0,
+        0x1F, 0x15, (byte) 0xC4, (byte) 0x89,
+        0, 0, 0, 13, 'I', 'D', 'A', 'T', 0x78, (byte) 0x9C, 0x63, 0, 1, 0, 0, 5, 0, 1,
+        0x0D, 0x0A, 0x2D, (byte) 0xB4,
+        0, 0, 0, 0, 'I', 'E', 'N', 'D', (byte) 0xAE, 0x42, 0x60, (byte) 0x82
+    };
+    
+    private static final String[] WORDS = {
+        "the", "beach", "sunset", "family", "dinner", "with", "friends", "at", "park", "snow",
+        "lake", "city", "party", "birthday", "trip", "morning", "walk", "dog", "cat", "mountain",
+        "river", "wedding", "holiday", "museum", "concert", "garden", "road", "night", "market", "bridge",
+        "forest", "picnic", "school", "game", "view", "old", "new", "first", "last", "day"
+    };
+    
+    private final Random random;
+    private final List<TagName> tagNames = new ArrayList<>();
+    private final Zipf captionWords = new Zipf(WORDS.length, 1.0);
+    private int albumCount = 20;
+    private double sharedFraction = 0.1;
+    private int maxAlbumsPerPhoto = 3;
+    private double captionProbability = 0.6;
+    private long startMillis = toMillis(LocalDate.of(2010, 1, 1));
+    private long endMillis = toMillis(LocalDate.of(2025, 1, 1));
+    private File placeholderDirectory;
+    
+    /**
+     * Creates a generator with the default settings: 20 albums, a tenth of
+     * the photos shared by up to 3 albums, location, person and event tags,
+     * captions on 60% of photos, and dates from 2010 through 2024.
+     * 
+     * @param seed the seed for all random choices
+     */
+    public LibraryGenerator(long seed) {
+        random = new Random(seed);
+        addTagName("location", 500, 1.1, 0.8);
+        addTagName("person", 2000, 1.0, 0.5);
+        addTagName("event", 200, 1.2, 0.3);
+    }
+    
+    /**
+     * Adds a tag name to apply to generated photos.
+     * Values are named after the tag with their popularity rank, so
+     * {@code location1} is the most common location.
+     * 
+     * @param name the tag name
+     * @param valueCount the number of distinct values
+     * @param exponent the Zipf exponent; higher makes the top values more dominant
+     * @param probability the chance that a photo gets this tag
+     */
+    public void addTagName(String name, int valueCount, double exponent, double probability) {
+        tagNames.add(new TagName(name, new Zipf(valueCount, exponent), probability));
+    }
+    
+    /**
+     * Removes all tag names, including the default ones.
+     */
+    public void clearTagNames() {
+        tagNames.clear();
+    }
+    
+    /**
+     * Sets the number of albums each generated user has.
+     * 
+     * @param albumCount the number of albums
+     */
+    public void setAlbumCount(int albumCount) {
+        this.albumCount = albumCount;
+    }
+    
+    /**
+     * Sets how many photos appear in more than one album.
+     * 
+     * @param sharedFraction the fraction of photos, from 0 to 1
+     * @param maxAlbumsPerPhoto the most albums a shared photo is in
+     */
+    public void setSharing(double sharedFraction, int maxAlbumsPerPhoto) {
+        this.sharedFraction = sharedFraction;
+        this.maxAlbumsPerPhoto = maxAlbumsPerPhoto;
+    }
+    
+    /**
+     * Sets the chance that a photo has a caption.
+     * 
+     * @param captionProbability the probability, from 0 to 1
+     */
+    public void setCaptionProbability(double captionProbability) {
+        this.captionProbability = captionProbability;
+    }
+    
+    /**
+     * Sets the range the dates taken are spread over.
+     * 
+     * @param from the first date
+     * @param to the day after the last date
+     */
+    public void setDateRange(LocalDate from, LocalDate to) {
+        startMillis = toMillis(from);
+        endMillis = toMillis(to);
+    }
+    
+    /**
+     * Sets a directory to write placeholder image files to.
+     * 
+     * @param placeholderDirectory the directory, or null to generate photos without files
+     */
+    public void setPlaceholderDirectory(File placeholderDirectory) {
+        this.placeholderDirectory = placeholderDirectory;
+    }
+    
+    /**
+     * Creates and fills a user.
+     * 
+     * @param username the username
+     * @param photoCount the number of distinct photos
+     * @return the user
+     * @throws IOException if a placeholder file can't be written
+     */
+    public User generateUser(String username, int photoCount) throws IOException {
+        User user = new User(username);
+        populate(user, photoCount);
+        return user;
+    }
+    
+    /**
+     * Adds generated albums and photos to a user.
+     * 
+     * @param user the user to fill
+     * @param photoCount the number of distinct photos
+     * @throws IOException if a placeholder file can't be written
+     */
+    public void populate(User user, int photoCount) throws IOException {
+        String prefix = user.getUsername() + "-";
+        Album[] albums = new Album[albumCount];
+        for (int i = 0; i < albums.length; i++) {
+            albums[i] = new Album("Album " + (i + 1));
+            user.addAlbum(albums[i]);
+        }
+        
+        for (int i = 0; i < photoCount; i++) {
+            Photo photo = createPhoto(prefix + i);
+            albums[random.nextInt(albums.length)].addPhoto(photo);
+            if (random.nextDouble() < sharedFraction) {
+                int extra = 1 + random.nextInt(Math.max(1, maxAlbumsPerPhoto - 1));
+                for (int j = 0; j < extra; j++) {
+                    albums[random.nextInt(albums.length)].addPhoto(photo);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Creates a tagged, captioned photo that isn't in any album.
+     * 
+     * @param name a name unique among generated photos, used for the file name
+     * @return the photo
+     * @throws IOException if the placeholder file can't be written
+     */
+    public Photo createPhoto(String name) throws IOException {
+        long taken = (startMillis + (long) (random.nextDouble() * (endMillis - startMillis))) / 1000 * 1000;
+        Photo photo;
+        if (placeholderDirectory != null) {
+            File file = new File(placeholderDirectory, name + ".png");
+            Files.write(file.toPath(), PLACEHOLDER_PNG);
+            file.setLastModified(taken);
+            photo = new Photo(file.getAbsolutePath());
+        } else {
+            photo = new Photo("/generated/" + name + ".jpg");
+            // There is no file to read the date from
+            photo.getDateTaken().setTimeInMillis(taken);
+        }
+        
+        for (TagName tagName : tagNames) {
+            if (random.nextDouble() < tagName.probability) {
+                photo.addTag(randomTag(tagName));
+            }
+        }
+        if (random.nextDouble() < captionProbability) {
+            photo.setCaption(randomCaption());
+        }
+        return photo;
+    }
+    
+    /**
+     * Picks a tag the way generated photos are tagged.
+     * 
+     * @return a tag with one of the configured names
+     */
+    public Tag randomTag() {
+        return randomTag(tagNames.get(random.nextInt(tagNames.size())));
+    }
+    
+    /**
+     * Picks a value for a tag name.
+     * 
+     * @param tagName the tag name
+     * @return the tag
+     */
+    private Tag randomTag(TagName tagName) {
+        return new Tag(tagName.name, tagName.name + tagName.values.sample(random));
+    }
+    
+    /**
+     * Makes a caption of one to six words.
+     * 
+     * @return the caption
+     */
+    public String randomCaption() {
+        int length = 1 + random.nextInt(6);
+        StringBuilder caption = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            if (i > 0) {
+                caption.append(' ');
+            }
+            caption.append(WORDS[captionWords.sample(random) - 1]);
+        }
+        return caption.toString();
+    }
+    
+    /**
+     * Makes a query like those typed into the search field: one or two tags,
+     * a caption term, or a date range.
+     * 
+     * @return the query
+     */
+    public SearchQuery randomQuery() {
+        int kind = random.nextInt(4);
+        if (kind == 0) {
+            Tag tag = randomTag();
+            return SearchQuery.parse(tag.getName() + "=" + tag.getValue());
+        }
+        if (kind == 1) {
+            Tag first = randomTag();
+            Tag second = randomTag();
+            return SearchQuery.parse(first.getName() + "=" + first.getValue()
+                    + (random.nextBoolean() ? " AND " : " OR ") + second.getName() + "=" + second.getValue());
+        }
+        if (kind == 2) {
+            return SearchQuery.parse("caption:\"" + WORDS[captionWords.sample(random) - 1] + "\"");
+        }
+        
+        LocalDate from = LocalDate.ofEpochDay(Math.floorDiv(startMillis, 86_400_000L)
+                + random.nextInt((int) ((endMillis - startMillis) / 86_400_000L)));
+        return SearchQuery.parse("from:" + from + " to:" + from.plusDays(30));
+    }
+    
+    /**
+     * Gets the random number source, for choices that should follow the same seed.
+     * 
+     * @return the random number source
+     */
+    public Random getRandom() {
+        return random;
+    }
+    
+    /**
+     * Converts a date to the millisecond time at its start in the default time zone.
+     * 
+     * @param date the date
+     * @return the time in milliseconds
+     */
+    private static long toMillis(LocalDate date) {
+        return date.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+    
+    /**
+     * Generates users and saves them with the application's users, so the
+     * application can be tried on large libraries. Run from the repository
+     * root to add them to the application's own data.
+     * <pre>
+     * java -cp benchmarks/target/benchmarks.jar photos.bench.LibraryGenerator users photos [placeholder-dir]
+     * </pre>
+     * The users are named {@code generated1}, {@code generated2} and so on,
+     * replacing any earlier generated users with the same names.
+     * 
+     * @param args the number of users, photos per user, and optionally a directory for placeholder images
+     * @throws IOException if a placeholder file can't be written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: LibraryGenerator users photos-per-user [placeholder-dir]");
+            return;
+        }
+        int userCount = Integer.parseInt(args[0]);
+        int photoCount = Integer.parseInt(args[1]);
+        
+        LibraryGenerator generator = new LibraryGenerator(42);
+        if (args.length > 2) {
+            File directory = new File(args[2]);
+            directory.mkdirs();
+            generator.setPlaceholderDirectory(directory);
+        }
+        
+        UserManager userManager = UserManager.getInstance();
+        for (int i = 1; i <= userCount; i++) {
+            String username = "generated" + i;
+            userManager.removeUser(username);
+            long start = System.nanoTime();
+            generator.populate(userManager.addUser(username), photoCount);
+            System.out.printf("%s: %d photos in %d ms%n", username, photoCount, (System.nanoTime() - start) / 1_000_000);
+        }
+        userManager.saveUsers();
+    }
+    
+    /**
+     * A tag name with the distribution of its values.
+     */
+    private static class TagName {
+        private final String name;
+        private final Zipf values;
+        private final double probability;
+        
+        TagName(String name, Zipf values, double probability) {
+            this.name = name;
+            this.values = values;
+            this.probability = probability;
+        }
+    }
+    
+    /**
+     * Samples ranks 1 to n with probability proportional to 1 / rank^exponent.
+     */
+    static class Zipf {
+        private final double[] cumulative;
+        
+        Zipf(int n, double exponent) {
+            cumulative = new double[n];
+            double total = 0;
+            for (int rank = 1; rank <= n; rank++) {
+                total += 1 / Math.pow(rank, exponent);
+                cumulative[rank - 1] = total;
+            }
+            for (int i = 0; i < n; i++) {
+                cumulative[i] /= total;
+            }
+            // Guard against rounding leaving the last bound just under 1
+            cumulative[n - 1] = 1;
+        }
+        
+        /**
+         * Draws a rank.
+         * 
+         * @param random the random number source
+         * @return a rank from 1 to n
+         */
+        int sample(Random random) {
+            int index = Arrays.binarySearch(cumulative, random.nextDouble());
+            // A miss returns -(insertion point) - 1; the insertion point is the sampled index
+            return (index >= 0 ? index : -index - 1) + 1;
+        }
+    }
+}
\ No newline at end of file
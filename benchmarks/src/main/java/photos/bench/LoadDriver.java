@@ -0,0 +1,305 @@
+package photos.bench;
+
+import photos.model.Album;
+import photos.model.Photo;
+import photos.model.PhotoCatalog;
+import photos.model.SearchUtil;
+import photos.model.User;
+import photos.model.UserManager;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives a generated library with a mix of the operations the screens
+ * perform (adding, tagging, captioning and moving photos, searching and
+ * saving) at a fixed rate, without the user interface, and reports the
+ * throughput and latency percentiles of each.
+ * <p>
+ * Operations are scheduled at even intervals whether or not earlier ones
+ * have finished. Latency is measured from when an operation was scheduled,
+ * not when it started, so time spent waiting behind a slow save counts
+ * against the operations that waited, as it would for someone using the
+ * application.
+ * <p>
+ * Mutations call the model directly, as the single-photo paths in the
+ * controllers do. The batch operations in the application also save when
+ * they finish; the weight of the save operation stands in for that.
+ * <pre>
+ * java -cp target/benchmarks.jar photos.bench.LoadDriver [photos=100000] [rate=200] [seconds=30]
+ *     [mix=add:5,tag:25,caption:15,move:5,search:45,save:5]
+ * </pre>
+ * Run from the {@code benchmarks} directory; the user manager saves to
+ * {@code data/} under the working directory. The load test user is removed
+ * when the run ends.
+ * 
+ * @author Krish Patel, Darshan Surti
+ */
+public class LoadDriver {
+    
+    private static final String USERNAME = "load-test";
+    
+    /**
+     * The operations the driver performs.
+     */
+    enum Operation {
+        ADD, TAG, CAPTION, MOVE, SEARCH, SAVE
+    }
+    
+    private final UserManager userManager;
+    private final User user;
+    private final LibraryGenerator generator;
+    private final Random random;
+    private final Operation[] mix;
+    private final Map<Operation, LatencyRecorder> latencies = new EnumMap<>(Operation.class);
+    private int addedPhotos;
+    
+    /**
+     * Creates a driver for a user.
+     * 
+     * @param userManager the user manager, used for saving
+     * @param user the user to drive
+     * @param generator the generator that built the user, used for new photos, tags and queries
+     * @param mix the operations to choose from, each repeated by its weight
+     */
+    LoadDriver(UserManager userManager, User user, LibraryGenerator generator, Operation[] mix) {
+        this.userManager = userManager;
+        this.user = user;
+        this.generator = generator;
+        this.random = generator.getRandom();
+        this.mix = mix;
+        for (Operation operation : Operation.values()) {
+            latencies.put(operation, new LatencyRecorder());
+        }
+    }
+    
+    /**
+     * Runs operations at a fixed rate for a length of time.
+     * 
+     * @param rate the operations to schedule per second
+     * @param seconds how long to run
+     * @return the number of operations completed
+     * @throws IOException if a new photo can't be created
+     */
+    long run(double rate, int seconds) throws IOException {
+        long interval = (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(seconds);
+        long completed = 0;
+        
+        for (long scheduled = start; scheduled < end; scheduled += interval) {
+            long now;
+            while ((now = System.nanoTime()) < scheduled) {
+                LockSupport.parkNanos(scheduled - now);
+            }
+            
+            Operation operation = mix[random.nextInt(mix.length)];
+            perform(operation);
+            latencies.get(operation).record(System.nanoTime() - scheduled);
+            completed++;
+        }
+        return completed;
+    }
+    
+    /**
+     * Performs one operation on a random photo or album.
+     * 
+     * @param operation the operation
+     * @throws IOException if a new photo can't be created
+     */
+    private void perform(Operation operation) throws IOException {
+        List<Album> albums = user.getAlbums();
+        switch (operation) {
+            case ADD:
+                Album album = albums.get(random.nextInt(albums.size()));
+                album.addPhoto(generator.createPhoto(USERNAME + "-added-" + addedPhotos++));
+                break;
+            case TAG:
+                randomPhoto().addTag(generator.randomTag());
+                break;
+            case CAPTION:
+                randomPhoto().setCaption(generator.randomCaption());
+                break;
+            case MOVE:
+                Album source = albums.get(random.nextInt(albums.size()));
+                Album target = albums.get(random.nextInt(albums.size()));
+                int[] ids = source.getPhotoIds();
+                if (source != target && ids.length > 0) {
+                    Photo photo = user.getCatalog().getPhoto(ids[random.nextInt(ids.length)]);
+                    if (target.addPhoto(photo)) {
+                        source.removePhoto(photo);
+                    }
+                }
+                break;
+            case SEARCH:
+                SearchUtil.search(user, generator.randomQuery());
+                break;
+            case SAVE:
+                userManager.saveUsers();
+                break;
+            default:
+                throw new IllegalStateException("Unknown operation " + operation);
+        }
+    }
+    
+    /**
+     * Picks a random photo from the user's catalog.
+     * 
+     * @return the photo
+     */
+    private Photo randomPhoto() {
+        PhotoCatalog catalog = user.getCatalog();
+        while (true) {
+            Photo photo = catalog.getPhoto(random.nextInt(catalog.getIdBound()));
+            if (photo != null) {
+                return photo;
+            }
+        }
+    }
+    
+    /**
+     * Prints the count and latency percentiles of each operation.
+     * 
+     * @param completed the total number of operations
+     * @param seconds the length of the run
+     */
+    void report(long completed, int seconds) {
+        System.out.printf("%d operations in %d s: %.1f ops/s%n", completed, seconds, (double) completed / seconds);
+        System.out.printf("%-8s %8s %10s %10s %10s %10s %10s%n", "op", "count", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        for (Map.Entry<Operation, LatencyRecorder> entry : latencies.entrySet()) {
+            LatencyRecorder recorder = entry.getValue();
+            if (recorder.count == 0) {
+                continue;
+            }
+            recorder.sort();
+            System.out.printf("%-8s %8d %10.3f %10.3f %10.3f %10.3f %10.3f%n",
+                    entry.getKey().name().toLowerCase(Locale.ROOT), recorder.count,
+                    recorder.percentile(50), recorder.percentile(90), recorder.percentile(99),
+                    recorder.percentile(99.9), recorder.percentile(100));
+        }
+    }
+    
+    /**
+     * Parses an operation mix such as {@code add:5,search:45}.
+     * 
+     * @param text the mix
+     * @return the operations, each repeated by its weight
+     */
+    static Operation[] parseMix(String text) {
+        Operation[] mix = new Operation[0];
+        for (String part : text.split(",")) {
+            String[] pair = part.split(":");
+            Operation operation = Operation.valueOf(pair[0].trim().toUpperCase(Locale.ROOT));
+            int weight = Integer.parseInt(pair[1].trim());
+            int from = mix.length;
+            mix = Arrays.copyOf(mix, from + weight);
+            Arrays.fill(mix, from, mix.length, operation);
+        }
+        return mix;
+    }
+    
+    /**
+     * Generates a user and runs the load against it.
+     * 
+     * @param args optional {@code name=value} settings: photos, rate, seconds, mix and seed
+     * @throws IOException if a photo can't be created
+     */
+    public static void main(String[] args) throws IOException {
+        int photos = 100_000;
+        double rate = 200;
+        int seconds = 30;
+        long seed = 42;
+        String mix = "add:5,tag:25,caption:15,move:5,search:45,save:5";
+        for (String arg : args) {
+            String[] pair = arg.split("=", 2);
+            if (pair.length < 2) {
+                System.err.println("Settings are name=value: " + arg);
+                return;
+            }
+            switch (pair[0]) {
+                case "photos":
+                    photos = Integer.parseInt(pair[1]);
+                    break;
+                case "rate":
+                    rate = Double.parseDouble(pair[1]);
+                    break;
+                case "seconds":
+                    seconds = Integer.parseInt(pair[1]);
+                    break;
+                case "seed":
+                    seed = Long.parseLong(pair[1]);
+                    break;
+                case "mix":
+                    mix = pair[1];
+                    break;
+                default:
+                    System.err.println("Unknown setting: " + arg);
+                    return;
+            }
+        }
+        
+        UserManager userManager = UserManager.getInstance();
+        userManager.removeUser(USERNAME);
+        LibraryGenerator generator = new LibraryGenerator(seed);
+        User user = userManager.addUser(USERNAME);
+        long start = System.nanoTime();
+        generator.populate(user, photos);
+        System.out.printf("Generated %d photos in %d ms%n", photos, (System.nanoTime() - start) / 1_000_000);
+        
+        LoadDriver driver = new LoadDriver(userManager, user, generator, parseMix(mix));
+        try {
+            // A short warm-up so the first measurements aren't dominated by class loading and compilation
+            driver.run(rate, Math.min(5, seconds));
+            driver.latencies.replaceAll((operation, recorder) -> new LatencyRecorder());
+            driver.report(driver.run(rate, seconds), seconds);
+        } finally {
+            userManager.removeUser(USERNAME);
+            userManager.saveUsers();
+        }
+    }
+    
+    /**
+     * Collects latencies to report percentiles from.
+     */
+    private static class LatencyRecorder {
+        private long[] nanos = new long[1024];
+        private int count;
+        
+        /**
+         * Records a latency.
+         * 
+         * @param latency the latency in nanoseconds
+         */
+        void record(long latency) {
+            if (count == nanos.length) {
+                nanos = Arrays.copyOf(nanos, count * 2);
+            }
+            nanos[count++] = latency;
+        }
+        
+        /**
+         * Sorts the recorded latencies; must be called before reading percentiles.
+         */
+        void sort() {
+            Arrays.sort(nanos, 0, count);
+        }
+        
+        /**
+         * Gets a percentile of the recorded latencies.
+         * 
+         * @param percent the percentile, from 0 to 100
+         * @return the latency in milliseconds
+         */
+        double percentile(double percent) {
+            int index = (int) Math.ceil(percent / 100 * count) - 1;
+            return nanos[Math.max(0, Math.min(index, count - 1))] / 1e6;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,111 @@
+package photos.bench;
+
+import photos.model.ParallelSearch;
+import photos.model.Photo;
+import photos.model.SearchQuery;
+import photos.model.User;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Measures how {@link ParallelSearch} scales with the number of cores.
+ * Generates one large user with {@link LibraryGenerator}, then times the
+ * same searches on pools of 1, 2, 4, ... threads up to the number of
+ * available processors and prints the median time and the speedup over
+ * one thread for each.
+ * <pre>
+ * java -cp target/benchmarks.jar photos.bench.ParallelSearchBenchmark [photos] [threshold]
+ * </pre>
+ * 
+ * @author Krish Patel, Darshan Surti
+ */
+public class ParallelSearchBenchmark {
+    
+    private static final int WARMUP_RUNS = 5;
+    private static final int MEASURED_RUNS = 15;
+    
+    /**
+     * Runs the benchmark.
+     * 
+     * @param args optional photo count and sequential threshold
+     * @throws IOException never, since no placeholder images are written
+     */
+    public static void main(String[] args) throws IOException {
+        int photoCount = args.length > 0 ? Integer.parseInt(args[0]) : 500_000;
+        int threshold = args.length > 1 ? Integer.parseInt(args[1]) : ParallelSearch.DEFAULT_THRESHOLD;
+        User user = new LibraryGenerator(42).generateUser("bench", photoCount);
+        
+        String[] queries = {
+            "location=location1",
+            "location=location1 OR person=person7",
+            "sun",
+            "caption:beach from:2000-01-01"
+        };
+        
+        int cores = Runtime.getRuntime().availableProcessors();
+        System.out.printf("%d photos, threshold %d, %d available processors%n", photoCount, threshold, cores);
+        for (String text : queries) {
+            SearchQuery query = SearchQuery.parse(text);
+            System.out.println("query: " + query);
+            
+            double baseline = 0;
+            for (int threads = 1; threads <= cores; threads = nextThreadCount(threads, cores)) {
+                ForkJoinPool pool = new ForkJoinPool(threads);
+                ParallelSearch search = new ParallelSearch(pool, threshold);
+                double millis = medianMillis(search, user, query);
+                pool.shutdown();
+                
+                if (threads == 1) {
+                    baseline = millis;
+                }
+                System.out.printf("  %2d threads: %8.2f ms  speedup %.2fx%n", threads, millis, baseline / millis);
+            }
+        }
+    }
+    
+    /**
+     * Gets the next thread count to measure: doubling, but always ending at the core count.
+     * 
+     * @param threads the current count
+     * @param cores the number of available processors
+     * @return the next count, or a value above cores when done
+     */
+    private static int nextThreadCount(int threads, int cores) {
+        if (threads == cores) {
+            return cores + 1;
+        }
+        return Math.min(threads * 2, cores);
+    }
+    
+    /**
+     * Times a search repeatedly and takes the median.
+     * 
+     * @param search the engine to use
+     * @param user the user to search
+     * @param query the query
+     * @return the median time in milliseconds
+     */
+    private static double medianMillis(ParallelSearch search, User user, SearchQuery query) {
+        int sink = 0;
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            sink += search.search(user, query).size();
+        }
+        
+        long[] times = new long[MEASURED_RUNS];
+        for (int i = 0; i < MEASURED_RUNS; i++) {
+            long start = System.nanoTime();
+            List<Photo> results = search.search(user, query);
+            times[i] = System.nanoTime() - start;
+            sink += results.size();
+        }
+        if (sink == 42) {
+            System.out.println();
+        }
+        
+        Arrays.sort(times);
+        return times[times.length / 2] / 1e6;
+    }
+}
\ No newline at end of file
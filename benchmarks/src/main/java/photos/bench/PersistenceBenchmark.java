@@ -0,0 +1,85 @@
+package photos.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import photos.model.UserManager;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures saving and loading the users file with one large user in it.
+ * Loading reads the file back the same way starting the application does,
+ * through {@link UserManager#readStoredUsers()}, which
+ * {@link UserManager#getInstance()} calls the first time. Streaming reads
+ * it one user at a time through {@link UserManager#forEachStoredUser}, as
+ * the admin's user statistics do.
+ * <p>
+ * The user manager keeps its file in {@code data/} under the working
+ * directory, so run the benchmarks from the {@code benchmarks} directory
+ * to keep them away from the application's own data. The benchmark user
+ * is removed again afterwards.
+ * 
+ * @author Krish Patel, Darshan Surti
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+@State(Scope.Benchmark)
+public class PersistenceBenchmark {
+    
+    private static final String USERNAME = "benchmark-user";
+    
+    @Param({ "1000", "10000", "100000", "1000000" })
+    private int photos;
+    
+    private UserManager userManager;
+    
+    /**
+     * Adds the benchmark user and saves it once, so there is a file to load.
+     */
+    @Setup
+    public void setUp() {
+        userManager = UserManager.getInstance();
+        userManager.removeUser(USERNAME);
+        BenchmarkData.populate(userManager.addUser(USERNAME), photos, 100);
+        userManager.saveUsers();
+    }
+    
+    /**
+     * Removes the benchmark user from the saved users.
+     */
+    @TearDown
+    public void tearDown() {
+        userManager.removeUser(USERNAME);
+        userManager.saveUsers();
+    }
+    
+    @Benchmark
+    public void saveUsers() {
+        userManager.saveUsers();
+    }
+    
+    @Benchmark
+    public UserManager loadUsers() {
+        return UserManager.readStoredUsers();
+    }
+    
+    @Benchmark
+    public void streamUsers(Blackhole blackhole) throws IOException {
+        userManager.forEachStoredUser((user, storedBytes) -> blackhole.consume(user));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,80 @@
+package photos.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import photos.model.Album;
+import photos.model.Photo;
+import photos.model.Tag;
+import photos.model.User;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures adding and checking tags on a photo that already has a number of
+ * tags. The photo belongs to a user's album, so adding a tag also pays for
+ * the change event and the user's tag index.
+ * 
+ * @author Krish Patel, Darshan Surti
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PhotoBenchmark {
+    
+    @Param({ "2", "20", "200" })
+    private int tags;
+    
+    private Photo photo;
+    private Tag extraTag;
+    private String lastValue;
+    
+    /**
+     * Builds the tagged photo.
+     */
+    @Setup
+    public void setUp() {
+        User user = new User("bench");
+        Album album = new Album("album");
+        user.addAlbum(album);
+        photo = new Photo("/bench/photos/tagged.jpg");
+        album.addPhoto(photo);
+        
+        for (int i = 0; i < tags; i++) {
+            photo.addTag(new Tag("tag" + (i % 5), "value" + i));
+        }
+        extraTag = new Tag("extra", "value");
+        lastValue = "value" + (tags - 1);
+    }
+    
+    /**
+     * Adds a tag and removes it again, so the photo keeps the same tags between calls.
+     * 
+     * @return true if both steps succeeded
+     */
+    @Benchmark
+    public boolean addAndRemoveTag() {
+        return photo.addTag(extraTag) & photo.removeTag(extraTag);
+    }
+    
+    @Benchmark
+    public boolean hasTagFound() {
+        return photo.hasTag("tag" + ((tags - 1) % 5), lastValue);
+    }
+    
+    @Benchmark
+    public boolean hasTagMissing() {
+        return photo.hasTag("tag0", "missing");
+    }
+}
\ No newline at end of file
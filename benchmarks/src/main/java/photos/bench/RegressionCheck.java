@@ -0,0 +1,501 @@
+package photos.bench;
+
+import photos.model.Album;
+import photos.model.LiveSearch;
+import photos.model.ParallelSearch;
+import photos.model.Photo;
+import photos.model.SearchQuery;
+import photos.model.SearchResultListener;
+import photos.model.SearchUtil;
+import photos.model.Tag;
+import photos.model.User;
+import photos.model.UserSnapshot;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checks the core operations against performance budgets and exits with a
+ * failure status if any is exceeded, so a build can stop on a regression.
+ * <p>
+ * Each operation runs on generated libraries of doubling size. Two budgets
+ * are checked for each:
+ * <ul>
+ * <li>growth: the exponent k in time ~ n^k, fitted across the library sizes.
+ *     A linear scan measures about 1 and a constant-time operation about 0;
+ *     an accidental quadratic path, such as checking each result against
+ *     every earlier one, measures about 2. Budgets leave room for timing
+ *     noise but stay well below the next complexity class.</li>
+ * <li>allocation: bytes allocated per call on the calling thread, allowed
+ *     to be a fixed amount plus an amount per photo in the library.</li>
+ * </ul>
+ * Times are the fastest of several samples, fast operations are repeated
+ * within a sample, and growth is fitted across all sizes. Every size is
+ * measured in {@value #ROUNDS} rounds, growth is fitted to each round
+ * separately, and the median fit is checked, so one disturbed round can't
+ * fail the check and the check passes reliably on a laptop.
+ * Searches run on a single-thread pool so their allocation is counted on
+ * the calling thread and core count doesn't change the growth.
+ * <p>
+ * Live search, which runs while the user types, is also checked against a
+ * latency budget on a library of {@value #LIVE_SEARCH_PHOTOS} photos: the
+ * median time from starting a search to its first results, and the median
+ * time {@link LiveSearch#start} keeps the calling thread, which is the
+ * JavaFX thread in the application.
+ * <pre>
+ * java -cp target/benchmarks.jar photos.bench.RegressionCheck [base-photos] [doublings]
+ * </pre>
+ * It also runs as part of {@code mvn verify -Pregression} in the benchmarks module.
+ * 
+ * @author Krish Patel, Darshan Surti
+ */
+public class RegressionCheck {
+    
+    private static final double LINEAR = 1.5;
+    private static final double CONSTANT = 0.5;
+    private static final int SAMPLES = 7;
+    private static final int ROUNDS = 5;
+    private static final int RARE_PHOTOS = 64;
+    private static final long MIN_SAMPLE_NANOS = 10_000_000;
+    private static final int LIVE_SEARCH_PHOTOS = 200_000;
+    private static final int LIVE_SEARCH_SAMPLES = 9;
+    private static final double FIRST_RESULTS_MILLIS = 50;
+    private static final double START_MILLIS = 1;
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    
+    private final List<Check> checks = new ArrayList<>();
+    
+    /**
+     * Creates the checks of the core operations.
+     */
+    RegressionCheck() {
+        ParallelSearch sequential = new ParallelSearch(new ForkJoinPool(1), ParallelSearch.DEFAULT_THRESHOLD);
+        
+        // The tag index reads only the photos with a tag, so a rare tag costs the same in any library
+        checks.add(new Check("SearchUtil.searchByTag of a rare tag", CONSTANT, 4096, 0,
+                library -> SearchUtil.searchByTag(library.albums, "landmark", "lighthouse")));
+        checks.add(new Check("SearchUtil.searchByTag", LINEAR, 4096, 16,
+                library -> SearchUtil.searchByTag(library.albums, "location", BenchmarkData.COMMON_LOCATION)));
+        checks.add(new Check("SearchUtil.searchByTagsAnd of a rare tag", CONSTANT, 4096, 0,
+                library -> SearchUtil.searchByTagsAnd(library.albums, "landmark", "lighthouse",
+                        "location", BenchmarkData.COMMON_LOCATION)));
+        checks.add(new Check("SearchUtil.searchByTagsAnd", LINEAR, 4096, 16,
+                library -> SearchUtil.searchByTagsAnd(library.albums, "location", BenchmarkData.COMMON_LOCATION,
+                        "person", BenchmarkData.COMMON_PERSON)));
+        checks.add(new Check("SearchUtil.searchByTagsOr", LINEAR, 4096, 16,
+                library -> SearchUtil.searchByTagsOr(library.albums, "location", BenchmarkData.COMMON_LOCATION,
+                        "person", BenchmarkData.COMMON_PERSON)));
+        checks.add(new Check("SearchUtil.searchByDateRange", LINEAR, 4096, 16,
+                library -> SearchUtil.searchByDateRange(library.albums, library.startDate, library.endDate)));
+        checks.add(new Check("query search", LINEAR, 4096, 64,
+                library -> sequential.search(library.user, library.tagQuery)));
+        checks.add(new Check("caption search", LINEAR, 4096, 16,
+                library -> sequential.search(library.user, library.captionQuery)));
+        checks.add(new Check("query search of a rare tag", CONSTANT, 8192, 0,
+                library -> sequential.search(library.user, library.rareTagQuery)));
+        checks.add(new Check("TagIndex.completeValues", CONSTANT, 4096, 0,
+                library -> library.user.getTagIndex().completeValues("location", "location", 8)));
+        checks.add(new Check("TagIndex.completeValues with distinct values", CONSTANT, 8192, 0,
+                library -> {
+                    library.fileNames.getTagIndex().completeValues("filename", "", 8);
+                    library.fileNames.getTagIndex().completeValues("filename", "img_1", 8);
+                }));
+        checks.add(new Check("Album.addPhoto+removePhoto", CONSTANT, 4096, 0,
+                library -> {
+                    library.album.addPhoto(library.extraPhoto);
+                    library.album.removePhoto(library.extraPhoto);
+                }));
+        checks.add(new Check("Photo.addTag+removeTag", CONSTANT, 1024, 0,
+                library -> {
+                    library.photo.addTag(library.extraTag);
+                    library.photo.removeTag(library.extraTag);
+                }));
+        checks.add(new Check("Album.getDateRange after removing earliest", LINEAR, 4096, 0,
+                library -> {
+                    library.album.removePhoto(library.earliest);
+                    library.album.getDateRange();
+                    library.album.addPhoto(library.earliest);
+                }));
+        checks.add(new Check("import with containsPhoto", LINEAR, 4096, 256,
+                RegressionCheck::importPhotos));
+        checks.add(new Check("serialize user", LINEAR, 65536, 1536,
+                library -> serialize(library.user)));
+        checks.add(new Check("User.snapshot+close", CONSTANT, 1024, 0,
+                library -> library.user.snapshot().close()));
+        checks.add(new Check("recaption photos in reverse order", LINEAR, 4096, 512,
+                RegressionCheck::recaption));
+    }
+    
+    /**
+     * Runs every check on libraries of doubling size.
+     * 
+     * @param basePhotos the number of photos in the smallest library
+     * @param doublings how many times to double it
+     * @return true if every check passed
+     */
+    boolean run(int basePhotos, int doublings) {
+        int[] sizes = new int[doublings + 1];
+        double[][][] nanos = new double[checks.size()][ROUNDS][sizes.length];
+        double[][][] bytes = new double[checks.size()][sizes.length][ROUNDS];
+        
+        // One untimed pass so the first size isn't measured before the code is compiled
+        Library warmUp = new Library(basePhotos);
+        for (Check check : checks) {
+            measure(check, warmUp);
+        }
+        
+        for (int s = 0; s < sizes.length; s++) {
+            sizes[s] = basePhotos << s;
+            Library library = new Library(sizes[s]);
+            // Rounds take turns with the other checks, so a slow spell can't disturb every round of one check
+            for (int r = 0; r < ROUNDS; r++) {
+                for (int c = 0; c < checks.size(); c++) {
+                    double[] result = measure(checks.get(c), library);
+                    nanos[c][r][s] = result[0];
+                    bytes[c][s][r] = result[1];
+                }
+            }
+        }
+        
+        boolean passed = true;
+        System.out.printf("%-45s %8s %8s %12s %12s  %s%n", "operation", "growth", "budget", "bytes/op", "budget", "times (us)");
+        for (int c = 0; c < checks.size(); c++) {
+            Check check = checks.get(c);
+            int last = sizes.length - 1;
+            
+            // The median round's fit, and its times to show
+            Integer[] rounds = new Integer[ROUNDS];
+            double[] growths = new double[ROUNDS];
+            for (int r = 0; r < ROUNDS; r++) {
+                rounds[r] = r;
+                growths[r] = fitGrowth(sizes, nanos[c][r]);
+            }
+            Arrays.sort(rounds, (a, b) -> Double.compare(growths[a], growths[b]));
+            int median = rounds[ROUNDS / 2];
+            double growth = growths[median];
+            
+            double allowedBytes = check.fixedBytes + check.bytesPerPhoto * sizes[last];
+            double worstBytes = 0;
+            for (double[] sizeBytes : bytes[c]) {
+                Arrays.sort(sizeBytes);
+                worstBytes = Math.max(worstBytes, sizeBytes[ROUNDS / 2]);
+            }
+            
+            boolean ok = growth <= check.maxGrowth && bytes[c][last][ROUNDS / 2] <= allowedBytes;
+            passed &= ok;
+            StringBuilder times = new StringBuilder();
+            for (double t : nanos[c][median]) {
+                times.append(String.format(" %.1f", t / 1000));
+            }
+            System.out.printf("%-45s %8.2f %8.2f %12.0f %12.0f %s%s%n", check.name, growth, check.maxGrowth,
+                    worstBytes, allowedBytes, times, ok ? "" : "  FAILED");
+        }
+        passed &= checkLiveSearch();
+        System.out.println(passed ? "All performance budgets met" : "Performance budgets exceeded");
+        return passed;
+    }
+    
+    /**
+     * Checks how quickly live searches show their first results.
+     * Each query is searched with an empty cache, as if typed for the first time.
+     * 
+     * @return true if every query met its latency budgets
+     */
+    private static boolean checkLiveSearch() {
+        Library library = new Library(LIVE_SEARCH_PHOTOS);
+        SearchQuery[] queries = { library.tagQuery, library.captionQuery, SearchQuery.parse("sunset") };
+        boolean passed = true;
+        System.out.printf("%n%-45s %12s %8s %12s %8s%n", "live search of " + LIVE_SEARCH_PHOTOS + " photos",
+                "start (ms)", "budget", "first (ms)", "budget");
+        for (SearchQuery query : queries) {
+            double[] startMillis = new double[LIVE_SEARCH_SAMPLES];
+            double[] firstMillis = new double[LIVE_SEARCH_SAMPLES];
+            
+            // One untimed search so the scan is compiled before it is timed
+            timeLiveSearch(library.user, query);
+            for (int s = 0; s < LIVE_SEARCH_SAMPLES; s++) {
+                double[] result = timeLiveSearch(library.user, query);
+                startMillis[s] = result[0];
+                firstMillis[s] = result[1];
+            }
+            
+            // The median, since a single collection shouldn't fail the check
+            Arrays.sort(startMillis);
+            Arrays.sort(firstMillis);
+            double start = startMillis[LIVE_SEARCH_SAMPLES / 2];
+            double first = firstMillis[LIVE_SEARCH_SAMPLES / 2];
+            boolean ok = start <= START_MILLIS && first <= FIRST_RESULTS_MILLIS;
+            passed &= ok;
+            System.out.printf("%-45s %12.2f %8.2f %12.2f %8.2f%s%n", query.getNormalized(), start, START_MILLIS,
+                    first, FIRST_RESULTS_MILLIS, ok ? "" : "  FAILED");
+        }
+        return passed;
+    }
+    
+    /**
+     * Runs one live search to the end, timing it as a keystroke would see it.
+     * 
+     * @param user the user to search
+     * @param query the query
+     * @return the milliseconds {@link LiveSearch#start} took, and the milliseconds
+     *         until the first results, or until the search finished if nothing matched
+     */
+    private static double[] timeLiveSearch(User user, SearchQuery query) {
+        SearchUtil.getCache().clear();
+        System.gc();
+        CountDownLatch firstResults = new CountDownLatch(1);
+        CountDownLatch finished = new CountDownLatch(1);
+        SearchResultListener listener = new SearchResultListener() {
+            @Override
+            public void resultsFound(List<Photo> photos) {
+                firstResults.countDown();
+            }
+            
+            @Override
+            public void searchFinished(int total) {
+                firstResults.countDown();
+                finished.countDown();
+            }
+        };
+        
+        long start = System.nanoTime();
+        LiveSearch.start(user, query, listener);
+        long started = System.nanoTime();
+        try {
+            firstResults.await();
+            long first = System.nanoTime();
+            if (!finished.await(1, TimeUnit.MINUTES)) {
+                throw new IllegalStateException("Live search of " + query + " didn't finish");
+            }
+            return new double[] { (started - start) / 1e6, (first - start) / 1e6 };
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    /**
+     * Fits time ~ n^k by least squares on a log-log scale.
+     * Using every size rather than only the smallest and largest keeps one
+     * noisy measurement from deciding the result.
+     * 
+     * @param sizes the library sizes
+     * @param nanos the time at each size
+     * @return the fitted exponent k
+     */
+    private static double fitGrowth(int[] sizes, double[] nanos) {
+        double meanX = 0;
+        double meanY = 0;
+        for (int i = 0; i < sizes.length; i++) {
+            meanX += Math.log(sizes[i]) / sizes.length;
+            meanY += Math.log(nanos[i]) / sizes.length;
+        }
+        double covariance = 0;
+        double variance = 0;
+        for (int i = 0; i < sizes.length; i++) {
+            double dx = Math.log(sizes[i]) - meanX;
+            covariance += dx * (Math.log(nanos[i]) - meanY);
+            variance += dx * dx;
+        }
+        return covariance / variance;
+    }
+    
+    /**
+     * Times an operation and measures what it allocates.
+     * 
+     * @param check the check
+     * @param library the library to run it on
+     * @return the fastest sample's nanoseconds and the allocated bytes per call
+     */
+    private static double[] measure(Check check, Library library) {
+        // Start each operation with a clean heap so it isn't charged for earlier garbage
+        System.gc();
+        
+        // Warm up, and find how many calls make a sample long enough to time reliably
+        int calls = 1;
+        while (true) {
+            long start = System.nanoTime();
+            for (int i = 0; i < calls; i++) {
+                check.operation.run(library);
+            }
+            if (System.nanoTime() - start >= MIN_SAMPLE_NANOS || calls >= 1 << 20) {
+                break;
+            }
+            calls *= 2;
+        }
+        
+        double[] samples = new double[SAMPLES];
+        long threadId = Thread.currentThread().getId();
+        long allocatedBefore = THREADS.getThreadAllocatedBytes(threadId);
+        for (int s = 0; s < SAMPLES; s++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < calls; i++) {
+                check.operation.run(library);
+            }
+            samples[s] = (double) (System.nanoTime() - start) / calls;
+        }
+        long allocated = THREADS.getThreadAllocatedBytes(threadId) - allocatedBefore;
+        
+        // The fastest sample is the one least disturbed by collections and other processes
+        Arrays.sort(samples);
+        return new double[] { samples[0], (double) allocated / (SAMPLES * (long) calls) };
+    }
+    
+    /**
+     * Adds a library's worth of photos to a new album, checking each isn't
+     * already there first, as importing the stock photos does.
+     * 
+     * @param library the library whose photo paths to import
+     */
+    private static void importPhotos(Library library) {
+        Album album = new Album("import");
+        for (Photo photo : library.importPhotos) {
+            if (!album.containsPhoto(photo.getFilePath())) {
+                album.addPhoto(photo);
+            }
+        }
+    }
+    
+    /**
+     * Gives a quarter of the photos the same new caption, newest photo first,
+     * so the caption index adds each id ahead of the ones already added.
+     * 
+     * @param library the library whose photos to recaption
+     */
+    private static void recaption(Library library) {
+        library.dusk = !library.dusk;
+        String caption = library.dusk ? "harbour at dusk" : "harbor at dawn";
+        for (int i = library.recaptioned.size() - 1; i >= 0; i--) {
+            library.recaptioned.get(i).setCaption(caption);
+        }
+    }
+    
+    /**
+     * Serializes a user from a snapshot as saving does, discarding the bytes.
+     * 
+     * @param user the user
+     */
+    private static void serialize(User user) {
+        try (ObjectOutputStream out = new ObjectOutputStream(OutputStream.nullOutputStream());
+             UserSnapshot snapshot = user.snapshot()) {
+            snapshot.writeTo(out);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    /**
+     * Runs the checks and exits with status 1 if any failed.
+     * 
+     * @param args optional photos in the smallest library (default 20000) and number of doublings (default 3)
+     */
+    public static void main(String[] args) {
+        int basePhotos = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        int doublings = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        boolean passed = new RegressionCheck().run(basePhotos, doublings);
+        System.exit(passed ? 0 : 1);
+    }
+    
+    /**
+     * An operation to check.
+     */
+    private interface Operation {
+        
+        /**
+         * Performs the operation once.
+         * 
+         * @param library the library to operate on
+         */
+        void run(Library library);
+    }
+    
+    /**
+     * An operation with its budgets.
+     */
+    private static class Check {
+        private final String name;
+        private final double maxGrowth;
+        private final double fixedBytes;
+        private final double bytesPerPhoto;
+        private final Operation operation;
+        
+        Check(String name, double maxGrowth, double fixedBytes, double bytesPerPhoto, Operation operation) {
+            this.name = name;
+            this.maxGrowth = maxGrowth;
+            this.fixedBytes = fixedBytes;
+            this.bytesPerPhoto = bytesPerPhoto;
+            this.operation = operation;
+        }
+    }
+    
+    /**
+     * A generated library and the values the operations use.
+     */
+    private static class Library {
+        private final User user;
+        private final List<Album> albums;
+        private final Album album;
+        private final Photo photo;
+        private final Photo extraPhoto;
+        private final Photo earliest;
+        private final Tag extraTag = new Tag("extra", "value");
+        private final Calendar startDate = BenchmarkData.dateAt(0.50);
+        private final Calendar endDate = BenchmarkData.dateAt(0.51);
+        private final SearchQuery tagQuery = SearchQuery.parse("location=" + BenchmarkData.COMMON_LOCATION
+                + " AND person=" + BenchmarkData.COMMON_PERSON);
+        private final SearchQuery captionQuery = SearchQuery.parse("caption:\"sunset beach\"");
+        private final SearchQuery rareTagQuery = SearchQuery.parse("landmark=lighthouse");
+        private final List<Photo> importPhotos;
+        private final User fileNames;
+        private final List<Photo> recaptioned;
+        private boolean dusk;
+        
+        Library(int photoCount) {
+            user = BenchmarkData.createUser("regression", photoCount, 10);
+            albums = user.getAlbums();
+            album = albums.get(0);
+            photo = user.getCatalog().getPhotos().get(0);
+            recaptioned = user.getCatalog().getPhotos().subList(0, photoCount / 4);
+            
+            // The same number of photos have the rare tag however large the library
+            List<Photo> photos = user.getCatalog().getPhotos();
+            for (int i = 0; i < RARE_PHOTOS; i++) {
+                photos.get(i * (photoCount / RARE_PHOTOS)).addTag(new Tag("landmark", "lighthouse"));
+            }
+            
+            extraPhoto = BenchmarkData.createPhoto(BenchmarkData.createGenerator(10), photoCount);
+            Photo first = null;
+            for (Photo candidate : album.getPhotos()) {
+                if (first == null || candidate.getDateTaken().before(first.getDateTaken())) {
+                    first = candidate;
+                }
+            }
+            earliest = first;
+            
+            importPhotos = new ArrayList<>(photoCount);
+            for (int i = 0; i < photoCount; i++) {
+                importPhotos.add(new Photo("/bench/import/photo" + i + ".jpg"));
+            }
+            
+            // Like the stock photos' filename tag, every photo has a different value
+            fileNames = new User("filenames");
+            Album all = new Album("all");
+            fileNames.addAlbum(all);
+            for (int i = 0; i < photoCount; i++) {
+                Photo named = new Photo("/bench/filenames/img_" + i + ".jpg");
+                named.addTag(new Tag("filename", "img_" + i + ".jpg"));
+                all.addPhoto(named);
+            }
+        }
+    }
+}
\ No newline at end of file
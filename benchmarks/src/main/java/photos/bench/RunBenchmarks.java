@@ -0,0 +1,46 @@
+package photos.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+
+/**
+ * Runs the benchmarks with the GC profiler attached, so every result also
+ * reports the bytes allocated per operation and the time spent collecting.
+ * Takes the usual JMH command line options, for example
+ * {@code -p photos=1000,10000} to choose sizes or a class name pattern
+ * to run only some benchmarks.
+ * 
+ * @author Krish Patel, Darshan Surti
+ */
+public class RunBenchmarks {
+    
+    /**
+     * Runs the benchmarks.
+     * 
+     * @param args JMH command line options
+     * @throws CommandLineOptionException if the options can't be parsed
+     * @throws RunnerException if a benchmark fails
+     * @throws IOException if listing the benchmarks fails
+     */
+    public static void main(String[] args) throws CommandLineOptionException, RunnerException, IOException {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        if (commandLine.shouldHelp() || commandLine.shouldList() || commandLine.shouldListProfilers()
+                || commandLine.shouldListResultFormats()) {
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+        
+        Options options = new OptionsBuilder()
+                .parent(commandLine)
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
\ No newline at end of file
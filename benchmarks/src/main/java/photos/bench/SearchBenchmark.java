@@ -0,0 +1,101 @@
+package photos.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import photos.model.Album;
+import photos.model.ParallelSearch;
+import photos.model.Photo;
+import photos.model.SearchQuery;
+import photos.model.SearchUtil;
+import photos.model.User;
+
+import java.util.Calendar;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the searches in {@link SearchUtil}: the four album-list searches
+ * used by the original search screens, and the query search with and
+ * without its result cache.
+ * <p>
+ * The album-list searches scan every album and drop photos already found
+ * through a hash set, so their time grows with the number of photos in
+ * albums rather than with the square of the results.
+ * 
+ * @author Krish Patel, Darshan Surti
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+@State(Scope.Benchmark)
+public class SearchBenchmark {
+    
+    @Param({ "1000", "10000", "100000", "1000000" })
+    private int photos;
+    
+    @Param({ "10", "1000" })
+    private int locations;
+    
+    private User user;
+    private List<Album> albums;
+    private Calendar startDate;
+    private Calendar endDate;
+    private SearchQuery tagQuery;
+    
+    /**
+     * Builds the user to search.
+     */
+    @Setup
+    public void setUp() {
+        user = BenchmarkData.createUser("bench", photos, locations);
+        albums = user.getAlbums();
+        // One percent of the photos
+        startDate = BenchmarkData.dateAt(0.50);
+        endDate = BenchmarkData.dateAt(0.51);
+        tagQuery = SearchQuery.parse("location=" + BenchmarkData.COMMON_LOCATION
+                + " AND person=" + BenchmarkData.COMMON_PERSON);
+    }
+    
+    @Benchmark
+    public List<Photo> searchByDateRange() {
+        return SearchUtil.searchByDateRange(albums, startDate, endDate);
+    }
+    
+    @Benchmark
+    public List<Photo> searchByTag() {
+        return SearchUtil.searchByTag(albums, "location", BenchmarkData.COMMON_LOCATION);
+    }
+    
+    @Benchmark
+    public List<Photo> searchByTagsAnd() {
+        return SearchUtil.searchByTagsAnd(albums, "location", BenchmarkData.COMMON_LOCATION,
+                "person", BenchmarkData.COMMON_PERSON);
+    }
+    
+    @Benchmark
+    public List<Photo> searchByTagsOr() {
+        return SearchUtil.searchByTagsOr(albums, "location", BenchmarkData.COMMON_LOCATION,
+                "person", BenchmarkData.COMMON_PERSON);
+    }
+    
+    @Benchmark
+    public List<Photo> queryUncached() {
+        return ParallelSearch.getDefault().search(user, tagQuery);
+    }
+    
+    @Benchmark
+    public List<Photo> queryCached() {
+        return SearchUtil.search(user, tagQuery);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,522 @@
+package photos.bench;
+
+import photos.model.Album;
+import photos.model.LatencyHistogram;
+import photos.model.Photo;
+import photos.model.Tag;
+import photos.model.User;
+import photos.model.UserManager;
+import photos.server.PhotosServer;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Load tests the headless {@link PhotosServer} by keeping thousands of
+ * requests in flight against a generated library, and reports the
+ * throughput and latency percentiles of each kind of request. It exits
+ * with a failure status if any request fails or gets an unexpected answer.
+ * <p>
+ * The server runs in this process on a free local port, serving the
+ * generated user through the same user manager the application uses. A
+ * mix of requests is kept at a fixed number in flight for the length of
+ * the run, each sent as soon as another finishes: listing albums and
+ * album pages, reading photos and tag completions, searching, streaming
+ * full-size images and thumbnails, and captioning and tagging photos.
+ * Full-size images come from a handful of large generated JPEGs, and every
+ * image response is checked to be as long as its file. Most thumbnails are
+ * of the generator's small placeholder images and only asked for among the
+ * first thousand photos, as someone browsing would, so after the warm-up
+ * most are served from thumbnails already made. Camera thumbnails are of
+ * 12 megapixel JPEGs, each a separate file, and are all asked for at once
+ * when the run starts, the way a newly imported album would be; each takes
+ * about 36 MB to decode, so they check that thumbnail making doesn't run
+ * the server out of memory. Run with {@code -Xmx512m} to make that check
+ * strict, since the camera photos decoded all at once would need several
+ * times that.
+ * <pre>
+ * java -Xmx512m -cp target/benchmarks.jar photos.bench.ServerLoadTest [photos=10000] [camera=64] [concurrency=2000]
+ *     [seconds=20] [threads=256]
+ *     [mix=albums:5,photos:15,photo:20,search:20,tags:5,image:10,thumbnail:15,camera:5,caption:5,tag:5]
+ * </pre>
+ * Run from the {@code benchmarks} directory; the user manager saves to
+ * {@code data/} under the working directory. The load test user, its image
+ * files and their thumbnails are removed when the run ends. On a single
+ * machine the client competes with the server for the processors, so the
+ * throughput is a lower bound for the server alone.
+ * 
+ * @author Krish Patel, Darshan Surti
+ */
+public class ServerLoadTest {
+    
+    private static final String USERNAME = "server-load";
+    private static final String LARGE_ALBUM = "Large photos";
+    private static final int LARGE_PHOTOS = 8;
+    private static final int LARGE_WIDTH = 1600;
+    private static final int LARGE_HEIGHT = 1200;
+    private static final String CAMERA_ALBUM = "Camera photos";
+    private static final int CAMERA_WIDTH = 4000;
+    private static final int CAMERA_HEIGHT = 3000;
+    private static final int PAGE_SIZE = 50;
+    private static final int THUMBNAIL_PHOTOS = 1000;
+    private static final int MAX_REPORTED_FAILURES = 10;
+    
+    /**
+     * The requests the test sends.
+     */
+    enum Operation {
+        ALBUMS, PHOTOS, PHOTO, SEARCH, TAGS, IMAGE, THUMBNAIL, CAMERA, CAPTION, TAG
+    }
+    
+    private final HttpClient client;
+    private final String base;
+    private final LibraryGenerator generator;
+    private final Random random;
+    private final Operation[] mix;
+    private final String[] albumNames;
+    private final int photoCount;
+    private final int[] largeIds;
+    private final long[] largeSizes;
+    private final int[] cameraIds;
+    private final Map<Operation, LatencyHistogram> latencies = new EnumMap<>(Operation.class);
+    private final AtomicLong failures = new AtomicLong();
+    
+    /**
+     * Creates a load test against a server.
+     * 
+     * @param port the server's port on this machine
+     * @param user the user to request, as the server sees it
+     * @param generator the generator that built the user, used for tags, captions and queries
+     * @param largeFiles the large image files, in the order of their photos in the large album
+     * @param mix the requests to choose from, each repeated by its weight
+     */
+    ServerLoadTest(int port, User user, LibraryGenerator generator, File[] largeFiles, Operation[] mix) {
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(30))
+                .build();
+        this.base = "http://127.0.0.1:" + port;
+        this.generator = generator;
+        this.random = generator.getRandom();
+        this.mix = mix;
+        this.albumNames = user.getAlbums().stream().map(Album::getName).toArray(String[]::new);
+        this.photoCount = user.getCatalog().getIdBound();
+        this.largeIds = user.findAlbumByName(LARGE_ALBUM).getPhotoIds();
+        this.largeSizes = Arrays.stream(largeFiles).mapToLong(File::length).toArray();
+        this.cameraIds = user.findAlbumByName(CAMERA_ALBUM).getPhotoIds();
+        resetLatencies();
+    }
+    
+    /**
+     * Starts a new set of latency histograms, dropping what was recorded so far.
+     */
+    private void resetLatencies() {
+        for (Operation operation : Operation.values()) {
+            latencies.put(operation, new LatencyHistogram());
+        }
+    }
+    
+    /**
+     * Sends requests for a length of time, keeping a number of them in flight.
+     * 
+     * @param concurrency the requests to keep in flight
+     * @param seconds how long to keep sending
+     * @return the number of requests completed
+     * @throws InterruptedException if interrupted while waiting for requests to finish
+     */
+    long run(int concurrency, int seconds) throws InterruptedException {
+        Semaphore inFlight = new Semaphore(concurrency);
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        long sent = 0;
+        
+        while (System.nanoTime() < end) {
+            inFlight.acquire();
+            Operation operation = mix[random.nextInt(mix.length)];
+            int large = random.nextInt(largeIds.length);
+            HttpRequest request = request(operation, large);
+            long start = System.nanoTime();
+            client.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray()).whenComplete((response, error) -> {
+                try {
+                    latencies.get(operation).recordMicrosSince(start);
+                    if (error != null) {
+                        fail(operation, request, error.toString());
+                    } else {
+                        check(operation, request, response, large);
+                    }
+                } finally {
+                    inFlight.release();
+                }
+            });
+            sent++;
+        }
+        
+        // Wait for the last requests to finish
+        inFlight.acquire(concurrency);
+        return sent;
+    }
+    
+    /**
+     * Builds a request for an operation on a random album or photo.
+     * 
+     * @param operation the operation
+     * @param large the index of the large photo an image request asks for
+     * @return the request
+     */
+    private HttpRequest request(Operation operation, int large) {
+        String user = "/api/users/" + USERNAME;
+        String album = albumNames[random.nextInt(albumNames.length)];
+        int photo = random.nextInt(photoCount);
+        switch (operation) {
+            case ALBUMS:
+                return get(user + "/albums");
+            case PHOTOS:
+                return get(user + "/albums/" + encodePath(album) + "/photos?limit=" + PAGE_SIZE
+                        + "&offset=" + PAGE_SIZE * random.nextInt(4));
+            case PHOTO:
+                return get(user + "/photos/" + photo);
+            case SEARCH:
+                return get(user + "/search?limit=" + PAGE_SIZE + "&q=" + encode(generator.randomQuery().getNormalized()));
+            case TAGS:
+                return get(user + "/tags");
+            case IMAGE:
+                return get("/images/" + USERNAME + "/" + largeIds[large]);
+            case THUMBNAIL:
+                return get("/thumbnails/" + USERNAME + "/" + random.nextInt(Math.min(photoCount, THUMBNAIL_PHOTOS))
+                        + "?size=200");
+            case CAMERA:
+                return get("/thumbnails/" + USERNAME + "/" + cameraIds[random.nextInt(cameraIds.length)] + "?size=200");
+            case CAPTION:
+                return send("PUT", user + "/photos/" + photo, "caption=" + encode(generator.randomCaption()));
+            case TAG:
+                Tag tag = generator.randomTag();
+                return send("POST", user + "/photos/" + photo + "/tags",
+                        "name=" + encode(tag.getName()) + "&value=" + encode(tag.getValue()));
+            default:
+                throw new IllegalStateException("Unknown operation " + operation);
+        }
+    }
+    
+    /**
+     * Builds a GET request.
+     * 
+     * @param path the path and query on the server
+     * @return the request
+     */
+    private HttpRequest get(String path) {
+        return HttpRequest.newBuilder(URI.create(base + path)).timeout(Duration.ofMinutes(1)).GET().build();
+    }
+    
+    /**
+     * Builds a request with a form body.
+     * 
+     * @param method the method
+     * @param path the path on the server
+     * @param form the form-encoded body
+     * @return the request
+     */
+    private HttpRequest send(String method, String path, String form) {
+        return HttpRequest.newBuilder(URI.create(base + path))
+                .timeout(Duration.ofMinutes(1))
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .method(method, HttpRequest.BodyPublishers.ofString(form))
+                .build();
+    }
+    
+    /**
+     * Checks a response's status and, for a full-size image, its length.
+     * 
+     * @param operation the operation that was requested
+     * @param request the request
+     * @param response the response
+     * @param large the index of the large photo an image request asked for
+     */
+    private void check(Operation operation, HttpRequest request, HttpResponse<byte[]> response, int large) {
+        int status = response.statusCode();
+        // A photo may already have the random tag
+        boolean expected = status == 200 || (operation == Operation.TAG && (status == 201 || status == 409));
+        if (!expected) {
+            fail(operation, request, "status " + status + ": " + new String(response.body(), StandardCharsets.UTF_8));
+        } else if (operation == Operation.IMAGE && response.body().length != largeSizes[large]) {
+            fail(operation, request, response.body().length + " bytes instead of " + largeSizes[large]);
+        }
+    }
+    
+    /**
+     * Records a failure, printing the first few.
+     * 
+     * @param operation the operation that failed
+     * @param request the request
+     * @param message what went wrong
+     */
+    private void fail(Operation operation, HttpRequest request, String message) {
+        if (failures.incrementAndGet() <= MAX_REPORTED_FAILURES) {
+            System.err.println("FAILED: " + operation.name().toLowerCase(Locale.ROOT) + " "
+                    + request.method() + " " + request.uri() + ": " + message);
+        }
+    }
+    
+    /**
+     * Prints the count and latency percentiles of each operation.
+     * 
+     * @param completed the total number of requests
+     * @param seconds the length of the run
+     * @param concurrency the requests kept in flight
+     */
+    void report(long completed, int seconds, int concurrency) {
+        System.out.printf("%d requests in %d s with %d in flight: %.1f requests/s%n",
+                completed, seconds, concurrency, (double) completed / seconds);
+        System.out.printf("%-10s %8s %10s %10s %10s %10s %10s%n", "op", "count", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        for (Map.Entry<Operation, LatencyHistogram> entry : latencies.entrySet()) {
+            LatencyHistogram histogram = entry.getValue();
+            if (histogram.getCount() == 0) {
+                continue;
+            }
+            System.out.printf("%-10s %8d %10.3f %10.3f %10.3f %10.3f %10.3f%n",
+                    entry.getKey().name().toLowerCase(Locale.ROOT), histogram.getCount(),
+                    histogram.getValueAtPercentile(50) / 1e3, histogram.getValueAtPercentile(90) / 1e3,
+                    histogram.getValueAtPercentile(99) / 1e3, histogram.getValueAtPercentile(99.9) / 1e3,
+                    histogram.getMax() / 1e3);
+        }
+    }
+    
+    /**
+     * Encodes a value for a query string or form body.
+     * 
+     * @param value the value
+     * @return the encoded value
+     */
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * Encodes a value as a path segment.
+     * 
+     * @param value the value
+     * @return the encoded segment
+     */
+    private static String encodePath(String value) {
+        return encode(value).replace("+", "%20");
+    }
+    
+    /**
+     * Parses a request mix such as {@code photo:20,image:10}.
+     * 
+     * @param text the mix
+     * @return the operations, each repeated by its weight
+     */
+    static Operation[] parseMix(String text) {
+        Operation[] mix = new Operation[0];
+        for (String part : text.split(",")) {
+            String[] pair = part.split(":");
+            Operation operation = Operation.valueOf(pair[0].trim().toUpperCase(Locale.ROOT));
+            int weight = Integer.parseInt(pair[1].trim());
+            int from = mix.length;
+            mix = Arrays.copyOf(mix, from + weight);
+            Arrays.fill(mix, from, mix.length, operation);
+        }
+        return mix;
+    }
+    
+    /**
+     * Writes large JPEGs with enough detail that they don't compress to almost nothing.
+     * 
+     * @param directory the directory to write to
+     * @param random the random number source
+     * @return the files
+     * @throws IOException if a file can't be written
+     */
+    private static File[] writeLargeImages(File directory, Random random) throws IOException {
+        File[] files = new File[LARGE_PHOTOS];
+        BufferedImage image = new BufferedImage(LARGE_WIDTH, LARGE_HEIGHT, BufferedImage.TYPE_INT_RGB);
+        for (int i = 0; i < files.length; i++) {
+            for (int y = 0; y < LARGE_HEIGHT; y++) {
+                for (int x = 0; x < LARGE_WIDTH; x++) {
+                    int red = (x * 255 / LARGE_WIDTH + random.nextInt(64)) & 0xff;
+                    int green = (y * 255 / LARGE_HEIGHT + random.nextInt(64)) & 0xff;
+                    int blue = (i * 32 + random.nextInt(64)) & 0xff;
+                    image.setRGB(x, y, (red << 16) | (green << 8) | blue);
+                }
+            }
+            files[i] = new File(directory, USERNAME + "-large-" + i + ".jpg");
+            ImageIO.write(image, "jpg", files[i]);
+        }
+        return files;
+    }
+    
+    /**
+     * Writes camera-sized JPEGs. The image is only encoded once and then
+     * copied, since each copy is a separate photo to the server all the same.
+     * 
+     * @param directory the directory to write to
+     * @param count the number of files
+     * @param random the random number source
+     * @return the files
+     * @throws IOException if a file can't be written
+     */
+    private static File[] writeCameraImages(File directory, int count, Random random) throws IOException {
+        File[] files = new File[count];
+        BufferedImage image = new BufferedImage(CAMERA_WIDTH, CAMERA_HEIGHT, BufferedImage.TYPE_INT_RGB);
+        int[] row = new int[CAMERA_WIDTH];
+        for (int y = 0; y < CAMERA_HEIGHT; y++) {
+            for (int x = 0; x < CAMERA_WIDTH; x++) {
+                int red = (x * 255 / CAMERA_WIDTH + random.nextInt(32)) & 0xff;
+                int green = (y * 255 / CAMERA_HEIGHT + random.nextInt(32)) & 0xff;
+                int blue = ((x ^ y) >> 4) & 0xff;
+                row[x] = (red << 16) | (green << 8) | blue;
+            }
+            image.setRGB(0, y, CAMERA_WIDTH, 1, row, 0, CAMERA_WIDTH);
+        }
+        files[0] = new File(directory, USERNAME + "-camera-0.jpg");
+        ImageIO.write(image, "jpg", files[0]);
+        for (int i = 1; i < files.length; i++) {
+            files[i] = new File(directory, USERNAME + "-camera-" + i + ".jpg");
+            Files.copy(files[0].toPath(), files[i].toPath());
+        }
+        return files;
+    }
+    
+    /**
+     * Deletes a directory and the files in it.
+     * 
+     * @param directory the directory
+     */
+    private static void deleteDirectory(File directory) {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+    
+    /**
+     * Generates a user, serves it and runs the load test against the server.
+     * 
+     * @param args optional {@code name=value} settings: photos, camera, concurrency, seconds, threads, mix and seed
+     * @throws IOException if a photo can't be created or the server can't start
+     * @throws InterruptedException if interrupted while waiting for requests
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int photos = 10_000;
+        int camera = 64;
+        int concurrency = 2000;
+        int seconds = 20;
+        int threads = PhotosServer.DEFAULT_THREADS;
+        long seed = 42;
+        String mix = "albums:5,photos:15,photo:20,search:20,tags:5,image:10,thumbnail:15,camera:5,caption:5,tag:5";
+        for (String arg : args) {
+            String[] pair = arg.split("=", 2);
+            if (pair.length < 2) {
+                System.err.println("Settings are name=value: " + arg);
+                return;
+            }
+            switch (pair[0]) {
+                case "photos":
+                    photos = Integer.parseInt(pair[1]);
+                    break;
+                case "camera":
+                    camera = Integer.parseInt(pair[1]);
+                    if (camera < 1) {
+                        System.err.println("There must be at least one camera photo: " + arg);
+                        return;
+                    }
+                    break;
+                case "concurrency":
+                    concurrency = Integer.parseInt(pair[1]);
+                    break;
+                case "seconds":
+                    seconds = Integer.parseInt(pair[1]);
+                    break;
+                case "threads":
+                    threads = Integer.parseInt(pair[1]);
+                    break;
+                case "seed":
+                    seed = Long.parseLong(pair[1]);
+                    break;
+                case "mix":
+                    mix = pair[1];
+                    break;
+                default:
+                    System.err.println("Unknown setting: " + arg);
+                    return;
+            }
+        }
+        
+        System.setProperty("java.awt.headless", "true");
+        UserManager userManager = UserManager.getInstance();
+        userManager.removeUser(USERNAME);
+        File imageDirectory = new File("data", USERNAME + "-images");
+        File thumbnailDirectory = new File("data", USERNAME + "-thumbnails");
+        imageDirectory.mkdirs();
+        
+        PhotosServer server = null;
+        ServerLoadTest test;
+        try {
+            LibraryGenerator generator = new LibraryGenerator(seed);
+            generator.setPlaceholderDirectory(imageDirectory);
+            User user = userManager.addUser(USERNAME);
+            long start = System.nanoTime();
+            generator.populate(user, photos);
+            File[] largeFiles = writeLargeImages(imageDirectory, generator.getRandom());
+            Album large = new Album(LARGE_ALBUM);
+            user.addAlbum(large);
+            for (File file : largeFiles) {
+                large.addPhoto(new Photo(file.getAbsolutePath()));
+            }
+            Album cameraAlbum = new Album(CAMERA_ALBUM);
+            user.addAlbum(cameraAlbum);
+            for (File file : writeCameraImages(imageDirectory, camera, generator.getRandom())) {
+                cameraAlbum.addPhoto(new Photo(file.getAbsolutePath()));
+            }
+            userManager.saveUsers();
+            System.out.printf("Generated %d photos in %d ms%n", photos + LARGE_PHOTOS + camera,
+                    (System.nanoTime() - start) / 1_000_000);
+            
+            server = new PhotosServer(userManager, new InetSocketAddress("127.0.0.1", 0), thumbnailDirectory, threads);
+            server.start();
+            System.out.println("Serving on port " + server.getPort() + " with "
+                    + (server.usesVirtualThreads() ? "virtual threads" : threads + " threads"));
+            
+            test = new ServerLoadTest(server.getPort(), user, generator, largeFiles, parseMix(mix));
+            // A short warm-up so the first measurements aren't dominated by class loading and compilation
+            test.run(concurrency, Math.min(5, seconds));
+            test.resetLatencies();
+            test.report(test.run(concurrency, seconds), seconds, concurrency);
+        } finally {
+            if (server != null) {
+                server.stop(0);
+            }
+            userManager.removeUser(USERNAME);
+            userManager.saveUsers();
+            deleteDirectory(imageDirectory);
+            deleteDirectory(thumbnailDirectory);
+        }
+        
+        if (test.failures.get() > 0) {
+            System.out.println(test.failures.get() + " failures");
+            System.exit(1);
+        }
+        System.out.println("No failures");
+    }
+}
\ No newline at end of file
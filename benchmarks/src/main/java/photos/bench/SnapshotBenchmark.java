@@ -0,0 +1,149 @@
+package photos.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import photos.model.Album;
+import photos.model.Photo;
+import photos.model.Tag;
+import photos.model.User;
+import photos.model.UserSnapshot;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Compares taking a {@link UserSnapshot} with deep copying a user under its
+ * read lock, the other way to get a consistent view to save or search while
+ * the user keeps changing. The time to take the snapshot or make the copy is
+ * how long changes to the user wait.
+ * <p>
+ * Reading every photo from the snapshot shows what a save pays later,
+ * without holding the lock, and changing a photo while a snapshot is open
+ * shows what the first change to a photo pays to keep its old state.
+ * 
+ * @author Krish Patel, Darshan Surti
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+@State(Scope.Benchmark)
+public class SnapshotBenchmark {
+    
+    @Param({ "1000", "10000", "100000" })
+    private int photos;
+    
+    private User user;
+    private Photo photo;
+    private Tag extraTag;
+    
+    /**
+     * Builds the user.
+     */
+    @Setup
+    public void setUp() {
+        user = BenchmarkData.createUser("bench", photos, 100);
+        photo = user.getAlbums().get(0).getPhotos().get(0);
+        extraTag = new Tag("extra", "value");
+    }
+    
+    /**
+     * Takes a snapshot and closes it again.
+     * 
+     * @return the user's version at the snapshot
+     */
+    @Benchmark
+    public long snapshot() {
+        try (UserSnapshot snapshot = user.snapshot()) {
+            return snapshot.getVersion();
+        }
+    }
+    
+    /**
+     * Takes a snapshot and reads a copy of every photo from it.
+     * 
+     * @return the copied photos
+     */
+    @Benchmark
+    public List<Photo> snapshotAndReadPhotos() {
+        try (UserSnapshot snapshot = user.snapshot()) {
+            return snapshot.getPhotos();
+        }
+    }
+    
+    /**
+     * Copies every album's photos, with their captions and tags, under the user's read lock.
+     * 
+     * @return the copied albums
+     */
+    @Benchmark
+    public List<List<PhotoCopy>> deepCopy() {
+        Lock lock = user.getLock().readLock();
+        lock.lock();
+        try {
+            List<List<PhotoCopy>> albums = new ArrayList<>(user.getAlbums().size());
+            for (Album album : user.getAlbums()) {
+                List<PhotoCopy> copies = new ArrayList<>(album.getPhotoCount());
+                for (Photo albumPhoto : album.getPhotos()) {
+                    copies.add(new PhotoCopy(albumPhoto));
+                }
+                albums.add(copies);
+            }
+            return albums;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Tags and untags a photo with no snapshot open, for comparison with the next benchmark.
+     * 
+     * @return true if both changes succeeded
+     */
+    @Benchmark
+    public boolean changePhoto() {
+        return photo.addTag(extraTag) & photo.removeTag(extraTag);
+    }
+    
+    /**
+     * Tags and untags a photo while a snapshot is open, so the first change
+     * keeps a copy of the photo for the snapshot.
+     * 
+     * @return true if both changes succeeded
+     */
+    @Benchmark
+    public boolean changePhotoWithSnapshotOpen() {
+        try (UserSnapshot snapshot = user.snapshot()) {
+            return photo.addTag(extraTag) & photo.removeTag(extraTag);
+        }
+    }
+    
+    /**
+     * A deep copy of a photo's file path, caption, date taken and tags.
+     */
+    public static class PhotoCopy {
+        private final String filePath;
+        private final String caption;
+        private final long dateTaken;
+        private final List<Tag> tags;
+        
+        PhotoCopy(Photo photo) {
+            this.filePath = photo.getFilePath();
+            this.caption = photo.getCaption();
+            this.dateTaken = photo.getDateTaken().getTimeInMillis();
+            this.tags = new ArrayList<>(photo.getTags());
+        }
+    }
+}
\ No newline at end of file
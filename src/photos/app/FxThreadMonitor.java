@@ -0,0 +1,62 @@
+package photos.app;
+
+import javafx.application.Platform;
+import photos.model.LatencyHistogram;
+import photos.model.Metrics;
+
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Measures how long the JavaFX application thread is kept from handling
+ * events. A background thread posts an empty task to the FX thread at a
+ * fixed interval and records how long it waits to run, in the
+ * {@code fx.blocked.micros} histogram. Waits of a tenth of a second or more,
+ * which users notice as a freeze, are also counted in {@code fx.stalls}.
+ * 
+ * @author Krish Patel, Darshan Surti
+ */
+class FxThreadMonitor {
+    
+    private static final long INTERVAL_MILLIS = 100;
+    private static final long STALL_MICROS = 100_000;
+    
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private FxThreadMonitor() {
+    }
+    
+    /**
+     * Starts monitoring on a daemon thread.
+     */
+    static void start() {
+        Thread thread = new Thread(FxThreadMonitor::monitor, "photos-fx-monitor");
+        thread.setDaemon(true);
+        thread.start();
+    }
+    
+    /**
+     * Posts a task to the FX thread, waits for it to run, records the wait, and repeats.
+     */
+    private static void monitor() {
+        LatencyHistogram blocked = Metrics.histogram("fx.blocked.micros");
+        Metrics.Counter stalls = Metrics.counter("fx.stalls");
+        try {
+            while (true) {
+                CountDownLatch ran = new CountDownLatch(1);
+                long posted = System.nanoTime();
+                Platform.runLater(ran::countDown);
+                ran.await();
+                
+                long micros = (System.nanoTime() - posted) / 1000;
+                blocked.record(micros);
+                if (micros >= STALL_MICROS) {
+                    stalls.increment();
+                }
+                Thread.sleep(INTERVAL_MILLIS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
\ No newline at end of file
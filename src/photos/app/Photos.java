@@ -2,20 +2,27 @@ package photos.app;
 
 import javafx.application.Application;
 import javafx.fxml.FXMLLoader;
-import javafx.scene.Scene;
-import javafx.scene.layout.BorderPane;
 import javafx.stage.Stage;
-import photos.model.StockPhotoManager;
-import photos.model.UserManager;
+import photos.controller.LoginController;
+import photos.controller.Views;
+import photos.model.Metrics;
+
+import java.io.File;
 
 /**
  * Main entry point for the Photos application.
  * This class launches the JavaFX application and loads the login screen.
+ * The login screen appears straight away; users and stock photos are read
+ * in the background (see {@link Startup}).
+ * Metrics are available over JMX and appended to {@code data/metrics.log} every minute.
  * 
  * @author Krish Patel, Darshan Surti
  */
 public class Photos extends Application {
     
+    /** Seconds between entries in the metrics log. */
+    private static final long METRICS_LOG_SECONDS = 60;
+    
     /**
      * JavaFX start method that sets up the primary stage
      * 
@@ -24,18 +31,24 @@ public class Photos extends Application {
      */
     @Override
     public void start(Stage primaryStage) throws Exception {
-        // Initialize the user manager and stock photos
-        UserManager.getInstance();
-        StockPhotoManager.initializeStockPhotos();
+        // Publish metrics over JMX and to a log before anything is measured
+        Metrics.registerMBean();
+        Metrics.startLogging(new File("data", "metrics.log"), METRICS_LOG_SECONDS);
+        FxThreadMonitor.start();
         
-        FXMLLoader loader = new FXMLLoader(getClass().getResource("/photos/view/login.fxml"));
-        BorderPane root = loader.load();
+        // Read the users and stock photos while the login screen is up
+        Startup startup = new Startup();
+        startup.start();
         
-        Scene scene = new Scene(root);
-        primaryStage.setScene(scene);
-        primaryStage.setTitle("Photos Application");
+        FXMLLoader loader = Views.get(Views.LOGIN);
+        LoginController controller = loader.getController();
+        controller.setStartup(startup.getUsernames(), startup.getUsers());
         primaryStage.setResizable(true);
-        primaryStage.show();
+        Views.show(primaryStage, loader, "Photos Application");
+        startup.firstWindowShown();
+        
+        // Load the album list while the user types their name
+        Views.prewarm(Views.ALBUM_LIST);
     }
     
     /**
@@ -0,0 +1,129 @@
+package photos.app;
+
+import photos.model.Metrics;
+import photos.model.StockPhotoManager;
+import photos.model.UserManager;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * Loads the application's data in the background while the first window is shown.
+ * The work is split into phases that run in parallel where they can:
+ * <ul>
+ * <li>{@code usernames} reads the usernames stored at the start of the users
+ *     file, which is all the login screen needs to check a name</li>
+ * <li>{@code users} reads every user</li>
+ * <li>{@code stock} adds any new stock photos once the users are read</li>
+ * </ul>
+ * Each phase's duration is recorded in the {@code startup.<phase>.micros}
+ * histogram and as a flight recorder event, along with the time from
+ * launch to the first window in {@code startup.firstWindow.micros}.
+ * 
+ * @author Krish Patel, Darshan Surti
+ */
+class Startup {
+    
+    private final ExecutorService executor = Executors.newFixedThreadPool(2, runnable -> {
+        Thread thread = new Thread(runnable, "photos-startup");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    private CompletableFuture<List<String>> usernames;
+    private CompletableFuture<UserManager> users;
+    
+    /**
+     * Starts loading in the background.
+     */
+    void start() {
+        users = CompletableFuture.supplyAsync(() -> phase("users", UserManager::getInstance), executor);
+        
+        // Files saved before the usernames were stored separately have to be read in full
+        usernames = CompletableFuture.supplyAsync(() -> phase("usernames", Startup::readUsernames), executor)
+                .thenCompose(names -> names != null ? CompletableFuture.completedFuture(names)
+                        : users.thenApply(UserManager::getAllUsernames));
+        
+        CompletableFuture<Void> stock = users.thenAcceptAsync(manager -> phase("stock", () -> {
+            StockPhotoManager.initializeStockPhotos();
+            return null;
+        }), executor);
+        stock.whenComplete((result, error) -> executor.shutdown());
+    }
+    
+    /**
+     * Gets the usernames known at launch.
+     * 
+     * @return the usernames, available before the users themselves are read
+     */
+    CompletableFuture<List<String>> getUsernames() {
+        return usernames;
+    }
+    
+    /**
+     * Gets the user manager.
+     * 
+     * @return the user manager, available once every user is read
+     */
+    CompletableFuture<UserManager> getUsers() {
+        return users;
+    }
+    
+    /**
+     * Records how long it took from launching the application to showing the first window.
+     * Called once the window is showing.
+     */
+    void firstWindowShown() {
+        long startMillis = ManagementFactory.getRuntimeMXBean().getStartTime();
+        Metrics.histogram("startup.firstWindow.micros").record((System.currentTimeMillis() - startMillis) * 1000);
+    }
+    
+    /**
+     * Reads the username index.
+     * 
+     * @return the usernames, or null if the users file has no index
+     */
+    private static List<String> readUsernames() {
+        try {
+            return UserManager.readUsernames();
+        } catch (IOException e) {
+            System.err.println("Error reading usernames: " + e.getMessage());
+            return null;
+        }
+    }
+    
+    /**
+     * Runs a startup phase and records how long it took.
+     * 
+     * @param name the phase name
+     * @param work the phase's work
+     * @param <T> the type of the phase's result
+     * @return the phase's result
+     */
+    private static <T> T phase(String name, Supplier<T> work) {
+        StartupPhaseEvent event = new StartupPhaseEvent();
+        event.begin();
+        long start = System.nanoTime();
+        try {
+            T result = work.get();
+            event.succeeded = true;
+            return result;
+        } catch (RuntimeException e) {
+            System.err.println("Error during startup (" + name + "): " + e.getMessage());
+            e.printStackTrace();
+            throw e;
+        } finally {
+            Metrics.histogram("startup." + name + ".micros").recordMicrosSince(start);
+            event.end();
+            if (event.shouldCommit()) {
+                event.phase = name;
+                event.commit();
+            }
+        }
+    }
+}
\ No newline at end of file
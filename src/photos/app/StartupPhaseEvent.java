@@ -0,0 +1,25 @@
+package photos.app;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event for one phase of starting the application.
+ * 
+ * @author Krish Patel, Darshan Surti
+ */
+@Name("photos.StartupPhase")
+@Label("Startup Phase")
+@Category({ "Photos", "Startup" })
+@Description("One step of launching the application, such as showing the first window or reading the users")
+class StartupPhaseEvent extends Event {
+    
+    @Label("Phase")
+    String phase;
+    
+    @Label("Succeeded")
+    boolean succeeded;
+}
\ No newline at end of file
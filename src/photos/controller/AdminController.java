@@ -1,31 +1,39 @@
 package photos.controller;
 
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
-import javafx.scene.Parent;
-import javafx.scene.Scene;
 import javafx.scene.control.Alert;
 import javafx.scene.control.Alert.AlertType;
 import javafx.scene.control.Label;
 import javafx.scene.control.ListView;
 import javafx.scene.control.TextField;
 import javafx.stage.Stage;
+import photos.model.AdminReport;
+import photos.model.ModelEvent;
+import photos.model.ModelListener;
+import photos.model.SearchQuery;
 import photos.model.UserManager;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
  * Controller for the admin screen.
  * Handles user management (listing, adding, and deleting users).
+ * The user list follows user creation and deletion events instead of being rebuilt.
+ * Reports that search or measure every user run on a background thread and
+ * fill the report list as each user is read.
  * 
  * @author Krish Patel, Darshan Surti
  */
 public class AdminController {
-
+    
     @FXML
     private ListView<String> userListView;
     
@@ -35,8 +43,19 @@ public class AdminController {
     @FXML
     private Label errorMessageLabel;
     
+    @FXML
+    private TextField reportSearchField;
+    
+    @FXML
+    private ListView<String> reportListView;
+    
+    @FXML
+    private Label reportStatusLabel;
+    
     private UserManager userManager;
     private ObservableList<String> userList;
+    private final ModelListener modelListener = this::handleModelChange;
+    private volatile Thread reportThread;
     
     /**
      * Initializes the controller.
@@ -45,18 +64,180 @@ public class AdminController {
     public void initialize() {
         userManager = UserManager.getInstance();
         errorMessageLabel.setText("");
-        
-        // Load the list of users
-        refreshUserList();
+        reportStatusLabel.setText("");
     }
     
     /**
-     * Refreshes the list of users in the ListView.
+     * Starts following user changes and clears what the previous visit left on screen.
+     * Called each time the screen is shown.
      */
-    private void refreshUserList() {
+    void attach() {
+        // Load the list of users once; after this it is kept in step by model events
         List<String> usernames = userManager.getAllUsernames();
         userList = FXCollections.observableArrayList(usernames);
         userListView.setItems(userList);
+        userManager.getEventBus().subscribe(modelListener);
+        
+        newUserField.clear();
+        errorMessageLabel.setText("");
+        reportSearchField.clear();
+        reportListView.getItems().clear();
+        reportStatusLabel.setText("");
+    }
+    
+    /**
+     * Stops following model changes and abandons any running report.
+     * Called before leaving this screen.
+     */
+    void detach() {
+        userManager.getEventBus().unsubscribe(modelListener);
+        stopReport();
+    }
+    
+    /**
+     * Handles the search all users button action.
+     * Runs the query typed in the report field against every user's photos.
+     * 
+     * @param event the ActionEvent
+     */
+    @FXML
+    public void handleSearchAllUsers(ActionEvent event) {
+        SearchQuery query = SearchQuery.parse(reportSearchField.getText());
+        if (query.isEmpty()) {
+            reportStatusLabel.setText("Enter tags, dates or a path to search for");
+            return;
+        }
+        
+        runReport("Searching all users for " + query + "...", thread -> {
+            int total = AdminReport.searchAllUsers(userManager, query, matches -> {
+                List<String> lines = new ArrayList<>(matches.size());
+                for (AdminReport.Match match : matches) {
+                    lines.add(match.toString());
+                }
+                showReportLines(thread, lines);
+            });
+            return total + (total == 1 ? " photo found" : " photos found");
+        });
+    }
+    
+    /**
+     * Handles the user statistics button action.
+     * Lists album, photo and tag counts and the storage used by each user.
+     * 
+     * @param event the ActionEvent
+     */
+    @FXML
+    public void handleUserStatistics(ActionEvent event) {
+        runReport("Measuring users...", thread -> {
+            // Statistics read the saved file, so save first to include the latest changes
+            userManager.saveUsers();
+            long heap = 0;
+            long disk = 0;
+            List<AdminReport.UserStats> stats = AdminReport.collectStats(userManager);
+            List<String> lines = new ArrayList<>(stats.size());
+            for (AdminReport.UserStats userStats : stats) {
+                heap += userStats.getHeapBytes();
+                disk += Math.max(userStats.getDiskBytes(), 0);
+                lines.add(userStats.toString());
+            }
+            showReportLines(thread, lines);
+            return stats.size() + " users, ~" + AdminReport.formatBytes(heap) + " in memory, "
+                    + AdminReport.formatBytes(disk) + " on disk";
+        });
+    }
+    
+    /**
+     * Clears the report list and runs a report on a background thread.
+     * Starting another report stops the previous one and abandons its remaining output.
+     * 
+     * @param startMessage the status shown while the report runs
+     * @param report the report, returning the status to show when it finishes
+     */
+    private void runReport(String startMessage, Report report) {
+        stopReport();
+        reportListView.getItems().clear();
+        reportStatusLabel.setText(startMessage);
+        
+        Thread thread = new Thread(() -> {
+            Thread current = Thread.currentThread();
+            String status;
+            try {
+                status = report.run(current);
+            } catch (InterruptedIOException e) {
+                status = "Report stopped";
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Error running admin report: " + e.getMessage());
+                status = "Error running report";
+            }
+            String finalStatus = status;
+            Platform.runLater(() -> {
+                if (reportThread == current) {
+                    reportStatusLabel.setText(finalStatus);
+                }
+            });
+        }, "photos-admin-report");
+        thread.setDaemon(true);
+        reportThread = thread;
+        thread.start();
+    }
+    
+    /**
+     * Interrupts the running report, if any, so it stops reading users
+     * rather than finishing work no one will see.
+     */
+    private void stopReport() {
+        Thread previous = reportThread;
+        reportThread = null;
+        if (previous != null) {
+            previous.interrupt();
+        }
+    }
+    
+    /**
+     * Adds lines to the report list, unless a newer report has started.
+     * 
+     * @param thread the thread of the report the lines come from
+     * @param lines the lines to add
+     */
+    private void showReportLines(Thread thread, List<String> lines) {
+        Platform.runLater(() -> {
+            if (reportThread == thread) {
+                reportListView.getItems().addAll(lines);
+            }
+        });
+    }
+    
+    /**
+     * A report run in the background.
+     */
+    private interface Report {
+        
+        /**
+         * Runs the report.
+         * 
+         * @param thread the thread running the report
+         * @return the status to show when it finishes
+         * @throws IOException if the users file can't be read
+         */
+        String run(Thread thread) throws IOException;
+    }
+    
+    /**
+     * Applies a user creation or deletion to the user list.
+     * 
+     * @param event the change
+     */
+    private void handleModelChange(ModelEvent event) {
+        if (!Platform.isFxApplicationThread()) {
+            Platform.runLater(() -> handleModelChange(event));
+            return;
+        }
+        
+        if (event.getType() == ModelEvent.Type.USER_ADDED) {
+            userList.add(event.getUsername());
+        } else if (event.getType() == ModelEvent.Type.USER_DELETED) {
+            userList.remove(event.getUsername());
+        }
     }
     
     /**
@@ -81,7 +262,6 @@ public class AdminController {
         userManager.addUser(username);
         newUserField.clear();
         errorMessageLabel.setText("");
-        refreshUserList();
     }
     
     /**
@@ -111,7 +291,6 @@ public class AdminController {
         confirmAlert.showAndWait().ifPresent(response -> {
             if (response == javafx.scene.control.ButtonType.OK) {
                 userManager.removeUser(selectedUsername);
-                refreshUserList();
                 errorMessageLabel.setText("");
             }
         });
@@ -128,15 +307,16 @@ public class AdminController {
         try {
             // Save any changes
             userManager.saveUsers();
+            detach();
             
             // Load the login screen
-            FXMLLoader loader = new FXMLLoader(getClass().getResource("/photos/view/login.fxml"));
-            Parent root = loader.load();
+            FXMLLoader loader = Views.get(Views.LOGIN);
+            
+            LoginController controller = loader.getController();
+            controller.reset();
             
             Stage stage = (Stage) userListView.getScene().getWindow();
-            stage.setTitle("Photos Application");
-            stage.setScene(new Scene(root));
-            stage.show();
+            Views.show(stage, loader, "Photos Application");
         } catch (IOException e) {
             errorMessageLabel.setText("Error returning to login screen");
             e.printStackTrace();
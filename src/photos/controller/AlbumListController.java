@@ -1,30 +1,49 @@
 package photos.controller;
 
+import javafx.animation.PauseTransition;
 import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
+import javafx.geometry.Insets;
 import javafx.scene.Parent;
-import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.control.Alert.AlertType;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
+import javafx.util.Duration;
 import photos.model.Album;
+import photos.model.LiveSearch;
+import photos.model.ModelBatchListener;
+import photos.model.ModelEvent;
+import photos.model.Photo;
+import photos.model.SearchQuery;
+import photos.model.SearchResultListener;
 import photos.model.User;
 import photos.model.UserManager;
 
 import java.io.IOException;
 import java.time.LocalDate;
 import java.time.ZoneId;
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 /**
  * Controller for the album list screen.
  * Handles album management (listing, creating, renaming, deleting, and opening).
+ * The album list follows model change events, so edits update only the affected rows.
+ * Events arrive in batches on the JavaFX thread; the rows whose albums changed
+ * are redrawn once per batch, however many photos the batch touched.
+ * The search field searches the user's photos in the background as the user types.
  * 
  * @author Krish Patel, Darshan Surti
  */
@@ -42,8 +61,26 @@ public class AlbumListController {
     @FXML
     private Label errorMessageLabel;
     
+    @FXML
+    private TextField searchField;
+    
+    @FXML
+    private Label searchStatusLabel;
+    
+    @FXML
+    private ListView<Photo> searchResultsListView;
+    
+    /** How long typing must pause before a search starts. */
+    private static final Duration SEARCH_DELAY = Duration.millis(25);
+    
     private User user;
     private UserManager userManager;
+    private ObservableList<Album> albumItems;
+    private final ModelBatchListener modelListener = this::handleModelChanges;
+    private final ObservableList<Photo> searchItems = FXCollections.observableArrayList();
+    private final PauseTransition searchDelay = new PauseTransition(SEARCH_DELAY);
+    private SearchDisplay currentSearch;
+    private long lastKeystrokeNanos;
     
     /**
      * Initializes the controller.
@@ -61,22 +98,60 @@ public class AlbumListController {
                 if (empty || album == null) {
                     setText(null);
                 } else {
-                    StringBuilder sb = new StringBuilder();
-                    sb.append(album.getName());
-                    sb.append(" (").append(album.getPhotoCount()).append(" photos");
-                    
-                    // Add date range if the album has photos
-                    Calendar[] dateRange = album.getDateRange();
-                    if (dateRange != null) {
-                        sb.append(", ");
-                        sb.append(formatDate(dateRange[0])).append(" - ").append(formatDate(dateRange[1]));
-                    }
-                    
-                    sb.append(")");
-                    setText(sb.toString());
+                    setText(getAlbumLabel(album));
                 }
             }
+            
+            @Override
+            protected boolean isItemChanged(Album oldItem, Album newItem) {
+                // An album replaced with itself after a change still needs its text updated
+                return super.isItemChanged(oldItem, newItem)
+                        || (newItem != null && !getAlbumLabel(newItem).equals(getText()));
+            }
+        });
+        
+        // Live search results are hidden until something is typed
+        searchResultsListView.setItems(searchItems);
+        searchResultsListView.managedProperty().bind(searchResultsListView.visibleProperty());
+        searchResultsListView.setVisible(false);
+        searchResultsListView.setCellFactory(lv -> new ListCell<Photo>() {
+            @Override
+            protected void updateItem(Photo photo, boolean empty) {
+                super.updateItem(photo, empty);
+                setText(empty || photo == null ? null : photo.getDisplayLabel());
+            }
+        });
+        searchStatusLabel.setText("");
+        
+        // Each keystroke abandons the running search and restarts the delay
+        searchField.textProperty().addListener((obs, oldText, newText) -> {
+            cancelSearch();
+            lastKeystrokeNanos = System.nanoTime();
+            searchDelay.playFromStart();
         });
+        searchDelay.setOnFinished(e -> startSearch());
+    }
+    
+    /**
+     * Gets the text shown for an album in the list.
+     * 
+     * @param album the album
+     * @return the album name with its photo count and date range
+     */
+    private String getAlbumLabel(Album album) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(album.getName());
+        sb.append(" (").append(album.getPhotoCount()).append(" photos");
+        
+        // Add date range if the album has photos
+        Calendar[] dateRange = album.getDateRange();
+        if (dateRange != null) {
+            sb.append(", ");
+            sb.append(formatDate(dateRange[0])).append(" - ").append(formatDate(dateRange[1]));
+        }
+        
+        sb.append(")");
+        return sb.toString();
     }
     
     /**
@@ -85,17 +160,185 @@ public class AlbumListController {
      * @param user the User object
      */
     public void setUser(User user) {
+        detach();
         this.user = user;
         welcomeLabel.setText("Albums - " + user.getUsername());
-        refreshAlbumList();
+        
+        // The screen is reused, so clear what the previous visit left behind
+        albumNameField.clear();
+        errorMessageLabel.setText("");
+        searchField.clear();
+        searchDelay.stop();
+        searchItems.clear();
+        searchResultsListView.setVisible(false);
+        searchStatusLabel.setText("");
+        
+        // Build the list once; after this it is kept in step by model events
+        albumItems = FXCollections.observableArrayList(user.getAlbums());
+        albumListView.setItems(albumItems);
+        user.getEventBus().subscribeBatched(modelListener, Platform::runLater);
+    }
+    
+    /**
+     * Stops following model changes.
+     * Called before leaving this screen.
+     */
+    void detach() {
+        searchDelay.stop();
+        cancelSearch();
+        if (user != null) {
+            user.getEventBus().unsubscribeBatched(modelListener);
+        }
+    }
+    
+    /**
+     * Applies a batch of model changes to the album list.
+     * 
+     * @param events the changes, oldest first
+     */
+    private void handleModelChanges(List<ModelEvent> events) {
+        boolean albumsChanged = false;
+        boolean photosChanged = false;
+        int start = 0;
+        while (start < events.size()) {
+            // Consecutive changes of one kind are applied together
+            ModelEvent.Type type = events.get(start).getType();
+            int end = start + 1;
+            while (end < events.size() && events.get(end).getType() == type) {
+                end++;
+            }
+            List<ModelEvent> run = events.subList(start, end);
+            start = end;
+            
+            switch (type) {
+                case ALBUM_ADDED:
+                    List<Album> added = new ArrayList<>(run.size());
+                    for (ModelEvent event : run) {
+                        added.add(event.getAlbum());
+                    }
+                    albumItems.addAll(added);
+                    break;
+                case ALBUM_REMOVED:
+                    Set<Album> removed = Collections.newSetFromMap(new IdentityHashMap<>());
+                    for (ModelEvent event : run) {
+                        removed.add(event.getAlbum());
+                    }
+                    albumItems.removeAll(removed);
+                    break;
+                case ALBUM_RENAMED:
+                case PHOTO_ADDED:
+                case PHOTO_REMOVED:
+                    albumsChanged = true;
+                    photosChanged = true;
+                    break;
+                case CAPTION_CHANGED:
+                case TAG_ADDED:
+                case TAG_REMOVED:
+                    photosChanged = true;
+                    break;
+                default:
+                    break;
+            }
+        }
+        
+        // Redraws the visible rows' names, counts and dates
+        if (albumsChanged) {
+            albumListView.refresh();
+        }
+        if (photosChanged) {
+            refreshSearch();
+        }
+    }
+    
+    /**
+     * Runs the current search again after a change to the user's photos.
+     * Repeated changes restart the delay, so a burst of them searches once.
+     */
+    private void refreshSearch() {
+        if (!searchField.getText().trim().isEmpty()) {
+            cancelSearch();
+            lastKeystrokeNanos = System.nanoTime();
+            searchDelay.playFromStart();
+        }
     }
     
     /**
-     * Refreshes the list of albums in the ListView.
+     * Cancels the running search, if any. Results it has already found but
+     * not yet shown are dropped.
      */
-    private void refreshAlbumList() {
-        ObservableList<Album> albums = FXCollections.observableArrayList(user.getAlbums());
-        albumListView.setItems(albums);
+    private void cancelSearch() {
+        if (currentSearch != null) {
+            currentSearch.search.cancel();
+            currentSearch = null;
+        }
+    }
+    
+    /**
+     * Starts searching for the text in the search field.
+     */
+    private void startSearch() {
+        cancelSearch();
+        searchItems.clear();
+        
+        SearchQuery query = SearchQuery.parse(searchField.getText());
+        if (query.isEmpty()) {
+            searchResultsListView.setVisible(false);
+            searchStatusLabel.setText("");
+            return;
+        }
+        
+        searchResultsListView.setVisible(true);
+        searchStatusLabel.setText("Searching...");
+        
+        SearchDisplay display = new SearchDisplay(lastKeystrokeNanos);
+        display.search = LiveSearch.start(user, query, display);
+        currentSearch = display;
+    }
+    
+    /**
+     * Handles the enter key in the search field.
+     * Opens the search results screen once the current search has finished.
+     * 
+     * @param event the ActionEvent
+     */
+    @FXML
+    public void handleShowSearchResults(ActionEvent event) {
+        // Search right away rather than waiting for the delay
+        if (searchDelay.getStatus() == PauseTransition.Status.RUNNING) {
+            searchDelay.stop();
+            startSearch();
+        }
+        
+        if (currentSearch == null) {
+            return;
+        }
+        if (currentSearch.finished) {
+            showSearchResults(currentSearch.search.getQuery());
+        } else {
+            currentSearch.openWhenFinished = true;
+        }
+    }
+    
+    /**
+     * Opens the search results screen with the photos found by the live search.
+     * 
+     * @param query the query that found them
+     */
+    private void showSearchResults(SearchQuery query) {
+        try {
+            FXMLLoader loader = Views.get(Views.SEARCH_RESULTS);
+            
+            SearchResultsController controller = loader.getController();
+            controller.setUser(user);
+            controller.showResults("Search Results - " + query.getNormalized(), query);
+            detach();
+            
+            Stage stage = (Stage) albumListView.getScene().getWindow();
+            Views.show(stage, loader, "Search Results");
+        } catch (IOException e) {
+            errorMessageLabel.setText("Error showing search results");
+            e.printStackTrace();
+        }
     }
     
     /**
@@ -137,7 +380,6 @@ public class AlbumListController {
         
         albumNameField.clear();
         errorMessageLabel.setText("");
-        refreshAlbumList();
     }
     
     /**
@@ -162,17 +404,15 @@ public class AlbumListController {
         }
         
         // Check if an album with this name already exists
-        if (user.findAlbumByName(newName) != null) {
+        if (!user.renameAlbum(selectedAlbum, newName)) {
             errorMessageLabel.setText("An album with this name already exists");
             return;
         }
         
-        selectedAlbum.setName(newName);
         userManager.saveUsers();
         
         albumNameField.clear();
         errorMessageLabel.setText("");
-        refreshAlbumList();
     }
     
     /**
@@ -198,7 +438,6 @@ public class AlbumListController {
             if (response == ButtonType.OK) {
                 user.removeAlbum(selectedAlbum);
                 userManager.saveUsers();
-                refreshAlbumList();
                 errorMessageLabel.setText("");
             }
         });
@@ -219,17 +458,15 @@ public class AlbumListController {
         }
         
         try {
-            FXMLLoader loader = new FXMLLoader(getClass().getResource("/photos/view/albumView.fxml"));
-            Parent root = loader.load();
+            FXMLLoader loader = Views.get(Views.ALBUM_VIEW);
             
             AlbumViewController controller = loader.getController();
             controller.setUser(user);
             controller.setAlbum(selectedAlbum);
+            detach();
             
             Stage stage = (Stage) albumListView.getScene().getWindow();
-            stage.setTitle("Album: " + selectedAlbum.getName());
-            stage.setScene(new Scene(root));
-            stage.show();
+            Views.show(stage, loader, "Album: " + selectedAlbum.getName());
         } catch (IOException e) {
             errorMessageLabel.setText("Error opening album");
             e.printStackTrace();
@@ -286,17 +523,15 @@ public class AlbumListController {
         Optional<Calendar[]> result = dialog.showAndWait();
         result.ifPresent(dateRange -> {
             try {
-                FXMLLoader loader = new FXMLLoader(getClass().getResource("/photos/view/searchResults.fxml"));
-                Parent root = loader.load();
+                FXMLLoader loader = Views.get(Views.SEARCH_RESULTS);
                 
                 SearchResultsController controller = loader.getController();
                 controller.setUser(user);
                 controller.searchByDateRange(dateRange[0], dateRange[1]);
+                detach();
                 
                 Stage stage = (Stage) albumListView.getScene().getWindow();
-                stage.setTitle("Search Results - Date Range");
-                stage.setScene(new Scene(root));
-                stage.show();
+                Views.show(stage, loader, "Search Results - Date Range");
             } catch (IOException e) {
                 errorMessageLabel.setText("Error showing search results");
                 e.printStackTrace();
@@ -368,6 +603,12 @@ public class AlbumListController {
             tag2ValueField.setDisable(!enableSecondTag);
         });
         
+        // Suggest the names and values already used in the user's photos
+        TagCompletion.completeNames(tag1NameField, user.getTagIndex());
+        TagCompletion.completeValues(tag1ValueField, tag1NameField, user.getTagIndex());
+        TagCompletion.completeNames(tag2NameField, user.getTagIndex());
+        TagCompletion.completeValues(tag2ValueField, tag2NameField, user.getTagIndex());
+        
         // Create the dialog content
         DialogPane dialogPane = dialog.getDialogPane();
         dialogPane.setContent(createTagSearchContent(tag1NameField, tag1ValueField, 
@@ -392,8 +633,7 @@ public class AlbumListController {
         Optional<TagSearchCriteria> result = dialog.showAndWait();
         result.ifPresent(criteria -> {
             try {
-                FXMLLoader loader = new FXMLLoader(getClass().getResource("/photos/view/searchResults.fxml"));
-                Parent root = loader.load();
+                FXMLLoader loader = Views.get(Views.SEARCH_RESULTS);
                 
                 SearchResultsController controller = loader.getController();
                 controller.setUser(user);
@@ -408,11 +648,10 @@ public class AlbumListController {
                     controller.searchByTagsOr(criteria.getTag1Name(), criteria.getTag1Value(),
                                               criteria.getTag2Name(), criteria.getTag2Value());
                 }
+                detach();
                 
                 Stage stage = (Stage) albumListView.getScene().getWindow();
-                stage.setTitle("Search Results - Tags");
-                stage.setScene(new Scene(root));
-                stage.show();
+                Views.show(stage, loader, "Search Results - Tags");
             } catch (IOException e) {
                 errorMessageLabel.setText("Error showing search results");
                 e.printStackTrace();
@@ -459,15 +698,16 @@ public class AlbumListController {
         try {
             // Save any changes
             userManager.saveUsers();
+            detach();
             
             // Load the login screen
-            FXMLLoader loader = new FXMLLoader(getClass().getResource("/photos/view/login.fxml"));
-            Parent root = loader.load();
+            FXMLLoader loader = Views.get(Views.LOGIN);
+            
+            LoginController controller = loader.getController();
+            controller.reset();
             
             Stage stage = (Stage) albumListView.getScene().getWindow();
-            stage.setTitle("Photos Application");
-            stage.setScene(new Scene(root));
-            stage.show();
+            Views.show(stage, loader, "Photos Application");
         } catch (IOException e) {
             errorMessageLabel.setText("Error returning to login screen");
             e.printStackTrace();
@@ -485,6 +725,56 @@ public class AlbumListController {
         Platform.exit();
     }
     
+    /**
+     * Shows the results of one live search as they arrive.
+     * Results are moved to the JavaFX thread and dropped if a newer search has started.
+     */
+    private class SearchDisplay implements SearchResultListener {
+        private final long startNanos;
+        private LiveSearch search;
+        private long firstResultsMillis = -1;
+        private boolean finished;
+        private boolean openWhenFinished;
+        
+        SearchDisplay(long startNanos) {
+            this.startNanos = startNanos;
+        }
+        
+        @Override
+        public void resultsFound(List<Photo> photos) {
+            Platform.runLater(() -> {
+                if (currentSearch != this) {
+                    return;
+                }
+                if (firstResultsMillis < 0) {
+                    // Time from the last keystroke to the first results on screen
+                    firstResultsMillis = (System.nanoTime() - startNanos) / 1_000_000;
+                }
+                searchItems.addAll(photos);
+                searchStatusLabel.setText(searchItems.size() + " results so far...");
+            });
+        }
+        
+        @Override
+        public void searchFinished(int total) {
+            Platform.runLater(() -> {
+                if (currentSearch != this) {
+                    return;
+                }
+                finished = true;
+                if (total == 0) {
+                    searchStatusLabel.setText("No photos found");
+                } else {
+                    searchStatusLabel.setText(total + (total == 1 ? " result" : " results")
+                            + " (first shown in " + firstResultsMillis + " ms)");
+                }
+                if (openWhenFinished) {
+                    showSearchResults(search.getQuery());
+                }
+            });
+        }
+    }
+    
     /**
      * Helper class to store tag search criteria.
      */
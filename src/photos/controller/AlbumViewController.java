@@ -6,8 +6,6 @@ import javafx.collections.ObservableList;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
-import javafx.scene.Parent;
-import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.control.Alert.AlertType;
 import javafx.scene.image.Image;
@@ -15,20 +13,34 @@ import javafx.scene.image.ImageView;
 import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 import photos.model.Album;
+import photos.model.ModelBatchListener;
+import photos.model.ModelEvent;
+import photos.model.Metrics;
 import photos.model.Photo;
+import photos.model.PhotoBatch;
 import photos.model.Tag;
 import photos.model.User;
 import photos.model.UserManager;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
  * Controller for the album view screen.
  * Handles photo management within an album.
+ * Several photos can be selected at once; edits apply to all of them as one batch.
+ * The photo list follows model change events, so edits update only the affected
+ * rows and keep the current selection and scroll position. Events arrive in
+ * batches on the JavaFX thread, and each run of additions or removals in a
+ * batch is applied to the list as one change, so a batch edit of many photos
+ * costs one pass over the list rather than one per photo.
  * 
  * @author Krish Patel, Darshan Surti
  */
@@ -59,6 +71,10 @@ public class AlbumViewController {
     private Album album;
     private UserManager userManager;
     private Photo currentPhoto;
+    private ObservableList<Photo> photoItems;
+    private final ModelBatchListener modelListener = this::handleModelChanges;
+    /** A photo added from this screen, to select once its row appears. */
+    private Photo photoToSelect;
     
     /**
      * Initializes the controller.
@@ -71,6 +87,8 @@ public class AlbumViewController {
         // Hide photo details initially
         clearPhotoDisplay();
         
+        photoListView.getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
+        
         // Configure the photo list view cell factory
         photoListView.setCellFactory(lv -> new ListCell<Photo>() {
             @Override
@@ -79,9 +97,7 @@ public class AlbumViewController {
                 if (empty || photo == null) {
                     setText(null);
                 } else {
-                    setText(photo.getCaption().isEmpty() ? 
-                          "(No caption) - " + new File(photo.getFilePath()).getName() : 
-                          photo.getCaption());
+                    setText(photo.getDisplayLabel());
                 }
             }
         });
@@ -104,6 +120,7 @@ public class AlbumViewController {
      * @param user the User object
      */
     public void setUser(User user) {
+        detach();
         this.user = user;
     }
     
@@ -113,66 +130,270 @@ public class AlbumViewController {
      * @param album the Album object
      */
     public void setAlbum(Album album) {
+        detach();
         this.album = album;
         albumTitleLabel.setText("Album: " + album.getName());
-        refreshPhotoList();
+        errorMessageLabel.setText("");
+        
+        // Build the list once; after this it is kept in step by model events
+        photoItems = FXCollections.observableArrayList(album.getPhotos());
+        photoListView.setItems(photoItems);
+        user.getEventBus().subscribeBatched(modelListener, Platform::runLater);
+        
+        // Select the first photo if available
+        if (!photoItems.isEmpty()) {
+            photoListView.getSelectionModel().clearAndSelect(0);
+            photoListView.scrollTo(0);
+        } else {
+            clearPhotoDisplay();
+        }
     }
     
     /**
-     * Refreshes the list of photos in the ListView.
+     * Stops following model changes.
+     * Called before leaving this screen.
      */
-    private void refreshPhotoList() {
-        ObservableList<Photo> photos = FXCollections.observableArrayList(album.getPhotos());
-        photoListView.setItems(photos);
+    void detach() {
+        photoToSelect = null;
+        if (user != null) {
+            user.getEventBus().unsubscribeBatched(modelListener);
+        }
+    }
+    
+    /**
+     * Applies a batch of model changes to the photo list and the photo display.
+     * 
+     * @param events the changes, oldest first
+     */
+    private void handleModelChanges(List<ModelEvent> events) {
+        boolean captionsChanged = false;
+        boolean detailsChanged = false;
+        int start = 0;
+        while (start < events.size()) {
+            // Consecutive changes of one kind are applied together
+            ModelEvent.Type type = events.get(start).getType();
+            int end = start + 1;
+            while (end < events.size() && events.get(end).getType() == type) {
+                end++;
+            }
+            List<ModelEvent> run = events.subList(start, end);
+            start = end;
+            
+            switch (type) {
+                case PHOTO_ADDED:
+                    addPhotos(photosInAlbum(run));
+                    break;
+                case PHOTO_REMOVED:
+                    removePhotos(photosInAlbum(run));
+                    break;
+                case CAPTION_CHANGED:
+                    captionsChanged = true;
+                    detailsChanged |= changesCurrentPhoto(run);
+                    break;
+                case TAG_ADDED:
+                case TAG_REMOVED:
+                    detailsChanged |= changesCurrentPhoto(run);
+                    break;
+                case ALBUM_RENAMED:
+                    for (ModelEvent event : run) {
+                        if (event.getAlbum() == album) {
+                            albumTitleLabel.setText("Album: " + album.getName());
+                        }
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
         
-        // Select the first photo if available
-        if (!photos.isEmpty()) {
-            photoListView.getSelectionModel().select(0);
+        // Only the visible cells are rebuilt, however long the list is
+        if (captionsChanged) {
+            photoListView.refresh();
+        }
+        if (detailsChanged && currentPhoto != null) {
+            showPhotoDetails(currentPhoto);
         }
     }
     
+    /**
+     * Gets the photos of a run of events that happened in this screen's album.
+     * 
+     * @param run the events
+     * @return the photos, in event order
+     */
+    private List<Photo> photosInAlbum(List<ModelEvent> run) {
+        List<Photo> photos = new ArrayList<>(run.size());
+        for (ModelEvent event : run) {
+            if (event.getAlbum() == album) {
+                photos.add(event.getPhoto());
+            }
+        }
+        return photos;
+    }
+    
+    /**
+     * Determines if a run of events changed the photo being displayed.
+     * 
+     * @param run the events
+     * @return true if one of them is about the current photo
+     */
+    private boolean changesCurrentPhoto(List<ModelEvent> run) {
+        for (ModelEvent event : run) {
+            if (event.getPhoto() == currentPhoto) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Appends photos to the list, selecting the one added from this screen.
+     * 
+     * @param added the photos added to the album
+     */
+    private void addPhotos(List<Photo> added) {
+        if (added.isEmpty()) {
+            return;
+        }
+        int first = photoItems.size();
+        photoItems.addAll(added);
+        
+        int index = photoToSelect == null ? -1 : added.indexOf(photoToSelect);
+        if (index >= 0) {
+            photoToSelect = null;
+            photoListView.getSelectionModel().clearAndSelect(first + index);
+            photoListView.scrollTo(first + index);
+        }
+    }
+    
+    /**
+     * Removes photos from the list in one pass, replacing its contents at once
+     * rather than shifting the rows after each removed photo. The photos that
+     * were selected and are still in the list stay selected.
+     * 
+     * @param removed the photos removed from the album
+     */
+    private void removePhotos(List<Photo> removed) {
+        if (removed.isEmpty()) {
+            return;
+        }
+        Set<Photo> gone = Collections.newSetFromMap(new IdentityHashMap<>());
+        gone.addAll(removed);
+        Set<Photo> selected = Collections.newSetFromMap(new IdentityHashMap<>());
+        selected.addAll(photoListView.getSelectionModel().getSelectedItems());
+        
+        List<Photo> kept = new ArrayList<>(photoItems.size());
+        List<Integer> stillSelected = new ArrayList<>();
+        for (Photo photo : photoItems) {
+            if (!gone.contains(photo)) {
+                if (selected.contains(photo)) {
+                    stillSelected.add(kept.size());
+                }
+                kept.add(photo);
+            }
+        }
+        photoItems.setAll(kept);
+        
+        photoListView.getSelectionModel().clearSelection();
+        for (int index : stillSelected) {
+            photoListView.getSelectionModel().select(index);
+        }
+    }
+    
+    /**
+     * Gets the selected photos.
+     * 
+     * @return a new list of the selected photos, empty if none are selected
+     */
+    private List<Photo> getSelectedPhotos() {
+        return new ArrayList<>(photoListView.getSelectionModel().getSelectedItems());
+    }
+    
+    /**
+     * Describes a number of photos for a status message.
+     * 
+     * @param count the number of photos
+     * @return "Photo" for one photo, otherwise the count followed by "photos"
+     */
+    private String describePhotos(int count) {
+        return count == 1 ? "Photo" : count + " photos";
+    }
+    
     /**
      * Displays a photo in the image view.
+     * The image is only loaded when a different photo is displayed.
      * 
      * @param photo the Photo to display
      */
     private void displayPhoto(Photo photo) {
+        if (photo == currentPhoto) {
+            showPhotoDetails(photo);
+            return;
+        }
         currentPhoto = photo;
         
+        PhotoDisplayEvent event = new PhotoDisplayEvent();
+        event.begin();
+        File file = new File(photo.getFilePath());
         try {
             // Load the image
-            File file = new File(photo.getFilePath());
             if (file.exists()) {
+                // Images load synchronously here, so this times the decode on the FX thread
+                long start = System.nanoTime();
                 Image image = new Image(file.toURI().toString());
-                photoImageView.setImage(image);
-                
-                // Set caption and date
-                photoCaptionLabel.setText(photo.getCaption().isEmpty() ? 
-                                         "(No caption)" : photo.getCaption());
-                
-                // Format date
-                photoDateLabel.setText("Date: " + String.format("%d/%d/%d", 
-                                     photo.getDateTaken().get(java.util.Calendar.MONTH) + 1,
-                                     photo.getDateTaken().get(java.util.Calendar.DAY_OF_MONTH),
-                                     photo.getDateTaken().get(java.util.Calendar.YEAR)));
-                
-                // Format tags
-                if (photo.getTags().isEmpty()) {
-                    photoTagsLabel.setText("Tags: (None)");
-                } else {
-                    String tagsText = photo.getTags().stream()
-                        .map(tag -> tag.getName() + ":" + tag.getValue())
-                        .collect(Collectors.joining(", "));
-                    photoTagsLabel.setText("Tags: " + tagsText);
+                Metrics.histogram("image.decode.micros").recordMicrosSince(start);
+                Metrics.histogram("image.file.bytes").record(file.length());
+                if (image.isError()) {
+                    Metrics.counter("image.errors").increment();
                 }
+                event.succeeded = !image.isError();
+                event.width = (int) image.getWidth();
+                event.height = (int) image.getHeight();
+                photoImageView.setImage(image);
+                showPhotoDetails(photo);
             } else {
                 photoImageView.setImage(null);
                 errorMessageLabel.setText("Photo file not found: " + file.getAbsolutePath());
             }
         } catch (Exception e) {
+            Metrics.counter("image.errors").increment();
             photoImageView.setImage(null);
             errorMessageLabel.setText("Error displaying photo: " + e.getMessage());
         }
+        
+        event.end();
+        if (event.shouldCommit()) {
+            event.filePath = file.getPath();
+            event.fileSize = file.length();
+            event.commit();
+        }
+    }
+    
+    /**
+     * Shows a photo's caption, date and tags.
+     * 
+     * @param photo the Photo whose details to show
+     */
+    private void showPhotoDetails(Photo photo) {
+        // Set caption and date
+        photoCaptionLabel.setText(photo.getCaption().isEmpty() ? 
+                                 "(No caption)" : photo.getCaption());
+        
+        // Format date
+        photoDateLabel.setText("Date: " + String.format("%d/%d/%d", 
+                             photo.getDateTaken().get(java.util.Calendar.MONTH) + 1,
+                             photo.getDateTaken().get(java.util.Calendar.DAY_OF_MONTH),
+                             photo.getDateTaken().get(java.util.Calendar.YEAR)));
+        
+        // Format tags
+        if (photo.getTags().isEmpty()) {
+            photoTagsLabel.setText("Tags: (None)");
+        } else {
+            String tagsText = photo.getTags().stream()
+                .map(tag -> tag.getName() + ":" + tag.getValue())
+                .collect(Collectors.joining(", "));
+            photoTagsLabel.setText("Tags: " + tagsText);
+        }
     }
     
     /**
@@ -204,19 +425,16 @@ public class AlbumViewController {
             String filePath = selectedFile.getAbsolutePath();
             
             // Check if the photo is already in the album
-            for (Photo existingPhoto : album.getPhotos()) {
-                if (existingPhoto.getFilePath().equals(filePath)) {
-                    errorMessageLabel.setText("This photo is already in the album");
-                    return;
-                }
+            if (album.containsPhoto(filePath)) {
+                errorMessageLabel.setText("This photo is already in the album");
+                return;
             }
             
             Photo newPhoto = new Photo(filePath);
+            // The row appears when the change reaches the list, and is selected then
+            photoToSelect = newPhoto;
             album.addPhoto(newPhoto);
             userManager.saveUsers();
-            
-            refreshPhotoList();
-            photoListView.getSelectionModel().select(newPhoto);
             errorMessageLabel.setText("");
         }
     }
@@ -228,24 +446,23 @@ public class AlbumViewController {
      */
     @FXML
     public void handleRemovePhoto(ActionEvent event) {
-        Photo selectedPhoto = photoListView.getSelectionModel().getSelectedItem();
+        List<Photo> selectedPhotos = getSelectedPhotos();
         
-        if (selectedPhoto == null) {
+        if (selectedPhotos.isEmpty()) {
             errorMessageLabel.setText("Please select a photo to remove");
             return;
         }
         
         Alert confirmAlert = new Alert(AlertType.CONFIRMATION);
         confirmAlert.setTitle("Confirm Remove");
-        confirmAlert.setHeaderText("Remove Photo");
-        confirmAlert.setContentText("Are you sure you want to remove this photo from the album?");
+        confirmAlert.setHeaderText(selectedPhotos.size() == 1 ? "Remove Photo" : "Remove Photos");
+        confirmAlert.setContentText(selectedPhotos.size() == 1
+                ? "Are you sure you want to remove this photo from the album?"
+                : "Are you sure you want to remove these " + selectedPhotos.size() + " photos from the album?");
         
         confirmAlert.showAndWait().ifPresent(response -> {
             if (response == ButtonType.OK) {
-                album.removePhoto(selectedPhoto);
-                userManager.saveUsers();
-                
-                refreshPhotoList();
+                PhotoBatch.removePhotos(user, album, selectedPhotos);
                 errorMessageLabel.setText("");
             }
         });
@@ -259,6 +476,7 @@ public class AlbumViewController {
     @FXML
     public void handleCaptionPhoto(ActionEvent event) {
         Photo selectedPhoto = photoListView.getSelectionModel().getSelectedItem();
+        List<Photo> selectedPhotos = getSelectedPhotos();
         
         if (selectedPhoto == null) {
             errorMessageLabel.setText("Please select a photo to caption");
@@ -272,12 +490,7 @@ public class AlbumViewController {
         
         Optional<String> result = dialog.showAndWait();
         result.ifPresent(caption -> {
-            selectedPhoto.setCaption(caption);
-            userManager.saveUsers();
-            
-            refreshPhotoList();
-            photoListView.getSelectionModel().select(selectedPhoto);
-            displayPhoto(selectedPhoto);
+            PhotoBatch.setCaption(user, selectedPhotos, caption);
             errorMessageLabel.setText("");
         });
     }
@@ -290,80 +503,28 @@ public class AlbumViewController {
     @FXML
     public void handleAddTag(ActionEvent event) {
         Photo selectedPhoto = photoListView.getSelectionModel().getSelectedItem();
+        List<Photo> selectedPhotos = getSelectedPhotos();
         
         if (selectedPhoto == null) {
             errorMessageLabel.setText("Please select a photo to tag");
             return;
         }
         
-        // Create a dialog for adding a tag
-        Dialog<Tag> dialog = new Dialog<>();
-        dialog.setTitle("Add Tag");
-        dialog.setHeaderText("Add a tag to the photo");
-        
-        // Set up the buttons
-        dialog.getDialogPane().getButtonTypes().addAll(ButtonType.OK, ButtonType.CANCEL);
-        
-        // Create the tag name and value fields
-        TextField tagNameField = new TextField();
-        tagNameField.setPromptText("Tag name (e.g., location, person)");
-        
-        TextField tagValueField = new TextField();
-        tagValueField.setPromptText("Tag value (e.g., New York, John)");
-        
-        // Create the dialog content
-        DialogPane dialogPane = dialog.getDialogPane();
-        dialogPane.setContent(createTagDialogContent(tagNameField, tagValueField));
-        
-        // Convert the result when the OK button is clicked
-        dialog.setResultConverter(dialogButton -> {
-            if (dialogButton == ButtonType.OK) {
-                String tagName = tagNameField.getText().trim();
-                String tagValue = tagValueField.getText().trim();
-                
-                if (tagName.isEmpty() || tagValue.isEmpty()) {
-                    return null;
-                }
-                
-                return new Tag(tagName, tagValue);
-            }
-            return null;
-        });
-        
         // Show the dialog and process the result
-        Optional<Tag> result = dialog.showAndWait();
+        Optional<Tag> result = TagDialog.showAndWait("Add Tag",
+                selectedPhotos.size() == 1 ? "Add a tag to the photo" : "Add a tag to the selected photos",
+                user.getTagIndex());
         result.ifPresent(tag -> {
-            if (selectedPhoto.addTag(tag)) {
-                userManager.saveUsers();
-                displayPhoto(selectedPhoto);
+            if (PhotoBatch.addTag(user, selectedPhotos, tag) > 0) {
                 errorMessageLabel.setText("");
             } else {
-                errorMessageLabel.setText("This tag already exists on the photo");
+                errorMessageLabel.setText(selectedPhotos.size() == 1
+                        ? "This tag already exists on the photo"
+                        : "This tag already exists on the selected photos");
             }
         });
     }
     
-    /**
-     * Creates the content for the tag dialog.
-     * 
-     * @param tagNameField the TextField for the tag name
-     * @param tagValueField the TextField for the tag value
-     * @return a Parent containing the dialog content
-     */
-    private Parent createTagDialogContent(TextField tagNameField, TextField tagValueField) {
-        VBox content = new VBox(10);
-        content.setPadding(new Insets(20, 10, 10, 10));
-        
-        HBox tagNameBox = new HBox(10);
-        tagNameBox.getChildren().addAll(new Label("Tag Name:"), tagNameField);
-        
-        HBox tagValueBox = new HBox(10);
-        tagValueBox.getChildren().addAll(new Label("Tag Value:"), tagValueField);
-        
-        content.getChildren().addAll(tagNameBox, tagValueBox);
-        return content;
-    }
-    
     /**
      * Handles the remove tag button action.
      * 
@@ -372,6 +533,7 @@ public class AlbumViewController {
     @FXML
     public void handleRemoveTag(ActionEvent event) {
         Photo selectedPhoto = photoListView.getSelectionModel().getSelectedItem();
+        List<Photo> selectedPhotos = getSelectedPhotos();
         
         if (selectedPhoto == null) {
             errorMessageLabel.setText("Please select a photo");
@@ -394,9 +556,8 @@ public class AlbumViewController {
         // Show the dialog and process the result
         Optional<Tag> result = dialog.showAndWait();
         result.ifPresent(tag -> {
-            selectedPhoto.removeTag(tag);
-            userManager.saveUsers();
-            displayPhoto(selectedPhoto);
+            // Removes the tag from every selected photo that has it
+            PhotoBatch.removeTag(user, selectedPhotos, tag);
             errorMessageLabel.setText("");
         });
     }
@@ -408,9 +569,9 @@ public class AlbumViewController {
      */
     @FXML
     public void handleCopyPhoto(ActionEvent event) {
-        Photo selectedPhoto = photoListView.getSelectionModel().getSelectedItem();
+        List<Photo> selectedPhotos = getSelectedPhotos();
         
-        if (selectedPhoto == null) {
+        if (selectedPhotos.isEmpty()) {
             errorMessageLabel.setText("Please select a photo to copy");
             return;
         }
@@ -436,21 +597,14 @@ public class AlbumViewController {
         // Show the dialog and process the result
         Optional<Album> result = dialog.showAndWait();
         result.ifPresent(targetAlbum -> {
-            // Check if the photo is already in the target album
-            boolean photoExists = false;
-            for (Photo photo : targetAlbum.getPhotos()) {
-                if (photo.getFilePath().equals(selectedPhoto.getFilePath())) {
-                    photoExists = true;
-                    break;
-                }
-            }
-            
-            if (photoExists) {
-                errorMessageLabel.setText("Photo already exists in the target album");
+            // Photos already in the target album are skipped
+            int copied = PhotoBatch.copyPhotos(user, selectedPhotos, targetAlbum);
+            if (copied == 0) {
+                errorMessageLabel.setText(selectedPhotos.size() == 1
+                        ? "Photo already exists in the target album"
+                        : "Photos already exist in the target album");
             } else {
-                targetAlbum.addPhoto(selectedPhoto);
-                userManager.saveUsers();
-                errorMessageLabel.setText("Photo copied to " + targetAlbum.getName());
+                errorMessageLabel.setText(describePhotos(copied) + " copied to " + targetAlbum.getName());
             }
         });
     }
@@ -462,9 +616,9 @@ public class AlbumViewController {
      */
     @FXML
     public void handleMovePhoto(ActionEvent event) {
-        Photo selectedPhoto = photoListView.getSelectionModel().getSelectedItem();
+        List<Photo> selectedPhotos = getSelectedPhotos();
         
-        if (selectedPhoto == null) {
+        if (selectedPhotos.isEmpty()) {
             errorMessageLabel.setText("Please select a photo to move");
             return;
         }
@@ -490,27 +644,14 @@ public class AlbumViewController {
         // Show the dialog and process the result
         Optional<Album> result = dialog.showAndWait();
         result.ifPresent(targetAlbum -> {
-            // Check if the photo is already in the target album
-            boolean photoExists = false;
-            for (Photo photo : targetAlbum.getPhotos()) {
-                if (photo.getFilePath().equals(selectedPhoto.getFilePath())) {
-                    photoExists = true;
-                    break;
-                }
-            }
-            
-            if (photoExists) {
-                errorMessageLabel.setText("Photo already exists in the target album");
+            // Photos already in the target album stay in this one
+            int moved = PhotoBatch.movePhotos(user, selectedPhotos, album, targetAlbum);
+            if (moved == 0) {
+                errorMessageLabel.setText(selectedPhotos.size() == 1
+                        ? "Photo already exists in the target album"
+                        : "Photos already exist in the target album");
             } else {
-                // Add to target album
-                targetAlbum.addPhoto(selectedPhoto);
-                
-                // Remove from current album
-                album.removePhoto(selectedPhoto);
-                
-                userManager.saveUsers();
-                refreshPhotoList();
-                errorMessageLabel.setText("Photo moved to " + targetAlbum.getName());
+                errorMessageLabel.setText(describePhotos(moved) + " moved to " + targetAlbum.getName());
             }
         });
     }
@@ -525,11 +666,11 @@ public class AlbumViewController {
         int currentIndex = photoListView.getSelectionModel().getSelectedIndex();
         
         if (currentIndex > 0) {
-            photoListView.getSelectionModel().select(currentIndex - 1);
+            photoListView.getSelectionModel().clearAndSelect(currentIndex - 1);
             photoListView.scrollTo(currentIndex - 1);
         } else {
             // Wrap around to the end if at the beginning
-            photoListView.getSelectionModel().select(photoListView.getItems().size() - 1);
+            photoListView.getSelectionModel().clearAndSelect(photoListView.getItems().size() - 1);
             photoListView.scrollTo(photoListView.getItems().size() - 1);
         }
     }
@@ -545,11 +686,11 @@ public class AlbumViewController {
         int lastIndex = photoListView.getItems().size() - 1;
         
         if (currentIndex < lastIndex) {
-            photoListView.getSelectionModel().select(currentIndex + 1);
+            photoListView.getSelectionModel().clearAndSelect(currentIndex + 1);
             photoListView.scrollTo(currentIndex + 1);
         } else {
             // Wrap around to the beginning if at the end
-            photoListView.getSelectionModel().select(0);
+            photoListView.getSelectionModel().clearAndSelect(0);
             photoListView.scrollTo(0);
         }
     }
@@ -564,18 +705,16 @@ public class AlbumViewController {
         try {
             // Save any changes
             userManager.saveUsers();
+            detach();
             
             // Load the album list screen
-            FXMLLoader loader = new FXMLLoader(getClass().getResource("/photos/view/albumList.fxml"));
-            Parent root = loader.load();
+            FXMLLoader loader = Views.get(Views.ALBUM_LIST);
             
             AlbumListController controller = loader.getController();
             controller.setUser(user);
             
             Stage stage = (Stage) photoListView.getScene().getWindow();
-            stage.setTitle("Albums - " + user.getUsername());
-            stage.setScene(new Scene(root));
-            stage.show();
+            Views.show(stage, loader, "Albums - " + user.getUsername());
         } catch (IOException e) {
             errorMessageLabel.setText("Error returning to album list");
             e.printStackTrace();
@@ -592,15 +731,16 @@ public class AlbumViewController {
         try {
             // Save any changes
             userManager.saveUsers();
+            detach();
             
             // Load the login screen
-            FXMLLoader loader = new FXMLLoader(getClass().getResource("/photos/view/login.fxml"));
-            Parent root = loader.load();
+            FXMLLoader loader = Views.get(Views.LOGIN);
+            
+            LoginController controller = loader.getController();
+            controller.reset();
             
             Stage stage = (Stage) photoListView.getScene().getWindow();
-            stage.setTitle("Photos Application");
-            stage.setScene(new Scene(root));
-            stage.show();
+            Views.show(stage, loader, "Photos Application");
         } catch (IOException e) {
             errorMessageLabel.setText("Error returning to login screen");
             e.printStackTrace();
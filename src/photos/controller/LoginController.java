@@ -4,8 +4,6 @@ import javafx.application.Platform;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
-import javafx.scene.Parent;
-import javafx.scene.Scene;
 import javafx.scene.control.Label;
 import javafx.scene.control.TextField;
 import javafx.stage.Stage;
@@ -13,10 +11,15 @@ import photos.model.User;
 import photos.model.UserManager;
 
 import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Controller for the login screen.
  * Handles user authentication and navigation to the appropriate screens.
+ * The screen is shown while the users are still being read. Until they are,
+ * a name is checked against the usernames read ahead of them, and a valid
+ * login opens its screen as soon as the users are ready.
  * 
  * @author Krish Patel, Darshan Surti
  */
@@ -28,14 +31,36 @@ public class LoginController {
     @FXML
     private Label errorMessageLabel;
     
-    private UserManager userManager;
+    private CompletableFuture<List<String>> usernames;
+    private CompletableFuture<UserManager> users;
+    private String pendingUsername;
     
     /**
      * Initializes the controller.
      */
     @FXML
     public void initialize() {
-        userManager = UserManager.getInstance();
+        errorMessageLabel.setText("");
+    }
+    
+    /**
+     * Sets where the screen gets its users from while the application starts.
+     * 
+     * @param usernames the usernames, available before the users are read
+     * @param users the user manager, available once the users are read
+     */
+    public void setStartup(CompletableFuture<List<String>> usernames, CompletableFuture<UserManager> users) {
+        this.usernames = usernames;
+        this.users = users;
+    }
+    
+    /**
+     * Clears the username and any message left from the previous login.
+     * Called when the screen is shown again after logging out.
+     */
+    void reset() {
+        pendingUsername = null;
+        usernameField.clear();
         errorMessageLabel.setText("");
     }
     
@@ -54,8 +79,52 @@ public class LoginController {
             return;
         }
         
+        if (users.isDone()) {
+            pendingUsername = null;
+            completeLogin(username);
+            return;
+        }
+        
+        // Check the name against the stored usernames, then wait for the users themselves
+        pendingUsername = username;
+        errorMessageLabel.setText("Loading users...");
+        usernames.whenCompleteAsync((names, error) -> {
+            if (!username.equals(pendingUsername)) {
+                return;
+            }
+            if (error != null) {
+                pendingUsername = null;
+                errorMessageLabel.setText("Error loading users");
+            } else if (!names.contains(username)) {
+                pendingUsername = null;
+                errorMessageLabel.setText("User does not exist");
+            } else {
+                errorMessageLabel.setText("Loading albums...");
+                users.whenCompleteAsync((manager, loadError) -> {
+                    if (username.equals(pendingUsername)) {
+                        pendingUsername = null;
+                        completeLogin(username);
+                    }
+                }, Platform::runLater);
+            }
+        }, Platform::runLater);
+    }
+    
+    /**
+     * Logs in once the users have been read.
+     * 
+     * @param username the username entered
+     */
+    private void completeLogin(String username) {
+        if (users.isCompletedExceptionally()) {
+            errorMessageLabel.setText("Error loading users");
+            return;
+        }
+        
+        UserManager userManager = users.join();
         if (userManager.userExists(username)) {
             User user = userManager.getUser(username);
+            errorMessageLabel.setText("");
             
             if (username.equals("admin")) {
                 openAdminScreen();
@@ -72,13 +141,13 @@ public class LoginController {
      */
     private void openAdminScreen() {
         try {
-            FXMLLoader loader = new FXMLLoader(getClass().getResource("/photos/view/admin.fxml"));
-            Parent root = loader.load();
+            FXMLLoader loader = Views.get(Views.ADMIN);
+            
+            AdminController controller = loader.getController();
+            controller.attach();
             
             Stage stage = (Stage) usernameField.getScene().getWindow();
-            stage.setTitle("Admin");
-            stage.setScene(new Scene(root));
-            stage.show();
+            Views.show(stage, loader, "Admin");
         } catch (IOException e) {
             errorMessageLabel.setText("Error loading admin screen");
             e.printStackTrace();
@@ -92,16 +161,16 @@ public class LoginController {
      */
     private void openAlbumListScreen(User user) {
         try {
-            FXMLLoader loader = new FXMLLoader(getClass().getResource("/photos/view/albumList.fxml"));
-            Parent root = loader.load();
+            FXMLLoader loader = Views.get(Views.ALBUM_LIST);
             
             AlbumListController controller = loader.getController();
             controller.setUser(user);
             
             Stage stage = (Stage) usernameField.getScene().getWindow();
-            stage.setTitle("Albums - " + user.getUsername());
-            stage.setScene(new Scene(root));
-            stage.show();
+            Views.show(stage, loader, "Albums - " + user.getUsername());
+            
+            // Get the screens reachable from the album list ready while the user looks at it
+            Views.prewarm(Views.ALBUM_VIEW, Views.SEARCH_RESULTS);
         } catch (IOException e) {
             errorMessageLabel.setText("Error loading album list screen");
             e.printStackTrace();
@@ -110,13 +179,16 @@ public class LoginController {
     
     /**
      * Handles the quit button action.
-     * Saves all user data and exits the application.
+     * Saves all user data and exits the application. Users that haven't
+     * finished loading have nothing new to save.
      * 
      * @param event the ActionEvent
      */
     @FXML
     public void handleQuit(ActionEvent event) {
-        userManager.saveUsers();
+        if (users.isDone() && !users.isCompletedExceptionally()) {
+            users.join().saveUsers();
+        }
         Platform.exit();
     }
 } 
\ No newline at end of file
@@ -0,0 +1,39 @@
+package photos.controller;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event for showing a photo in the album view,
+ * which decodes the image on the JavaFX thread.
+ * 
+ * @author Krish Patel, Darshan Surti
+ */
+@Name("photos.PhotoDisplay")
+@Label("Display Photo")
+@Category({ "Photos", "User Interface" })
+@Description("Loading and decoding a photo to show in the album view")
+@StackTrace(false)
+class PhotoDisplayEvent extends Event {
+    
+    @Label("File")
+    String filePath;
+    
+    @Label("File Size")
+    @DataAmount
+    long fileSize;
+    
+    @Label("Width")
+    int width;
+    
+    @Label("Height")
+    int height;
+    
+    @Label("Succeeded")
+    boolean succeeded;
+}
\ No newline at end of file
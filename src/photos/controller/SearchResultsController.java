@@ -5,27 +5,41 @@ import javafx.collections.ObservableList;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
-import javafx.scene.Parent;
-import javafx.scene.Scene;
 import javafx.scene.control.Label;
 import javafx.scene.control.ListCell;
 import javafx.scene.control.ListView;
+import javafx.scene.control.SelectionMode;
 import javafx.scene.control.TextField;
 import javafx.stage.Stage;
 import photos.model.Album;
 import photos.model.Photo;
+import photos.model.PhotoBatch;
+import photos.model.SearchFacets;
+import photos.model.SearchQuery;
 import photos.model.SearchUtil;
+import photos.model.Tag;
 import photos.model.User;
 import photos.model.UserManager;
 
-import java.io.File;
 import java.io.IOException;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 /**
  * Controller for the search results screen.
  * Displays search results and allows creating an album from them.
+ * Several results can be selected to tag them together or to build an album from just those.
+ * Searches go through {@link SearchUtil#search(User, SearchQuery)}, so returning to
+ * a search the user has already run reuses its cached results. A breakdown of
+ * the results by album, tag value and month is shown beside them.
  * 
  * @author Krish Patel, Darshan Surti
  */
@@ -43,9 +57,17 @@ public class SearchResultsController {
     @FXML
     private Label errorMessageLabel;
     
+    @FXML
+    private ListView<String> facetListView;
+    
+    /** The most tag names, and values per name, shown in the breakdown. */
+    private static final int MAX_FACET_NAMES = 5;
+    private static final int MAX_FACET_VALUES = 20;
+    
     private User user;
     private UserManager userManager;
     private List<Photo> searchResults;
+    private SearchQuery searchQuery;
     
     /**
      * Initializes the controller.
@@ -55,6 +77,8 @@ public class SearchResultsController {
         userManager = UserManager.getInstance();
         errorMessageLabel.setText("");
         
+        resultsListView.getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
+        
         // Configure the photo list view cell factory
         resultsListView.setCellFactory(lv -> new ListCell<Photo>() {
             @Override
@@ -63,9 +87,7 @@ public class SearchResultsController {
                 if (empty || photo == null) {
                     setText(null);
                 } else {
-                    setText(photo.getCaption().isEmpty() ? 
-                          "(No caption) - " + new File(photo.getFilePath()).getName() : 
-                          photo.getCaption());
+                    setText(photo.getDisplayLabel());
                 }
             }
         });
@@ -78,6 +100,10 @@ public class SearchResultsController {
      */
     public void setUser(User user) {
         this.user = user;
+        
+        // The screen is reused, so clear what the previous search left behind
+        albumNameField.clear();
+        errorMessageLabel.setText("");
     }
     
     /**
@@ -87,7 +113,8 @@ public class SearchResultsController {
      * @param endDate the end date of the range
      */
     public void searchByDateRange(Calendar startDate, Calendar endDate) {
-        searchResults = SearchUtil.searchByDateRange(user.getAlbums(), startDate, endDate);
+        SearchQuery query = SearchQuery.of(Collections.emptyList(), true, toLocalDate(startDate), toLocalDate(endDate));
+        showResults(query);
         displayResults("Search Results - Date Range: " + formatDate(startDate) + " to " + formatDate(endDate));
     }
     
@@ -98,7 +125,8 @@ public class SearchResultsController {
      * @param tagValue the tag value to search for
      */
     public void searchByTag(String tagName, String tagValue) {
-        searchResults = SearchUtil.searchByTag(user.getAlbums(), tagName, tagValue);
+        SearchQuery query = SearchQuery.of(Arrays.asList(new Tag(tagName, tagValue)), true, null, null);
+        showResults(query);
         displayResults("Search Results - Tag: " + tagName + ":" + tagValue);
     }
     
@@ -111,7 +139,9 @@ public class SearchResultsController {
      * @param tag2Value the second tag value
      */
     public void searchByTagsAnd(String tag1Name, String tag1Value, String tag2Name, String tag2Value) {
-        searchResults = SearchUtil.searchByTagsAnd(user.getAlbums(), tag1Name, tag1Value, tag2Name, tag2Value);
+        SearchQuery query = SearchQuery.of(Arrays.asList(new Tag(tag1Name, tag1Value), new Tag(tag2Name, tag2Value)),
+                true, null, null);
+        showResults(query);
         displayResults("Search Results - Tags: " + tag1Name + ":" + tag1Value + " AND " + tag2Name + ":" + tag2Value);
     }
     
@@ -124,10 +154,33 @@ public class SearchResultsController {
      * @param tag2Value the second tag value
      */
     public void searchByTagsOr(String tag1Name, String tag1Value, String tag2Name, String tag2Value) {
-        searchResults = SearchUtil.searchByTagsOr(user.getAlbums(), tag1Name, tag1Value, tag2Name, tag2Value);
+        SearchQuery query = SearchQuery.of(Arrays.asList(new Tag(tag1Name, tag1Value), new Tag(tag2Name, tag2Value)),
+                false, null, null);
+        showResults(query);
         displayResults("Search Results - Tags: " + tag1Name + ":" + tag1Value + " OR " + tag2Name + ":" + tag2Value);
     }
     
+    /**
+     * Displays the results of a typed query, such as one from the live search on the album list screen.
+     * 
+     * @param title the title to display for the search results
+     * @param query the query
+     */
+    public void showResults(String title, SearchQuery query) {
+        showResults(query);
+        displayResults(title);
+    }
+    
+    /**
+     * Runs a query, or reuses its cached results, as the results to display.
+     * 
+     * @param query the query
+     */
+    private void showResults(SearchQuery query) {
+        searchQuery = query;
+        searchResults = SearchUtil.search(user, query);
+    }
+    
     /**
      * Displays the search results in the list view.
      * 
@@ -144,6 +197,51 @@ public class SearchResultsController {
         } else {
             errorMessageLabel.setText("");
         }
+        
+        displayFacets(SearchUtil.searchFacets(user, searchQuery));
+    }
+    
+    /**
+     * Shows how the results break down by album, tag value and month.
+     * 
+     * @param facets the facet counts of the results
+     */
+    private void displayFacets(SearchFacets facets) {
+        ObservableList<String> rows = FXCollections.observableArrayList();
+        
+        if (!facets.getAlbums().isEmpty()) {
+            rows.add("Albums:");
+            for (SearchFacets.Count<Album> album : facets.getAlbums()) {
+                rows.add("    " + album);
+            }
+        }
+        
+        List<SearchFacets.Count<String>> names = facets.getTagNames();
+        for (SearchFacets.Count<String> name : names.subList(0, Math.min(names.size(), MAX_FACET_NAMES))) {
+            rows.add(name.getKey() + ":");
+            for (SearchFacets.Count<String> value : facets.getTopValues(name.getKey(), MAX_FACET_VALUES)) {
+                rows.add("    " + value);
+            }
+        }
+        
+        if (!facets.getMonths().isEmpty()) {
+            rows.add("Months:");
+            for (Map.Entry<YearMonth, Integer> month : facets.getMonths().entrySet()) {
+                rows.add("    " + month.getKey() + " (" + month.getValue() + ")");
+            }
+        }
+        
+        facetListView.setItems(rows);
+    }
+    
+    /**
+     * Converts a date chosen in the search dialog to a calendar day.
+     * 
+     * @param calendar the date
+     * @return the day of that date in the system time zone
+     */
+    private LocalDate toLocalDate(Calendar calendar) {
+        return calendar.toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
     }
     
     /**
@@ -159,15 +257,52 @@ public class SearchResultsController {
                 calendar.get(Calendar.YEAR));
     }
     
+    /**
+     * Gets the selected results, or all results if none are selected.
+     * 
+     * @return a new list of photos to act on
+     */
+    private List<Photo> getTargetPhotos() {
+        List<Photo> selected = resultsListView.getSelectionModel().getSelectedItems();
+        return new ArrayList<>(selected.isEmpty() ? searchResults : selected);
+    }
+    
+    /**
+     * Handles the tag selected button action.
+     * Adds a tag to the selected results, or to all results if none are selected.
+     * 
+     * @param event the ActionEvent
+     */
+    @FXML
+    public void handleTagSelected(ActionEvent event) {
+        List<Photo> photos = getTargetPhotos();
+        
+        if (photos.isEmpty()) {
+            errorMessageLabel.setText("No photos to tag");
+            return;
+        }
+        
+        Optional<Tag> result = TagDialog.showAndWait("Add Tag", "Add a tag to " + photos.size() + " photo(s)",
+                user.getTagIndex());
+        result.ifPresent(tag -> {
+            int tagged = PhotoBatch.addTag(user, photos, tag);
+            errorMessageLabel.setText("Tag " + tag + " added to " + tagged + " photo(s)");
+            // The results stay the same but their tag counts have changed
+            displayFacets(SearchFacets.count(user, searchResults));
+        });
+    }
+    
     /**
      * Handles the create album button action.
-     * Creates a new album from the search results.
+     * Creates a new album from the selected search results, or from all results if none are selected.
      * 
      * @param event the ActionEvent
      */
     @FXML
     public void handleCreateAlbum(ActionEvent event) {
-        if (searchResults.isEmpty()) {
+        List<Photo> photos = getTargetPhotos();
+        
+        if (photos.isEmpty()) {
             errorMessageLabel.setText("No photos to create an album from");
             return;
         }
@@ -186,16 +321,12 @@ public class SearchResultsController {
         }
         
         Album newAlbum = new Album(albumName);
-        
-        // Add all search results to the new album
-        for (Photo photo : searchResults) {
-            newAlbum.addPhoto(photo);
-        }
-        
         user.addAlbum(newAlbum);
-        userManager.saveUsers();
         
-        errorMessageLabel.setText("Album \"" + albumName + "\" created with " + searchResults.size() + " photos");
+        // Add the photos in one batch, which also saves the users
+        int added = PhotoBatch.copyPhotos(user, photos, newAlbum);
+        
+        errorMessageLabel.setText("Album \"" + albumName + "\" created with " + added + " photos");
         albumNameField.clear();
     }
     
@@ -212,16 +343,13 @@ public class SearchResultsController {
             userManager.saveUsers();
             
             // Load the album list screen
-            FXMLLoader loader = new FXMLLoader(getClass().getResource("/photos/view/albumList.fxml"));
-            Parent root = loader.load();
+            FXMLLoader loader = Views.get(Views.ALBUM_LIST);
             
             AlbumListController controller = loader.getController();
             controller.setUser(user);
             
             Stage stage = (Stage) resultsListView.getScene().getWindow();
-            stage.setTitle("Albums - " + user.getUsername());
-            stage.setScene(new Scene(root));
-            stage.show();
+            Views.show(stage, loader, "Albums - " + user.getUsername());
         } catch (IOException e) {
             errorMessageLabel.setText("Error returning to album list");
             e.printStackTrace();
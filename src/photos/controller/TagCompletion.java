@@ -0,0 +1,92 @@
+package photos.controller;
+
+import javafx.geometry.Side;
+import javafx.scene.control.ContextMenu;
+import javafx.scene.control.CustomMenuItem;
+import javafx.scene.control.Label;
+import javafx.scene.control.TextField;
+import photos.model.TagIndex;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Suggests tag names and values below a text field as the user types,
+ * using the completions from a user's {@link TagIndex}.
+ * 
+ * @author Krish Patel, Darshan Surti
+ */
+class TagCompletion {
+    
+    /** The most suggestions shown at once. */
+    private static final int MAX_SUGGESTIONS = 8;
+    
+    /**
+     * Suggests tag names in a field.
+     * 
+     * @param nameField the field for the tag name
+     * @param index the user's tag index
+     */
+    static void completeNames(TextField nameField, TagIndex index) {
+        attach(nameField, () -> index.completeNames(nameField.getText().trim(), MAX_SUGGESTIONS));
+    }
+    
+    /**
+     * Suggests values in a field for the tag name typed in another field.
+     * 
+     * @param valueField the field for the tag value
+     * @param nameField the field for the tag name
+     * @param index the user's tag index
+     */
+    static void completeValues(TextField valueField, TextField nameField, TagIndex index) {
+        attach(valueField, () -> index.completeValues(nameField.getText().trim(),
+                valueField.getText().trim(), MAX_SUGGESTIONS));
+    }
+    
+    /**
+     * Shows a menu of suggestions below a field whenever its text changes
+     * while it has focus. Choosing a suggestion replaces the field's text.
+     * 
+     * @param field the field to complete
+     * @param suggestions supplies the suggestions for the field's current text
+     */
+    private static void attach(TextField field, Supplier<List<String>> suggestions) {
+        ContextMenu menu = new ContextMenu();
+        
+        Runnable update = () -> {
+            List<String> choices = suggestions.get();
+            // Nothing to suggest if the only choice is what's already typed
+            if (choices.isEmpty() || (choices.size() == 1 && choices.get(0).equals(field.getText()))) {
+                menu.hide();
+                return;
+            }
+            
+            menu.getItems().clear();
+            for (String choice : choices) {
+                CustomMenuItem item = new CustomMenuItem(new Label(choice), true);
+                item.setOnAction(e -> {
+                    field.setText(choice);
+                    field.positionCaret(choice.length());
+                    menu.hide();
+                });
+                menu.getItems().add(item);
+            }
+            if (!menu.isShowing()) {
+                menu.show(field, Side.BOTTOM, 0, 0);
+            }
+        };
+        
+        field.textProperty().addListener((obs, oldText, newText) -> {
+            if (field.isFocused()) {
+                update.run();
+            }
+        });
+        field.focusedProperty().addListener((obs, wasFocused, focused) -> {
+            if (focused) {
+                update.run();
+            } else {
+                menu.hide();
+            }
+        });
+    }
+}
\ No newline at end of file
@@ -0,0 +1,94 @@
+package photos.controller;
+
+import javafx.geometry.Insets;
+import javafx.scene.Parent;
+import javafx.scene.control.ButtonType;
+import javafx.scene.control.Dialog;
+import javafx.scene.control.DialogPane;
+import javafx.scene.control.Label;
+import javafx.scene.control.TextField;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.VBox;
+import photos.model.Tag;
+import photos.model.TagIndex;
+
+import java.util.Optional;
+
+/**
+ * Dialog for entering a tag name and value.
+ * Shared by the screens that tag photos. Both fields suggest the names and
+ * values already used in the user's photos, most used first.
+ * 
+ * @author Krish Patel, Darshan Surti
+ */
+class TagDialog {
+    
+    /**
+     * Shows the dialog and waits for the user to enter a tag.
+     * 
+     * @param title the dialog title
+     * @param header the dialog header text
+     * @param index the user's tag index, used for suggestions
+     * @return the entered tag, or empty if the dialog was cancelled or a field was left blank
+     */
+    static Optional<Tag> showAndWait(String title, String header, TagIndex index) {
+        Dialog<Tag> dialog = new Dialog<>();
+        dialog.setTitle(title);
+        dialog.setHeaderText(header);
+        
+        // Set up the buttons
+        dialog.getDialogPane().getButtonTypes().addAll(ButtonType.OK, ButtonType.CANCEL);
+        
+        // Create the tag name and value fields
+        TextField tagNameField = new TextField();
+        tagNameField.setPromptText("Tag name (e.g., location, person)");
+        
+        TextField tagValueField = new TextField();
+        tagValueField.setPromptText("Tag value (e.g., New York, John)");
+        
+        TagCompletion.completeNames(tagNameField, index);
+        TagCompletion.completeValues(tagValueField, tagNameField, index);
+        
+        // Create the dialog content
+        DialogPane dialogPane = dialog.getDialogPane();
+        dialogPane.setContent(createContent(tagNameField, tagValueField));
+        
+        // Convert the result when the OK button is clicked
+        dialog.setResultConverter(dialogButton -> {
+            if (dialogButton == ButtonType.OK) {
+                String tagName = tagNameField.getText().trim();
+                String tagValue = tagValueField.getText().trim();
+                
+                if (tagName.isEmpty() || tagValue.isEmpty()) {
+                    return null;
+                }
+                
+                return new Tag(tagName, tagValue);
+            }
+            return null;
+        });
+        
+        return dialog.showAndWait();
+    }
+    
+    /**
+     * Creates the content for the tag dialog.
+     * 
+     * @param tagNameField the TextField for the tag name
+     * @param tagValueField the TextField for the tag value
+     * @return a Parent containing the dialog content
+     */
+    private static Parent createContent(TextField tagNameField, TextField tagValueField) {
+        VBox content = new VBox(10);
+        content.setPadding(new Insets(20, 10, 10, 10));
+        
+        HBox tagNameBox = new HBox(10);
+        tagNameBox.getChildren().addAll(new Label("Tag Name:"), tagNameField);
+        
+        HBox tagValueBox = new HBox(10);
+        tagValueBox.getChildren().addAll(new Label("Tag Value:"), tagValueField);
+        
+        content.getChildren().addAll(tagNameBox, tagValueBox);
+        return content;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,26 @@
+package photos.controller;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event for loading an FXML view.
+ * 
+ * @author Krish Patel, Darshan Surti
+ */
+@Name("photos.ViewLoad")
+@Label("Load View")
+@Category({ "Photos", "User Interface" })
+@Description("Loading an FXML view and creating its controller")
+class ViewLoadEvent extends Event {
+    
+    @Label("View")
+    String view;
+    
+    @Label("Prewarmed")
+    @Description("Whether the view was loaded ahead of time on a background thread")
+    boolean prewarmed;
+}
\ No newline at end of file
@@ -0,0 +1,152 @@
+package photos.controller;
+
+import javafx.fxml.FXMLLoader;
+import javafx.scene.Parent;
+import javafx.scene.Scene;
+import javafx.stage.Stage;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Loads the FXML views that make up each screen.
+ * Each view is loaded once and kept: its nodes, controller and scene are
+ * reused every time the screen is shown, and controllers are rebound to a
+ * new user or album through their {@code setUser} and {@code setAlbum}
+ * methods rather than being created again. Views can be loaded ahead of
+ * time on a background thread with {@link #prewarm(String...)}, so the
+ * first visit to a screen doesn't wait for its FXML to be parsed.
+ * <p>
+ * Every load is recorded as a flight recorder event, so time spent building
+ * screens shows up separately from the work the screens do.
+ * 
+ * @author Krish Patel, Darshan Surti
+ */
+public class Views {
+    
+    public static final String LOGIN = "/photos/view/login.fxml";
+    public static final String ADMIN = "/photos/view/admin.fxml";
+    public static final String ALBUM_LIST = "/photos/view/albumList.fxml";
+    public static final String ALBUM_VIEW = "/photos/view/albumView.fxml";
+    public static final String SEARCH_RESULTS = "/photos/view/searchResults.fxml";
+    
+    private static final Map<String, FutureTask<FXMLLoader>> VIEWS = new ConcurrentHashMap<>();
+    
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private Views() {
+    }
+    
+    /**
+     * Gets a view, loading it the first time it's asked for.
+     * If the view is being pre-warmed, this waits for that load to finish
+     * instead of starting another.
+     * 
+     * @param resource the view's resource path, such as {@link #LOGIN}
+     * @return the loader, holding the loaded root and controller
+     * @throws IOException if the view can't be loaded
+     */
+    public static FXMLLoader get(String resource) throws IOException {
+        return get(resource, false);
+    }
+    
+    /**
+     * Gets a view, loading it on the calling thread if no other thread has.
+     * 
+     * @param resource the view's resource path
+     * @param prewarmed true if the view is being loaded ahead of time
+     * @return the loader, holding the loaded root and controller
+     * @throws IOException if the view can't be loaded
+     */
+    private static FXMLLoader get(String resource, boolean prewarmed) throws IOException {
+        FutureTask<FXMLLoader> task = new FutureTask<>(() -> load(resource, prewarmed));
+        FutureTask<FXMLLoader> existing = VIEWS.putIfAbsent(resource, task);
+        if (existing == null) {
+            task.run();
+            existing = task;
+        }
+        
+        try {
+            return existing.get();
+        } catch (ExecutionException e) {
+            // Forget the failed load so the next visit tries again
+            VIEWS.remove(resource, existing);
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Error loading " + resource, e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted loading " + resource, e);
+        }
+    }
+    
+    /**
+     * Loads views on a background thread so they are ready before they're needed.
+     * Views that are already loaded are skipped.
+     * 
+     * @param resources the views' resource paths
+     */
+    public static void prewarm(String... resources) {
+        Thread thread = new Thread(() -> {
+            for (String resource : resources) {
+                try {
+                    get(resource, true);
+                } catch (IOException e) {
+                    System.err.println("Error pre-loading view " + resource + ": " + e.getMessage());
+                }
+            }
+        }, "photos-view-prewarm");
+        thread.setDaemon(true);
+        thread.start();
+    }
+    
+    /**
+     * Shows a view in a window.
+     * A view keeps the scene it was first shown in, so showing it again
+     * doesn't build a new one.
+     * 
+     * @param stage the window
+     * @param view the view to show
+     * @param title the window title
+     */
+    public static void show(Stage stage, FXMLLoader view, String title) {
+        Parent root = view.getRoot();
+        Scene scene = root.getScene();
+        if (scene == null) {
+            scene = new Scene(root);
+        }
+        stage.setTitle(title);
+        stage.setScene(scene);
+        stage.show();
+    }
+    
+    /**
+     * Loads a view, creating its nodes and controller.
+     * 
+     * @param resource the view's resource path
+     * @param prewarmed true if the view is being loaded ahead of time
+     * @return the loader, holding the loaded root and controller
+     * @throws IOException if the view can't be loaded
+     */
+    private static FXMLLoader load(String resource, boolean prewarmed) throws IOException {
+        ViewLoadEvent event = new ViewLoadEvent();
+        event.begin();
+        FXMLLoader loader = new FXMLLoader(Views.class.getResource(resource));
+        try {
+            loader.load();
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.view = resource;
+                event.prewarmed = prewarmed;
+                event.commit();
+            }
+        }
+        return loader;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,340 @@
+package photos.model;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Consumer;
+
+/**
+ * Reports for the admin that look at every user: searches across all
+ * users' photos and per-user storage statistics.
+ * <p>
+ * Searches run on the users in memory, on the fork/join pool through
+ * {@link ParallelSearch#searchAllUsers(java.util.Collection, SearchQuery)},
+ * which holds each user's lock only while that user is searched.
+ * Statistics are read from the saved users file one at a time through
+ * {@link UserManager#forEachStoredUser(UserVisitor)}, and only small
+ * summaries are kept once a user has been looked at, so they need about
+ * the memory of the largest single user however many users there are.
+ * 
+ * @author Krish Patel, Darshan Surti
+ */
+public class AdminReport {
+    
+    // Rough sizes, in bytes, of the objects that make up a user on a 64-bit JVM
+    private static final long OBJECT_BYTES = 16;
+    private static final long REFERENCE_BYTES = 4;
+    private static final long STRING_BYTES = 40;
+    private static final long CALENDAR_BYTES = 450;
+    private static final long CATALOG_ENTRY_BYTES = 72;
+    private static final long CAPTION_INDEX_BYTES_PER_CHAR = 6;
+    
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private AdminReport() {
+    }
+    
+    /**
+     * Collects storage statistics for every saved user.
+     * 
+     * @param userManager the user manager to read users from
+     * @return the statistics for each user, in the order they're stored
+     * @throws IOException if the users file can't be read
+     */
+    public static List<UserStats> collectStats(UserManager userManager) throws IOException {
+        List<UserStats> stats = new ArrayList<>();
+        userManager.forEachStoredUser((user, storedBytes) -> stats.add(UserStats.of(user, storedBytes)));
+        return stats;
+    }
+    
+    /**
+     * Searches every user's photos.
+     * The users are searched in parallel, then their matches are passed on
+     * one user at a time in username order. Users with no matches are skipped.
+     * 
+     * @param userManager the user manager holding the users
+     * @param query the query to run
+     * @param consumer receives the matches from each user with any
+     * @return the total number of matches
+     */
+    public static int searchAllUsers(UserManager userManager, SearchQuery query, Consumer<List<Match>> consumer) {
+        Map<String, User> users = new HashMap<>();
+        for (String username : userManager.getAllUsernames()) {
+            User user = userManager.getUser(username);
+            if (user != null) {
+                users.put(username, user);
+            }
+        }
+        
+        int total = 0;
+        Map<String, List<Photo>> found = ParallelSearch.getDefault().searchAllUsers(users.values(), query);
+        for (Map.Entry<String, List<Photo>> entry : found.entrySet()) {
+            User user = users.get(entry.getKey());
+            List<Match> matches = new ArrayList<>(entry.getValue().size());
+            // Finding each photo's albums reads the user, so hold its lock again
+            Lock lock = user.getLock().readLock();
+            lock.lock();
+            try {
+                for (Photo photo : entry.getValue()) {
+                    matches.add(new Match(user, photo));
+                }
+            } finally {
+                lock.unlock();
+            }
+            total += matches.size();
+            consumer.accept(matches);
+        }
+        return total;
+    }
+    
+    /**
+     * Estimates how much heap a user takes once loaded.
+     * This adds up rough per-object sizes for the albums, photos, tags,
+     * captions and indexes, so it is meant for comparing users, not as an
+     * exact measurement.
+     * 
+     * @param user the user
+     * @return the estimated size in bytes
+     */
+    public static long estimateHeapBytes(User user) {
+        long bytes = OBJECT_BYTES * 4 + stringBytes(user.getUsername());
+        for (Album album : user.getAlbums()) {
+            bytes += OBJECT_BYTES * 3 + stringBytes(album.getName())
+                    + OBJECT_BYTES + REFERENCE_BYTES * album.getPhotoCount();
+        }
+        
+        for (Photo photo : user.getCatalog().getPhotos()) {
+            bytes += OBJECT_BYTES * 2 + CALENDAR_BYTES + CATALOG_ENTRY_BYTES
+                    + stringBytes(photo.getFilePath()) + stringBytes(photo.getCaption())
+                    + CAPTION_INDEX_BYTES_PER_CHAR * photo.getCaption().length();
+            for (Tag tag : photo.getTags()) {
+                bytes += OBJECT_BYTES + REFERENCE_BYTES + stringBytes(tag.getName()) + stringBytes(tag.getValue());
+            }
+        }
+        return bytes;
+    }
+    
+    /**
+     * Estimates the size of a string.
+     * 
+     * @param text the string
+     * @return the estimated size in bytes
+     */
+    private static long stringBytes(String text) {
+        return text == null ? 0 : STRING_BYTES + text.length();
+    }
+    
+    /**
+     * Formats a byte count for display.
+     * 
+     * @param bytes the number of bytes
+     * @return the count in bytes, KB or MB
+     */
+    public static String formatBytes(long bytes) {
+        if (bytes < 1024) {
+            return bytes + " B";
+        }
+        if (bytes < 1024 * 1024) {
+            return String.format("%.1f KB", bytes / 1024.0);
+        }
+        return String.format("%.1f MB", bytes / (1024.0 * 1024.0));
+    }
+    
+    /**
+     * Storage statistics for one user.
+     */
+    public static class UserStats {
+        private final String username;
+        private final int albumCount;
+        private final int photoCount;
+        private final int albumEntryCount;
+        private final int tagCount;
+        private final long heapBytes;
+        private final long diskBytes;
+        
+        private UserStats(String username, int albumCount, int photoCount, int albumEntryCount,
+                          int tagCount, long heapBytes, long diskBytes) {
+            this.username = username;
+            this.albumCount = albumCount;
+            this.photoCount = photoCount;
+            this.albumEntryCount = albumEntryCount;
+            this.tagCount = tagCount;
+            this.heapBytes = heapBytes;
+            this.diskBytes = diskBytes;
+        }
+        
+        /**
+         * Collects the statistics for a user.
+         * 
+         * @param user the user
+         * @param diskBytes the user's size in the users file, or -1 if unknown
+         * @return the statistics
+         */
+        static UserStats of(User user, long diskBytes) {
+            int albumEntries = 0;
+            for (Album album : user.getAlbums()) {
+                albumEntries += album.getPhotoCount();
+            }
+            
+            int tags = 0;
+            for (Photo photo : user.getCatalog().getPhotos()) {
+                tags += photo.getTags().size();
+            }
+            
+            return new UserStats(user.getUsername(), user.getAlbums().size(), user.getCatalog().size(),
+                    albumEntries, tags, estimateHeapBytes(user), diskBytes);
+        }
+        
+        /**
+         * Gets the username.
+         * 
+         * @return the username
+         */
+        public String getUsername() {
+            return username;
+        }
+        
+        /**
+         * Gets the number of albums.
+         * 
+         * @return the album count
+         */
+        public int getAlbumCount() {
+            return albumCount;
+        }
+        
+        /**
+         * Gets the number of distinct photos, counting a photo shared by several albums once.
+         * 
+         * @return the photo count
+         */
+        public int getPhotoCount() {
+            return photoCount;
+        }
+        
+        /**
+         * Gets the number of photos across all albums, counting shared photos once per album.
+         * 
+         * @return the album entry count
+         */
+        public int getAlbumEntryCount() {
+            return albumEntryCount;
+        }
+        
+        /**
+         * Gets the number of tags on the user's photos.
+         * 
+         * @return the tag count
+         */
+        public int getTagCount() {
+            return tagCount;
+        }
+        
+        /**
+         * Gets the estimated heap size of the user once loaded.
+         * 
+         * @return the size in bytes
+         * @see AdminReport#estimateHeapBytes(User)
+         */
+        public long getHeapBytes() {
+            return heapBytes;
+        }
+        
+        /**
+         * Gets the user's size in the users file.
+         * 
+         * @return the size in bytes, or -1 if unknown
+         */
+        public long getDiskBytes() {
+            return diskBytes;
+        }
+        
+        /**
+         * Returns a one-line summary of the statistics.
+         * 
+         * @return the summary
+         */
+        @Override
+        public String toString() {
+            return username + ": " + albumCount + " albums, " + photoCount + " photos ("
+                    + albumEntryCount + " in albums), " + tagCount + " tags, ~"
+                    + formatBytes(heapBytes) + " in memory, "
+                    + (diskBytes < 0 ? "unknown" : formatBytes(diskBytes)) + " on disk";
+        }
+    }
+    
+    /**
+     * A photo found by a cross-user search.
+     * Only the details needed to show the match are kept, not the photo or its user.
+     */
+    public static class Match {
+        private final String username;
+        private final String filePath;
+        private final String caption;
+        private final List<String> albumNames;
+        
+        private Match(User user, Photo photo) {
+            this.username = user.getUsername();
+            this.filePath = photo.getFilePath();
+            this.caption = photo.getCaption();
+            
+            List<String> names = new ArrayList<>();
+            for (Album album : user.findAlbumsContaining(photo)) {
+                names.add(album.getName());
+            }
+            this.albumNames = Collections.unmodifiableList(names);
+        }
+        
+        /**
+         * Gets the user that owns the photo.
+         * 
+         * @return the username
+         */
+        public String getUsername() {
+            return username;
+        }
+        
+        /**
+         * Gets the photo's file path.
+         * 
+         * @return the file path
+         */
+        public String getFilePath() {
+            return filePath;
+        }
+        
+        /**
+         * Gets the photo's caption.
+         * 
+         * @return the caption
+         */
+        public String getCaption() {
+            return caption;
+        }
+        
+        /**
+         * Gets the names of the albums that contain the photo.
+         * 
+         * @return the album names
+         */
+        public List<String> getAlbumNames() {
+            return albumNames;
+        }
+        
+        /**
+         * Returns the match as shown in the admin report.
+         * 
+         * @return the username, path, albums and caption
+         */
+        @Override
+        public String toString() {
+            String text = username + ": " + filePath + " " + albumNames;
+            return caption.isEmpty() ? text : text + " - " + caption;
+        }
+    }
+}
\ No newline at end of file
@@ -1,13 +1,24 @@
 package photos.model;
 
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
-import java.util.ArrayList;
+import java.lang.invoke.VarHandle;
 import java.util.Calendar;
 import java.util.List;
+import java.util.concurrent.locks.Lock;
 
 /**
  * Represents an album in the Photos application.
- * Albums have a name and contain a list of photos.
+ * Albums have a name and contain a list of photos, stored as ids in the
+ * owning user's {@link PhotoCatalog}.
+ * The date range and cover photo are kept up to date as photos are added
+ * and removed, so showing an album summary doesn't scan its photos.
+ * Adding and removing photos holds the owning user's write lock
+ * (see {@link User#getLock()}). Changing the album's name or photos first
+ * keeps its previous name and photos for any open {@link UserSnapshot} that
+ * may still read them.
  * 
  * @author Krish Patel, Darshan Surti
  */
@@ -15,7 +26,17 @@ public class Album implements Serializable {
     private static final long serialVersionUID = 1L;
     
     private String name;
-    private List<Photo> photos;
+    private AlbumPhotoList photos;
+    
+    // Cached summary, rebuilt lazily after deserialization or when a boundary photo is removed
+    private transient boolean dateRangeValid;
+    private transient long earliestMillis;
+    private transient long latestMillis;
+    private transient Calendar[] dateRange;
+    private transient Photo coverPhoto;
+    
+    private transient volatile long epoch;
+    private transient volatile Versions.Version<State> older;
     
     /**
      * Creates a new album with the given name and an empty list of photos.
@@ -24,7 +45,8 @@ public class Album implements Serializable {
      */
     public Album(String name) {
         this.name = name;
-        this.photos = new ArrayList<>();
+        this.photos = new AlbumPhotoList();
+        this.epoch = Versions.now();
     }
     
     /**
@@ -38,15 +60,54 @@ public class Album implements Serializable {
     
     /**
      * Sets the name of this album.
+     * Albums owned by a user are renamed through {@link User#renameAlbum(Album, String)}
+     * so the user's name index stays consistent.
      * 
      * @param name the new album name
      */
-    public void setName(String name) {
+    void setName(String name) {
+        beforeChange();
         this.name = name;
     }
     
+    /**
+     * Gets the catalog that holds this album's photos.
+     * 
+     * @return the photo catalog
+     */
+    public PhotoCatalog getCatalog() {
+        return photos.getCatalog();
+    }
+    
+    /**
+     * Moves this album's photos onto another catalog.
+     * Called when the album is added to or removed from a user.
+     * 
+     * @param catalog the catalog to move to
+     */
+    void attachTo(PhotoCatalog catalog) {
+        if (catalog != getCatalog()) {
+            beforeChange();
+            photos.moveTo(catalog);
+        }
+    }
+    
+    /**
+     * Publishes a change to this album on its owner's event bus, if it has an owner.
+     * 
+     * @param type the kind of change
+     * @param photo the photo involved
+     */
+    private void publish(ModelEvent.Type type, Photo photo) {
+        User owner = getCatalog().getOwner();
+        if (owner != null) {
+            owner.publish(type, this, photo, null, null);
+        }
+    }
+    
     /**
      * Gets the list of photos in this album.
+     * The list is read-only; use {@link #addPhoto(Photo)} and {@link #removePhoto(Photo)} to change it.
      * 
      * @return the list of photos
      */
@@ -61,23 +122,143 @@ public class Album implements Serializable {
      * @return true if the photo was added, false if it was already in the album
      */
     public boolean addPhoto(Photo photo) {
-        // Check if the photo is already in the album
-        if (photos.contains(photo)) {
-            return false;
+        Lock lock = User.lockForWrite(getCatalog());
+        try {
+            if (photos.containsPath(photo.getFilePath())) {
+                return false;
+            }
+            
+            beforeChange();
+            photos.add(photo);
+            publish(ModelEvent.Type.PHOTO_ADDED, photo);
+            
+            // The summary is also built lazily by readers, which don't hold the write lock
+            synchronized (this) {
+                if (photos.size() == 1) {
+                    coverPhoto = photo;
+                }
+                
+                if (dateRangeValid) {
+                    long millis = photo.getDateTaken().getTimeInMillis();
+                    if (photos.size() == 1 || millis < earliestMillis) {
+                        earliestMillis = millis;
+                        dateRange = null;
+                    }
+                    if (photos.size() == 1 || millis > latestMillis) {
+                        latestMillis = millis;
+                        dateRange = null;
+                    }
+                }
+            }
+            return true;
+        } finally {
+            User.unlock(lock);
         }
-        
-        photos.add(photo);
-        return true;
     }
     
     /**
      * Removes a photo from this album.
      * 
-     * @param photo the photo to remove
+     * @param photo the photo to remove, or any photo of the same file
      * @return true if the photo was removed, false if it wasn't in the album
      */
     public boolean removePhoto(Photo photo) {
-        return photos.remove(photo);
+        Lock lock = User.lockForWrite(getCatalog());
+        try {
+            // The album's own photo, which may be a different photo of the same file
+            Photo held = photos.findByPath(photo.getFilePath());
+            if (held == null) {
+                return false;
+            }
+            
+            beforeChange();
+            photos.remove(held);
+            publish(ModelEvent.Type.PHOTO_REMOVED, held);
+            
+            synchronized (this) {
+                if (held.equals(coverPhoto)) {
+                    coverPhoto = null;
+                }
+                
+                // Only losing the earliest or latest photo requires a rescan
+                if (dateRangeValid) {
+                    long millis = held.getDateTaken().getTimeInMillis();
+                    if (millis == earliestMillis || millis == latestMillis) {
+                        dateRangeValid = false;
+                        dateRange = null;
+                    }
+                }
+            }
+            return true;
+        } finally {
+            User.unlock(lock);
+        }
+    }
+    
+    /**
+     * Keeps this album's name and photos for the open snapshots that may
+     * read them, if there are any, before they change.
+     */
+    private void beforeChange() {
+        if (Versions.isShared(epoch)) {
+            older = Versions.push(new State(name, photos.copyPhotos()), epoch, older);
+            epoch = Versions.now();
+            // Snapshots reading concurrently must see the new epoch before the change
+            VarHandle.fullFence();
+        }
+    }
+    
+    /**
+     * Gets this album's name and photos as they were when a snapshot was taken.
+     * Safe to call while another thread changes the album.
+     * 
+     * @param snapshot the snapshot's epoch
+     * @return the album's state at the snapshot, with the user's photos themselves rather than copies
+     */
+    State stateAt(long snapshot) {
+        while (true) {
+            long current = epoch;
+            if (current > snapshot) {
+                // Changed since the snapshot, so the state it saw was kept
+                return Versions.find(older, snapshot);
+            }
+            
+            String currentName = name;
+            Photo[] currentPhotos = photos.copyPhotos();
+            VarHandle.acquireFence();
+            if (epoch == current && currentPhotos != null) {
+                return new State(currentName, currentPhotos);
+            }
+        }
+    }
+    
+    /**
+     * Determines if this album contains a photo with the given file path.
+     * 
+     * @param filePath the file path of the photo
+     * @return true if the album contains a photo with that path, false otherwise
+     */
+    public boolean containsPhoto(String filePath) {
+        return photos.containsPath(filePath);
+    }
+    
+    /**
+     * Determines if this album contains the photo with the given catalog id.
+     * 
+     * @param photoId the photo id in this album's catalog
+     * @return true if the album contains the photo, false otherwise
+     */
+    public boolean containsPhotoId(int photoId) {
+        return photos.containsId(photoId);
+    }
+    
+    /**
+     * Gets the ids of this album's photos in order.
+     * 
+     * @return a new array of photo ids in this album's catalog
+     */
+    public int[] getPhotoIds() {
+        return photos.toIdArray();
     }
     
     /**
@@ -91,31 +272,57 @@ public class Album implements Serializable {
     
     /**
      * Gets the date range of photos in this album.
+     * The returned calendars are shared and must not be modified.
      * 
      * @return an array of two Calendar objects representing the earliest and latest dates,
      *         or null if the album is empty
      */
-    public Calendar[] getDateRange() {
+    public synchronized Calendar[] getDateRange() {
         if (photos.isEmpty()) {
             return null;
         }
         
-        Calendar earliest = null;
-        Calendar latest = null;
+        if (!dateRangeValid) {
+            recomputeDateRange();
+        }
+        
+        if (dateRange == null) {
+            Calendar earliest = Calendar.getInstance();
+            earliest.setTimeInMillis(earliestMillis);
+            Calendar latest = Calendar.getInstance();
+            latest.setTimeInMillis(latestMillis);
+            dateRange = new Calendar[] { earliest, latest };
+        }
+        return dateRange;
+    }
+    
+    /**
+     * Rescans all photos for the earliest and latest dates.
+     */
+    private void recomputeDateRange() {
+        earliestMillis = Long.MAX_VALUE;
+        latestMillis = Long.MIN_VALUE;
         
         for (Photo photo : photos) {
-            Calendar photoDate = photo.getDateTaken();
-            
-            if (earliest == null || photoDate.before(earliest)) {
-                earliest = (Calendar) photoDate.clone();
-            }
-            
-            if (latest == null || photoDate.after(latest)) {
-                latest = (Calendar) photoDate.clone();
-            }
+            long millis = photo.getDateTaken().getTimeInMillis();
+            earliestMillis = Math.min(earliestMillis, millis);
+            latestMillis = Math.max(latestMillis, millis);
         }
         
-        return new Calendar[] { earliest, latest };
+        dateRange = null;
+        dateRangeValid = true;
+    }
+    
+    /**
+     * Gets the photo used as this album's cover, which is the first photo in the album.
+     * 
+     * @return the cover photo, or null if the album is empty
+     */
+    public synchronized Photo getCoverPhoto() {
+        if (coverPhoto == null && !photos.isEmpty()) {
+            coverPhoto = photos.iterator().next();
+        }
+        return coverPhoto;
     }
     
     /**
@@ -127,4 +334,42 @@ public class Album implements Serializable {
     public String toString() {
         return name + " (" + photos.size() + " photos)";
     }
+    
+    /**
+     * Reads an album, converting the plain list of photos in files saved
+     * before album photos were indexed.
+     * 
+     * @param in the stream to read from
+     * @throws IOException if there's an error reading
+     * @throws ClassNotFoundException if a class in the stream can't be found
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        name = (String) fields.get("name", null);
+        Object saved = fields.get("photos", null);
+        if (saved instanceof AlbumPhotoList) {
+            photos = (AlbumPhotoList) saved;
+        } else if (saved instanceof List) {
+            // The album has no owner yet, so this only fills its own catalog
+            photos = new AlbumPhotoList();
+            for (Object photo : (List<?>) saved) {
+                photos.add((Photo) photo);
+            }
+        } else {
+            throw new InvalidObjectException("Album " + name + " has no photo list");
+        }
+    }
+    
+    /**
+     * An album's name and photos at one moment.
+     */
+    static final class State {
+        final String name;
+        final Photo[] photos;
+        
+        State(String name, Photo[] photos) {
+            this.name = name;
+            this.photos = photos;
+        }
+    }
 } 
\ No newline at end of file
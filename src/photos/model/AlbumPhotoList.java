@@ -0,0 +1,375 @@
+package photos.model;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Ordered collection of the photos in an album.
+ * The list stores the photos' {@link PhotoCatalog} ids in a plain int array
+ * and resolves them through the catalog on access. Photos keep the order in
+ * which they were added, while membership checks and removals go through a
+ * hash index from id to position instead of a linear scan. Removed photos
+ * leave a hole that is compacted away lazily the next time the list is
+ * accessed by index. Slots past the last photo are holes too, and
+ * compaction fills a new array rather than shifting the ids in place, so
+ * {@link #copyPhotos()} can read the list from another thread.
+ * <p>
+ * The list is read-only through the {@link java.util.List} interface;
+ * use {@link #add(Photo)} and {@link #remove(Photo)} to change it.
+ * 
+ * @author Krish Patel, Darshan Surti
+ */
+public class AlbumPhotoList extends AbstractList<Photo> implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int HOLE = -1;
+    
+    private PhotoCatalog catalog;
+    private transient volatile int[] ids;
+    private transient int end;
+    private transient int size;
+    private transient IntIntMap positions;
+    
+    /**
+     * Creates an empty photo list backed by its own catalog.
+     * The list moves to its owner's catalog when the album is added to a user.
+     */
+    public AlbumPhotoList() {
+        this.catalog = new PhotoCatalog();
+        init(INITIAL_CAPACITY);
+    }
+    
+    /**
+     * Allocates empty storage for the given number of photos.
+     * 
+     * @param capacity the initial capacity
+     */
+    private void init(int capacity) {
+        ids = new int[Math.max(capacity, INITIAL_CAPACITY)];
+        Arrays.fill(ids, HOLE);
+        end = 0;
+        size = 0;
+        positions = new IntIntMap(capacity);
+    }
+    
+    /**
+     * Gets the catalog this list's ids refer to.
+     * 
+     * @return the photo catalog
+     */
+    public PhotoCatalog getCatalog() {
+        return catalog;
+    }
+    
+    /**
+     * Appends a photo to the end of the list.
+     * 
+     * @param photo the photo to add
+     * @return true if the photo was added, false if a photo with the same file path is already in the list
+     */
+    @Override
+    public boolean add(Photo photo) {
+        if (idOf(photo.getFilePath()) != HOLE) {
+            return false;
+        }
+        
+        append(catalog.acquire(photo));
+        return true;
+    }
+    
+    /**
+     * Gets the id of the photo in the list with the given file path.
+     * The catalog may hold other photos of the same file for other albums.
+     * 
+     * @param filePath the file path
+     * @return the photo's id, or {@code HOLE} if no photo in the list has that path
+     */
+    private int idOf(String filePath) {
+        for (int id : catalog.idsOf(filePath)) {
+            if (positions.containsKey(id)) {
+                return id;
+            }
+        }
+        return HOLE;
+    }
+    
+    /**
+     * Appends an id that has already been acquired from the catalog.
+     * 
+     * @param id the photo id
+     */
+    private void append(int id) {
+        if (end == ids.length) {
+            // Reclaim holes before growing
+            if (size < end) {
+                compact();
+            }
+            if (end == ids.length) {
+                int[] grown = Arrays.copyOf(ids, ids.length * 2);
+                Arrays.fill(grown, end, grown.length, HOLE);
+                ids = grown;
+            }
+        }
+        
+        positions.put(id, end);
+        ids[end++] = id;
+        size++;
+    }
+    
+    /**
+     * Removes the photo with a photo's file path from the list.
+     * 
+     * @param photo the photo to remove
+     * @return true if the photo was removed, false if no photo with its path was in the list
+     */
+    public boolean remove(Photo photo) {
+        int id = idOf(photo.getFilePath());
+        if (id == HOLE) {
+            return false;
+        }
+        int position = positions.remove(id, HOLE);
+        
+        ids[position] = HOLE;
+        size--;
+        catalog.release(id);
+        
+        // Removing from the tail needs no compaction later
+        while (end > 0 && ids[end - 1] == HOLE) {
+            end--;
+        }
+        return true;
+    }
+    
+    /**
+     * Determines if a photo with the given file path is in the list.
+     * 
+     * @param filePath the file path to look for
+     * @return true if the list contains a photo with that path
+     */
+    public boolean containsPath(String filePath) {
+        return idOf(filePath) != HOLE;
+    }
+    
+    /**
+     * Finds the photo with the given file path.
+     * 
+     * @param filePath the file path to look for
+     * @return the photo with that path, or null if it isn't in the list
+     */
+    public Photo findByPath(String filePath) {
+        int id = idOf(filePath);
+        return id == HOLE ? null : catalog.getPhoto(id);
+    }
+    
+    /**
+     * Determines if the photo with the given catalog id is in the list.
+     * 
+     * @param id the photo id
+     * @return true if the list contains the photo
+     */
+    public boolean containsId(int id) {
+        return id >= 0 && positions.containsKey(id);
+    }
+    
+    /**
+     * Copies the ids of the photos in the list, in order.
+     * 
+     * @return a new array of photo ids
+     */
+    public int[] toIdArray() {
+        compactIfNeeded();
+        int[] copy = new int[size];
+        System.arraycopy(ids, 0, copy, 0, size);
+        return copy;
+    }
+    
+    /**
+     * Copies the photos in the list, in order.
+     * This may be called while another thread changes the list; the copy
+     * is then only valid if the caller can tell that no change happened
+     * while it was made, as {@link Album} does with its epoch.
+     * 
+     * @return the photos, or null if a photo was missing because the list changed
+     */
+    Photo[] copyPhotos() {
+        int[] current = ids;
+        PhotoCatalog source = catalog;
+        Photo[] result = new Photo[current.length];
+        int count = 0;
+        for (int id : current) {
+            if (id != HOLE) {
+                Photo photo = source.photoAt(id);
+                if (photo == null) {
+                    return null;
+                }
+                result[count++] = photo;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+    
+    /**
+     * Moves this list onto another catalog, re-registering every photo with it
+     * and releasing them from the current one. Order is preserved.
+     * 
+     * @param target the catalog to move to
+     */
+    void moveTo(PhotoCatalog target) {
+        if (target == catalog) {
+            return;
+        }
+        
+        compactIfNeeded();
+        int[] oldIds = ids;
+        int count = size;
+        PhotoCatalog source = catalog;
+        
+        catalog = target;
+        init(count);
+        for (int i = 0; i < count; i++) {
+            append(target.acquire(source.getPhoto(oldIds[i])));
+            source.release(oldIds[i]);
+        }
+    }
+    
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof Photo && containsPath(((Photo) o).getFilePath());
+    }
+    
+    @Override
+    public int indexOf(Object o) {
+        if (!(o instanceof Photo)) {
+            return -1;
+        }
+        int id = idOf(((Photo) o).getFilePath());
+        if (id == HOLE) {
+            return -1;
+        }
+        compactIfNeeded();
+        return positions.get(id, -1);
+    }
+    
+    @Override
+    public int lastIndexOf(Object o) {
+        return indexOf(o);
+    }
+    
+    @Override
+    public Photo get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        compactIfNeeded();
+        return catalog.getPhoto(ids[index]);
+    }
+    
+    @Override
+    public int size() {
+        return size;
+    }
+    
+    @Override
+    public Iterator<Photo> iterator() {
+        // Walks the ids directly so iteration never forces a compaction
+        return new Iterator<Photo>() {
+            private int cursor = advance(0);
+            
+            private int advance(int from) {
+                while (from < end && ids[from] == HOLE) {
+                    from++;
+                }
+                return from;
+            }
+            
+            @Override
+            public boolean hasNext() {
+                return cursor < end;
+            }
+            
+            @Override
+            public Photo next() {
+                if (cursor >= end) {
+                    throw new NoSuchElementException();
+                }
+                Photo photo = catalog.getPhoto(ids[cursor]);
+                cursor = advance(cursor + 1);
+                return photo;
+            }
+        };
+    }
+    
+    /**
+     * Compacts the ids if any removals have left holes.
+     */
+    private void compactIfNeeded() {
+        if (size < end) {
+            compact();
+        }
+    }
+    
+    /**
+     * Copies the ids into a new array without the holes left by removals and
+     * updates their recorded positions. Readers of the old array still see
+     * the same photos in the same order.
+     */
+    private void compact() {
+        int[] current = ids;
+        int[] compacted = new int[current.length];
+        int write = 0;
+        for (int read = 0; read < end; read++) {
+            int id = current[read];
+            if (id != HOLE) {
+                compacted[write] = id;
+                if (write != read) {
+                    positions.put(id, write);
+                }
+                write++;
+            }
+        }
+        Arrays.fill(compacted, write, compacted.length, HOLE);
+        ids = compacted;
+        end = write;
+    }
+    
+    /**
+     * Writes the catalog reference and the ids in order, without the holes or the index.
+     * 
+     * @param out the stream to write to
+     * @throws IOException if there's an error writing
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        compactIfNeeded();
+        out.defaultWriteObject();
+        out.writeInt(size);
+        for (int i = 0; i < size; i++) {
+            out.writeInt(ids[i]);
+        }
+    }
+    
+    /**
+     * Reads the ids back in order and rebuilds the index.
+     * 
+     * @param in the stream to read from
+     * @throws IOException if there's an error reading
+     * @throws ClassNotFoundException if a class in the stream can't be found
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        int count = in.readInt();
+        init(count);
+        for (int i = 0; i < count; i++) {
+            int id = in.readInt();
+            positions.put(id, i);
+            ids[i] = id;
+        }
+        end = count;
+        size = count;
+    }
+}
\ No newline at end of file
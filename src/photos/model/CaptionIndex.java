@@ -0,0 +1,316 @@
+package photos.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Full-text index of the captions of a user's photos.
+ * Captions are normalized to lower-case words separated by single spaces,
+ * and every three-character sequence (trigram) of a normalized caption maps
+ * to the sorted ids of the photos whose captions contain it. A search for
+ * some text intersects the id lists of the text's trigrams and then checks
+ * the few remaining captions directly, instead of reading every caption.
+ * <p>
+ * The index belongs to the user's {@link PhotoCatalog} and is updated as
+ * photos enter or leave the catalog and as their captions change.
+ * 
+ * @author Krish Patel, Darshan Surti
+ */
+public class CaptionIndex {
+    
+    private static final int[] NO_IDS = new int[0];
+    
+    private String[] captions = new String[16];
+    private final Map<Long, PostingList> postings = new HashMap<>();
+    private int size;
+    
+    /**
+     * Normalizes text for indexing and searching: lower case, with each run
+     * of characters other than letters and digits replaced by one space.
+     * 
+     * @param text the text to normalize
+     * @return the normalized text, without leading or trailing spaces
+     */
+    public static String normalize(String text) {
+        StringBuilder sb = new StringBuilder(text.length());
+        boolean space = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                if (space && sb.length() > 0) {
+                    sb.append(' ');
+                }
+                sb.append(c);
+                space = false;
+            } else {
+                space = true;
+            }
+        }
+        return sb.toString().toLowerCase(Locale.ROOT);
+    }
+    
+    /**
+     * Indexes a photo's caption, replacing what was indexed for it before.
+     * 
+     * @param id the photo's catalog id
+     * @param caption the caption
+     */
+    void put(int id, String caption) {
+        remove(id);
+        String normalized = caption == null ? "" : normalize(caption);
+        if (normalized.isEmpty()) {
+            return;
+        }
+        
+        if (id >= captions.length) {
+            captions = Arrays.copyOf(captions, Math.max(captions.length * 2, id + 1));
+        }
+        captions[id] = normalized;
+        for (long trigram : trigrams(normalized)) {
+            postings.computeIfAbsent(trigram, key -> new PostingList()).add(id);
+        }
+        size++;
+    }
+    
+    /**
+     * Removes a photo's caption from the index.
+     * 
+     * @param id the photo's catalog id
+     */
+    void remove(int id) {
+        if (id >= captions.length || captions[id] == null) {
+            return;
+        }
+        
+        for (long trigram : trigrams(captions[id])) {
+            PostingList ids = postings.get(trigram);
+            if (ids != null && ids.remove(id) && ids.size() == 0) {
+                postings.remove(trigram);
+            }
+        }
+        captions[id] = null;
+        size--;
+    }
+    
+    /**
+     * Gets the number of indexed captions.
+     * 
+     * @return the number of photos with a non-empty caption
+     */
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * Finds the photos whose captions contain every word of some text.
+     * Words match anywhere in the caption, including inside longer words.
+     * 
+     * @param text the text to search for
+     * @return the matching photo ids in ascending order
+     */
+    public int[] find(String text) {
+        String[] words = words(text);
+        if (words.length == 0) {
+            return NO_IDS;
+        }
+        
+        // Collect the id lists of every trigram in the search words
+        List<PostingList> lists = new ArrayList<>();
+        for (String word : words) {
+            for (long trigram : trigrams(word)) {
+                PostingList ids = postings.get(trigram);
+                if (ids == null) {
+                    return NO_IDS;
+                }
+                lists.add(ids);
+            }
+        }
+        
+        int[] candidates;
+        int count;
+        if (lists.isEmpty()) {
+            // Only words shorter than a trigram; check every caption
+            candidates = new int[size];
+            count = 0;
+            for (int id = 0; id < captions.length; id++) {
+                if (captions[id] != null) {
+                    candidates[count++] = id;
+                }
+            }
+        } else {
+            // Start from the shortest list and narrow it with each longer one
+            lists.sort(Comparator.comparingInt(PostingList::size));
+            candidates = lists.get(0).toArray();
+            count = candidates.length;
+            for (int j = 1; j < lists.size() && count > 0; j++) {
+                count = lists.get(j).retainIn(candidates, count);
+            }
+        }
+        
+        // Trigrams can match in the wrong order, so confirm each word
+        int matched = 0;
+        for (int i = 0; i < count; i++) {
+            if (containsAll(captions[candidates[i]], words)) {
+                candidates[matched++] = candidates[i];
+            }
+        }
+        return Arrays.copyOf(candidates, matched);
+    }
+    
+    /**
+     * Finds the photos whose captions contain every word of some text, best matches first.
+     * Whole-word matches rank higher than matches inside words, and the
+     * text appearing as a phrase, at the start, or as the entire caption
+     * ranks higher still. Equal matches list shorter captions first, then
+     * older photos.
+     * 
+     * @param text the text to search for
+     * @return the matching photo ids, ranked
+     */
+    public int[] findRanked(String text) {
+        int[] ids = find(text);
+        String phrase = normalize(text);
+        String[] words = words(text);
+        
+        // Pack score and caption length into one sortable key per id
+        long[] keys = new long[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            long score = score(captions[ids[i]], phrase, words);
+            long length = Math.min(captions[ids[i]].length(), 0xFFFF);
+            keys[i] = ((0xFFFF - score) << 48) | (length << 32) | ids[i];
+        }
+        Arrays.sort(keys);
+        
+        for (int i = 0; i < keys.length; i++) {
+            ids[i] = (int) keys[i];
+        }
+        return ids;
+    }
+    
+    /**
+     * Scores how well a normalized caption matches a search.
+     * 
+     * @param caption the normalized caption
+     * @param phrase the normalized search text
+     * @param words the normalized search words
+     * @return the score, higher for better matches
+     */
+    private static int score(String caption, String phrase, String[] words) {
+        int score = 0;
+        if (caption.equals(phrase)) {
+            score += 8;
+        } else if (caption.startsWith(phrase)) {
+            score += 6;
+        } else if (caption.contains(phrase)) {
+            score += 4;
+        }
+        
+        for (String word : words) {
+            if (containsWord(caption, word)) {
+                score++;
+            }
+        }
+        return score;
+    }
+    
+    /**
+     * Determines if a word appears in a normalized caption as a whole word.
+     * 
+     * @param caption the normalized caption
+     * @param word the word
+     * @return true if the word appears between spaces or at either end
+     */
+    private static boolean containsWord(String caption, String word) {
+        int from = 0;
+        int at;
+        while ((at = caption.indexOf(word, from)) >= 0) {
+            int after = at + word.length();
+            if ((at == 0 || caption.charAt(at - 1) == ' ')
+                    && (after == caption.length() || caption.charAt(after) == ' ')) {
+                return true;
+            }
+            from = at + 1;
+        }
+        return false;
+    }
+    
+    /**
+     * Gets the normalized caption indexed for a photo.
+     * 
+     * @param id the photo's catalog id
+     * @return the normalized caption, or null if none is indexed
+     */
+    public String getCaption(int id) {
+        return id < captions.length ? captions[id] : null;
+    }
+    
+    /**
+     * Determines if a normalized caption contains every word of a search,
+     * the same way {@link #find(String)} does, for photos that aren't indexed.
+     * 
+     * @param caption the caption, not yet normalized
+     * @param text the text searched for
+     * @return true if every word of the text appears in the caption
+     */
+    public static boolean matches(String caption, String text) {
+        return containsAll(normalize(caption), words(text));
+    }
+    
+    /**
+     * Splits text into its normalized words.
+     * 
+     * @param text the text
+     * @return the words
+     */
+    private static String[] words(String text) {
+        String normalized = normalize(text);
+        return normalized.isEmpty() ? new String[0] : normalized.split(" ");
+    }
+    
+    /**
+     * Determines if a normalized caption contains all of the given words.
+     * 
+     * @param caption the normalized caption
+     * @param words the normalized words
+     * @return true if every word appears in the caption
+     */
+    private static boolean containsAll(String caption, String[] words) {
+        for (String word : words) {
+            if (!caption.contains(word)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Gets the distinct trigrams of a normalized string, each packed into a long.
+     * 
+     * @param text the normalized text
+     * @return the distinct trigrams
+     */
+    private static long[] trigrams(String text) {
+        if (text.length() < 3) {
+            return new long[0];
+        }
+        
+        long[] trigrams = new long[text.length() - 2];
+        for (int i = 0; i < trigrams.length; i++) {
+            trigrams[i] = ((long) text.charAt(i) << 32) | ((long) text.charAt(i + 1) << 16) | text.charAt(i + 2);
+        }
+        Arrays.sort(trigrams);
+        
+        int distinct = 1;
+        for (int i = 1; i < trigrams.length; i++) {
+            if (trigrams[i] != trigrams[distinct - 1]) {
+                trigrams[distinct++] = trigrams[i];
+            }
+        }
+        return Arrays.copyOf(trigrams, distinct);
+    }
+}
\ No newline at end of file
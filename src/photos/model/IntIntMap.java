@@ -0,0 +1,161 @@
+package photos.model;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from non-negative int keys to int values.
+ * Used where a {@code HashMap<Integer, Integer>} would box every entry,
+ * such as the per-album index from photo id to list position.
+ * 
+ * @author Krish Patel, Darshan Surti
+ */
+final class IntIntMap {
+    private static final int EMPTY = -1;
+    
+    private int[] keys;
+    private int[] values;
+    private int size;
+    
+    /**
+     * Creates an empty map sized for the given number of entries.
+     * 
+     * @param expectedSize the number of entries expected
+     */
+    IntIntMap(int expectedSize) {
+        int capacity = 8;
+        while (capacity * 3 / 4 < expectedSize) {
+            capacity <<= 1;
+        }
+        keys = new int[capacity];
+        values = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+    }
+    
+    /**
+     * Gets the value for a key.
+     * 
+     * @param key the key to look up
+     * @param missing the value to return if the key isn't present
+     * @return the value for the key, or {@code missing}
+     */
+    int get(int key, int missing) {
+        int slot = find(key);
+        return keys[slot] == EMPTY ? missing : values[slot];
+    }
+    
+    /**
+     * Determines if a key is present.
+     * 
+     * @param key the key to look up
+     * @return true if the map contains the key
+     */
+    boolean containsKey(int key) {
+        return keys[find(key)] != EMPTY;
+    }
+    
+    /**
+     * Associates a value with a key, replacing any previous value.
+     * 
+     * @param key the key, which must not be negative
+     * @param value the value
+     */
+    void put(int key, int value) {
+        int slot = find(key);
+        if (keys[slot] == EMPTY) {
+            keys[slot] = key;
+            size++;
+        }
+        values[slot] = value;
+        
+        if (size > keys.length * 3 / 4) {
+            rehash(keys.length << 1);
+        }
+    }
+    
+    /**
+     * Removes a key.
+     * 
+     * @param key the key to remove
+     * @param missing the value to return if the key isn't present
+     * @return the value that was associated with the key, or {@code missing}
+     */
+    int remove(int key, int missing) {
+        int slot = find(key);
+        if (keys[slot] == EMPTY) {
+            return missing;
+        }
+        int removed = values[slot];
+        keys[slot] = EMPTY;
+        size--;
+        
+        // Shift later entries of the same probe run back into the gap
+        int mask = keys.length - 1;
+        int gap = slot;
+        int next = (gap + 1) & mask;
+        while (keys[next] != EMPTY) {
+            int home = mix(keys[next]) & mask;
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                keys[next] = EMPTY;
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        return removed;
+    }
+    
+    /**
+     * Gets the number of entries.
+     * 
+     * @return the number of entries
+     */
+    int size() {
+        return size;
+    }
+    
+    /**
+     * Finds the slot holding a key, or the empty slot where it would go.
+     * 
+     * @param key the key
+     * @return the slot index
+     */
+    private int find(int key) {
+        int mask = keys.length - 1;
+        int slot = mix(key) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+    
+    /**
+     * Moves all entries into tables of a new capacity.
+     * 
+     * @param capacity the new capacity, a power of two
+     */
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new int[capacity];
+        values = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+    
+    /**
+     * Spreads sequential ids across the table.
+     * 
+     * @param key the key
+     * @return the mixed hash
+     */
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
\ No newline at end of file
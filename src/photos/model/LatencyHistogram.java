@@ -0,0 +1,151 @@
+package photos.model;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A thread-safe histogram of non-negative long values, such as durations in
+ * microseconds or sizes in bytes.
+ * <p>
+ * Values are counted in buckets that split each power of two into 32 equal
+ * parts, so any percentile is reported within about 3% of the true value
+ * while the histogram stays a fixed couple of thousand counters however
+ * many values it sees or how far apart they are. Recording is lock-free.
+ * 
+ * @author Krish Patel, Darshan Surti
+ */
+public class LatencyHistogram {
+    
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+    
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+    
+    /**
+     * Records a value. Negative values are recorded as zero.
+     * 
+     * @param value the value
+     */
+    public void record(long value) {
+        value = Math.max(value, 0);
+        counts.incrementAndGet(bucketOf(value));
+        count.increment();
+        sum.add(value);
+        min.accumulateAndGet(value, Math::min);
+        max.accumulateAndGet(value, Math::max);
+    }
+    
+    /**
+     * Records the microseconds elapsed since a {@link System#nanoTime()} reading.
+     * 
+     * @param startNanos the reading taken when the timed work started
+     */
+    public void recordMicrosSince(long startNanos) {
+        record((System.nanoTime() - startNanos) / 1000);
+    }
+    
+    /**
+     * Gets the number of values recorded.
+     * 
+     * @return the count
+     */
+    public long getCount() {
+        return count.sum();
+    }
+    
+    /**
+     * Gets the smallest value recorded.
+     * 
+     * @return the minimum, or 0 if nothing has been recorded
+     */
+    public long getMin() {
+        return getCount() == 0 ? 0 : min.get();
+    }
+    
+    /**
+     * Gets the largest value recorded.
+     * 
+     * @return the maximum, or 0 if nothing has been recorded
+     */
+    public long getMax() {
+        return getCount() == 0 ? 0 : max.get();
+    }
+    
+    /**
+     * Gets the mean of the values recorded.
+     * 
+     * @return the mean, or 0 if nothing has been recorded
+     */
+    public double getMean() {
+        long n = getCount();
+        return n == 0 ? 0 : (double) sum.sum() / n;
+    }
+    
+    /**
+     * Gets the value below which the given percentage of recorded values fall.
+     * 
+     * @param percentile the percentile, from 0 to 100
+     * @return the largest value in the percentile's bucket, never above the
+     *         maximum recorded; 0 if nothing has been recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+        long total = 0;
+        long[] snapshot = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        
+        long target = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= target) {
+                return Math.min(highestValueIn(i), getMax());
+            }
+        }
+        return getMax();
+    }
+    
+    /**
+     * Finds the bucket a value is counted in.
+     * Values below 32 get a bucket each; above that, each power of two is
+     * split into 32 buckets using the bits after the leading one.
+     * 
+     * @param value the non-negative value
+     * @return the bucket index
+     */
+    private static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+    
+    /**
+     * Gets the largest value counted in a bucket.
+     * 
+     * @param bucket the bucket index
+     * @return the bucket's upper bound
+     */
+    private static long highestValueIn(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << (exponent - SUB_BUCKET_BITS);
+        return lowest + width - 1;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,206 @@
+package photos.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * A search that runs over a user's photos in the background while the user types.
+ * Matches are handed to a {@link SearchResultListener} in small groups as the
+ * scan finds them, so the first results can be shown before the scan finishes.
+ * <p>
+ * A search is cancelled cooperatively: {@link #cancel()} sets a flag that the
+ * scan checks before each photo, so a search made stale by the next keystroke
+ * stops within one photo and frees the search thread for the new query.
+ * <p>
+ * Starting a search only checks the cache and hands the search to the
+ * search thread, so it can be called on the JavaFX thread on every
+ * keystroke. The search thread picks the photos to search: the ranked
+ * matches from the caption index if the query has a caption term, the
+ * photos the tag index finds if it has tag terms, and otherwise every photo
+ * in the user's catalog. The scan then only reads those photos'
+ * tags, captions, dates, and file names, holding the user's read lock for
+ * a slice of photos at a time so edits made while the search runs wait at
+ * most one slice. Completed searches are stored in the
+ * {@link SearchUtil#getCache() search cache}, and a query already in the
+ * cache is answered from it in one group.
+ * 
+ * @author Krish Patel, Darshan Surti
+ */
+public class LiveSearch {
+    
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "photos-search");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    /** Matches collected before the first group is handed over. */
+    private static final int FIRST_GROUP_SIZE = 32;
+    
+    /** Matches collected before each later group is handed over. */
+    private static final int GROUP_SIZE = 512;
+    
+    /** How long matches may wait before being handed over, in nanoseconds. */
+    private static final long MAX_WAIT_NANOS = 10_000_000L;
+    
+    /** How many photos are scanned between checks of the clock. */
+    private static final int CLOCK_CHECK_INTERVAL = 1024;
+    
+    private final User user;
+    private final SearchQuery query;
+    private final SearchResultListener listener;
+    private final long requested = System.nanoTime();
+    private volatile boolean cancelled;
+    
+    /**
+     * Creates a search.
+     * 
+     * @param user the user being searched
+     * @param query the query to run
+     * @param listener the listener for results
+     */
+    private LiveSearch(User user, SearchQuery query, SearchResultListener listener) {
+        this.user = user;
+        this.query = query;
+        this.listener = listener;
+    }
+    
+    /**
+     * Starts searching a user's photos in the background.
+     * Each distinct photo is reported once, however many albums contain it,
+     * in the same order as {@link SearchUtil#search(User, SearchQuery)}.
+     * 
+     * @param user the user whose photos to search
+     * @param query the query to run
+     * @param listener the listener for results
+     * @return the running search, which can be cancelled
+     */
+    public static LiveSearch start(User user, SearchQuery query, SearchResultListener listener) {
+        LiveSearch search = new LiveSearch(user, query, listener);
+        List<Photo> cached = SearchUtil.getCache().get(user, query);
+        if (cached != null) {
+            EXECUTOR.execute(() -> search.replay(cached));
+        } else {
+            EXECUTOR.execute(search::run);
+        }
+        return search;
+    }
+    
+    /**
+     * Cancels the search. No further results are reported once the scan notices.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+    
+    /**
+     * Determines if the search has been cancelled.
+     * 
+     * @return true if {@link #cancel()} has been called
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+    
+    /**
+     * Gets the query this search is running.
+     * 
+     * @return the query
+     */
+    public SearchQuery getQuery() {
+        return query;
+    }
+    
+    /**
+     * Hands over results found by an earlier search in one group.
+     * 
+     * @param photos the earlier search's results
+     */
+    private void replay(List<Photo> photos) {
+        if (cancelled) {
+            return;
+        }
+        if (!photos.isEmpty()) {
+            listener.resultsFound(photos);
+        }
+        listener.searchFinished(photos.size());
+    }
+    
+    /**
+     * Picks the photos to search and scans them, handing matches to the
+     * listener in groups, and caches the complete results.
+     */
+    private void run() {
+        if (cancelled) {
+            return;
+        }
+        
+        List<Photo> found = new ArrayList<>();
+        List<Photo> group = new ArrayList<>();
+        int groupSize = FIRST_GROUP_SIZE;
+        boolean captionChecked = query.hasCaptionTerm();
+        long start = System.nanoTime();
+        long lastHandOver = start;
+        boolean handedOver = false;
+        SearchEvent event = new SearchEvent();
+        event.begin();
+        Lock lock = user.getLock().readLock();
+        lock.lock();
+        
+        try {
+            long version = user.getVersion();
+            List<Photo> photos = SearchUtil.getCandidates(user, query);
+            for (int i = 0; i < photos.size(); i++) {
+                if (cancelled) {
+                    return;
+                }
+                
+                Photo photo = photos.get(i);
+                if (query.matches(photo, captionChecked)) {
+                    found.add(photo);
+                    group.add(photo);
+                }
+                
+                // Let waiting edits in between slices
+                if ((i + 1) % CLOCK_CHECK_INTERVAL == 0) {
+                    lock.unlock();
+                    lock.lock();
+                }
+                
+                boolean full = group.size() >= groupSize;
+                boolean waited = (i + 1) % CLOCK_CHECK_INTERVAL == 0 && !group.isEmpty()
+                        && System.nanoTime() - lastHandOver >= MAX_WAIT_NANOS;
+                if (full || waited) {
+                    if (!handedOver) {
+                        // Timed from the keystroke, including any wait for the previous search to stop
+                        Metrics.histogram("search.live.firstResults.micros").recordMicrosSince(requested);
+                        handedOver = true;
+                    }
+                    listener.resultsFound(group);
+                    group = new ArrayList<>();
+                    groupSize = GROUP_SIZE;
+                    lastHandOver = System.nanoTime();
+                }
+            }
+            
+            if (cancelled) {
+                return;
+            }
+            if (!group.isEmpty()) {
+                listener.resultsFound(group);
+            }
+            SearchUtil.getCache().put(user, query, version, found);
+            Metrics.histogram("search.live.micros").recordMicrosSince(start);
+            Metrics.histogram("search.results").record(found.size());
+            SearchUtil.commit(event, "live", query::getNormalized, photos.size(), found.size(), false);
+            listener.searchFinished(found.size());
+        } catch (RuntimeException e) {
+            System.err.println("Error during search: " + e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+}
\ No newline at end of file
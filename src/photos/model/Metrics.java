@@ -0,0 +1,220 @@
+package photos.model;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Registry of the application's metrics: counters, gauges and histograms,
+ * identified by dotted names such as {@code users.save.micros}.
+ * Names end in the unit of what they measure.
+ * <p>
+ * Metrics are created the first time they are asked for, so code records
+ * into them without any setup. They can be watched in a running
+ * application with JDK tools such as JConsole, under the
+ * {@code photos:type=Metrics} MBean, and are written to a log file at a
+ * fixed interval.
+ * 
+ * @author Krish Patel, Darshan Surti
+ */
+public class Metrics {
+    
+    /** The name the metrics MBean is registered under. */
+    public static final String OBJECT_NAME = "photos:type=Metrics";
+    
+    private static final double[] PERCENTILES = { 50, 90, 99, 99.9 };
+    private static final long MAX_LOG_BYTES = 5 * 1024 * 1024;
+    
+    private static final Map<String, Counter> COUNTERS = new ConcurrentHashMap<>();
+    private static final Map<String, DoubleSupplier> GAUGES = new ConcurrentHashMap<>();
+    private static final Map<String, LatencyHistogram> HISTOGRAMS = new ConcurrentHashMap<>();
+    private static ScheduledExecutorService logger;
+    
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private Metrics() {
+    }
+    
+    /**
+     * Gets a counter, creating it if needed.
+     * 
+     * @param name the counter's name
+     * @return the counter
+     */
+    public static Counter counter(String name) {
+        return COUNTERS.computeIfAbsent(name, key -> new Counter());
+    }
+    
+    /**
+     * Gets a histogram, creating it if needed.
+     * 
+     * @param name the histogram's name
+     * @return the histogram
+     */
+    public static LatencyHistogram histogram(String name) {
+        return HISTOGRAMS.computeIfAbsent(name, key -> new LatencyHistogram());
+    }
+    
+    /**
+     * Registers a gauge, replacing any earlier gauge with the same name.
+     * 
+     * @param name the gauge's name
+     * @param gauge reads the gauge's current value
+     */
+    public static void gauge(String name, DoubleSupplier gauge) {
+        GAUGES.put(name, gauge);
+    }
+    
+    /**
+     * Reads every metric. Each histogram appears as several values: its
+     * count, mean, maximum and percentiles, as in {@code search.query.micros.p99}.
+     * 
+     * @return the current values, sorted by name
+     */
+    public static SortedMap<String, Number> snapshot() {
+        SortedMap<String, Number> values = new TreeMap<>();
+        for (Map.Entry<String, Counter> entry : COUNTERS.entrySet()) {
+            values.put(entry.getKey(), entry.getValue().get());
+        }
+        for (Map.Entry<String, DoubleSupplier> entry : GAUGES.entrySet()) {
+            try {
+                values.put(entry.getKey(), entry.getValue().getAsDouble());
+            } catch (RuntimeException e) {
+                System.err.println("Error reading gauge " + entry.getKey() + ": " + e.getMessage());
+            }
+        }
+        for (Map.Entry<String, LatencyHistogram> entry : HISTOGRAMS.entrySet()) {
+            String name = entry.getKey();
+            LatencyHistogram histogram = entry.getValue();
+            values.put(name + ".count", histogram.getCount());
+            values.put(name + ".mean", histogram.getMean());
+            values.put(name + ".max", histogram.getMax());
+            for (double percentile : PERCENTILES) {
+                String label = percentile == Math.rint(percentile)
+                        ? String.valueOf((int) percentile) : String.valueOf(percentile).replace('.', '_');
+                values.put(name + ".p" + label, histogram.getValueAtPercentile(percentile));
+            }
+        }
+        return values;
+    }
+    
+    /**
+     * Registers the metrics with the platform MBean server so JMX tools can read them.
+     * Does nothing if they are already registered.
+     */
+    public static void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(new MetricsMBean(), name);
+            }
+        } catch (JMException e) {
+            System.err.println("Error registering metrics MBean: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Starts appending all metrics to a log file at a fixed interval, on a
+     * background thread. Replaces any logging started earlier.
+     * 
+     * @param file the file to append to
+     * @param periodSeconds the seconds between entries
+     */
+    public static synchronized void startLogging(File file, long periodSeconds) {
+        stopLogging();
+        logger = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "photos-metrics-log");
+            thread.setDaemon(true);
+            return thread;
+        });
+        logger.scheduleAtFixedRate(() -> writeLog(file), periodSeconds, periodSeconds, TimeUnit.SECONDS);
+    }
+    
+    /**
+     * Stops periodic logging, if it was started.
+     */
+    public static synchronized void stopLogging() {
+        if (logger != null) {
+            logger.shutdown();
+            logger = null;
+        }
+    }
+    
+    /**
+     * Appends the current metrics to a log file, one line per metric
+     * under a timestamp. Once the file passes 5 MB it is renamed with a
+     * {@code .1} suffix, replacing the previous one, and a new file started.
+     * 
+     * @param file the file to append to
+     */
+    public static void writeLog(File file) {
+        File dir = file.getParentFile();
+        if (dir != null && !dir.exists()) {
+            dir.mkdirs();
+        }
+        if (file.length() > MAX_LOG_BYTES) {
+            File previous = new File(file.getPath() + ".1");
+            previous.delete();
+            file.renameTo(previous);
+        }
+        
+        try (PrintWriter out = new PrintWriter(new FileWriter(file, true))) {
+            out.println("# " + LocalDateTime.now());
+            for (Map.Entry<String, Number> entry : snapshot().entrySet()) {
+                out.println(entry.getKey() + " " + entry.getValue());
+            }
+        } catch (IOException e) {
+            System.err.println("Error writing metrics log: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * A count that only goes up, such as the number of failed saves.
+     */
+    public static class Counter {
+        private final LongAdder count = new LongAdder();
+        
+        /**
+         * Adds one to the count.
+         */
+        public void increment() {
+            count.increment();
+        }
+        
+        /**
+         * Adds to the count.
+         * 
+         * @param amount the amount to add
+         */
+        public void add(long amount) {
+            count.add(amount);
+        }
+        
+        /**
+         * Gets the count.
+         * 
+         * @return the current count
+         */
+        public long get() {
+            return count.sum();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,19 @@
+package photos.model;
+
+import java.util.List;
+
+/**
+ * Receives model changes in batches, on an executor chosen at subscription time.
+ * Each batch holds every change published since the previous batch, in order.
+ * 
+ * @author Krish Patel, Darshan Surti
+ */
+public interface ModelBatchListener {
+    
+    /**
+     * Called with the changes accumulated since the last call.
+     * 
+     * @param events the changes, oldest first; never empty
+     */
+    void modelChanged(List<ModelEvent> events);
+}
\ No newline at end of file
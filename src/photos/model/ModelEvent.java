@@ -0,0 +1,189 @@
+package photos.model;
+
+/**
+ * Describes a single change to the photo model.
+ * Events are published on a {@link ModelEventBus} after the change has been applied.
+ * Fields that don't apply to an event's type are null.
+ * 
+ * @author Krish Patel, Darshan Surti
+ */
+public class ModelEvent {
+    
+    /**
+     * The kinds of change the model reports.
+     */
+    public enum Type {
+        /** A user was created. */
+        USER_ADDED,
+        /** A user was deleted. */
+        USER_DELETED,
+        /** An album was added to a user. */
+        ALBUM_ADDED,
+        /** An album was removed from a user. */
+        ALBUM_REMOVED,
+        /** An album was renamed; the old name is the old value. */
+        ALBUM_RENAMED,
+        /** A photo was added to an album. */
+        PHOTO_ADDED,
+        /** A photo was removed from an album. */
+        PHOTO_REMOVED,
+        /** A photo's caption changed; the old caption is the old value. */
+        CAPTION_CHANGED,
+        /** A tag was added to a photo. */
+        TAG_ADDED,
+        /** A tag was removed from a photo. */
+        TAG_REMOVED
+    }
+    
+    private final Type type;
+    private final String username;
+    private final User user;
+    private final Album album;
+    private final Photo photo;
+    private final Tag tag;
+    private final String oldValue;
+    
+    /**
+     * Creates a new event.
+     * 
+     * @param type the kind of change
+     * @param username the username of the user whose data changed
+     * @param user the user whose data changed
+     * @param album the album involved, or null
+     * @param photo the photo involved, or null
+     * @param tag the tag involved, or null
+     * @param oldValue the previous name or caption, or null
+     */
+    ModelEvent(Type type, String username, User user, Album album, Photo photo, Tag tag, String oldValue) {
+        this.type = type;
+        this.username = username;
+        this.user = user;
+        this.album = album;
+        this.photo = photo;
+        this.tag = tag;
+        this.oldValue = oldValue;
+    }
+    
+    /**
+     * Gets the kind of change.
+     * 
+     * @return the event type
+     */
+    public Type getType() {
+        return type;
+    }
+    
+    /**
+     * Gets the username of the user whose data changed.
+     * 
+     * @return the username
+     */
+    public String getUsername() {
+        return username;
+    }
+    
+    /**
+     * Gets the user whose data changed.
+     * 
+     * @return the user
+     */
+    public User getUser() {
+        return user;
+    }
+    
+    /**
+     * Gets the album involved in the change.
+     * 
+     * @return the album, or null
+     */
+    public Album getAlbum() {
+        return album;
+    }
+    
+    /**
+     * Gets the photo involved in the change.
+     * 
+     * @return the photo, or null
+     */
+    public Photo getPhoto() {
+        return photo;
+    }
+    
+    /**
+     * Gets the tag involved in the change.
+     * 
+     * @return the tag, or null
+     */
+    public Tag getTag() {
+        return tag;
+    }
+    
+    /**
+     * Gets the previous value for renames and caption changes.
+     * 
+     * @return the old album name or caption, or null
+     */
+    public String getOldValue() {
+        return oldValue;
+    }
+    
+    /**
+     * Reverses the change this event describes, publishing the reverse as a new event.
+     * Used to roll back a {@link UserManager#runBatch(User, Runnable) batch} that
+     * failed partway. A photo or album put back goes at the end of its list.
+     */
+    void undo() {
+        switch (type) {
+            case ALBUM_ADDED:
+                user.removeAlbum(album);
+                break;
+            case ALBUM_REMOVED:
+                user.addAlbum(album);
+                break;
+            case ALBUM_RENAMED:
+                user.renameAlbum(album, oldValue);
+                break;
+            case PHOTO_ADDED:
+                album.removePhoto(photo);
+                break;
+            case PHOTO_REMOVED:
+                album.addPhoto(photo);
+                break;
+            case CAPTION_CHANGED:
+                photo.setCaption(oldValue);
+                break;
+            case TAG_ADDED:
+                photo.removeTag(tag);
+                break;
+            case TAG_REMOVED:
+                photo.addTag(tag);
+                break;
+            default:
+                // Users are added and removed by the manager, never inside a batch
+                break;
+        }
+    }
+    
+    /**
+     * Returns a string representation of this event.
+     * 
+     * @return a string describing the change
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(type.name()).append(" user=").append(username);
+        if (album != null) {
+            sb.append(" album=").append(album.getName());
+        }
+        if (photo != null) {
+            sb.append(" photo=").append(photo.getFilePath());
+        }
+        if (tag != null) {
+            sb.append(" tag=").append(tag);
+        }
+        if (oldValue != null) {
+            sb.append(" old=").append(oldValue);
+        }
+        return sb.toString();
+    }
+}
\ No newline at end of file
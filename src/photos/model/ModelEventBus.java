@@ -0,0 +1,244 @@
+package photos.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Delivers {@link ModelEvent}s to interested consumers.
+ * Each {@link User} has a bus for changes to its albums and photos, and the
+ * {@link UserManager} has one that carries user creation and deletion plus
+ * every user's changes.
+ * <p>
+ * Synchronous listeners run on the publishing thread before the mutating
+ * call returns. Batched listeners run on their own executor and receive all
+ * events published since their previous batch, so a burst of changes costs
+ * them a single call.
+ * <p>
+ * Between {@link #beginBatch()} and {@link #endBatch()} events are held back
+ * and delivered together when the outermost batch ends, so listeners observe
+ * a multi-item change only once it is complete.
+ * 
+ * @author Krish Patel, Darshan Surti
+ */
+public class ModelEventBus {
+    
+    private static final ExecutorService DEFAULT_EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "photos-model-events");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    private final List<ModelListener> listeners = new CopyOnWriteArrayList<>();
+    private final List<BatchSubscription> batchSubscriptions = new CopyOnWriteArrayList<>();
+    private final List<ModelEvent> held = new ArrayList<>();
+    private int batchDepth;
+    
+    /**
+     * Subscribes a listener to be called synchronously for each event.
+     * 
+     * @param listener the listener to add
+     */
+    public void subscribe(ModelListener listener) {
+        listeners.add(listener);
+    }
+    
+    /**
+     * Removes a synchronous listener.
+     * 
+     * @param listener the listener to remove
+     */
+    public void unsubscribe(ModelListener listener) {
+        listeners.remove(listener);
+    }
+    
+    /**
+     * Subscribes a listener to receive events in batches on the shared background event thread.
+     * 
+     * @param listener the listener to add
+     */
+    public void subscribeBatched(ModelBatchListener listener) {
+        subscribeBatched(listener, DEFAULT_EXECUTOR);
+    }
+    
+    /**
+     * Subscribes a listener to receive events in batches on the given executor.
+     * Passing {@code Platform::runLater} delivers batches on the JavaFX thread.
+     * 
+     * @param listener the listener to add
+     * @param executor the executor that runs the listener
+     */
+    public void subscribeBatched(ModelBatchListener listener, Executor executor) {
+        batchSubscriptions.add(new BatchSubscription(listener, executor));
+    }
+    
+    /**
+     * Removes a batched listener. Events already queued for it are dropped.
+     * 
+     * @param listener the listener to remove
+     */
+    public void unsubscribeBatched(ModelBatchListener listener) {
+        for (BatchSubscription subscription : batchSubscriptions) {
+            if (subscription.listener == listener) {
+                batchSubscriptions.remove(subscription);
+                subscription.cancelled = true;
+            }
+        }
+    }
+    
+    /**
+     * Starts holding back events until the matching {@link #endBatch()}.
+     * Batches nest; events are released when the outermost batch ends.
+     */
+    public void beginBatch() {
+        batchDepth++;
+    }
+    
+    /**
+     * Ends a batch started with {@link #beginBatch()}, delivering the held
+     * events if this was the outermost batch.
+     */
+    public void endBatch() {
+        if (batchDepth == 0) {
+            throw new IllegalStateException("endBatch without beginBatch");
+        }
+        if (--batchDepth > 0 || held.isEmpty()) {
+            return;
+        }
+        
+        List<ModelEvent> events = new ArrayList<>(held);
+        held.clear();
+        for (ModelEvent event : events) {
+            deliver(event);
+        }
+    }
+    
+    /**
+     * Gets the number of events held back so far, to mark where a batch began.
+     * 
+     * @return the number of held events
+     */
+    int heldCount() {
+        return held.size();
+    }
+    
+    /**
+     * Undoes the changes whose events were held back after a mark, newest
+     * first, and drops those events so they are never delivered.
+     * 
+     * @param mark the held count when the failed batch began
+     */
+    void undoHeldSince(int mark) {
+        List<ModelEvent> changes = new ArrayList<>(held.subList(mark, held.size()));
+        for (int i = changes.size() - 1; i >= 0; i--) {
+            try {
+                changes.get(i).undo();
+            } catch (RuntimeException e) {
+                System.err.println("Error undoing " + changes.get(i) + ": " + e.getMessage());
+                e.printStackTrace();
+            }
+        }
+        // The undo published events of its own; none of them are news to listeners
+        held.subList(mark, held.size()).clear();
+    }
+    
+    /**
+     * Determines if a batch is in progress.
+     * 
+     * @return true if events are currently being held back
+     */
+    public boolean isInBatch() {
+        return batchDepth > 0;
+    }
+    
+    /**
+     * Publishes an event to all subscribers, or holds it if a batch is in progress.
+     * 
+     * @param event the event to publish
+     */
+    void publish(ModelEvent event) {
+        if (batchDepth > 0) {
+            held.add(event);
+        } else {
+            deliver(event);
+        }
+    }
+    
+    /**
+     * Delivers an event to all subscribers.
+     * A listener that throws is reported and does not stop delivery to the others.
+     * 
+     * @param event the event to deliver
+     */
+    private void deliver(ModelEvent event) {
+        for (ModelListener listener : listeners) {
+            try {
+                listener.modelChanged(event);
+            } catch (RuntimeException e) {
+                System.err.println("Error in model listener: " + e.getMessage());
+            }
+        }
+        
+        for (BatchSubscription subscription : batchSubscriptions) {
+            subscription.enqueue(event);
+        }
+    }
+    
+    /**
+     * A batched listener with its pending events.
+     */
+    private static class BatchSubscription {
+        private final ModelBatchListener listener;
+        private final Executor executor;
+        private final Queue<ModelEvent> pending = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private volatile boolean cancelled;
+        
+        BatchSubscription(ModelBatchListener listener, Executor executor) {
+            this.listener = listener;
+            this.executor = executor;
+        }
+        
+        /**
+         * Queues an event and schedules a delivery if one isn't already pending.
+         * 
+         * @param event the event to queue
+         */
+        void enqueue(ModelEvent event) {
+            pending.add(event);
+            if (scheduled.compareAndSet(false, true)) {
+                executor.execute(this::drain);
+            }
+        }
+        
+        /**
+         * Delivers everything queued so far as one batch.
+         */
+        private void drain() {
+            // Clear the flag first so events queued during delivery schedule another batch
+            scheduled.set(false);
+            
+            List<ModelEvent> batch = new ArrayList<>();
+            ModelEvent event;
+            while ((event = pending.poll()) != null) {
+                batch.add(event);
+            }
+            
+            if (batch.isEmpty() || cancelled) {
+                return;
+            }
+            
+            try {
+                listener.modelChanged(batch);
+            } catch (RuntimeException e) {
+                System.err.println("Error in batched model listener: " + e.getMessage());
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,16 @@
+package photos.model;
+
+/**
+ * Receives model changes one at a time, on the thread that made the change.
+ * 
+ * @author Krish Patel, Darshan Surti
+ */
+public interface ModelListener {
+    
+    /**
+     * Called after a change has been applied to the model.
+     * 
+     * @param event the change
+     */
+    void modelChanged(ModelEvent event);
+}
\ No newline at end of file
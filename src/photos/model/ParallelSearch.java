@@ -0,0 +1,256 @@
+package photos.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Runs searches on a fork/join pool, splitting the photos to check into
+ * ranges that are scanned on different cores.
+ * <p>
+ * A user's photos are split by position in their {@link PhotoCatalog}
+ * rather than by album, so every photo is checked once however many albums
+ * contain it and the results need no de-duplication. Each range marks its
+ * matches in a shared array, and the marked photos are collected in
+ * catalog order afterwards, so the results are the same, in the same order,
+ * as a sequential search. Searches smaller than the threshold run
+ * sequentially on the calling thread, where splitting would cost more than
+ * it saves.
+ * <p>
+ * The photos to check are copied on the calling thread before the search
+ * is split, so the pool threads only read photos' tags, captions and dates.
+ * 
+ * @author Krish Patel, Darshan Surti
+ */
+public class ParallelSearch {
+    
+    /** The default number of photos below which a range is scanned without splitting further. */
+    public static final int DEFAULT_THRESHOLD = 8192;
+    
+    private static final ParallelSearch DEFAULT = new ParallelSearch(ForkJoinPool.commonPool(), DEFAULT_THRESHOLD);
+    
+    private final ForkJoinPool pool;
+    private final int threshold;
+    
+    /**
+     * Creates a search engine.
+     * 
+     * @param pool the pool to run on
+     * @param threshold the number of photos below which a range is scanned sequentially
+     */
+    public ParallelSearch(ForkJoinPool pool, int threshold) {
+        this.pool = pool;
+        this.threshold = Math.max(1, threshold);
+    }
+    
+    /**
+     * Gets the engine used by {@link SearchUtil}, which runs on the common fork/join pool.
+     * 
+     * @return the default engine
+     */
+    public static ParallelSearch getDefault() {
+        return DEFAULT;
+    }
+    
+    /**
+     * Gets the pool this engine runs on.
+     * 
+     * @return the fork/join pool
+     */
+    public ForkJoinPool getPool() {
+        return pool;
+    }
+    
+    /**
+     * Searches a user's photos. Results are not cached; use
+     * {@link SearchUtil#search(User, SearchQuery)} for cached searches.
+     * 
+     * @param user the user whose photos to search
+     * @param query the query
+     * @return the matching photos, in the same order as {@link SearchUtil#search(User, SearchQuery)}
+     */
+    public List<Photo> search(User user, SearchQuery query) {
+        return filter(SearchUtil.getCandidates(user, query), query);
+    }
+    
+    /**
+     * Searches every user's photos.
+     * Each user's read lock is held only while that user is searched, so
+     * changes to the other users go ahead meanwhile. Users with fewer photos
+     * than the threshold are searched side by side, one task per user, and
+     * larger users one after another, each split across the pool. A thread
+     * holding one user's lock never waits on work that takes another's, so
+     * the search can't deadlock with changes waiting for those locks.
+     * Cached results are reused where they are current.
+     * 
+     * @param users the users to search
+     * @param query the query
+     * @return each user's matching photos by username, in username order; users with no matches are left out
+     */
+    public Map<String, List<Photo>> searchAllUsers(Collection<User> users, SearchQuery query) {
+        List<UserSearch> small = new ArrayList<>();
+        List<UserSearch> large = new ArrayList<>();
+        int smallPhotos = 0;
+        for (User user : users) {
+            // Read without the lock; a stale size only moves the user to the other group
+            int size = user.getCatalog().size();
+            if (size < threshold) {
+                small.add(new UserSearch(user, query, false));
+                smallPhotos += size;
+            } else {
+                large.add(new UserSearch(user, query, true));
+            }
+        }
+        
+        if (smallPhotos < threshold || pool.getParallelism() == 1) {
+            for (UserSearch search : small) {
+                search.compute();
+            }
+        } else {
+            pool.invoke(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    invokeAll(small);
+                }
+            });
+        }
+        for (UserSearch search : large) {
+            search.compute();
+        }
+        
+        Map<String, List<Photo>> results = new TreeMap<>();
+        for (List<UserSearch> searches : List.of(small, large)) {
+            for (UserSearch search : searches) {
+                if (!search.results.isEmpty()) {
+                    results.put(search.user.getUsername(), search.results);
+                }
+            }
+        }
+        return results;
+    }
+    
+    /**
+     * Keeps the photos that match a query, splitting the work if there are enough of them.
+     * 
+     * @param candidates the photos to check, each once
+     * @param query the query
+     * @return the matching photos, in candidate order
+     */
+    List<Photo> filter(List<Photo> candidates, SearchQuery query) {
+        return filter(candidates, query, true);
+    }
+    
+    /**
+     * Keeps the photos that match a query.
+     * 
+     * @param candidates the photos to check, each once
+     * @param query the query
+     * @param split true to split the work if there are enough photos, false to check them all on this thread
+     * @return the matching photos, in candidate order
+     */
+    private List<Photo> filter(List<Photo> candidates, SearchQuery query, boolean split) {
+        Photo[] photos = candidates.toArray(new Photo[0]);
+        // Candidates from the caption index already match the caption term
+        boolean captionChecked = query.hasCaptionTerm();
+        boolean[] matched = new boolean[photos.length];
+        
+        RangeScan scan = new RangeScan(photos, matched, query, captionChecked, 0, photos.length);
+        if (!split || photos.length < threshold || pool.getParallelism() == 1) {
+            scan.compute();
+        } else if (ForkJoinTask.getPool() == pool) {
+            // Already running in this pool
+            scan.invoke();
+        } else {
+            pool.invoke(scan);
+        }
+        
+        List<Photo> results = new ArrayList<>();
+        for (int i = 0; i < photos.length; i++) {
+            if (matched[i]) {
+                results.add(photos[i]);
+            }
+        }
+        return results;
+    }
+    
+    /**
+     * Checks a range of photos, splitting it in half until the halves are below the threshold.
+     */
+    private class RangeScan extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        
+        private final Photo[] photos;
+        private final boolean[] matched;
+        private final SearchQuery query;
+        private final boolean captionChecked;
+        private final int from;
+        private final int to;
+        
+        RangeScan(Photo[] photos, boolean[] matched, SearchQuery query, boolean captionChecked, int from, int to) {
+            this.photos = photos;
+            this.matched = matched;
+            this.query = query;
+            this.captionChecked = captionChecked;
+            this.from = from;
+            this.to = to;
+        }
+        
+        @Override
+        protected void compute() {
+            if (to - from <= threshold || !inForkJoinPool()) {
+                for (int i = from; i < to; i++) {
+                    matched[i] = query.matches(photos[i], captionChecked);
+                }
+                return;
+            }
+            
+            int middle = (from + to) >>> 1;
+            invokeAll(new RangeScan(photos, matched, query, captionChecked, from, middle),
+                      new RangeScan(photos, matched, query, captionChecked, middle, to));
+        }
+    }
+    
+    /**
+     * Searches one user's photos as part of a search across users.
+     * The cache is checked first, and the candidates are picked and checked
+     * while the user's read lock is held, on the thread running the search.
+     */
+    private class UserSearch extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        
+        private final User user;
+        private final SearchQuery query;
+        private final boolean split;
+        private List<Photo> results;
+        
+        UserSearch(User user, SearchQuery query, boolean split) {
+            this.user = user;
+            this.query = query;
+            this.split = split;
+        }
+        
+        @Override
+        protected void compute() {
+            results = SearchUtil.getCache().get(user, query);
+            if (results != null) {
+                return;
+            }
+            
+            Lock lock = user.getLock().readLock();
+            lock.lock();
+            try {
+                long version = user.getVersion();
+                List<Photo> found = filter(SearchUtil.getCandidates(user, query), query, split);
+                results = SearchUtil.getCache().put(user, query, version, found);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -2,14 +2,19 @@ package photos.model;
 
 import java.io.File;
 import java.io.Serializable;
+import java.lang.invoke.VarHandle;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.locks.Lock;
 
 /**
  * Represents a photo in the Photos application.
  * Photos have a file path, caption, date taken, and tags.
+ * Changing the caption or tags of a photo that belongs to a user holds that
+ * user's write lock (see {@link User#getLock()}), and first keeps a copy of
+ * the photo for any open {@link UserSnapshot} that may still read it.
  * 
  * @author Krish Patel, Darshan Surti
  */
@@ -20,6 +25,10 @@ public class Photo implements Serializable {
     private String caption;
     private Calendar dateTaken;
     private List<Tag> tags;
+    private transient PhotoCatalog catalog;
+    private transient String displayLabel;
+    private transient volatile long epoch;
+    private transient volatile Versions.Version<Photo> older;
     
     /**
      * Creates a new photo with the given file path.
@@ -41,6 +50,20 @@ public class Photo implements Serializable {
         } else {
             this.dateTaken = Calendar.getInstance();
         }
+        this.epoch = Versions.now();
+    }
+    
+    /**
+     * Creates a detached copy of a photo, with its own list of tags.
+     * 
+     * @param source the photo to copy
+     */
+    private Photo(Photo source) {
+        this.filePath = source.filePath;
+        this.caption = source.caption;
+        this.dateTaken = source.dateTaken;
+        this.tags = new ArrayList<>(source.tags);
+        this.epoch = Versions.now();
     }
     
     /**
@@ -67,7 +90,49 @@ public class Photo implements Serializable {
      * @param caption the new caption
      */
     public void setCaption(String caption) {
-        this.caption = caption;
+        Lock lock = User.lockForWrite(catalog);
+        try {
+            String oldCaption = this.caption;
+            if (Objects.equals(oldCaption, caption)) {
+                return;
+            }
+            
+            beforeChange();
+            this.caption = caption;
+            this.displayLabel = null;
+            if (catalog != null) {
+                catalog.captionChanged(this);
+            }
+            publish(ModelEvent.Type.CAPTION_CHANGED, null, oldCaption);
+        } finally {
+            User.unlock(lock);
+        }
+    }
+    
+    /**
+     * Gets the text used to show this photo in a list: the caption, or a
+     * placeholder with the file name if there is no caption.
+     * The label is built once and reused until the caption changes.
+     * 
+     * @return the display label
+     */
+    public String getDisplayLabel() {
+        String label = displayLabel;
+        if (label == null) {
+            label = caption.isEmpty() ? "(No caption) - " + getFileName() : caption;
+            displayLabel = label;
+        }
+        return label;
+    }
+    
+    /**
+     * Gets the file name part of this photo's path.
+     * 
+     * @return the file name
+     */
+    public String getFileName() {
+        int separator = Math.max(filePath.lastIndexOf('/'), filePath.lastIndexOf('\\'));
+        return filePath.substring(separator + 1);
     }
     
     /**
@@ -95,16 +160,26 @@ public class Photo implements Serializable {
      * @return true if the tag was added, false if a tag with the same name and value already exists
      */
     public boolean addTag(Tag tag) {
-        // Check for duplicate tags
-        for (Tag existingTag : tags) {
-            if (existingTag.getName().equals(tag.getName()) && 
-                existingTag.getValue().equals(tag.getValue())) {
-                return false;
+        Lock lock = User.lockForWrite(catalog);
+        try {
+            // Check for duplicate tags
+            for (Tag existingTag : tags) {
+                if (existingTag.getName().equals(tag.getName()) && 
+                    existingTag.getValue().equals(tag.getValue())) {
+                    return false;
+                }
+            }
+            
+            beforeChange();
+            tags.add(tag);
+            if (catalog != null) {
+                catalog.tagAdded(this, tag);
             }
+            publish(ModelEvent.Type.TAG_ADDED, tag, null);
+            return true;
+        } finally {
+            User.unlock(lock);
         }
-        
-        tags.add(tag);
-        return true;
     }
     
     /**
@@ -114,7 +189,22 @@ public class Photo implements Serializable {
      * @return true if the tag was removed, false if it wasn't found
      */
     public boolean removeTag(Tag tag) {
-        return tags.remove(tag);
+        Lock lock = User.lockForWrite(catalog);
+        try {
+            if (!tags.contains(tag)) {
+                return false;
+            }
+            
+            beforeChange();
+            tags.remove(tag);
+            if (catalog != null) {
+                catalog.tagRemoved(this, tag);
+            }
+            publish(ModelEvent.Type.TAG_REMOVED, tag, null);
+            return true;
+        } finally {
+            User.unlock(lock);
+        }
     }
     
     /**
@@ -149,6 +239,71 @@ public class Photo implements Serializable {
         return matchingTags;
     }
     
+    /**
+     * Gets the user catalog this photo belongs to.
+     * 
+     * @return the catalog, or null if no user's album contains this photo
+     */
+    PhotoCatalog getCatalog() {
+        return catalog;
+    }
+    
+    /**
+     * Sets the user catalog this photo belongs to.
+     * 
+     * @param catalog the catalog, or null
+     */
+    void setCatalog(PhotoCatalog catalog) {
+        this.catalog = catalog;
+    }
+    
+    /**
+     * Keeps a copy of this photo for the open snapshots that may read it,
+     * if there are any, before it changes.
+     */
+    private void beforeChange() {
+        if (Versions.isShared(epoch)) {
+            older = Versions.push(new Photo(this), epoch, older);
+            epoch = Versions.now();
+            // Snapshots reading concurrently must see the new epoch before the change
+            VarHandle.fullFence();
+        }
+    }
+    
+    /**
+     * Gets a detached copy of this photo as it was when a snapshot was taken.
+     * Safe to call while another thread changes the photo.
+     * 
+     * @param snapshot the snapshot's epoch
+     * @return a copy of the photo, with the caption and tags it had then
+     */
+    Photo copyAt(long snapshot) {
+        long current = epoch;
+        if (current <= snapshot) {
+            Photo copy = new Photo(this);
+            VarHandle.acquireFence();
+            if (epoch == current) {
+                return copy;
+            }
+        }
+        // Changed since the snapshot, so the state it saw was kept
+        return new Photo(Versions.find(older, snapshot));
+    }
+    
+    /**
+     * Publishes a change to this photo on its owner's event bus, if it has an owner.
+     * 
+     * @param type the kind of change
+     * @param tag the tag involved, or null
+     * @param oldValue the previous caption, or null
+     */
+    private void publish(ModelEvent.Type type, Tag tag, String oldValue) {
+        User owner = catalog == null ? null : catalog.getOwner();
+        if (owner != null) {
+            owner.publish(type, null, this, tag, oldValue);
+        }
+    }
+    
     /**
      * Overrides equals to compare photos based on their file path.
      * 
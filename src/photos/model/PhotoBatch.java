@@ -0,0 +1,148 @@
+package photos.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Utility class for applying the same change to many photos at once.
+ * Each operation runs as one {@link UserManager#runBatch(User, Runnable) batch},
+ * so listeners see the whole change together and the users are saved once.
+ * If an operation fails partway, the photos it already changed are restored.
+ * 
+ * @author Krish Patel, Darshan Surti
+ */
+public class PhotoBatch {
+    
+    /**
+     * Adds a tag to each of the given photos.
+     * 
+     * @param user the user that owns the photos
+     * @param photos the photos to tag
+     * @param tag the tag to add
+     * @return the number of photos the tag was added to
+     */
+    public static int addTag(User user, Collection<Photo> photos, Tag tag) {
+        int[] count = new int[1];
+        UserManager.getInstance().runBatch(user, () -> {
+            for (Photo photo : snapshot(photos)) {
+                if (photo.addTag(tag)) {
+                    count[0]++;
+                }
+            }
+        });
+        return count[0];
+    }
+    
+    /**
+     * Removes a tag from each of the given photos that has it.
+     * 
+     * @param user the user that owns the photos
+     * @param photos the photos to untag
+     * @param tag the tag to remove
+     * @return the number of photos the tag was removed from
+     */
+    public static int removeTag(User user, Collection<Photo> photos, Tag tag) {
+        int[] count = new int[1];
+        UserManager.getInstance().runBatch(user, () -> {
+            for (Photo photo : snapshot(photos)) {
+                if (photo.removeTag(tag)) {
+                    count[0]++;
+                }
+            }
+        });
+        return count[0];
+    }
+    
+    /**
+     * Sets the same caption on each of the given photos.
+     * 
+     * @param user the user that owns the photos
+     * @param photos the photos to caption
+     * @param caption the new caption
+     * @return the number of photos captioned
+     */
+    public static int setCaption(User user, Collection<Photo> photos, String caption) {
+        List<Photo> targets = snapshot(photos);
+        UserManager.getInstance().runBatch(user, () -> {
+            for (Photo photo : targets) {
+                photo.setCaption(caption);
+            }
+        });
+        return targets.size();
+    }
+    
+    /**
+     * Copies photos into an album, skipping any it already contains.
+     * 
+     * @param user the user that owns the photos and album
+     * @param photos the photos to copy
+     * @param target the album to copy them to
+     * @return the number of photos copied
+     */
+    public static int copyPhotos(User user, Collection<Photo> photos, Album target) {
+        int[] count = new int[1];
+        UserManager.getInstance().runBatch(user, () -> {
+            for (Photo photo : snapshot(photos)) {
+                if (target.addPhoto(photo)) {
+                    count[0]++;
+                }
+            }
+        });
+        return count[0];
+    }
+    
+    /**
+     * Moves photos from one album to another.
+     * Photos the target already contains are left in the source album.
+     * 
+     * @param user the user that owns the photos and albums
+     * @param photos the photos to move
+     * @param source the album to move them from
+     * @param target the album to move them to
+     * @return the number of photos moved
+     */
+    public static int movePhotos(User user, Collection<Photo> photos, Album source, Album target) {
+        int[] count = new int[1];
+        UserManager.getInstance().runBatch(user, () -> {
+            for (Photo photo : snapshot(photos)) {
+                if (target.addPhoto(photo)) {
+                    source.removePhoto(photo);
+                    count[0]++;
+                }
+            }
+        });
+        return count[0];
+    }
+    
+    /**
+     * Removes photos from an album.
+     * 
+     * @param user the user that owns the album
+     * @param album the album to remove them from
+     * @param photos the photos to remove
+     * @return the number of photos removed
+     */
+    public static int removePhotos(User user, Album album, Collection<Photo> photos) {
+        int[] count = new int[1];
+        UserManager.getInstance().runBatch(user, () -> {
+            for (Photo photo : snapshot(photos)) {
+                if (album.removePhoto(photo)) {
+                    count[0]++;
+                }
+            }
+        });
+        return count[0];
+    }
+    
+    /**
+     * Copies the photos first, since the collection is often a live
+     * selection that changes as the photos are modified.
+     * 
+     * @param photos the photos
+     * @return a new list of the photos
+     */
+    private static List<Photo> snapshot(Collection<Photo> photos) {
+        return new ArrayList<>(photos);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,371 @@
+package photos.model;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Catalog of the distinct photos referenced by a user's albums.
+ * Each photo is assigned a stable int id the first time an album adds it,
+ * and albums store those ids instead of references to the photo objects.
+ * Photos are identified by object, not by file path: adding the same photo
+ * to another album shares it, with its caption and tags, while a separate
+ * photo of the same file is cataloged on its own with its own caption and
+ * tags, as albums always kept them. The catalog can also look up the
+ * photos with a file path, so an album can still hold at most one of them.
+ * <p>
+ * The catalog counts how many albums reference each photo and forgets a
+ * photo once no album contains it. Ids are never reused.
+ * <p>
+ * A user's catalog also keeps a {@link TagIndex} of the tags on its photos
+ * and a {@link CaptionIndex} of their captions.
+ * 
+ * @author Krish Patel, Darshan Surti
+ */
+public class PhotoCatalog implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private static final int[] NO_IDS = new int[0];
+    
+    private User owner;
+    private transient volatile Photo[] photos;
+    private transient int[] refCounts;
+    private transient int nextId;
+    private transient int size;
+    private transient Map<Photo, Integer> ids;
+    private transient Map<String, int[]> idsByPath;
+    private transient TagIndex tagIndex;
+    private transient CaptionIndex captionIndex;
+    
+    /**
+     * Creates an empty catalog that doesn't belong to a user,
+     * used by albums that haven't been added to one yet.
+     */
+    public PhotoCatalog() {
+        this(null);
+    }
+    
+    /**
+     * Creates an empty catalog for a user.
+     * Changes to photos in a user's catalog are published on that user's event bus.
+     * 
+     * @param owner the user that owns the catalog, or null
+     */
+    PhotoCatalog(User owner) {
+        this.owner = owner;
+        init(16);
+    }
+    
+    /**
+     * Gets the user this catalog belongs to.
+     * 
+     * @return the owning user, or null for an album's private catalog
+     */
+    User getOwner() {
+        return owner;
+    }
+    
+    /**
+     * Allocates empty storage for the given number of ids.
+     * 
+     * @param capacity the initial capacity
+     */
+    private void init(int capacity) {
+        photos = new Photo[Math.max(capacity, 16)];
+        refCounts = new int[photos.length];
+        nextId = 0;
+        size = 0;
+        ids = new IdentityHashMap<>();
+        idsByPath = new HashMap<>();
+        tagIndex = owner != null ? new TagIndex() : null;
+        captionIndex = owner != null ? new CaptionIndex() : null;
+    }
+    
+    /**
+     * Gets the index of the tags used by the photos in this catalog.
+     * 
+     * @return the tag index, or null for an album's private catalog
+     */
+    TagIndex getTagIndex() {
+        return tagIndex;
+    }
+    
+    /**
+     * Gets the index of the captions of the photos in this catalog.
+     * 
+     * @return the caption index, or null for an album's private catalog
+     */
+    CaptionIndex getCaptionIndex() {
+        return captionIndex;
+    }
+    
+    /**
+     * Re-indexes a cataloged photo's caption after it changes.
+     * 
+     * @param photo the photo
+     */
+    void captionChanged(Photo photo) {
+        int id = idOf(photo);
+        if (captionIndex != null && id != -1) {
+            captionIndex.put(id, photo.getCaption());
+        }
+    }
+    
+    /**
+     * Indexes a tag just added to a cataloged photo.
+     * 
+     * @param photo the photo
+     * @param tag the tag
+     */
+    void tagAdded(Photo photo, Tag tag) {
+        int id = idOf(photo);
+        if (tagIndex != null && id != -1) {
+            tagIndex.add(id, tag);
+        }
+    }
+    
+    /**
+     * Stops indexing a tag just removed from a cataloged photo.
+     * 
+     * @param photo the photo
+     * @param tag the tag
+     */
+    void tagRemoved(Photo photo, Tag tag) {
+        int id = idOf(photo);
+        if (tagIndex != null && id != -1) {
+            tagIndex.remove(id, tag);
+        }
+    }
+    
+    /**
+     * Gets the photo with the given id.
+     * 
+     * @param id the photo id
+     * @return the photo, or null if no album currently references that id
+     */
+    public Photo getPhoto(int id) {
+        return id >= 0 && id < nextId ? photos[id] : null;
+    }
+    
+    /**
+     * Gets the photo with the given id, for reading from a thread that may
+     * race with changes to the catalog.
+     * 
+     * @param id the photo id
+     * @return the photo, or null if the id isn't in the catalog as this thread sees it
+     */
+    Photo photoAt(int id) {
+        Photo[] current = photos;
+        return id >= 0 && id < current.length ? current[id] : null;
+    }
+    
+    /**
+     * Gets the ids of the cataloged photos with the given file path.
+     * There is usually at most one.
+     * 
+     * @param filePath the file path
+     * @return the ids, in the order they were cataloged; the array must not be changed
+     */
+    int[] idsOf(String filePath) {
+        int[] found = idsByPath.get(filePath);
+        return found == null ? NO_IDS : found;
+    }
+    
+    /**
+     * Gets the id of a cataloged photo.
+     * 
+     * @param photo the photo
+     * @return the photo id, or -1 if that photo isn't in the catalog
+     */
+    public int idOf(Photo photo) {
+        Integer id = ids.get(photo);
+        return id == null ? -1 : id;
+    }
+    
+    /**
+     * Gets the number of distinct photos in the catalog.
+     * 
+     * @return the number of photos
+     */
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * Gets one past the highest id ever assigned.
+     * Every id in the catalog is below this bound.
+     * 
+     * @return the id bound
+     */
+    public int getIdBound() {
+        return nextId;
+    }
+    
+    /**
+     * Gets all photos in the catalog, in id order.
+     * 
+     * @return a new list of the cataloged photos
+     */
+    public List<Photo> getPhotos() {
+        List<Photo> result = new ArrayList<>(size);
+        for (int id = 0; id < nextId; id++) {
+            if (photos[id] != null) {
+                result.add(photos[id]);
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Adds a reference to a photo, cataloging it if it isn't already.
+     * 
+     * @param photo the photo being added to an album
+     * @return the photo's id
+     */
+    int acquire(Photo photo) {
+        Integer existing = ids.get(photo);
+        if (existing != null) {
+            refCounts[existing]++;
+            return existing;
+        }
+        
+        if (nextId == photos.length) {
+            int capacity = photos.length * 2;
+            Photo[] grownPhotos = new Photo[capacity];
+            System.arraycopy(photos, 0, grownPhotos, 0, nextId);
+            int[] grownCounts = new int[capacity];
+            System.arraycopy(refCounts, 0, grownCounts, 0, nextId);
+            photos = grownPhotos;
+            refCounts = grownCounts;
+        }
+        
+        int id = nextId++;
+        photos[id] = photo;
+        if (owner != null) {
+            photo.setCatalog(this);
+        }
+        if (tagIndex != null) {
+            tagIndex.addAll(id, photo);
+            captionIndex.put(id, photo.getCaption());
+        }
+        refCounts[id] = 1;
+        index(id);
+        size++;
+        return id;
+    }
+    
+    /**
+     * Records a cataloged photo in the lookups by object and by file path.
+     * 
+     * @param id the photo's id
+     */
+    private void index(int id) {
+        ids.put(photos[id], id);
+        int[] sharing = idsByPath.get(photos[id].getFilePath());
+        if (sharing == null) {
+            idsByPath.put(photos[id].getFilePath(), new int[] {id});
+        } else {
+            int[] grown = Arrays.copyOf(sharing, sharing.length + 1);
+            grown[sharing.length] = id;
+            idsByPath.put(photos[id].getFilePath(), grown);
+        }
+    }
+    
+    /**
+     * Removes a photo from the lookups by object and by file path.
+     * 
+     * @param id the photo's id
+     */
+    private void unindex(int id) {
+        ids.remove(photos[id]);
+        String filePath = photos[id].getFilePath();
+        int[] sharing = idsByPath.get(filePath);
+        if (sharing.length == 1) {
+            idsByPath.remove(filePath);
+            return;
+        }
+        int[] shrunk = new int[sharing.length - 1];
+        int count = 0;
+        for (int other : sharing) {
+            if (other != id) {
+                shrunk[count++] = other;
+            }
+        }
+        idsByPath.put(filePath, shrunk);
+    }
+    
+    /**
+     * Drops a reference to a photo, removing it from the catalog when no album references it.
+     * 
+     * @param id the photo id
+     */
+    void release(int id) {
+        if (getPhoto(id) == null) {
+            return;
+        }
+        if (--refCounts[id] == 0) {
+            if (photos[id].getCatalog() == this) {
+                photos[id].setCatalog(null);
+            }
+            if (tagIndex != null) {
+                tagIndex.removeAll(id, photos[id]);
+                captionIndex.remove(id);
+            }
+            unindex(id);
+            photos[id] = null;
+            size--;
+        }
+    }
+    
+    /**
+     * Writes the id bound followed by each cataloged photo with its id and reference count.
+     * 
+     * @param out the stream to write to
+     * @throws IOException if there's an error writing
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeInt(nextId);
+        out.writeInt(size);
+        for (int id = 0; id < nextId; id++) {
+            if (photos[id] != null) {
+                out.writeInt(id);
+                out.writeInt(refCounts[id]);
+                out.writeObject(photos[id]);
+            }
+        }
+    }
+    
+    /**
+     * Reads the cataloged photos back and rebuilds the lookups.
+     * 
+     * @param in the stream to read from
+     * @throws IOException if there's an error reading
+     * @throws ClassNotFoundException if a class in the stream can't be found
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        int idBound = in.readInt();
+        int count = in.readInt();
+        init(idBound);
+        nextId = idBound;
+        for (int i = 0; i < count; i++) {
+            int id = in.readInt();
+            refCounts[id] = in.readInt();
+            photos[id] = (Photo) in.readObject();
+            index(id);
+            if (owner != null) {
+                photos[id].setCatalog(this);
+                tagIndex.addAll(id, photos[id]);
+                captionIndex.put(id, photos[id].getCaption());
+            }
+        }
+        size = count;
+    }
+}
\ No newline at end of file
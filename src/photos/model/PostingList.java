@@ -0,0 +1,228 @@
+package photos.model;
+
+import java.util.Arrays;
+
+/**
+ * The ids of the cataloged photos that share something, such as a caption
+ * trigram in the {@link CaptionIndex} or a tag in the {@link TagIndex},
+ * mostly sorted.
+ * Removing an id marks its entry instead of shifting the entries after
+ * it, and an id that doesn't belong at the end goes into an unsorted
+ * tail instead of being shifted into place, so changing many photos at
+ * once doesn't copy the list for every photo. Marked entries keep their
+ * place in the order, can be reused by an id added next to them, and are
+ * skipped by readers. The tail is sorted into the list, dropping the
+ * marked entries, once it grows past an eighth of the sorted part, marked
+ * entries outnumber the ids, or an id in the tail is removed. Only
+ * writers change the list, so searches holding the read lock can share it.
+ * 
+ * @author Krish Patel, Darshan Surti
+ */
+final class PostingList {
+    private static final int MIN_TAIL = 16;
+    
+    private int[] ids = new int[4];
+    private int sorted;
+    private int end;
+    private int size;
+    
+    /**
+     * Gets the number of ids in the list.
+     * 
+     * @return the number of ids
+     */
+    int size() {
+        return size;
+    }
+    
+    /**
+     * Gets the id an entry holds, whether or not it has been removed.
+     * Removed entries hold the complement of their id, which is negative.
+     * 
+     * @param entry the entry
+     * @return the id
+     */
+    private static int idOf(int entry) {
+        return entry < 0 ? ~entry : entry;
+    }
+    
+    /**
+     * Finds the entry for an id, removed or not, in the sorted part of the list.
+     * 
+     * @param id the photo id
+     * @return the entry's position, or (-(insertion point) - 1) if there is none
+     */
+    private int indexOf(int id) {
+        int low = 0;
+        int high = sorted - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int midId = idOf(ids[mid]);
+            if (midId < id) {
+                low = mid + 1;
+            } else if (midId > id) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+    
+    /**
+     * Adds an id that isn't in the list, in order where that needs no
+     * shifting and to the tail otherwise.
+     * 
+     * @param id the photo id
+     */
+    void add(int id) {
+        int position = indexOf(id);
+        if (position >= 0) {
+            if (ids[position] < 0) {
+                ids[position] = id;
+                size++;
+            }
+            return;
+        }
+        position = -position - 1;
+        size++;
+        
+        // A removed neighbour can take the id without moving anything
+        if (position > 0 && ids[position - 1] < 0) {
+            ids[position - 1] = id;
+            return;
+        }
+        if (position < sorted && ids[position] < 0) {
+            ids[position] = id;
+            return;
+        }
+        
+        if (end == ids.length) {
+            ids = Arrays.copyOf(ids, end * 2);
+        }
+        ids[end++] = id;
+        if (position == sorted && sorted == end - 1) {
+            sorted++;
+        } else if (end - sorted > Math.max(MIN_TAIL, sorted / 8)) {
+            compact();
+        }
+    }
+    
+    /**
+     * Removes an id by marking its entry.
+     * 
+     * @param id the photo id
+     * @return true if the id was present
+     */
+    boolean remove(int id) {
+        int position = indexOf(id);
+        if (position < 0 && end > sorted) {
+            // Sorting the tail in once is cheaper than searching it for every removal
+            compact();
+            position = indexOf(id);
+        }
+        if (position < 0 || ids[position] < 0) {
+            return false;
+        }
+        ids[position] = ~id;
+        size--;
+        if (end - size > size) {
+            compact();
+        }
+        return true;
+    }
+    
+    /**
+     * Sorts the tail into the list and drops the removed entries.
+     */
+    private void compact() {
+        int[] tail = sortedTail();
+        int[] compacted = new int[Math.max(4, size * 2)];
+        int write = 0;
+        int k = 0;
+        for (int read = 0; read < sorted; read++) {
+            if (ids[read] < 0) {
+                continue;
+            }
+            while (k < tail.length && tail[k] < ids[read]) {
+                compacted[write++] = tail[k++];
+            }
+            compacted[write++] = ids[read];
+        }
+        while (k < tail.length) {
+            compacted[write++] = tail[k++];
+        }
+        ids = compacted;
+        sorted = write;
+        end = write;
+    }
+    
+    /**
+     * Copies the unsorted tail and sorts the copy.
+     * 
+     * @return the ids in the tail in ascending order
+     */
+    private int[] sortedTail() {
+        int[] tail = Arrays.copyOfRange(ids, sorted, end);
+        Arrays.sort(tail);
+        return tail;
+    }
+    
+    /**
+     * Copies the ids in the list.
+     * 
+     * @return the ids in ascending order
+     */
+    int[] toArray() {
+        int[] result = new int[size];
+        int count = 0;
+        for (int i = 0; i < end; i++) {
+            if (ids[i] >= 0) {
+                result[count++] = ids[i];
+            }
+        }
+        if (end > sorted) {
+            Arrays.sort(result);
+        }
+        return result;
+    }
+    
+    /**
+     * Keeps only the ids that are also in this list.
+     * Probes this list for each id when there are far fewer ids than
+     * entries here, and otherwise merges the two sorted lists.
+     * 
+     * @param candidates sorted ids, narrowed in place
+     * @param count the number of ids in use
+     * @return the number of ids kept
+     */
+    int retainIn(int[] candidates, int count) {
+        int kept = 0;
+        int[] tail = sortedTail();
+        if (count * 16 < end) {
+            for (int i = 0; i < count; i++) {
+                int position = indexOf(candidates[i]);
+                if (position >= 0 ? ids[position] >= 0 : Arrays.binarySearch(tail, candidates[i]) >= 0) {
+                    candidates[kept++] = candidates[i];
+                }
+            }
+            return kept;
+        }
+        
+        int j = 0;
+        int k = 0;
+        for (int i = 0; i < count; i++) {
+            int candidate = candidates[i];
+            while (j < sorted && idOf(ids[j]) < candidate) {
+                j++;
+            }
+            while (k < tail.length && tail[k] < candidate) {
+                k++;
+            }
+            if ((j < sorted && ids[j] == candidate) || (k < tail.length && tail[k] == candidate)) {
+                candidates[kept++] = candidate;
+            }
+        }
+        return kept;
+    }
+}
\ No newline at end of file
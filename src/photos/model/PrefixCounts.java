@@ -0,0 +1,349 @@
+package photos.model;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Counts of string keys that can find the most used keys starting with a
+ * prefix without looking at every key that starts with it.
+ * <p>
+ * The keys are held in a treap, a binary search tree kept balanced by
+ * random priorities, in case-insensitive order. Each node also records the
+ * most used key in its subtree. The keys starting with a prefix form a
+ * contiguous range, which splits into a few whole subtrees; the most used
+ * keys are then taken best first from a heap of those subtrees. Finding
+ * {@code k} keys takes about {@code k log n} steps however many keys share
+ * the prefix, and changing a count takes about {@code log n}.
+ * 
+ * @author Krish Patel, Darshan Surti
+ */
+final class PrefixCounts {
+    
+    /** Case-insensitive order, with case as a tiebreak so different spellings stay distinct. */
+    private static final Comparator<String> ORDER =
+            String.CASE_INSENSITIVE_ORDER.thenComparing(Comparator.naturalOrder());
+    
+    /** Orders items best first: most used, then alphabetically first. */
+    private static final Comparator<Item> BEST_FIRST = (a, b) -> compareUse(a.top(), b.top());
+    
+    private Node root;
+    private int size;
+    private int seed = 0x2545F491;
+    
+    /**
+     * Gets a key's count.
+     * 
+     * @param key the key
+     * @return the count, or 0 if the key isn't counted
+     */
+    int get(String key) {
+        Node node = root;
+        while (node != null) {
+            int order = ORDER.compare(key, node.key);
+            if (order == 0) {
+                return node.count;
+            }
+            node = order < 0 ? node.left : node.right;
+        }
+        return 0;
+    }
+    
+    /**
+     * Adds one to a key's count.
+     * 
+     * @param key the key
+     */
+    void increment(String key) {
+        root = add(root, key, 1);
+    }
+    
+    /**
+     * Subtracts one from a key's count, dropping the key when it reaches zero.
+     * 
+     * @param key the key
+     */
+    void decrement(String key) {
+        root = add(root, key, -1);
+    }
+    
+    /**
+     * Determines if no keys are counted.
+     * 
+     * @return true if there are no keys
+     */
+    boolean isEmpty() {
+        return size == 0;
+    }
+    
+    /**
+     * Gets the most used keys starting with a prefix.
+     * 
+     * @param prefix the prefix, matched ignoring case
+     * @param limit the maximum number of keys to return
+     * @return the keys, most used first, then alphabetically
+     */
+    List<String> top(String prefix, int limit) {
+        List<String> result = new ArrayList<>(Math.min(limit, size));
+        if (limit <= 0 || root == null) {
+            return result;
+        }
+        
+        PriorityQueue<Item> best = new PriorityQueue<>(BEST_FIRST);
+        if (prefix.isEmpty()) {
+            best.add(new Item(root, true));
+        } else {
+            addRange(prefix, best);
+        }
+        
+        while (result.size() < limit && !best.isEmpty()) {
+            Item item = best.poll();
+            if (!item.subtree) {
+                result.add(item.node.key);
+                continue;
+            }
+            // Split the subtree into its root and the two subtrees below it
+            best.add(new Item(item.node, false));
+            if (item.node.left != null) {
+                best.add(new Item(item.node.left, true));
+            }
+            if (item.node.right != null) {
+                best.add(new Item(item.node.right, true));
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Adds the keys starting with a prefix to a heap, as single nodes and
+     * whole subtrees. Only the nodes on the paths to the two ends of the
+     * range are visited.
+     * 
+     * @param prefix the prefix
+     * @param best the heap to add to
+     */
+    private void addRange(String prefix, PriorityQueue<Item> best) {
+        // Find the highest node in the range; everything in range is below it
+        Node split = root;
+        while (split != null && !startsWith(split.key, prefix)) {
+            split = String.CASE_INSENSITIVE_ORDER.compare(split.key, prefix) < 0 ? split.right : split.left;
+        }
+        if (split == null) {
+            return;
+        }
+        best.add(new Item(split, false));
+        
+        // Left of the split, a node in range has its whole right subtree in range too
+        for (Node node = split.left; node != null; ) {
+            if (startsWith(node.key, prefix)) {
+                best.add(new Item(node, false));
+                if (node.right != null) {
+                    best.add(new Item(node.right, true));
+                }
+                node = node.left;
+            } else {
+                node = node.right;
+            }
+        }
+        
+        // And right of it, a node in range has its whole left subtree in range
+        for (Node node = split.right; node != null; ) {
+            if (startsWith(node.key, prefix)) {
+                best.add(new Item(node, false));
+                if (node.left != null) {
+                    best.add(new Item(node.left, true));
+                }
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+    }
+    
+    /**
+     * Determines if a key starts with a prefix, ignoring case.
+     * 
+     * @param key the key
+     * @param prefix the prefix
+     * @return true if the key starts with the prefix
+     */
+    private static boolean startsWith(String key, String prefix) {
+        return key.regionMatches(true, 0, prefix, 0, prefix.length());
+    }
+    
+    /**
+     * Changes a key's count in a subtree, adding or removing the key as needed.
+     * 
+     * @param node the subtree's root, or null
+     * @param key the key
+     * @param delta the change in count
+     * @return the subtree's new root
+     */
+    private Node add(Node node, String key, int delta) {
+        if (node == null) {
+            if (delta <= 0) {
+                return null;
+            }
+            size++;
+            return new Node(key, nextPriority(), delta);
+        }
+        
+        int order = ORDER.compare(key, node.key);
+        if (order == 0) {
+            node.count += delta;
+            if (node.count <= 0) {
+                size--;
+                return remove(node);
+            }
+        } else if (order < 0) {
+            node.left = add(node.left, key, delta);
+            if (node.left != null && node.left.priority > node.priority) {
+                node = rotateRight(node);
+            }
+        } else {
+            node.right = add(node.right, key, delta);
+            if (node.right != null && node.right.priority > node.priority) {
+                node = rotateLeft(node);
+            }
+        }
+        node.update();
+        return node;
+    }
+    
+    /**
+     * Removes a node by rotating it down until it has at most one child.
+     * 
+     * @param node the node to remove
+     * @return the root of the subtree that replaces it
+     */
+    private static Node remove(Node node) {
+        if (node.left == null) {
+            return node.right;
+        }
+        if (node.right == null) {
+            return node.left;
+        }
+        Node top;
+        if (node.left.priority > node.right.priority) {
+            top = rotateRight(node);
+            top.right = remove(node);
+        } else {
+            top = rotateLeft(node);
+            top.left = remove(node);
+        }
+        top.update();
+        return top;
+    }
+    
+    /**
+     * Rotates a node's left child up into its place.
+     * 
+     * @param node the node
+     * @return the new subtree root
+     */
+    private static Node rotateRight(Node node) {
+        Node left = node.left;
+        node.left = left.right;
+        left.right = node;
+        node.update();
+        left.update();
+        return left;
+    }
+    
+    /**
+     * Rotates a node's right child up into its place.
+     * 
+     * @param node the node
+     * @return the new subtree root
+     */
+    private static Node rotateLeft(Node node) {
+        Node right = node.right;
+        node.right = right.left;
+        right.left = node;
+        node.update();
+        right.update();
+        return right;
+    }
+    
+    /**
+     * Draws the next pseudo-random priority.
+     * 
+     * @return the priority
+     */
+    private int nextPriority() {
+        seed ^= seed << 13;
+        seed ^= seed >>> 17;
+        seed ^= seed << 5;
+        return seed;
+    }
+    
+    /**
+     * Compares two nodes by use.
+     * 
+     * @param a one node
+     * @param b the other
+     * @return negative if {@code a} is more used, or equally used and alphabetically first
+     */
+    private static int compareUse(Node a, Node b) {
+        if (a.count != b.count) {
+            return a.count > b.count ? -1 : 1;
+        }
+        return ORDER.compare(a.key, b.key);
+    }
+    
+    /**
+     * A counted key in the tree.
+     */
+    private static final class Node {
+        private final String key;
+        private final int priority;
+        private int count;
+        private Node left;
+        private Node right;
+        /** The most used node in this subtree, this node included. */
+        private Node top;
+        
+        Node(String key, int priority, int count) {
+            this.key = key;
+            this.priority = priority;
+            this.count = count;
+            this.top = this;
+        }
+        
+        /**
+         * Recomputes the most used node in this subtree from the children.
+         */
+        void update() {
+            top = this;
+            if (left != null && compareUse(left.top, top) < 0) {
+                top = left.top;
+            }
+            if (right != null && compareUse(right.top, top) < 0) {
+                top = right.top;
+            }
+        }
+    }
+    
+    /**
+     * A heap entry: one node on its own, or a node's whole subtree.
+     */
+    private static final class Item {
+        private final Node node;
+        private final boolean subtree;
+        
+        Item(Node node, boolean subtree) {
+            this.node = node;
+            this.subtree = subtree;
+        }
+        
+        /**
+         * Gets the most used node this entry can produce.
+         * 
+         * @return the node
+         */
+        Node top() {
+            return subtree ? node.top : node;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,260 @@
+package photos.model;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Bounded cache of search results, so repeating a search doesn't scan the photos again.
+ * Entries are keyed by the user and the {@link SearchQuery#getNormalized()
+ * normalized query}, and remember the user's {@link User#getVersion() model
+ * version} when the search ran. Every change to a user's data bumps that
+ * version, so an entry is only served while nothing it could depend on has
+ * changed; stale entries are dropped when they are next looked up.
+ * <p>
+ * An entry can also hold the {@link SearchFacets} of its results once they
+ * have been counted.
+ * <p>
+ * The least recently used entries are evicted once the cache holds more
+ * than its maximum number of entries or of cached photo references.
+ * The cache is safe to use from the background search thread.
+ * 
+ * @author Krish Patel, Darshan Surti
+ */
+public class SearchCache {
+    
+    /** Approximate bytes for an entry's key, map node and bookkeeping, excluding the query text. */
+    private static final int ENTRY_OVERHEAD_BYTES = 128;
+    
+    /** Approximate bytes per cached photo reference in a result list. */
+    private static final int REFERENCE_BYTES = 8;
+    
+    private final int maxEntries;
+    private final long maxPhotos;
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedPhotos;
+    private long hits;
+    private long misses;
+    
+    /**
+     * Creates an empty cache.
+     * 
+     * @param maxEntries the most searches to keep
+     * @param maxPhotos the most photo references to keep across all cached results
+     */
+    public SearchCache(int maxEntries, long maxPhotos) {
+        this.maxEntries = maxEntries;
+        this.maxPhotos = maxPhotos;
+    }
+    
+    /**
+     * Gets the cached results of a search, if they are still current.
+     * 
+     * @param user the user searched
+     * @param query the query
+     * @return the results, read-only, or null if the search isn't cached or the user has changed since
+     */
+    public synchronized List<Photo> get(User user, SearchQuery query) {
+        Key key = new Key(user, query.getNormalized());
+        Entry entry = entries.get(key);
+        if (entry != null && entry.version != user.getVersion()) {
+            remove(key);
+            entry = null;
+        }
+        
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.results;
+    }
+    
+    /**
+     * Caches the results of a search.
+     * 
+     * @param user the user searched
+     * @param query the query
+     * @param version the user's model version read before the search started
+     * @param results the results
+     * @return the cached, read-only results
+     */
+    public synchronized List<Photo> put(User user, SearchQuery query, long version, List<Photo> results) {
+        List<Photo> cached = Collections.unmodifiableList(results);
+        // A search that raced with a change is already stale
+        if (version != user.getVersion() || results.size() > maxPhotos) {
+            return cached;
+        }
+        
+        Key key = new Key(user, query.getNormalized());
+        remove(key);
+        entries.put(key, new Entry(version, cached));
+        cachedPhotos += results.size();
+        
+        Iterator<Map.Entry<Key, Entry>> eldest = entries.entrySet().iterator();
+        while (entries.size() > maxEntries || cachedPhotos > maxPhotos) {
+            cachedPhotos -= eldest.next().getValue().results.size();
+            eldest.remove();
+        }
+        return cached;
+    }
+    
+    /**
+     * Gets the cached facets of a search, if they have been counted and are still current.
+     * Does not affect the hit statistics.
+     * 
+     * @param user the user searched
+     * @param query the query
+     * @return the facets, or null if they aren't cached
+     */
+    public synchronized SearchFacets getFacets(User user, SearchQuery query) {
+        Entry entry = entries.get(new Key(user, query.getNormalized()));
+        return entry != null && entry.version == user.getVersion() ? entry.facets : null;
+    }
+    
+    /**
+     * Attaches counted facets to a cached search.
+     * Ignored if the search is no longer cached at the given version.
+     * 
+     * @param user the user searched
+     * @param query the query
+     * @param version the user's model version the results were computed at
+     * @param facets the facets of the results
+     */
+    public synchronized void putFacets(User user, SearchQuery query, long version, SearchFacets facets) {
+        Entry entry = entries.get(new Key(user, query.getNormalized()));
+        if (entry != null && entry.version == version) {
+            entry.facets = facets;
+        }
+    }
+    
+    /**
+     * Removes every entry and resets the statistics.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        cachedPhotos = 0;
+        hits = 0;
+        misses = 0;
+    }
+    
+    /**
+     * Gets the number of cached searches.
+     * 
+     * @return the entry count
+     */
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+    
+    /**
+     * Gets the number of lookups that were served from the cache.
+     * 
+     * @return the hit count
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+    
+    /**
+     * Gets the number of lookups that missed, including stale entries.
+     * 
+     * @return the miss count
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+    
+    /**
+     * Gets the fraction of lookups served from the cache.
+     * 
+     * @return the hit ratio between 0 and 1, or 0 if nothing has been looked up
+     */
+    public synchronized double getHitRatio() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+    
+    /**
+     * Estimates the memory held by the cache itself.
+     * The photos are shared with the user's albums, so only the result
+     * lists' references to them are counted.
+     * 
+     * @return the approximate size in bytes
+     */
+    public synchronized long getEstimatedBytes() {
+        long bytes = cachedPhotos * REFERENCE_BYTES;
+        for (Key key : entries.keySet()) {
+            bytes += ENTRY_OVERHEAD_BYTES + 2L * key.query.length();
+        }
+        return bytes;
+    }
+    
+    /**
+     * Summarizes the cache statistics.
+     * 
+     * @return a one-line summary
+     */
+    @Override
+    public synchronized String toString() {
+        return String.format("%d entries, %d photos, ~%d KB, hit ratio %.1f%% (%d hits, %d misses)",
+                entries.size(), cachedPhotos, getEstimatedBytes() / 1024, getHitRatio() * 100, hits, misses);
+    }
+    
+    /**
+     * Removes an entry and its photo count.
+     * 
+     * @param key the entry's key
+     */
+    private void remove(Key key) {
+        Entry removed = entries.remove(key);
+        if (removed != null) {
+            cachedPhotos -= removed.results.size();
+        }
+    }
+    
+    /**
+     * A user and normalized query. Users are compared by identity, so results
+     * cached for a user are never served to a copy of it loaded later.
+     */
+    private static class Key {
+        private final User user;
+        private final String query;
+        
+        Key(User user, String query) {
+            this.user = user;
+            this.query = query;
+        }
+        
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return user == other.user && query.equals(other.query);
+        }
+        
+        @Override
+        public int hashCode() {
+            return Objects.hash(System.identityHashCode(user), query);
+        }
+    }
+    
+    /**
+     * Cached results with the user version they were computed at.
+     */
+    private static class Entry {
+        private final long version;
+        private final List<Photo> results;
+        private SearchFacets facets;
+        
+        Entry(long version, List<Photo> results) {
+            this.version = version;
+            this.results = results;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,38 @@
+package photos.model;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event for a photo search.
+ * 
+ * @author Krish Patel, Darshan Surti
+ */
+@Name("photos.Search")
+@Label("Search")
+@Category({ "Photos", "Search" })
+@Description("A search of a user's photos")
+@StackTrace(false)
+class SearchEvent extends Event {
+    
+    @Label("Type")
+    @Description("query, caption, live, facets, or one of the album-list searches")
+    String searchType;
+    
+    @Label("Query")
+    String query;
+    
+    @Label("Photos Checked")
+    int photosChecked;
+    
+    @Label("Results")
+    int resultCount;
+    
+    @Label("Cached")
+    @Description("True if the results came from the search cache")
+    boolean cached;
+}
\ No newline at end of file
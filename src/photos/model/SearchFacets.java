@@ -0,0 +1,231 @@
+package photos.model;
+
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Breakdown of a set of search results: how many results have each tag
+ * value, belong to each album, and were taken in each month.
+ * <p>
+ * Counting reads each result once for its tags and date. Album counts come
+ * from intersecting the result ids with each album's ids, walking whichever
+ * of the two is smaller, so albums far larger than the results cost little.
+ * 
+ * @author Krish Patel, Darshan Surti
+ */
+public class SearchFacets {
+    
+    private final int total;
+    private final Map<String, Map<String, int[]>> tagValues;
+    private final List<Count<Album>> albums;
+    private final SortedMap<YearMonth, Integer> months;
+    
+    /**
+     * Creates facets from finished counts.
+     * 
+     * @param total the number of results
+     * @param tagValues the result count for each tag name and value
+     * @param albums the result count for each album, largest first
+     * @param months the result count for each month
+     */
+    private SearchFacets(int total, Map<String, Map<String, int[]>> tagValues,
+                         List<Count<Album>> albums, SortedMap<YearMonth, Integer> months) {
+        this.total = total;
+        this.tagValues = tagValues;
+        this.albums = Collections.unmodifiableList(albums);
+        this.months = Collections.unmodifiableSortedMap(months);
+    }
+    
+    /**
+     * Counts the facets of a user's search results.
+     * 
+     * @param user the user that was searched
+     * @param photos the search results, each photo once
+     * @return the facet counts
+     */
+    public static SearchFacets count(User user, List<Photo> photos) {
+        PhotoCatalog catalog = user.getCatalog();
+        BitSet resultIds = new BitSet(catalog.getIdBound());
+        Map<String, Map<String, int[]>> tagValues = new HashMap<>();
+        Map<Integer, int[]> monthCounts = new HashMap<>();
+        String lastName = null;
+        Map<String, int[]> lastValues = null;
+        
+        for (Photo photo : photos) {
+            int id = catalog.idOf(photo);
+            if (id >= 0) {
+                resultIds.set(id);
+            }
+            
+            for (Tag tag : photo.getTags()) {
+                // Most tags share a few names, so skip the name lookup when it repeats
+                if (!tag.getName().equals(lastName)) {
+                    lastName = tag.getName();
+                    lastValues = tagValues.computeIfAbsent(lastName, name -> new HashMap<>());
+                }
+                int[] count = lastValues.get(tag.getValue());
+                if (count == null) {
+                    lastValues.put(tag.getValue(), new int[] { 1 });
+                } else {
+                    count[0]++;
+                }
+            }
+            
+            Calendar taken = photo.getDateTaken();
+            int month = taken.get(Calendar.YEAR) * 12 + taken.get(Calendar.MONTH);
+            monthCounts.computeIfAbsent(month, key -> new int[1])[0]++;
+        }
+        
+        int resultCount = resultIds.cardinality();
+        List<Count<Album>> albums = new ArrayList<>();
+        for (Album album : user.getAlbums()) {
+            int inAlbum = 0;
+            if (album.getPhotoCount() <= resultCount) {
+                for (int id : album.getPhotoIds()) {
+                    if (resultIds.get(id)) {
+                        inAlbum++;
+                    }
+                }
+            } else {
+                for (int id = resultIds.nextSetBit(0); id >= 0; id = resultIds.nextSetBit(id + 1)) {
+                    if (album.containsPhotoId(id)) {
+                        inAlbum++;
+                    }
+                }
+            }
+            if (inAlbum > 0) {
+                albums.add(new Count<>(album, inAlbum));
+            }
+        }
+        albums.sort(Comparator.comparingInt((Count<Album> count) -> -count.getCount()));
+        
+        SortedMap<YearMonth, Integer> months = new TreeMap<>();
+        for (Map.Entry<Integer, int[]> entry : monthCounts.entrySet()) {
+            int month = entry.getKey();
+            months.put(YearMonth.of(month / 12, month % 12 + 1), entry.getValue()[0]);
+        }
+        
+        return new SearchFacets(photos.size(), tagValues, albums, months);
+    }
+    
+    /**
+     * Gets the number of results counted.
+     * 
+     * @return the result count
+     */
+    public int getTotal() {
+        return total;
+    }
+    
+    /**
+     * Gets the tag names used by the results, most common first.
+     * 
+     * @return the tag names with how many tags of each name the results have
+     */
+    public List<Count<String>> getTagNames() {
+        List<Count<String>> names = new ArrayList<>();
+        for (Map.Entry<String, Map<String, int[]>> entry : tagValues.entrySet()) {
+            int uses = 0;
+            for (int[] count : entry.getValue().values()) {
+                uses += count[0];
+            }
+            names.add(new Count<>(entry.getKey(), uses));
+        }
+        names.sort(Count.BY_COUNT_THEN_NAME);
+        return names;
+    }
+    
+    /**
+     * Gets the most common values of a tag name among the results.
+     * 
+     * @param tagName the tag name
+     * @param limit the most values to return
+     * @return the values with how many results have each, most common first
+     */
+    public List<Count<String>> getTopValues(String tagName, int limit) {
+        Map<String, int[]> values = tagValues.get(tagName);
+        if (values == null) {
+            return Collections.emptyList();
+        }
+        
+        List<Count<String>> top = new ArrayList<>(values.size());
+        for (Map.Entry<String, int[]> entry : values.entrySet()) {
+            top.add(new Count<>(entry.getKey(), entry.getValue()[0]));
+        }
+        top.sort(Count.BY_COUNT_THEN_NAME);
+        return top.size() > limit ? top.subList(0, limit) : top;
+    }
+    
+    /**
+     * Gets the albums containing the results, with the most results first.
+     * 
+     * @return the albums with how many results each contains
+     */
+    public List<Count<Album>> getAlbums() {
+        return albums;
+    }
+    
+    /**
+     * Gets how many results were taken in each month.
+     * 
+     * @return the result count per month, in date order
+     */
+    public SortedMap<YearMonth, Integer> getMonths() {
+        return months;
+    }
+    
+    /**
+     * A facet value and the number of results with it.
+     * 
+     * @param <T> the type of facet value
+     */
+    public static class Count<T> {
+        private static final Comparator<Count<String>> BY_COUNT_THEN_NAME =
+                Comparator.comparingInt((Count<String> count) -> -count.count).thenComparing(count -> count.key);
+        
+        private final T key;
+        private final int count;
+        
+        Count(T key, int count) {
+            this.key = key;
+            this.count = count;
+        }
+        
+        /**
+         * Gets the facet value.
+         * 
+         * @return the value
+         */
+        public T getKey() {
+            return key;
+        }
+        
+        /**
+         * Gets the number of results with the value.
+         * 
+         * @return the count
+         */
+        public int getCount() {
+            return count;
+        }
+        
+        /**
+         * Returns the value and count.
+         * 
+         * @return a string in the format "value (count)"
+         */
+        @Override
+        public String toString() {
+            return (key instanceof Album ? ((Album) key).getName() : String.valueOf(key)) + " (" + count + ")";
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,422 @@
+package photos.model;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A photo search typed into the search field.
+ * A query is a list of terms separated by spaces:
+ * <ul>
+ * <li>{@code name=value} matches photos with that tag; use quotes for values
+ *     with spaces, as in {@code location="New York"}</li>
+ * <li>{@code AND} or {@code OR} between tag terms chooses how they combine
+ *     (AND is the default)</li>
+ * <li>{@code caption:text} matches photos whose caption contains every word
+ *     of the text, as in {@code caption:"sunset beach"}; results are ranked by
+ *     how well the caption matches</li>
+ * <li>{@code from:yyyy-mm-dd} and {@code to:yyyy-mm-dd} limit the dates taken
+ *     (both inclusive)</li>
+ * <li>{@code path:prefix} matches photos whose file path starts with the
+ *     prefix, ignoring case and treating {@code \} and {@code /} alike</li>
+ * <li>any other word must appear, ignoring case, in the photo's file name,
+ *     caption, or one of its tag values</li>
+ * </ul>
+ * All parts of a query must match.
+ * Queries that differ only in spacing, case of keywords or term order
+ * have the same {@link #getNormalized() normalized form}.
+ * 
+ * @author Krish Patel, Darshan Surti
+ */
+public class SearchQuery {
+    
+    private final List<Tag> tags;
+    private final boolean matchAllTags;
+    private final List<String> words;
+    private final String captionText;
+    private final LocalDate fromDate;
+    private final LocalDate toDate;
+    private final long fromMillis;
+    private final long toMillis;
+    private final String pathPrefix;
+    private final String normalized;
+    
+    /**
+     * Creates a query from parsed terms.
+     * 
+     * @param tags the tag terms
+     * @param matchAllTags true to require every tag, false to require any one of them
+     * @param words the lower-case free text words
+     * @param captionText the normalized caption words, or empty
+     * @param fromDate the first date taken to match, or null
+     * @param toDate the last date taken to match, or null
+     * @param pathPrefix the normalized file path prefix to match, or empty
+     */
+    private SearchQuery(List<Tag> tags, boolean matchAllTags, List<String> words,
+                        String captionText, LocalDate fromDate, LocalDate toDate, String pathPrefix) {
+        this.tags = Collections.unmodifiableList(tags);
+        this.matchAllTags = matchAllTags;
+        this.words = Collections.unmodifiableList(words);
+        this.captionText = captionText;
+        this.fromDate = fromDate;
+        this.toDate = toDate;
+        this.fromMillis = fromDate == null ? Long.MIN_VALUE
+                : fromDate.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        this.toMillis = toDate == null ? Long.MAX_VALUE
+                : toDate.plusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli() - 1;
+        this.pathPrefix = pathPrefix;
+        this.normalized = normalize();
+    }
+    
+    /**
+     * Parses the text typed into the search field.
+     * 
+     * @param text the query text
+     * @return the parsed query; empty if the text has no terms
+     */
+    public static SearchQuery parse(String text) {
+        List<Tag> tags = new ArrayList<>();
+        List<String> words = new ArrayList<>();
+        StringBuilder captionText = new StringBuilder();
+        LocalDate fromDate = null;
+        LocalDate toDate = null;
+        String pathPrefix = "";
+        boolean matchAllTags = true;
+        
+        for (String token : tokenize(text)) {
+            String lower = token.toLowerCase(Locale.ROOT);
+            if (token.equalsIgnoreCase("AND")) {
+                matchAllTags = true;
+            } else if (token.equalsIgnoreCase("OR")) {
+                matchAllTags = false;
+            } else if (lower.startsWith("caption:")) {
+                captionText.append(' ').append(token.substring("caption:".length()));
+            } else if (lower.startsWith("from:") && parseDate(token.substring("from:".length())) != null) {
+                fromDate = parseDate(token.substring("from:".length()));
+            } else if (lower.startsWith("to:") && parseDate(token.substring("to:".length())) != null) {
+                toDate = parseDate(token.substring("to:".length()));
+            } else if (lower.startsWith("path:") && token.length() > "path:".length()) {
+                pathPrefix = normalizePath(token.substring("path:".length()));
+            } else {
+                int equals = token.indexOf('=');
+                if (equals > 0 && equals < token.length() - 1) {
+                    tags.add(new Tag(token.substring(0, equals), token.substring(equals + 1)));
+                } else if (!token.equals("=")) {
+                    words.add(token.toLowerCase(Locale.ROOT));
+                }
+            }
+        }
+        
+        return new SearchQuery(tags, matchAllTags, words,
+                CaptionIndex.normalize(captionText.toString()), fromDate, toDate, pathPrefix);
+    }
+    
+    /**
+     * Normalizes a file path for prefix matching.
+     * 
+     * @param path the path
+     * @return the path in lower case with forward slashes
+     */
+    private static String normalizePath(String path) {
+        return path.replace('\\', '/').toLowerCase(Locale.ROOT);
+    }
+    
+    /**
+     * Parses a date term's value.
+     * 
+     * @param text the date, in yyyy-mm-dd form
+     * @return the date, or null if the text isn't a valid date
+     */
+    private static LocalDate parseDate(String text) {
+        try {
+            return LocalDate.parse(text);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+    
+    /**
+     * Creates a query for tags and a date range, as entered in the search dialogs.
+     * 
+     * @param tags the tags to search for
+     * @param matchAllTags true to require every tag, false to require any one of them
+     * @param fromDate the first date taken to match, or null
+     * @param toDate the last date taken to match, or null
+     * @return the query
+     */
+    public static SearchQuery of(List<Tag> tags, boolean matchAllTags, LocalDate fromDate, LocalDate toDate) {
+        return new SearchQuery(new ArrayList<>(tags), matchAllTags, new ArrayList<>(), "", fromDate, toDate, "");
+    }
+    
+    /**
+     * Splits query text on spaces, keeping double-quoted sections together
+     * and dropping the quotes.
+     * 
+     * @param text the query text
+     * @return the tokens
+     */
+    private static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (Character.isWhitespace(c) && !quoted) {
+                if (current.length() > 0) {
+                    tokens.add(current.toString());
+                    current.setLength(0);
+                }
+            } else {
+                current.append(c);
+            }
+        }
+        if (current.length() > 0) {
+            tokens.add(current.toString());
+        }
+        return tokens;
+    }
+    
+    /**
+     * Builds the canonical text of this query.
+     * 
+     * @return the normalized query text
+     */
+    private String normalize() {
+        List<String> tagTerms = new ArrayList<>();
+        for (Tag tag : tags) {
+            tagTerms.add(tag.getName() + "=\"" + tag.getValue() + "\"");
+        }
+        Collections.sort(tagTerms);
+        
+        List<String> sortedWords = new ArrayList<>(words);
+        Collections.sort(sortedWords);
+        
+        List<String> terms = new ArrayList<>();
+        if (!tagTerms.isEmpty()) {
+            terms.add(String.join(matchAllTags ? " AND " : " OR ", tagTerms));
+        }
+        if (!captionText.isEmpty()) {
+            terms.add("caption:\"" + captionText + "\"");
+        }
+        if (fromDate != null) {
+            terms.add("from:" + fromDate);
+        }
+        if (toDate != null) {
+            terms.add("to:" + toDate);
+        }
+        if (!pathPrefix.isEmpty()) {
+            terms.add("path:\"" + pathPrefix + "\"");
+        }
+        terms.addAll(sortedWords);
+        return String.join(" ", terms);
+    }
+    
+    /**
+     * Determines if this query has no terms.
+     * 
+     * @return true if the query would match nothing in particular
+     */
+    public boolean isEmpty() {
+        return tags.isEmpty() && words.isEmpty() && captionText.isEmpty() && fromDate == null && toDate == null
+                && pathPrefix.isEmpty();
+    }
+    
+    /**
+     * Gets the tag terms.
+     * 
+     * @return the tags to search for
+     */
+    public List<Tag> getTags() {
+        return tags;
+    }
+    
+    /**
+     * Determines how the tag terms combine.
+     * 
+     * @return true if every tag is required, false if any one is enough
+     */
+    public boolean isMatchAllTags() {
+        return matchAllTags;
+    }
+    
+    /**
+     * Gets the free text words, in lower case.
+     * 
+     * @return the words to search for
+     */
+    public List<String> getWords() {
+        return words;
+    }
+    
+    /**
+     * Gets the words the caption must contain.
+     * 
+     * @return the normalized caption words, or an empty string if the query has no caption term
+     */
+    public String getCaptionText() {
+        return captionText;
+    }
+    
+    /**
+     * Determines if this query has a caption term.
+     * 
+     * @return true if results are filtered and ranked by caption
+     */
+    public boolean hasCaptionTerm() {
+        return !captionText.isEmpty();
+    }
+    
+    /**
+     * Gets the first date taken to match.
+     * 
+     * @return the start date, or null if unbounded
+     */
+    public LocalDate getFromDate() {
+        return fromDate;
+    }
+    
+    /**
+     * Gets the last date taken to match.
+     * 
+     * @return the end date, or null if unbounded
+     */
+    public LocalDate getToDate() {
+        return toDate;
+    }
+    
+    /**
+     * Gets the file path prefix photos must have.
+     * 
+     * @return the normalized prefix, or an empty string if the query has no path term
+     */
+    public String getPathPrefix() {
+        return pathPrefix;
+    }
+    
+    /**
+     * Gets the canonical text of this query.
+     * 
+     * @return the normalized query text
+     */
+    public String getNormalized() {
+        return normalized;
+    }
+    
+    /**
+     * Determines if a photo matches this query.
+     * 
+     * @param photo the photo to test
+     * @return true if the photo matches every part of the query
+     */
+    public boolean matches(Photo photo) {
+        return matches(photo, false);
+    }
+    
+    /**
+     * Determines if a photo matches this query, optionally skipping the
+     * caption term for photos already found through the caption index.
+     * 
+     * @param photo the photo to test
+     * @param captionChecked true if the photo is known to match the caption term
+     * @return true if the photo matches the rest of the query
+     */
+    boolean matches(Photo photo, boolean captionChecked) {
+        if (!pathPrefix.isEmpty() && !normalizePath(photo.getFilePath()).startsWith(pathPrefix)) {
+            return false;
+        }
+        
+        if (fromDate != null || toDate != null) {
+            long taken = photo.getDateTaken().getTimeInMillis();
+            if (taken < fromMillis || taken > toMillis) {
+                return false;
+            }
+        }
+        
+        if (!tags.isEmpty()) {
+            boolean tagsMatch = matchAllTags;
+            for (Tag tag : tags) {
+                boolean has = photo.hasTag(tag.getName(), tag.getValue());
+                if (matchAllTags && !has) {
+                    tagsMatch = false;
+                    break;
+                }
+                if (!matchAllTags && has) {
+                    tagsMatch = true;
+                    break;
+                }
+            }
+            if (!tagsMatch) {
+                return false;
+            }
+        }
+        
+        if (!captionChecked && !captionText.isEmpty() && !CaptionIndex.matches(photo.getCaption(), captionText)) {
+            return false;
+        }
+        
+        for (String word : words) {
+            if (!containsWord(photo, word)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Determines if a word appears in a photo's file name, caption, or tag values.
+     * 
+     * @param photo the photo
+     * @param word the lower-case word
+     * @return true if the word appears
+     */
+    private static boolean containsWord(Photo photo, String word) {
+        if (photo.getFileName().toLowerCase(Locale.ROOT).contains(word)
+                || photo.getCaption().toLowerCase(Locale.ROOT).contains(word)) {
+            return true;
+        }
+        for (Tag tag : photo.getTags()) {
+            if (tag.getValue().toLowerCase(Locale.ROOT).contains(word)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Compares queries by their normalized form.
+     * 
+     * @param obj the object to compare with
+     * @return true if both queries have the same normalized form
+     */
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof SearchQuery && normalized.equals(((SearchQuery) obj).normalized);
+    }
+    
+    /**
+     * Hashes the normalized form.
+     * 
+     * @return the hash code for this query
+     */
+    @Override
+    public int hashCode() {
+        return normalized.hashCode();
+    }
+    
+    /**
+     * Returns the normalized form of this query.
+     * 
+     * @return the normalized query text
+     */
+    @Override
+    public String toString() {
+        return normalized;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,27 @@
+package photos.model;
+
+import java.util.List;
+
+/**
+ * Receives the results of a {@link LiveSearch} as they are found.
+ * Both methods are called on the search thread.
+ * 
+ * @author Krish Patel, Darshan Surti
+ */
+public interface SearchResultListener {
+    
+    /**
+     * Called with the next group of matching photos.
+     * 
+     * @param photos the photos found since the previous call
+     */
+    void resultsFound(List<Photo> photos);
+    
+    /**
+     * Called once the search has looked at every photo.
+     * Not called if the search is cancelled first.
+     * 
+     * @param total the total number of matching photos
+     */
+    void searchFinished(int total);
+}
\ No newline at end of file
@@ -1,16 +1,33 @@
 package photos.model;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Supplier;
 
 /**
- * Utility class for searching photos by date range and tags.
+ * Utility class for searching photos by date range, tags, and captions.
+ * The searches of a whole user take the user's read lock themselves; the
+ * searches of a list of albums expect the caller to hold it if other
+ * threads may be changing the albums. Searches of a {@link UserSnapshot}
+ * need no lock.
  * 
  * @author Krish Patel, Darshan Surti
  */
 public class SearchUtil {
     
+    /** Results of recent searches, reused until the user's data changes. */
+    private static final SearchCache CACHE = new SearchCache(64, 1_000_000);
+    
+    static {
+        Metrics.gauge("search.cache.hitRatio", CACHE::getHitRatio);
+        Metrics.gauge("search.cache.entries", CACHE::getEntryCount);
+    }
+    
     /**
      * Search for photos within a date range.
      * 
@@ -20,33 +37,48 @@ public class SearchUtil {
      * @return a list of photos that were taken within the date range
      */
     public static List<Photo> searchByDateRange(List<Album> albums, Calendar startDate, Calendar endDate) {
+        SearchEvent event = new SearchEvent();
+        event.begin();
+        long start = System.nanoTime();
         List<Photo> results = new ArrayList<>();
+        Set<Photo> seen = new HashSet<>();
         
         // Clear milliseconds for accurate comparisons
         startDate.set(Calendar.MILLISECOND, 0);
         endDate.set(Calendar.MILLISECOND, 0);
         
+        // Compare times directly; comparing calendars copies one whose fields were just set
+        long startMillis = startDate.getTimeInMillis();
+        long endMillis = endDate.getTimeInMillis();
+        
         for (Album album : albums) {
             for (Photo photo : album.getPhotos()) {
-                Calendar photoDate = photo.getDateTaken();
+                long photoMillis = photo.getDateTaken().getTimeInMillis();
                 
                 // Check if photo date is within range (inclusive)
-                if ((photoDate.equals(startDate) || photoDate.after(startDate)) && 
-                    (photoDate.equals(endDate) || photoDate.before(endDate))) {
+                if (photoMillis >= startMillis && photoMillis <= endMillis) {
                     
                     // Add the photo if it's not already in the results
-                    if (!results.contains(photo)) {
+                    if (seen.add(photo)) {
                         results.add(photo);
                     }
                 }
             }
         }
         
+        Metrics.histogram("search.dateRange.micros").recordMicrosSince(start);
+        Metrics.histogram("search.results").record(results.size());
+        commit(event, "dateRange", () -> startDate.getTime() + " to " + endDate.getTime(),
+                countPhotos(albums), results.size(), false);
         return results;
     }
     
     /**
      * Search for photos with a specific tag.
+     * Albums of the same user are searched through the user's
+     * {@link TagIndex}, which reads only the photos with the tag and lists
+     * them in the order they were added to the user. Other albums are
+     * scanned and their photos listed in album order.
      * 
      * @param albums the list of albums to search in
      * @param tagName the tag name to search for
@@ -54,24 +86,42 @@ public class SearchUtil {
      * @return a list of photos that have the specified tag
      */
     public static List<Photo> searchByTag(List<Album> albums, String tagName, String tagValue) {
-        List<Photo> results = new ArrayList<>();
-        
-        for (Album album : albums) {
-            for (Photo photo : album.getPhotos()) {
-                if (photo.hasTag(tagName, tagValue)) {
-                    // Add the photo if it's not already in the results
-                    if (!results.contains(photo)) {
-                        results.add(photo);
+        SearchEvent event = new SearchEvent();
+        event.begin();
+        long start = System.nanoTime();
+        TagIndex index = getTagIndex(albums);
+        List<Photo> results;
+        int checked;
+        if (index != null) {
+            int[] ids = index.find(tagName, tagValue);
+            results = photosIn(albums, ids);
+            checked = ids.length;
+        } else {
+            results = new ArrayList<>();
+            Set<Photo> seen = new HashSet<>();
+            for (Album album : albums) {
+                for (Photo photo : album.getPhotos()) {
+                    if (photo.hasTag(tagName, tagValue)) {
+                        // Add the photo if it's not already in the results
+                        if (seen.add(photo)) {
+                            results.add(photo);
+                        }
                     }
                 }
             }
+            checked = countPhotos(albums);
         }
         
+        Metrics.histogram("search.tag.micros").recordMicrosSince(start);
+        Metrics.histogram("search.results").record(results.size());
+        commit(event, "tag", () -> tagName + "=" + tagValue, checked, results.size(), false);
         return results;
     }
     
     /**
      * Search for photos that match both tag criteria (AND operation).
+     * Like {@link #searchByTag(List, String, String)}, albums of the same
+     * user are searched through the user's tag index.
      * 
      * @param albums the list of albums to search in
      * @param tag1Name the first tag name
@@ -83,24 +133,43 @@ public class SearchUtil {
     public static List<Photo> searchByTagsAnd(List<Album> albums, 
                                                String tag1Name, String tag1Value,
                                                String tag2Name, String tag2Value) {
-        List<Photo> results = new ArrayList<>();
-        
-        for (Album album : albums) {
-            for (Photo photo : album.getPhotos()) {
-                if (photo.hasTag(tag1Name, tag1Value) && photo.hasTag(tag2Name, tag2Value)) {
-                    // Add the photo if it's not already in the results
-                    if (!results.contains(photo)) {
-                        results.add(photo);
+        SearchEvent event = new SearchEvent();
+        event.begin();
+        long start = System.nanoTime();
+        TagIndex index = getTagIndex(albums);
+        List<Photo> results;
+        int checked;
+        if (index != null) {
+            int[] ids = index.findAll(Arrays.asList(new Tag(tag1Name, tag1Value), new Tag(tag2Name, tag2Value)));
+            results = photosIn(albums, ids);
+            checked = ids.length;
+        } else {
+            results = new ArrayList<>();
+            Set<Photo> seen = new HashSet<>();
+            for (Album album : albums) {
+                for (Photo photo : album.getPhotos()) {
+                    if (photo.hasTag(tag1Name, tag1Value) && photo.hasTag(tag2Name, tag2Value)) {
+                        // Add the photo if it's not already in the results
+                        if (seen.add(photo)) {
+                            results.add(photo);
+                        }
                     }
                 }
             }
+            checked = countPhotos(albums);
         }
         
+        Metrics.histogram("search.tagsAnd.micros").recordMicrosSince(start);
+        Metrics.histogram("search.results").record(results.size());
+        commit(event, "tagsAnd", () -> tag1Name + "=" + tag1Value + " AND " + tag2Name + "=" + tag2Value,
+                checked, results.size(), false);
         return results;
     }
     
     /**
      * Search for photos that match either tag criteria (OR operation).
+     * Like {@link #searchByTag(List, String, String)}, albums of the same
+     * user are searched through the user's tag index.
      * 
      * @param albums the list of albums to search in
      * @param tag1Name the first tag name
@@ -112,19 +181,281 @@ public class SearchUtil {
     public static List<Photo> searchByTagsOr(List<Album> albums, 
                                               String tag1Name, String tag1Value,
                                               String tag2Name, String tag2Value) {
-        List<Photo> results = new ArrayList<>();
-        
-        for (Album album : albums) {
-            for (Photo photo : album.getPhotos()) {
-                if (photo.hasTag(tag1Name, tag1Value) || photo.hasTag(tag2Name, tag2Value)) {
-                    // Add the photo if it's not already in the results
-                    if (!results.contains(photo)) {
-                        results.add(photo);
+        SearchEvent event = new SearchEvent();
+        event.begin();
+        long start = System.nanoTime();
+        TagIndex index = getTagIndex(albums);
+        List<Photo> results;
+        int checked;
+        if (index != null) {
+            int[] ids = index.findAny(Arrays.asList(new Tag(tag1Name, tag1Value), new Tag(tag2Name, tag2Value)));
+            results = photosIn(albums, ids);
+            checked = ids.length;
+        } else {
+            results = new ArrayList<>();
+            Set<Photo> seen = new HashSet<>();
+            for (Album album : albums) {
+                for (Photo photo : album.getPhotos()) {
+                    if (photo.hasTag(tag1Name, tag1Value) || photo.hasTag(tag2Name, tag2Value)) {
+                        // Add the photo if it's not already in the results
+                        if (seen.add(photo)) {
+                            results.add(photo);
+                        }
                     }
                 }
             }
+            checked = countPhotos(albums);
+        }
+        
+        Metrics.histogram("search.tagsOr.micros").recordMicrosSince(start);
+        Metrics.histogram("search.results").record(results.size());
+        commit(event, "tagsOr", () -> tag1Name + "=" + tag1Value + " OR " + tag2Name + "=" + tag2Value,
+                checked, results.size(), false);
+        return results;
+    }
+    
+    /**
+     * Search a user's photos with a typed query, combining its tag, date,
+     * caption, and free text terms.
+     * Each distinct photo appears once. If the query has a caption term the
+     * results are ranked best match first; otherwise they are in the order
+     * the photos were first added.
+     * Results are cached, so repeating a search before the user's data
+     * changes returns the same list without scanning again. Large searches
+     * are split across cores by {@link ParallelSearch}.
+     * The user's read lock is held during the scan, so searches can run on
+     * any thread, in parallel with each other.
+     * 
+     * @param user the user whose photos to search
+     * @param query the query
+     * @return a read-only list of photos that match the query
+     */
+    public static List<Photo> search(User user, SearchQuery query) {
+        SearchEvent event = new SearchEvent();
+        event.begin();
+        String type = query.hasCaptionTerm() ? "caption" : "query";
+        List<Photo> cached = CACHE.get(user, query);
+        if (cached != null) {
+            commit(event, type, query::getNormalized, 0, cached.size(), true);
+            return cached;
         }
         
+        long start = System.nanoTime();
+        long version;
+        List<Photo> candidates;
+        List<Photo> results;
+        Lock lock = user.getLock().readLock();
+        lock.lock();
+        try {
+            version = user.getVersion();
+            candidates = getCandidates(user, query);
+            results = ParallelSearch.getDefault().filter(candidates, query);
+        } finally {
+            lock.unlock();
+        }
+        Metrics.histogram("search." + type + ".micros").recordMicrosSince(start);
+        Metrics.histogram("search.results").record(results.size());
+        commit(event, type, query::getNormalized, candidates.size(), results.size(), false);
+        return CACHE.put(user, query, version, results);
+    }
+    
+    /**
+     * Searches a snapshot of a user for the photos that match a query.
+     * The snapshot is read without locking, so a long search doesn't hold up
+     * changes to the user. The indexes aren't used, so every photo is checked.
+     * 
+     * @param snapshot the snapshot to search
+     * @param query the query
+     * @return copies of the matching photos as they were when the snapshot was taken, in album order
+     */
+    public static List<Photo> search(UserSnapshot snapshot, SearchQuery query) {
+        SearchEvent event = new SearchEvent();
+        event.begin();
+        long start = System.nanoTime();
+        List<Photo> candidates = snapshot.getPhotos();
+        List<Photo> results = ParallelSearch.getDefault().filter(candidates, query);
+        Metrics.histogram("search.snapshot.micros").recordMicrosSince(start);
+        Metrics.histogram("search.results").record(results.size());
+        commit(event, "snapshot", query::getNormalized, candidates.size(), results.size(), false);
         return results;
     }
-} 
\ No newline at end of file
+    
+    /**
+     * Counts the facets of a search's results: tag values, albums and months.
+     * The search itself is reused from the cache when possible, and the
+     * counts only read the results, so this costs little beyond the search.
+     * 
+     * @param user the user whose photos to search
+     * @param query the query
+     * @return the facet counts of the query's results
+     */
+    public static SearchFacets searchFacets(User user, SearchQuery query) {
+        SearchEvent event = new SearchEvent();
+        event.begin();
+        SearchFacets facets = CACHE.getFacets(user, query);
+        if (facets != null) {
+            commit(event, "facets", query::getNormalized, 0, facets.getTotal(), true);
+            return facets;
+        }
+        
+        long start = System.nanoTime();
+        long version;
+        Lock lock = user.getLock().readLock();
+        lock.lock();
+        try {
+            version = user.getVersion();
+            facets = SearchFacets.count(user, search(user, query));
+        } finally {
+            lock.unlock();
+        }
+        Metrics.histogram("search.facets.micros").recordMicrosSince(start);
+        commit(event, "facets", query::getNormalized, facets.getTotal(), facets.getTotal(), false);
+        CACHE.putFacets(user, query, version, facets);
+        return facets;
+    }
+    
+    /**
+     * Ends a search's flight recorder event and records it if enabled.
+     * 
+     * @param event the event begun when the search started
+     * @param type the kind of search
+     * @param query supplies the query text, only read if the event is recorded
+     * @param photosChecked the number of photos the search checked
+     * @param resultCount the number of results
+     * @param cached true if the results came from the cache
+     */
+    static void commit(SearchEvent event, String type, Supplier<String> query, int photosChecked,
+                       int resultCount, boolean cached) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.searchType = type;
+            event.query = query.get();
+            event.photosChecked = photosChecked;
+            event.resultCount = resultCount;
+            event.cached = cached;
+            event.commit();
+        }
+    }
+    
+    /**
+     * Counts the photos in a list of albums, counting shared photos once per album.
+     * 
+     * @param albums the albums
+     * @return the number of photos
+     */
+    private static int countPhotos(List<Album> albums) {
+        int count = 0;
+        for (Album album : albums) {
+            count += album.getPhotoCount();
+        }
+        return count;
+    }
+    
+    /**
+     * Gets the tag index that covers a list of albums.
+     * 
+     * @param albums the albums
+     * @return the index of the user all the albums belong to, or null if they don't all belong to one user
+     */
+    private static TagIndex getTagIndex(List<Album> albums) {
+        if (albums.isEmpty()) {
+            return null;
+        }
+        PhotoCatalog catalog = albums.get(0).getCatalog();
+        for (Album album : albums) {
+            if (album.getCatalog() != catalog) {
+                return null;
+            }
+        }
+        return catalog.getTagIndex();
+    }
+    
+    /**
+     * Gets the photos with the given ids that are in any of a user's albums.
+     * 
+     * @param albums albums of one user, all sharing the user's catalog
+     * @param ids photo ids in ascending order
+     * @return the photos in id order
+     */
+    private static List<Photo> photosIn(List<Album> albums, int[] ids) {
+        PhotoCatalog catalog = albums.get(0).getCatalog();
+        // Every cataloged photo is in one of the user's albums, so searching them all needs no check
+        boolean allAlbums = new HashSet<>(albums).size() == catalog.getOwner().getAlbums().size();
+        List<Photo> photos = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            if (allAlbums || containsPhotoId(albums, id)) {
+                photos.add(catalog.getPhoto(id));
+            }
+        }
+        return photos;
+    }
+    
+    /**
+     * Determines if any of a list of albums contains a photo.
+     * 
+     * @param albums the albums
+     * @param id the photo's id in the albums' catalog
+     * @return true if an album contains the photo
+     */
+    private static boolean containsPhotoId(List<Album> albums, int id) {
+        for (Album album : albums) {
+            if (album.containsPhotoId(id)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Gets the cache of search results, for its statistics.
+     * 
+     * @return the search cache
+     */
+    public static SearchCache getCache() {
+        return CACHE;
+    }
+    
+    /**
+     * Search a user's photos by caption.
+     * A caption matches if it contains every word of the text, ignoring case
+     * and punctuation; the best matches come first.
+     * 
+     * @param user the user whose photos to search
+     * @param text the words to look for
+     * @return a read-only list of photos whose captions match
+     */
+    public static List<Photo> searchByCaption(User user, String text) {
+        return search(user, SearchQuery.parse("caption:\"" + text.replace("\"", "") + "\""));
+    }
+    
+    /**
+     * Gets the photos a query needs to check, in the order results should be listed.
+     * A query with a caption term only needs the photos the caption index
+     * finds, ranked by {@link CaptionIndex#findRanked(String)}, and a query
+     * with tag terms only needs the photos the {@link TagIndex} finds with
+     * the tags, in id order; any other query checks every photo.
+     * 
+     * @param user the user whose photos to search
+     * @param query the query
+     * @return the candidate photos
+     */
+    static List<Photo> getCandidates(User user, SearchQuery query) {
+        PhotoCatalog catalog = user.getCatalog();
+        CaptionIndex captions = catalog.getCaptionIndex();
+        TagIndex tags = catalog.getTagIndex();
+        int[] ids;
+        if (query.hasCaptionTerm() && captions != null) {
+            ids = captions.findRanked(query.getCaptionText());
+        } else if (!query.getTags().isEmpty() && tags != null) {
+            ids = query.isMatchAllTags() ? tags.findAll(query.getTags()) : tags.findAny(query.getTags());
+        } else {
+            return catalog.getPhotos();
+        }
+        
+        List<Photo> candidates = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            candidates.add(catalog.getPhoto(id));
+        }
+        return candidates;
+    }
+}
\ No newline at end of file
@@ -20,6 +20,7 @@ public class StockPhotoManager {
     /**
      * Initializes the stock photos in the stock user's album.
      * This should be called when the application starts.
+     * The users are saved only if the stock album or a stock photo was added.
      */
     public static void initializeStockPhotos() {
         // Create the stock photos directory if it doesn't exist
@@ -38,9 +39,11 @@ public class StockPhotoManager {
         
         // Find the stock album
         Album stockAlbum = stockUser.findAlbumByName("stock");
+        boolean changed = false;
         if (stockAlbum == null) {
             stockAlbum = new Album("stock");
             stockUser.addAlbum(stockAlbum);
+            changed = true;
         }
         
         // Get stock photo files
@@ -73,15 +76,7 @@ public class StockPhotoManager {
         if (stockPhotoFiles != null) {
             for (File photoFile : stockPhotoFiles) {
                 // Check if the photo is already in the album
-                boolean alreadyExists = false;
-                for (Photo existingPhoto : stockAlbum.getPhotos()) {
-                    if (existingPhoto.getFilePath().equals(photoFile.getAbsolutePath())) {
-                        alreadyExists = true;
-                        break;
-                    }
-                }
-                
-                if (!alreadyExists) {
+                if (!stockAlbum.containsPhoto(photoFile.getAbsolutePath())) {
                     Photo photo = new Photo(photoFile.getAbsolutePath());
                     photo.setCaption("Stock photo: " + photoFile.getName());
                     
@@ -90,12 +85,15 @@ public class StockPhotoManager {
                     photo.addTag(new Tag("filename", photoFile.getName()));
                     
                     stockAlbum.addPhoto(photo);
+                    changed = true;
                 }
             }
         }
         
-        // Save changes
-        userManager.saveUsers();
+        // Save changes; most launches find every stock photo already added and have nothing to save
+        if (changed) {
+            userManager.saveUsers();
+        }
     }
     
     /**
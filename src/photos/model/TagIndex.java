@@ -0,0 +1,214 @@
+package photos.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Index of the tag names and values used in a user's photos, for suggesting
+ * completions as the user types a tag.
+ * Names, and the values used with each name, are kept in {@link PrefixCounts}
+ * with the number of photos using them, so the most used completions for a
+ * prefix are found in time that depends on how many are asked for, not on
+ * how many names or values start with it. Prefixes match ignoring case.
+ * <p>
+ * Each tag also maps to a {@link PostingList} of the ids of the photos
+ * that have it, so searches for tags read only the matching photos
+ * instead of checking every photo's tags. Tags match exactly, as in
+ * {@link Photo#hasTag(String, String)}.
+ * <p>
+ * The index belongs to the user's {@link PhotoCatalog} and is kept up to
+ * date as photos enter or leave the catalog and as tags are added to or
+ * removed from cataloged photos, so it never has to scan the photos again.
+ * 
+ * @author Krish Patel, Darshan Surti
+ */
+public class TagIndex {
+    
+    private static final int[] NO_IDS = new int[0];
+    
+    private final PrefixCounts nameCounts = new PrefixCounts();
+    private final Map<String, PrefixCounts> valueCounts = new HashMap<>();
+    private final Map<Tag, PostingList> postings = new HashMap<>();
+    
+    /**
+     * Indexes a tag on a cataloged photo.
+     * 
+     * @param id the photo's id
+     * @param tag the tag
+     */
+    void add(int id, Tag tag) {
+        nameCounts.increment(tag.getName());
+        valueCounts.computeIfAbsent(tag.getName(), name -> new PrefixCounts()).increment(tag.getValue());
+        postings.computeIfAbsent(tag, key -> new PostingList()).add(id);
+    }
+    
+    /**
+     * Stops indexing a tag on a cataloged photo.
+     * 
+     * @param id the photo's id
+     * @param tag the tag
+     */
+    void remove(int id, Tag tag) {
+        PostingList ids = postings.get(tag);
+        if (ids != null && ids.remove(id) && ids.size() == 0) {
+            postings.remove(tag);
+        }
+        nameCounts.decrement(tag.getName());
+        PrefixCounts values = valueCounts.get(tag.getName());
+        if (values != null) {
+            values.decrement(tag.getValue());
+            if (values.isEmpty()) {
+                valueCounts.remove(tag.getName());
+            }
+        }
+    }
+    
+    /**
+     * Indexes every tag on a photo that has entered the catalog.
+     * 
+     * @param id the photo's id
+     * @param photo the photo
+     */
+    void addAll(int id, Photo photo) {
+        for (Tag tag : photo.getTags()) {
+            add(id, tag);
+        }
+    }
+    
+    /**
+     * Stops indexing the tags on a photo that has left the catalog.
+     * 
+     * @param id the photo's id
+     * @param photo the photo
+     */
+    void removeAll(int id, Photo photo) {
+        for (Tag tag : photo.getTags()) {
+            remove(id, tag);
+        }
+    }
+    
+    /**
+     * Finds the photos with a tag.
+     * 
+     * @param name the tag name
+     * @param value the tag value
+     * @return the ids of the photos with that tag, in ascending order
+     */
+    public int[] find(String name, String value) {
+        PostingList ids = postings.get(new Tag(name, value));
+        return ids == null ? NO_IDS : ids.toArray();
+    }
+    
+    /**
+     * Finds the photos with every one of some tags.
+     * 
+     * @param tags the tags, at least one
+     * @return the ids of the photos with all of the tags, in ascending order
+     */
+    public int[] findAll(List<Tag> tags) {
+        List<PostingList> lists = new ArrayList<>();
+        for (Tag tag : tags) {
+            PostingList ids = postings.get(tag);
+            if (ids == null) {
+                return NO_IDS;
+            }
+            lists.add(ids);
+        }
+        
+        // Start from the rarest tag and narrow it with each more common one
+        lists.sort(Comparator.comparingInt(PostingList::size));
+        int[] candidates = lists.get(0).toArray();
+        int count = candidates.length;
+        for (int j = 1; j < lists.size() && count > 0; j++) {
+            count = lists.get(j).retainIn(candidates, count);
+        }
+        return Arrays.copyOf(candidates, count);
+    }
+    
+    /**
+     * Finds the photos with at least one of some tags.
+     * 
+     * @param tags the tags
+     * @return the ids of the photos with any of the tags, in ascending order
+     */
+    public int[] findAny(List<Tag> tags) {
+        int[][] lists = new int[tags.size()][];
+        int total = 0;
+        for (int i = 0; i < lists.length; i++) {
+            PostingList ids = postings.get(tags.get(i));
+            lists[i] = ids == null ? NO_IDS : ids.toArray();
+            total += lists[i].length;
+        }
+        
+        int[] merged = new int[total];
+        int count = 0;
+        for (int[] ids : lists) {
+            System.arraycopy(ids, 0, merged, count, ids.length);
+            count += ids.length;
+        }
+        Arrays.sort(merged);
+        
+        // A photo with several of the tags appears once per tag
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (distinct == 0 || merged[i] != merged[distinct - 1]) {
+                merged[distinct++] = merged[i];
+            }
+        }
+        return Arrays.copyOf(merged, distinct);
+    }
+    
+    /**
+     * Gets the most used tag names starting with a prefix.
+     * 
+     * @param prefix the prefix typed so far, matched ignoring case
+     * @param limit the maximum number of names to return
+     * @return the names, most used first
+     */
+    public List<String> completeNames(String prefix, int limit) {
+        return nameCounts.top(prefix, limit);
+    }
+    
+    /**
+     * Gets the most used values for a tag name starting with a prefix.
+     * 
+     * @param name the tag name
+     * @param prefix the prefix typed so far, matched ignoring case
+     * @param limit the maximum number of values to return
+     * @return the values, most used first; empty if the name isn't used
+     */
+    public List<String> completeValues(String name, String prefix, int limit) {
+        PrefixCounts values = valueCounts.get(name);
+        if (values == null) {
+            return Collections.emptyList();
+        }
+        return values.top(prefix, limit);
+    }
+    
+    /**
+     * Gets the number of photos using a tag name.
+     * 
+     * @param name the tag name
+     * @return the number of uses of that name
+     */
+    public int getNameCount(String name) {
+        return nameCounts.get(name);
+    }
+    
+    /**
+     * Gets the number of photos with a tag.
+     * 
+     * @param name the tag name
+     * @param value the tag value
+     * @return the number of photos with that tag
+     */
+    public int getCount(String name, String value) {
+        PrefixCounts values = valueCounts.get(name);
+        return values == null ? 0 : values.get(value);
+    }
+}
\ No newline at end of file
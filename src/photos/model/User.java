@@ -1,12 +1,38 @@
 package photos.model;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
+import java.lang.invoke.VarHandle;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * Represents a user in the Photos application.
  * Users have a username and a list of albums.
+ * Albums are kept both in display order and in a name index, so album names
+ * must be changed through {@link #renameAlbum(Album, String)} to keep the two in sync.
+ * The distinct photos across all albums are held once in the user's {@link PhotoCatalog}.
+ * Every change to the user's data increments its {@link #getVersion() version}.
+ * <p>
+ * Each user has a {@link #getLock() read/write lock} guarding its albums,
+ * catalog and photos. Every method that changes them, here and in
+ * {@link Album} and {@link Photo}, holds the write lock while it runs. Code
+ * that reads more than one thing from a user on a thread other than the one
+ * making changes, such as a search or a save, holds the read lock, so
+ * readers run in parallel with each other but never see half of a change.
+ * See {@link UserManager} for the full contract.
+ * <p>
+ * Code that reads a whole user for a long time, such as a save, takes a
+ * {@link #snapshot() snapshot} instead, which holds the read lock only
+ * long enough to record the moment it was taken.
  * 
  * @author Krish Patel, Darshan Surti
  */
@@ -15,6 +41,14 @@ public class User implements Serializable {
     
     private String username;
     private List<Album> albums;
+    private PhotoCatalog catalog;
+    private transient Map<String, Album> albumsByName;
+    private transient List<Album> albumsView;
+    private transient ModelEventBus eventBus;
+    private transient ReadWriteLock lock;
+    private transient volatile long version;
+    private transient volatile long epoch;
+    private transient volatile Versions.Version<Album[]> older;
     
     /**
      * Creates a new user with the given username and an empty list of albums.
@@ -24,6 +58,22 @@ public class User implements Serializable {
     public User(String username) {
         this.username = username;
         this.albums = new ArrayList<>();
+        this.catalog = new PhotoCatalog(this);
+        initTransientState();
+    }
+    
+    /**
+     * Builds the album name index, the read-only album list view, the event bus and the lock.
+     */
+    private void initTransientState() {
+        albumsByName = new HashMap<>();
+        for (Album album : albums) {
+            albumsByName.put(album.getName(), album);
+        }
+        albumsView = Collections.unmodifiableList(albums);
+        eventBus = new ModelEventBus();
+        lock = new ReentrantReadWriteLock();
+        epoch = Versions.now();
     }
     
     /**
@@ -37,29 +87,193 @@ public class User implements Serializable {
     
     /**
      * Gets the list of albums for this user.
+     * The list is read-only; use {@link #addAlbum(Album)} and {@link #removeAlbum(Album)} to change it.
      * 
      * @return the list of albums
      */
     public List<Album> getAlbums() {
-        return albums;
+        return albumsView;
+    }
+    
+    /**
+     * Gets the bus on which changes to this user's albums and photos are published.
+     * 
+     * @return the event bus
+     */
+    public ModelEventBus getEventBus() {
+        return eventBus;
+    }
+    
+    /**
+     * Gets the lock guarding this user's albums and photos.
+     * Hold the read lock while reading several things that must agree with
+     * each other from a thread that doesn't make the changes. The write lock
+     * is taken by every changing method; take it directly only to make a
+     * group of changes appear at once, as
+     * {@link UserManager#runBatch(User, Runnable)} does.
+     * 
+     * @return the read/write lock
+     */
+    public ReadWriteLock getLock() {
+        return lock;
+    }
+    
+    /**
+     * Takes the write lock of the user that owns a catalog, if it has one.
+     * 
+     * @param catalog the catalog being changed, or null
+     * @return the lock now held, to be passed to {@link #unlock(Lock)}, or null if there is no owner
+     */
+    static Lock lockForWrite(PhotoCatalog catalog) {
+        User owner = catalog == null ? null : catalog.getOwner();
+        if (owner == null) {
+            return null;
+        }
+        Lock writeLock = owner.lock.writeLock();
+        writeLock.lock();
+        return writeLock;
+    }
+    
+    /**
+     * Releases a lock taken by {@link #lockForWrite(PhotoCatalog)}.
+     * 
+     * @param held the lock, or null if none was taken
+     */
+    static void unlock(Lock held) {
+        if (held != null) {
+            held.unlock();
+        }
+    }
+    
+    /**
+     * Takes a snapshot of this user's albums and photos as they are now.
+     * This holds the read lock only long enough to record the moment, so
+     * it takes about the same time however many photos the user has.
+     * Close the snapshot when done with it.
+     * 
+     * @return the snapshot
+     */
+    public UserSnapshot snapshot() {
+        lock.readLock().lock();
+        try {
+            return new UserSnapshot(this, Versions.open(), version);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Keeps this user's list of albums for the open snapshots that may
+     * read it, if there are any, before it changes.
+     */
+    private void beforeChange() {
+        if (Versions.isShared(epoch)) {
+            older = Versions.push(albums.toArray(new Album[0]), epoch, older);
+            epoch = Versions.now();
+            // Snapshots reading concurrently must see the new epoch before the change
+            VarHandle.fullFence();
+        }
+    }
+    
+    /**
+     * Gets this user's albums as they were when a snapshot was taken.
+     * Safe to call while another thread changes the user.
+     * 
+     * @param snapshot the snapshot's epoch
+     * @return the albums in order
+     */
+    Album[] albumsAt(long snapshot) {
+        while (true) {
+            long current = epoch;
+            if (current > snapshot) {
+                // Changed since the snapshot, so the list it saw was kept
+                return Versions.find(older, snapshot);
+            }
+            
+            Album[] currentAlbums = albums.toArray(new Album[0]);
+            VarHandle.acquireFence();
+            if (epoch == current && !Arrays.asList(currentAlbums).contains(null)) {
+                return currentAlbums;
+            }
+        }
+    }
+    
+    /**
+     * Gets the version of this user's data, which increases with every
+     * change to its albums, photos, captions or tags. Results computed at
+     * one version are still valid while the version is unchanged.
+     * 
+     * @return the current version
+     */
+    public long getVersion() {
+        return version;
+    }
+    
+    /**
+     * Publishes a change to this user's data and increments its version.
+     * 
+     * @param type the kind of change
+     * @param album the album involved, or null
+     * @param photo the photo involved, or null
+     * @param tag the tag involved, or null
+     * @param oldValue the previous name or caption, or null
+     */
+    void publish(ModelEvent.Type type, Album album, Photo photo, Tag tag, String oldValue) {
+        version++;
+        eventBus.publish(new ModelEvent(type, username, this, album, photo, tag, oldValue));
+    }
+    
+    /**
+     * Gets the catalog of distinct photos across this user's albums.
+     * 
+     * @return the photo catalog
+     */
+    public PhotoCatalog getCatalog() {
+        return catalog;
+    }
+    
+    /**
+     * Gets the index of the tag names and values used in this user's photos.
+     * 
+     * @return the tag index
+     */
+    public TagIndex getTagIndex() {
+        return catalog.getTagIndex();
+    }
+    
+    /**
+     * Gets the full-text index of this user's photo captions.
+     * 
+     * @return the caption index
+     */
+    public CaptionIndex getCaptionIndex() {
+        return catalog.getCaptionIndex();
     }
     
     /**
      * Adds an album to this user's list of albums.
+     * The album's photos are registered with this user's photo catalog.
      * 
      * @param album the album to add
      * @return true if the album was added successfully, false if an album with the same name already exists
      */
     public boolean addAlbum(Album album) {
-        // Check if an album with this name already exists
-        for (Album existingAlbum : albums) {
-            if (existingAlbum.getName().equals(album.getName())) {
+        lock.writeLock().lock();
+        try {
+            // Check if an album with this name already exists
+            if (albumsByName.containsKey(album.getName())) {
                 return false;
             }
+            
+            beforeChange();
+            album.attachTo(catalog);
+            albums.add(album);
+            albumsByName.put(album.getName(), album);
+            publish(ModelEvent.Type.ALBUM_ADDED, album, null, null, null);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
         }
-        
-        albums.add(album);
-        return true;
     }
     
     /**
@@ -69,7 +283,55 @@ public class User implements Serializable {
      * @return true if the album was removed, false if it wasn't found
      */
     public boolean removeAlbum(Album album) {
-        return albums.remove(album);
+        lock.writeLock().lock();
+        try {
+            if (albumsByName.get(album.getName()) != album) {
+                return false;
+            }
+            
+            beforeChange();
+            albumsByName.remove(album.getName());
+            albums.remove(album);
+            
+            // Give the album its own catalog so its photos no longer count as this user's
+            album.attachTo(new PhotoCatalog());
+            publish(ModelEvent.Type.ALBUM_REMOVED, album, null, null, null);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * Renames one of this user's albums.
+     * 
+     * @param album the album to rename
+     * @param newName the new album name
+     * @return true if the album was renamed, false if it isn't one of this user's albums
+     *         or another album already has the new name
+     */
+    public boolean renameAlbum(Album album, String newName) {
+        lock.writeLock().lock();
+        try {
+            if (albumsByName.get(album.getName()) != album) {
+                return false;
+            }
+            if (album.getName().equals(newName)) {
+                return true;
+            }
+            if (albumsByName.containsKey(newName)) {
+                return false;
+            }
+            
+            String oldName = album.getName();
+            albumsByName.remove(oldName);
+            album.setName(newName);
+            albumsByName.put(newName, album);
+            publish(ModelEvent.Type.ALBUM_RENAMED, album, null, null, oldName);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
     }
     
     /**
@@ -79,11 +341,46 @@ public class User implements Serializable {
      * @return the album with the given name, or null if not found
      */
     public Album findAlbumByName(String name) {
+        return albumsByName.get(name);
+    }
+    
+    /**
+     * Finds all of this user's albums that contain a photo.
+     * 
+     * @param photo the photo to look for
+     * @return a list of the albums containing the photo, in album order
+     */
+    public List<Album> findAlbumsContaining(Photo photo) {
+        List<Album> result = new ArrayList<>();
+        int photoId = catalog.idOf(photo);
+        if (photoId < 0) {
+            return result;
+        }
+        
         for (Album album : albums) {
-            if (album.getName().equals(name)) {
-                return album;
+            if (album.containsPhotoId(photoId)) {
+                result.add(album);
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Restores the album index and event bus after deserialization.
+     * Users saved before they had a catalog get one holding their albums' photos.
+     * 
+     * @param in the stream to read from
+     * @throws IOException if there's an error reading
+     * @throws ClassNotFoundException if a class in the stream can't be found
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        if (catalog == null) {
+            catalog = new PhotoCatalog(this);
+            for (Album album : albums) {
+                album.attachTo(catalog);
             }
         }
-        return null;
+        initTransientState();
     }
 } 
\ No newline at end of file
@@ -1,13 +1,60 @@
 package photos.model;
 
 import java.io.*;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
 
 /**
  * Manages users in the Photos application and handles persistence of user data.
+ * The manager's event bus carries user creation and deletion as well as
+ * every change published by the individual users.
+ * <p>
+ * Users are stored one after another in a single file, with the stream's
+ * object table reset between them, so the file can be read back one user
+ * at a time without holding the others in memory
+ * (see {@link #forEachStoredUser(UserVisitor)}). The usernames are stored
+ * ahead of the users, so the application can check a login while the
+ * users are still being read (see {@link #readUsernames()}). Each user is
+ * written from a {@link UserSnapshot}, so saving doesn't hold up changes.
+ * <p>
+ * Thread safety:
+ * <ul>
+ * <li>{@link #getInstance()} may be called from any thread; the first call
+ *     reads the users and the others wait for it.</li>
+ * <li>Adding, removing and looking up users is safe from any thread. Adding
+ *     or removing a user is atomic, so two threads adding the same name
+ *     create it once.</li>
+ * <li>Each user's data is guarded by the user's {@link User#getLock() read/write lock}.
+ *     Every method that changes a user, album or photo takes the write lock
+ *     itself, so a single change is always safe. {@link #runBatch(User, Runnable)}
+ *     holds it for the whole batch, so readers see all of a batch or none of it.</li>
+ * <li>Readers on other threads hold the read lock while they read, and run in
+ *     parallel with each other: {@link SearchUtil#search(User, SearchQuery)}
+ *     and {@link LiveSearch}.</li>
+ * <li>Long reads take a {@link User#snapshot() snapshot} instead, which holds
+ *     the read lock only while it is taken and is then read without locking
+ *     while changes continue. {@link #saveUsers()} writes each user from a
+ *     snapshot. Saves run one at a time.</li>
+ * <li>Code holding a read lock must not change the user; the lock can't be
+ *     upgraded and the attempt would wait forever.</li>
+ * <li>Don't call {@link #saveUsers()} while holding a user's write lock, since
+ *     taking each user's snapshot waits for its read lock.
+ *     {@link #runBatch(User, Runnable)} saves after releasing its lock.</li>
+ * <li>Model listeners run on the thread making the change, with its write
+ *     lock held. They may read the user, but must hand any slow work or
+ *     screen updates to another thread rather than wait for one.</li>
+ * </ul>
+ * The JavaFX screens make their changes on the JavaFX thread and read
+ * without locking; a read there can't see a half-finished change made by
+ * that thread, and changes from background threads reach the screens as
+ * events.
  * 
  * @author Krish Patel, Darshan Surti
  */
@@ -16,34 +63,94 @@ public class UserManager implements Serializable {
     private static final String DATA_DIR = "data";
     private static final String USERS_FILE = DATA_DIR + File.separator + "users.dat";
     
+    /** Written first in the users file to tell the per-user format from the older single map. */
+    private static final String FORMAT_MARKER = "photos-users-v4";
+    
+    /** The format before users were written from snapshots, with each user serialized whole. */
+    private static final String FORMAT_MARKER_V3 = "photos-users-v3";
+    
+    /** The per-user format before the usernames were stored ahead of the users. */
+    private static final String FORMAT_MARKER_V2 = "photos-users-v2";
+    
     private Map<String, User> users;
-    private static UserManager instance;
+    private static volatile UserManager instance;
+    
+    private transient ModelEventBus eventBus;
+    private transient ModelListener forwarder;
     
     /**
      * Private constructor for singleton pattern.
      * Initializes the users map.
      */
     private UserManager() {
-        users = new HashMap<>();
+        users = new ConcurrentHashMap<>();
+        eventBus = new ModelEventBus();
+        forwarder = eventBus::publish;
+    }
+    
+    /**
+     * Gets the bus on which all model changes are published.
+     * 
+     * @return the event bus
+     */
+    public ModelEventBus getEventBus() {
+        return eventBus;
+    }
+    
+    /**
+     * Adds a user to the map and forwards its changes to this manager's event bus.
+     * 
+     * @param user the user to register
+     */
+    private void register(User user) {
+        users.put(user.getUsername(), user);
+        user.getEventBus().subscribe(forwarder);
     }
     
     /**
      * Gets the singleton instance of UserManager.
+     * The first call reads every user from storage; calls made on other
+     * threads meanwhile wait for it to finish.
      * 
      * @return the UserManager instance
      */
     public static UserManager getInstance() {
-        if (instance == null) {
-            instance = new UserManager();
-            instance.loadUsers();
-            
-            // If no users exist, create the admin and stock users
-            if (instance.users.isEmpty()) {
-                instance.createAdminUser();
-                instance.createStockUser();
+        UserManager manager = instance;
+        if (manager == null) {
+            synchronized (UserManager.class) {
+                manager = instance;
+                if (manager == null) {
+                    manager = readStoredUsers();
+                    Map<String, User> loaded = manager.users;
+                    Metrics.gauge("users.count", () -> loaded.size());
+                    
+                    // If no users exist, create the admin and stock users
+                    if (manager.users.isEmpty()) {
+                        manager.createAdminUser();
+                        manager.createStockUser();
+                    }
+                    
+                    // Publish only once loading is complete
+                    instance = manager;
+                }
             }
         }
-        return instance;
+        return manager;
+    }
+    
+    /**
+     * Reads every saved user into a new user manager, as the first call to
+     * {@link #getInstance()} does, without making it the instance. This lets
+     * benchmarks time loading more than once in a run. The manager is
+     * separate from the instance, so changes made through it are lost
+     * unless saved, and saving it replaces the instance's users file.
+     * 
+     * @return a manager holding the saved users, or no users if nothing has been saved
+     */
+    public static UserManager readStoredUsers() {
+        UserManager manager = new UserManager();
+        manager.loadUsers();
+        return manager;
     }
     
     /**
@@ -51,7 +158,7 @@ public class UserManager implements Serializable {
      */
     private void createAdminUser() {
         User adminUser = new User("admin");
-        users.put("admin", adminUser);
+        register(adminUser);
     }
     
     /**
@@ -61,7 +168,7 @@ public class UserManager implements Serializable {
         User stockUser = new User("stock");
         Album stockAlbum = new Album("stock");
         stockUser.addAlbum(stockAlbum);
-        users.put("stock", stockUser);
+        register(stockUser);
     }
     
     /**
@@ -91,12 +198,13 @@ public class UserManager implements Serializable {
      * @return the newly created User object, or null if a user with that username already exists
      */
     public User addUser(String username) {
-        if (userExists(username)) {
+        User newUser = new User(username);
+        if (users.putIfAbsent(username, newUser) != null) {
             return null;
         }
         
-        User newUser = new User(username);
-        users.put(username, newUser);
+        newUser.getEventBus().subscribe(forwarder);
+        eventBus.publish(new ModelEvent(ModelEvent.Type.USER_ADDED, username, newUser, null, null, null, null));
         saveUsers();
         
         return newUser;
@@ -109,11 +217,16 @@ public class UserManager implements Serializable {
      * @return true if the user was removed, false if the user doesn't exist or is the admin user
      */
     public boolean removeUser(String username) {
-        if (!userExists(username) || username.equals("admin")) {
+        if (username.equals("admin")) {
             return false;
         }
         
-        users.remove(username);
+        User removedUser = users.remove(username);
+        if (removedUser == null) {
+            return false;
+        }
+        removedUser.getEventBus().unsubscribe(forwarder);
+        eventBus.publish(new ModelEvent(ModelEvent.Type.USER_DELETED, username, removedUser, null, null, null, null));
         saveUsers();
         
         return true;
@@ -128,37 +241,314 @@ public class UserManager implements Serializable {
         return new ArrayList<>(users.keySet());
     }
     
+    /**
+     * Applies a group of changes to a user as a single unit.
+     * The user's write lock is held throughout, so other threads see either
+     * none or all of the changes. Events from the changes are delivered
+     * together once they are all applied, and the users are saved once at
+     * the end, after the lock is released, instead of after every change.
+     * <p>
+     * If the changes throw, the ones already made to the user's albums and
+     * photos are undone from their held events, newest first, before the
+     * exception is rethrown. Nothing is delivered or saved. Undoing restores
+     * what the albums and photos contain, but a photo or album the batch
+     * removed is put back at the end of its list rather than where it was.
+     * 
+     * @param user the user whose data is changing
+     * @param changes the changes to apply
+     */
+    public void runBatch(User user, Runnable changes) {
+        ModelEventBus bus = user.getEventBus();
+        Lock lock = user.getLock().writeLock();
+        lock.lock();
+        try {
+            bus.beginBatch();
+            // Events held before this point belong to an enclosing batch
+            int mark = bus.heldCount();
+            try {
+                changes.run();
+            } catch (RuntimeException | Error e) {
+                bus.undoHeldSince(mark);
+                throw e;
+            } finally {
+                bus.endBatch();
+            }
+        } finally {
+            lock.unlock();
+        }
+        
+        // A nested batch leaves saving to the outermost one
+        if (!bus.isInBatch()) {
+            saveUsers();
+        }
+    }
+    
     /**
      * Loads users from the persistent storage.
      */
-    @SuppressWarnings("unchecked")
     private void loadUsers() {
         File file = new File(USERS_FILE);
         if (!file.exists()) {
             return;
         }
         
-        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(file))) {
-            users = (Map<String, User>) ois.readObject();
+        UsersLoadEvent event = new UsersLoadEvent();
+        event.begin();
+        long start = System.nanoTime();
+        try {
+            readUsers(file, (user, storedBytes) -> register(user));
+            Metrics.histogram("users.load.micros").recordMicrosSince(start);
+            Metrics.histogram("users.load.bytes").record(file.length());
+            event.succeeded = true;
         } catch (Exception e) {
             System.err.println("Error loading users: " + e.getMessage());
-            users = new HashMap<>();
+            Metrics.counter("users.load.errors").increment();
+            users = new ConcurrentHashMap<>();
+        }
+        
+        event.end();
+        if (event.shouldCommit()) {
+            event.userCount = users.size();
+            event.photoCount = countPhotos();
+            event.bytesRead = file.length();
+            event.commit();
+        }
+    }
+    
+    /**
+     * Counts the distinct photos across all users.
+     * 
+     * @return the number of photos
+     */
+    private int countPhotos() {
+        int count = 0;
+        for (User user : users.values()) {
+            count += user.getCatalog().size();
+        }
+        return count;
+    }
+    
+    /**
+     * Reads the saved users one at a time, passing each to a visitor.
+     * Only the user being visited is held in memory by this method, so a
+     * visitor that doesn't keep the users can look at all of them with the
+     * memory of one. The users are separate copies from the ones this
+     * manager holds, as of the last save. If nothing has been saved yet,
+     * the users in memory are visited instead, each with its read lock held.
+     * <p>
+     * The users are read from a copy of the users file, so saves can replace
+     * the file while a long read is under way; Windows won't replace a file
+     * that is open. If the calling thread is interrupted, reading stops
+     * before the next user with an {@link InterruptedIOException}.
+     * 
+     * @param visitor the visitor to call for each user
+     * @throws IOException if the users file can't be read, or the thread was interrupted
+     */
+    public void forEachStoredUser(UserVisitor visitor) throws IOException {
+        File file = new File(USERS_FILE);
+        if (!file.exists()) {
+            for (User user : new ArrayList<>(users.values())) {
+                Lock lock = user.getLock().readLock();
+                lock.lock();
+                try {
+                    visitor.visit(user, -1);
+                } finally {
+                    lock.unlock();
+                }
+            }
+            return;
+        }
+        
+        File copy = File.createTempFile("users", ".read", new File(DATA_DIR));
+        try {
+            // Copying has the file open too, so saves wait until it's done
+            synchronized (this) {
+                Files.copy(file.toPath(), copy.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            readUsers(copy, visitor);
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Unreadable users file", e);
+        } finally {
+            Files.deleteIfExists(copy.toPath());
+        }
+    }
+    
+    /**
+     * Reads the usernames saved at the start of the users file without reading the users.
+     * This takes about the same time however many photos the users have.
+     * 
+     * @return the saved usernames, or null if there is no users file or it
+     *         was saved before usernames were stored separately
+     * @throws IOException if the users file can't be read
+     */
+    public static List<String> readUsernames() throws IOException {
+        File file = new File(USERS_FILE);
+        if (!file.exists()) {
+            return null;
+        }
+        
+        try (ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            Object marker = ois.readObject();
+            if (!FORMAT_MARKER.equals(marker) && !FORMAT_MARKER_V3.equals(marker)) {
+                return null;
+            }
+            return new ArrayList<>(Arrays.asList((String[]) ois.readObject()));
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new IOException("Unreadable users file", e);
+        }
+    }
+    
+    /**
+     * Reads the users file, in any of the per-user formats or the older single map.
+     * 
+     * @param file the users file
+     * @param visitor the visitor to call for each user
+     * @throws IOException if there's an error reading
+     * @throws ClassNotFoundException if a class in the file can't be found
+     */
+    @SuppressWarnings("unchecked")
+    private void readUsers(File file, UserVisitor visitor) throws IOException, ClassNotFoundException {
+        CountingInputStream counter = new CountingInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try (ObjectInputStream ois = new ObjectInputStream(counter)) {
+            Object first = ois.readObject();
+            if (first instanceof Map) {
+                // Files saved before users were stored separately
+                for (User user : ((Map<String, User>) first).values()) {
+                    visitor.visit(user, -1);
+                }
+                return;
+            }
+            boolean snapshots = FORMAT_MARKER.equals(first);
+            if (snapshots || FORMAT_MARKER_V3.equals(first)) {
+                // Skip the usernames; they are read again with each user
+                ois.readObject();
+            } else if (!FORMAT_MARKER_V2.equals(first)) {
+                throw new IOException("Unknown users file format");
+            }
+            
+            int count = ois.readInt();
+            for (int i = 0; i < count; i++) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedIOException("Stopped reading users");
+                }
+                long start = counter.count;
+                User user = snapshots ? UserSnapshot.readFrom(ois) : (User) ois.readObject();
+                visitor.visit(user, counter.count - start);
+            }
         }
     }
     
     /**
      * Saves users to persistent storage.
+     * The file is written under a temporary name and then moved into place,
+     * so a reader streaming the previous file never sees a partial one.
+     * Saves from different threads run one at a time, and wait while
+     * {@link #forEachStoredUser(UserVisitor)} copies the file.
      */
-    public void saveUsers() {
+    public synchronized void saveUsers() {
         File dir = new File(DATA_DIR);
         if (!dir.exists()) {
             dir.mkdirs();
         }
         
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(USERS_FILE))) {
-            oos.writeObject(users);
+        UsersSaveEvent event = new UsersSaveEvent();
+        event.begin();
+        try {
+            event.succeeded = writeUsers();
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.userCount = users.size();
+                event.photoCount = countPhotos();
+                event.bytesWritten = new File(USERS_FILE).length();
+                event.commit();
+            }
+        }
+    }
+    
+    /**
+     * Writes all users to a temporary file and moves it over the users file.
+     * 
+     * @return true if the users were saved
+     */
+    private boolean writeUsers() {
+        long start = System.nanoTime();
+        File target = new File(USERS_FILE);
+        File temp = new File(USERS_FILE + ".tmp");
+        // Users added or removed during the save are left to the next one
+        List<User> saved = new ArrayList<>(users.values());
+        String[] usernames = new String[saved.size()];
+        for (int i = 0; i < usernames.length; i++) {
+            usernames[i] = saved.get(i).getUsername();
+        }
+        
+        try (ObjectOutputStream oos = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            oos.writeObject(FORMAT_MARKER);
+            oos.writeObject(usernames);
+            oos.writeInt(saved.size());
+            for (User user : saved) {
+                try (UserSnapshot snapshot = user.snapshot()) {
+                    snapshot.writeTo(oos);
+                }
+                // Forget the objects written so far so each user can be read back alone
+                oos.reset();
+            }
+        } catch (IOException e) {
+            System.err.println("Error saving users: " + e.getMessage());
+            Metrics.counter("users.save.errors").increment();
+            return false;
+        }
+        
+        try {
+            try {
+                Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            Metrics.histogram("users.save.micros").recordMicrosSince(start);
+            Metrics.histogram("users.save.bytes").record(target.length());
+            return true;
         } catch (IOException e) {
             System.err.println("Error saving users: " + e.getMessage());
+            Metrics.counter("users.save.errors").increment();
+            return false;
+        }
+    }
+    
+    /**
+     * Counts the bytes read through it, to measure how much of the file each user takes.
+     */
+    private static class CountingInputStream extends FilterInputStream {
+        private long count;
+        
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+        
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+        
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = super.read(buffer, offset, length);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+        
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
         }
     }
 } 
\ No newline at end of file
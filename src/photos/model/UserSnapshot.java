@@ -0,0 +1,291 @@
+package photos.model;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A user's albums and photos as they were at one moment, which can be read
+ * from any thread without locking while the user keeps changing.
+ * Taking a snapshot with {@link User#snapshot()} only records the moment,
+ * so it takes about the same time however many photos the user has. The
+ * albums and photos are read as they were at that moment when they are
+ * asked for: anything that hasn't changed since is read from the user
+ * itself, and anything that has was copied by the change before it was
+ * made. Saves, searches and other long reads work on a snapshot so the
+ * user can keep being changed meanwhile.
+ * <p>
+ * The photos a snapshot returns are detached copies, equal to the user's
+ * photos by file path, with the caption and tags they had at that moment.
+ * Each photo is copied once per snapshot, so a photo in several albums is
+ * the same copy in each. Changing the copies doesn't change the user.
+ * <p>
+ * While a snapshot is open, the first change to each album and photo keeps
+ * a copy of it for the snapshot, so close snapshots once they are read.
+ * 
+ * @author Krish Patel, Darshan Surti
+ */
+public class UserSnapshot implements AutoCloseable {
+    
+    private final User user;
+    private final long epoch;
+    private final long version;
+    private final Map<Photo, Photo> copies = new IdentityHashMap<>();
+    private volatile List<AlbumSnapshot> albums;
+    private volatile boolean closed;
+    
+    /**
+     * Creates a snapshot of a user.
+     * 
+     * @param user the user
+     * @param epoch the epoch at which the snapshot was opened
+     * @param version the user's version at that epoch
+     */
+    UserSnapshot(User user, long epoch, long version) {
+        this.user = user;
+        this.epoch = epoch;
+        this.version = version;
+    }
+    
+    /**
+     * Gets the user this is a snapshot of.
+     * 
+     * @return the user, which may have changed since
+     */
+    public User getUser() {
+        return user;
+    }
+    
+    /**
+     * Gets the username of the user.
+     * 
+     * @return the username
+     */
+    public String getUsername() {
+        return user.getUsername();
+    }
+    
+    /**
+     * Gets the user's {@link User#getVersion() version} when the snapshot was taken.
+     * 
+     * @return the version
+     */
+    public long getVersion() {
+        return version;
+    }
+    
+    /**
+     * Gets the user's albums as they were when the snapshot was taken.
+     * 
+     * @return the albums in order
+     * @throws IllegalStateException if the snapshot is closed
+     */
+    public List<AlbumSnapshot> getAlbums() {
+        List<AlbumSnapshot> result = albums;
+        if (result == null) {
+            checkOpen();
+            result = new ArrayList<>();
+            for (Album album : user.albumsAt(epoch)) {
+                Album.State state = album.stateAt(epoch);
+                result.add(new AlbumSnapshot(album, state.name, state.photos));
+            }
+            result = Collections.unmodifiableList(result);
+            albums = result;
+        }
+        return result;
+    }
+    
+    /**
+     * Finds an album by the name it had when the snapshot was taken.
+     * 
+     * @param name the album name
+     * @return the album, or null if the user had no album with that name
+     * @throws IllegalStateException if the snapshot is closed
+     */
+    public AlbumSnapshot findAlbum(String name) {
+        for (AlbumSnapshot album : getAlbums()) {
+            if (album.getName().equals(name)) {
+                return album;
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Gets the distinct photos across the user's albums, in album order.
+     * 
+     * @return copies of the photos as they were when the snapshot was taken
+     * @throws IllegalStateException if the snapshot is closed
+     */
+    public List<Photo> getPhotos() {
+        List<Photo> result = new ArrayList<>();
+        Set<Photo> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (AlbumSnapshot album : getAlbums()) {
+            for (Photo photo : album.photos) {
+                if (seen.add(photo)) {
+                    result.add(copyOf(photo));
+                }
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Gets the copy of one of the user's photos for this snapshot.
+     * 
+     * @param photo the user's photo
+     * @return the photo as it was when the snapshot was taken
+     */
+    private Photo copyOf(Photo photo) {
+        checkOpen();
+        // The user holds one object per photo, so photos are told apart by identity
+        synchronized (copies) {
+            Photo copy = copies.get(photo);
+            if (copy == null) {
+                copy = photo.copyAt(epoch);
+                copies.put(photo, copy);
+            }
+            return copy;
+        }
+    }
+    
+    /**
+     * Checks that the older versions this snapshot reads are still kept.
+     * 
+     * @throws IllegalStateException if the snapshot is closed
+     */
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Snapshot of " + user.getUsername() + " is closed");
+        }
+    }
+    
+    /**
+     * Writes the user as it was when the snapshot was taken: the username,
+     * then each album's name followed by its photos. A photo in several
+     * albums is written once and referred to after that.
+     * 
+     * @param out the stream to write to
+     * @throws IOException if there's an error writing
+     * @throws IllegalStateException if the snapshot is closed
+     */
+    public void writeTo(ObjectOutputStream out) throws IOException {
+        out.writeObject(user.getUsername());
+        List<AlbumSnapshot> albumList = getAlbums();
+        out.writeInt(albumList.size());
+        for (AlbumSnapshot album : albumList) {
+            out.writeObject(album.getName());
+            out.writeInt(album.photos.length);
+            for (Photo photo : album.photos) {
+                out.writeObject(copyOf(photo));
+            }
+        }
+    }
+    
+    /**
+     * Reads a user written by {@link #writeTo(ObjectOutputStream)}.
+     * 
+     * @param in the stream to read from
+     * @return a new user with the albums and photos that were written
+     * @throws IOException if there's an error reading
+     * @throws ClassNotFoundException if a class in the stream can't be found
+     */
+    static User readFrom(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        User user = new User((String) in.readObject());
+        int albumCount = in.readInt();
+        for (int i = 0; i < albumCount; i++) {
+            Album album = new Album((String) in.readObject());
+            user.addAlbum(album);
+            int photoCount = in.readInt();
+            for (int j = 0; j < photoCount; j++) {
+                album.addPhoto((Photo) in.readObject());
+            }
+        }
+        return user;
+    }
+    
+    /**
+     * Closes the snapshot, so changes no longer keep copies for it.
+     * Reading albums or photos from a closed snapshot throws
+     * {@link IllegalStateException}, except for albums read before it was closed.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        Versions.close(epoch);
+    }
+    
+    /**
+     * An album as it was when a snapshot was taken.
+     */
+    public class AlbumSnapshot {
+        private final Album album;
+        private final String name;
+        private final Photo[] photos;
+        
+        /**
+         * Creates an album snapshot.
+         * 
+         * @param album the album
+         * @param name the album's name at the snapshot
+         * @param photos the user's photos in the album at the snapshot, in order
+         */
+        private AlbumSnapshot(Album album, String name, Photo[] photos) {
+            this.album = album;
+            this.name = name;
+            this.photos = photos;
+        }
+        
+        /**
+         * Gets the album this is a snapshot of.
+         * 
+         * @return the album, which may have changed since
+         */
+        public Album getAlbum() {
+            return album;
+        }
+        
+        /**
+         * Gets the album's name when the snapshot was taken.
+         * 
+         * @return the album name
+         */
+        public String getName() {
+            return name;
+        }
+        
+        /**
+         * Gets the number of photos in the album when the snapshot was taken.
+         * 
+         * @return the number of photos
+         */
+        public int getPhotoCount() {
+            return photos.length;
+        }
+        
+        /**
+         * Gets the album's photos as they were when the snapshot was taken.
+         * 
+         * @return copies of the photos, in order
+         * @throws IllegalStateException if the snapshot is closed
+         */
+        public List<Photo> getPhotos() {
+            List<Photo> result = new ArrayList<>(photos.length);
+            for (Photo photo : photos) {
+                result.add(copyOf(photo));
+            }
+            return result;
+        }
+    }
+}
\ No newline at end of file
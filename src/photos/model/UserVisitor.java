@@ -0,0 +1,18 @@
+package photos.model;
+
+/**
+ * Receives users read one at a time from storage by
+ * {@link UserManager#forEachStoredUser(UserVisitor)}.
+ * 
+ * @author Krish Patel, Darshan Surti
+ */
+public interface UserVisitor {
+    
+    /**
+     * Called for each stored user.
+     * 
+     * @param user the user, a copy read from storage
+     * @param storedBytes the approximate size of the user in the users file, or -1 if unknown
+     */
+    void visit(User user, long storedBytes);
+}
\ No newline at end of file
@@ -0,0 +1,34 @@
+package photos.model;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event for reading the users file at startup.
+ * 
+ * @author Krish Patel, Darshan Surti
+ */
+@Name("photos.UsersLoad")
+@Label("Load Users")
+@Category({ "Photos", "Persistence" })
+@Description("Reading every user from the users file")
+class UsersLoadEvent extends Event {
+    
+    @Label("Users")
+    int userCount;
+    
+    @Label("Photos")
+    @Description("Distinct photos across all users")
+    int photoCount;
+    
+    @Label("Bytes Read")
+    @DataAmount
+    long bytesRead;
+    
+    @Label("Succeeded")
+    boolean succeeded;
+}
\ No newline at end of file
@@ -0,0 +1,34 @@
+package photos.model;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event for {@link UserManager#saveUsers()}.
+ * 
+ * @author Krish Patel, Darshan Surti
+ */
+@Name("photos.UsersSave")
+@Label("Save Users")
+@Category({ "Photos", "Persistence" })
+@Description("Writing every user to the users file")
+class UsersSaveEvent extends Event {
+    
+    @Label("Users")
+    int userCount;
+    
+    @Label("Photos")
+    @Description("Distinct photos across all users")
+    int photoCount;
+    
+    @Label("Bytes Written")
+    @DataAmount
+    long bytesWritten;
+    
+    @Label("Succeeded")
+    boolean succeeded;
+}
\ No newline at end of file
@@ -0,0 +1,138 @@
+package photos.model;
+
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the clock that orders {@link UserSnapshot snapshots} and changes, and
+ * the older versions of model objects that open snapshots still need.
+ * <p>
+ * Each versioned object records the epoch at which its current state began.
+ * A snapshot taken at epoch E reads an object's current state if it began at
+ * or before E, and otherwise the newest older version that did. Before
+ * changing an object whose current state an open snapshot may read, the
+ * object pushes a frozen copy of that state and starts a new epoch; objects
+ * that no open snapshot can see are changed in place, so changes cost nothing
+ * extra while no snapshot is open. Versions that no open snapshot can reach
+ * are dropped the next time their object changes.
+ * 
+ * @author Krish Patel, Darshan Surti
+ */
+final class Versions {
+    
+    private static final AtomicLong clock = new AtomicLong(1);
+    private static final TreeMap<Long, Integer> open = new TreeMap<>();
+    private static volatile long newestOpen = Long.MIN_VALUE;
+    private static volatile long oldestOpen = Long.MAX_VALUE;
+    
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private Versions() {
+    }
+    
+    /**
+     * Gets the epoch at which a change made now begins.
+     * 
+     * @return the current epoch, later than every open snapshot's
+     */
+    static long now() {
+        return clock.get();
+    }
+    
+    /**
+     * Determines if an open snapshot may read state that began at an epoch,
+     * in which case that state must be copied rather than changed in place.
+     * 
+     * @param epoch the epoch at which the state began
+     * @return true if an open snapshot was taken at or after that epoch
+     */
+    static boolean isShared(long epoch) {
+        return newestOpen >= epoch;
+    }
+    
+    /**
+     * Opens a snapshot at the current epoch.
+     * The caller must hold the read lock of the user being snapshotted.
+     * 
+     * @return the snapshot's epoch
+     */
+    static synchronized long open() {
+        long epoch = clock.getAndIncrement();
+        open.merge(epoch, 1, Integer::sum);
+        newestOpen = open.lastKey();
+        oldestOpen = open.firstKey();
+        return epoch;
+    }
+    
+    /**
+     * Closes a snapshot, letting the versions only it needed be dropped.
+     * 
+     * @param epoch the snapshot's epoch
+     */
+    static synchronized void close(long epoch) {
+        if (open.merge(epoch, -1, Integer::sum) == 0) {
+            open.remove(epoch);
+        }
+        newestOpen = open.isEmpty() ? Long.MIN_VALUE : open.lastKey();
+        oldestOpen = open.isEmpty() ? Long.MAX_VALUE : open.firstKey();
+    }
+    
+    /**
+     * Pushes a frozen state onto an object's older versions, dropping
+     * the versions no open snapshot can reach any more.
+     * 
+     * @param <T> the type of the frozen state
+     * @param value the state being replaced
+     * @param epoch the epoch at which that state began
+     * @param older the object's older versions, or null
+     * @return the new list of older versions
+     */
+    static <T> Version<T> push(T value, long epoch, Version<T> older) {
+        Version<T> pushed = new Version<>(value, epoch, older);
+        
+        // Snapshots read the first version that began at or before their epoch
+        long oldest = oldestOpen;
+        Version<T> version = pushed;
+        while (version != null && version.epoch > oldest) {
+            version = version.older;
+        }
+        if (version != null) {
+            version.older = null;
+        }
+        return pushed;
+    }
+    
+    /**
+     * Finds the state a snapshot sees among an object's older versions.
+     * 
+     * @param <T> the type of the frozen state
+     * @param older the object's older versions
+     * @param epoch the snapshot's epoch
+     * @return the newest state that began at or before the epoch
+     */
+    static <T> T find(Version<T> older, long epoch) {
+        Version<T> version = older;
+        while (version.epoch > epoch) {
+            version = version.older;
+        }
+        return version.value;
+    }
+    
+    /**
+     * A frozen state of an object and the epoch at which it began.
+     * 
+     * @param <T> the type of the frozen state
+     */
+    static final class Version<T> {
+        private final T value;
+        private final long epoch;
+        private volatile Version<T> older;
+        
+        private Version(T value, long epoch, Version<T> older) {
+            this.value = value;
+            this.epoch = epoch;
+            this.older = older;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,692 @@
+package photos.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import photos.model.Album;
+import photos.model.Photo;
+import photos.model.PhotoCatalog;
+import photos.model.SearchQuery;
+import photos.model.SearchUtil;
+import photos.model.Tag;
+import photos.model.TagIndex;
+import photos.model.User;
+import photos.model.UserManager;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Supplier;
+
+/**
+ * Answers the JSON API under {@code /api/}:
+ * <pre>
+ * GET    /api/users                                    usernames
+ * POST   /api/users                 name=              add a user
+ * GET    /api/users/{user}                             album and photo counts
+ * DELETE /api/users/{user}                             remove a user
+ * GET    /api/users/{user}/albums                      albums
+ * POST   /api/users/{user}/albums   name=              add an album
+ * GET    /api/users/{user}/albums/{album}              one album
+ * PUT    /api/users/{user}/albums/{album}  name=       rename an album
+ * DELETE /api/users/{user}/albums/{album}              remove an album
+ * GET    /api/users/{user}/albums/{album}/photos  [offset=] [limit=]
+ * POST   /api/users/{user}/albums/{album}/photos  path= or id=
+ * DELETE /api/users/{user}/albums/{album}/photos/{id}  remove from the album
+ * GET    /api/users/{user}/photos/{id}                 one photo
+ * PUT    /api/users/{user}/photos/{id}  caption=       set the caption
+ * POST   /api/users/{user}/photos/{id}/tags    name= value=
+ * DELETE /api/users/{user}/photos/{id}/tags    name= value=
+ * GET    /api/users/{user}/tags     [prefix=]          most used tag names
+ * GET    /api/users/{user}/tags/{name}  [prefix=]      most used values of a tag
+ * GET    /api/users/{user}/search   q= [offset=] [limit=]
+ * </pre>
+ * Parameters come from the query string or a form-encoded body. Photos are
+ * identified by their id in the user's {@link PhotoCatalog}, which is also
+ * how {@link ImageHandler} finds their files. Lists of photos are returned
+ * a page at a time, with the total count.
+ * <p>
+ * Each request reads under the user's read lock, or looks up and changes
+ * under its write lock so the change applies to what was looked up. The
+ * response is built while the lock is held and sent after it is released,
+ * so a slow client never holds up other requests. Changes are saved shortly
+ * afterwards by the server rather than on every request.
+ * 
+ * @author Krish Patel, Darshan Surti
+ */
+final class ApiHandler extends RequestHandler {
+    
+    /** The path the handler is registered at. */
+    static final String PATH = "/api/";
+    
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int MAX_COMPLETIONS = 50;
+    
+    private final UserManager userManager;
+    private final Runnable onChange;
+    
+    /**
+     * Creates the API handler.
+     * 
+     * @param userManager the users to serve
+     * @param onChange called after a request changes a user, to save the change
+     */
+    ApiHandler(UserManager userManager, Runnable onChange) {
+        super("api");
+        this.userManager = userManager;
+        this.onChange = onChange;
+    }
+    
+    @Override
+    void serve(HttpExchange exchange) throws IOException {
+        List<String> path = pathSegments(exchange, PATH);
+        if (path.isEmpty() || !path.get(0).equals("users")) {
+            sendError(exchange, 404, "No such resource");
+            return;
+        }
+        
+        Reply reply;
+        if (path.size() == 1) {
+            reply = users(exchange);
+        } else {
+            User user = userManager.getUser(path.get(1));
+            if (user == null) {
+                sendError(exchange, 404, "No user named " + path.get(1));
+                return;
+            }
+            
+            List<String> rest = path.subList(2, path.size());
+            String resource = rest.isEmpty() ? "" : rest.get(0);
+            List<String> below = rest.isEmpty() ? rest : rest.subList(1, rest.size());
+            switch (resource) {
+                case "":
+                    reply = user(exchange, user);
+                    break;
+                case "albums":
+                    reply = albums(exchange, user, below);
+                    break;
+                case "photos":
+                    reply = photos(exchange, user, below);
+                    break;
+                case "tags":
+                    reply = tags(exchange, user, below);
+                    break;
+                case "search":
+                    reply = below.isEmpty() ? search(exchange, user) : Reply.notFound("No such resource");
+                    break;
+                default:
+                    reply = Reply.notFound("No such resource");
+            }
+        }
+        reply.send(exchange);
+    }
+    
+    /**
+     * Lists or adds users.
+     * 
+     * @param exchange the request
+     * @return the reply
+     * @throws IOException if there's an error reading the request
+     */
+    private Reply users(HttpExchange exchange) throws IOException {
+        switch (exchange.getRequestMethod()) {
+            case "GET":
+                List<String> usernames = userManager.getAllUsernames();
+                Collections.sort(usernames);
+                JsonWriter json = new JsonWriter().beginArray();
+                for (String username : usernames) {
+                    json.value(username);
+                }
+                return Reply.ok(json.endArray());
+            case "POST":
+                String name = parameters(exchange).getOrDefault("name", "").trim();
+                if (name.isEmpty()) {
+                    return Reply.error(400, "A name is required");
+                }
+                // Adding a user saves straight away, as it does in the application
+                User user = userManager.addUser(name);
+                if (user == null) {
+                    return Reply.error(409, "A user named " + name + " already exists");
+                }
+                return read(user, () -> Reply.created(writeUser(new JsonWriter(), user)));
+            default:
+                return Reply.methodNotAllowed("GET, POST");
+        }
+    }
+    
+    /**
+     * Reads or removes a user.
+     * 
+     * @param exchange the request
+     * @param user the user
+     * @return the reply
+     */
+    private Reply user(HttpExchange exchange, User user) {
+        switch (exchange.getRequestMethod()) {
+            case "GET":
+                return read(user, () -> Reply.ok(writeUser(new JsonWriter(), user)));
+            case "DELETE":
+                if (!userManager.removeUser(user.getUsername())) {
+                    // Another request may have removed the user first
+                    return user.getUsername().equals("admin") ? Reply.error(403, "The admin user can't be removed")
+                            : Reply.notFound("No user named " + user.getUsername());
+                }
+                return Reply.noContent();
+            default:
+                return Reply.methodNotAllowed("GET, DELETE");
+        }
+    }
+    
+    /**
+     * Lists, adds, reads, renames or removes albums, or the photos in one.
+     * 
+     * @param exchange the request
+     * @param user the album's owner
+     * @param path the path below {@code albums}
+     * @return the reply
+     * @throws IOException if there's an error reading the request
+     */
+    private Reply albums(HttpExchange exchange, User user, List<String> path) throws IOException {
+        String method = exchange.getRequestMethod();
+        Map<String, String> parameters = parameters(exchange);
+        if (path.isEmpty()) {
+            switch (method) {
+                case "GET":
+                    return read(user, () -> {
+                        JsonWriter json = new JsonWriter().beginArray();
+                        for (Album album : user.getAlbums()) {
+                            writeAlbum(json, user.getCatalog(), album);
+                        }
+                        return Reply.ok(json.endArray());
+                    });
+                case "POST":
+                    String name = parameters.getOrDefault("name", "").trim();
+                    if (name.isEmpty()) {
+                        return Reply.error(400, "A name is required");
+                    }
+                    Album album = new Album(name);
+                    return change(user, () -> user.addAlbum(album)
+                            ? Reply.created(writeAlbum(new JsonWriter(), user.getCatalog(), album))
+                            : Reply.error(409, "An album named " + name + " already exists"));
+                default:
+                    return Reply.methodNotAllowed("GET, POST");
+            }
+        }
+        
+        String albumName = path.get(0);
+        if (path.size() == 1) {
+            switch (method) {
+                case "GET":
+                    return read(user, () -> {
+                        Album album = user.findAlbumByName(albumName);
+                        return album == null ? noAlbum(albumName)
+                                : Reply.ok(writeAlbum(new JsonWriter(), user.getCatalog(), album));
+                    });
+                case "PUT":
+                    String newName = parameters.getOrDefault("name", "").trim();
+                    if (newName.isEmpty()) {
+                        return Reply.error(400, "A name is required");
+                    }
+                    return change(user, () -> {
+                        Album album = user.findAlbumByName(albumName);
+                        if (album == null) {
+                            return noAlbum(albumName);
+                        }
+                        return user.renameAlbum(album, newName)
+                                ? Reply.ok(writeAlbum(new JsonWriter(), user.getCatalog(), album))
+                                : Reply.error(409, "An album named " + newName + " already exists");
+                    });
+                case "DELETE":
+                    return change(user, () -> {
+                        Album album = user.findAlbumByName(albumName);
+                        if (album == null) {
+                            return noAlbum(albumName);
+                        }
+                        user.removeAlbum(album);
+                        return Reply.noContent();
+                    });
+                default:
+                    return Reply.methodNotAllowed("GET, PUT, DELETE");
+            }
+        }
+        
+        if (!path.get(1).equals("photos") || path.size() > 3) {
+            return Reply.notFound("No such resource");
+        }
+        if (path.size() == 3) {
+            if (!method.equals("DELETE")) {
+                return Reply.methodNotAllowed("DELETE");
+            }
+            int id = parseId(path.get(2));
+            return change(user, () -> {
+                Album album = user.findAlbumByName(albumName);
+                if (album == null) {
+                    return noAlbum(albumName);
+                }
+                Photo photo = user.getCatalog().getPhoto(id);
+                if (photo == null || !album.removePhoto(photo)) {
+                    return Reply.notFound("Album " + albumName + " has no photo " + path.get(2));
+                }
+                return Reply.noContent();
+            });
+        }
+        
+        switch (method) {
+            case "GET":
+                int offset = intParameter(parameters, "offset", 0, 0, Integer.MAX_VALUE);
+                int limit = intParameter(parameters, "limit", DEFAULT_PAGE_SIZE, 0, MAX_PAGE_SIZE);
+                return read(user, () -> {
+                    Album album = user.findAlbumByName(albumName);
+                    if (album == null) {
+                        return noAlbum(albumName);
+                    }
+                    // Iterating skips holes without compacting, which readers mustn't do
+                    return Reply.ok(writePage(user.getCatalog(), album.getPhotos().iterator(),
+                            album.getPhotoCount(), offset, limit));
+                });
+            case "POST":
+                return addPhoto(user, albumName, parameters);
+            default:
+                return Reply.methodNotAllowed("GET, POST");
+        }
+    }
+    
+    /**
+     * Adds a photo to an album, either a new one from a file or one of the
+     * user's photos by id.
+     * 
+     * @param user the album's owner
+     * @param albumName the album name
+     * @param parameters {@code path} for a new photo, or {@code id} for an existing one
+     * @return the reply
+     */
+    private Reply addPhoto(User user, String albumName, Map<String, String> parameters) {
+        String path = parameters.get("path");
+        String idText = parameters.get("id");
+        Photo newPhoto = null;
+        if (path != null) {
+            File file = new File(path);
+            if (!file.isFile() || ImageHandler.contentType(file.getName()) == null) {
+                return Reply.error(400, "Not an image file: " + path);
+            }
+            newPhoto = new Photo(file.getAbsolutePath());
+        } else if (idText == null) {
+            return Reply.error(400, "A path or id is required");
+        }
+        
+        Photo created = newPhoto;
+        int id = idText == null ? -1 : parseId(idText);
+        return change(user, () -> {
+            Album album = user.findAlbumByName(albumName);
+            if (album == null) {
+                return noAlbum(albumName);
+            }
+            Photo photo = created != null ? created : user.getCatalog().getPhoto(id);
+            if (photo == null) {
+                return Reply.notFound("No photo " + idText);
+            }
+            if (!album.addPhoto(photo)) {
+                return Reply.error(409, "The photo is already in album " + albumName);
+            }
+            return Reply.created(writePhoto(new JsonWriter(), user.getCatalog(), photo));
+        });
+    }
+    
+    /**
+     * Reads or captions a photo, or tags or untags it.
+     * 
+     * @param exchange the request
+     * @param user the photo's owner
+     * @param path the path below {@code photos}
+     * @return the reply
+     * @throws IOException if there's an error reading the request
+     */
+    private Reply photos(HttpExchange exchange, User user, List<String> path) throws IOException {
+        if (path.isEmpty() || path.size() > 2 || (path.size() == 2 && !path.get(1).equals("tags"))) {
+            return Reply.notFound("No such resource");
+        }
+        String method = exchange.getRequestMethod();
+        Map<String, String> parameters = parameters(exchange);
+        int id = parseId(path.get(0));
+        PhotoCatalog catalog = user.getCatalog();
+        
+        if (path.size() == 1) {
+            switch (method) {
+                case "GET":
+                    return read(user, () -> {
+                        Photo photo = catalog.getPhoto(id);
+                        return photo == null ? noPhoto(path.get(0)) : Reply.ok(writePhoto(new JsonWriter(), catalog, photo));
+                    });
+                case "PUT":
+                    String caption = parameters.get("caption");
+                    if (caption == null) {
+                        return Reply.error(400, "A caption is required");
+                    }
+                    return change(user, () -> {
+                        Photo photo = catalog.getPhoto(id);
+                        if (photo == null) {
+                            return noPhoto(path.get(0));
+                        }
+                        photo.setCaption(caption.trim());
+                        return Reply.ok(writePhoto(new JsonWriter(), catalog, photo));
+                    });
+                default:
+                    return Reply.methodNotAllowed("GET, PUT");
+            }
+        }
+        
+        String name = parameters.getOrDefault("name", "").trim();
+        String value = parameters.getOrDefault("value", "").trim();
+        if (!method.equals("POST") && !method.equals("DELETE")) {
+            return Reply.methodNotAllowed("POST, DELETE");
+        }
+        if (name.isEmpty() || value.isEmpty()) {
+            return Reply.error(400, "A tag name and value are required");
+        }
+        Tag tag = new Tag(name, value);
+        return change(user, () -> {
+            Photo photo = catalog.getPhoto(id);
+            if (photo == null) {
+                return noPhoto(path.get(0));
+            }
+            if (method.equals("POST")) {
+                return photo.addTag(tag) ? Reply.created(writePhoto(new JsonWriter(), catalog, photo))
+                        : Reply.error(409, "The photo already has tag " + tag);
+            }
+            return photo.removeTag(tag) ? Reply.ok(writePhoto(new JsonWriter(), catalog, photo))
+                    : Reply.notFound("The photo has no tag " + tag);
+        });
+    }
+    
+    /**
+     * Completes tag names, or the values of one tag name.
+     * 
+     * @param exchange the request
+     * @param user the user whose tags to complete
+     * @param path the path below {@code tags}
+     * @return the reply
+     * @throws IOException if there's an error reading the request
+     */
+    private Reply tags(HttpExchange exchange, User user, List<String> path) throws IOException {
+        if (path.size() > 1) {
+            return Reply.notFound("No such resource");
+        }
+        if (!exchange.getRequestMethod().equals("GET")) {
+            return Reply.methodNotAllowed("GET");
+        }
+        Map<String, String> parameters = parameters(exchange);
+        String prefix = parameters.getOrDefault("prefix", "");
+        int limit = intParameter(parameters, "limit", MAX_COMPLETIONS, 0, MAX_COMPLETIONS);
+        return read(user, () -> {
+            TagIndex index = user.getTagIndex();
+            List<String> completions = path.isEmpty() ? index.completeNames(prefix, limit)
+                    : index.completeValues(path.get(0), prefix, limit);
+            JsonWriter json = new JsonWriter().beginArray();
+            for (String completion : completions) {
+                json.beginObject().name(path.isEmpty() ? "name" : "value").value(completion);
+                json.name("count").value(path.isEmpty() ? index.getNameCount(completion)
+                        : index.getCount(path.get(0), completion));
+                json.endObject();
+            }
+            return Reply.ok(json.endArray());
+        });
+    }
+    
+    /**
+     * Searches a user's photos with a query in the search field's syntax.
+     * 
+     * @param exchange the request
+     * @param user the user to search
+     * @return the reply
+     * @throws IOException if there's an error reading the request
+     */
+    private Reply search(HttpExchange exchange, User user) throws IOException {
+        if (!exchange.getRequestMethod().equals("GET")) {
+            return Reply.methodNotAllowed("GET");
+        }
+        Map<String, String> parameters = parameters(exchange);
+        SearchQuery query = SearchQuery.parse(parameters.getOrDefault("q", ""));
+        if (query.isEmpty()) {
+            return Reply.error(400, "A query is required, as in q=location=Paris");
+        }
+        int offset = intParameter(parameters, "offset", 0, 0, Integer.MAX_VALUE);
+        int limit = intParameter(parameters, "limit", DEFAULT_PAGE_SIZE, 0, MAX_PAGE_SIZE);
+        
+        // Takes the read lock itself, and answers repeated queries from the search cache
+        List<Photo> results = SearchUtil.search(user, query);
+        return read(user, () -> Reply.ok(writePage(user.getCatalog(), results.iterator(), results.size(), offset, limit)));
+    }
+    
+    /**
+     * Writes a user's name and counts.
+     * 
+     * @param json the writer
+     * @param user the user
+     * @return the writer
+     */
+    private static JsonWriter writeUser(JsonWriter json, User user) {
+        return json.beginObject()
+                .name("username").value(user.getUsername())
+                .name("albums").value(user.getAlbums().size())
+                .name("photos").value(user.getCatalog().size())
+                .name("version").value(user.getVersion())
+                .endObject();
+    }
+    
+    /**
+     * Writes an album's name, photo count, date range and cover photo id.
+     * 
+     * @param json the writer
+     * @param catalog the catalog of the album's owner
+     * @param album the album
+     * @return the writer
+     */
+    private static JsonWriter writeAlbum(JsonWriter json, PhotoCatalog catalog, Album album) {
+        json.beginObject()
+                .name("name").value(album.getName())
+                .name("photoCount").value(album.getPhotoCount());
+        Calendar[] range = album.getDateRange();
+        json.name("from").value(range == null ? null : formatTime(range[0].getTimeInMillis()));
+        json.name("to").value(range == null ? null : formatTime(range[1].getTimeInMillis()));
+        Photo cover = album.getCoverPhoto();
+        json.name("coverId");
+        if (cover == null) {
+            json.value((String) null);
+        } else {
+            json.value(catalog.idOf(cover));
+        }
+        return json.endObject();
+    }
+    
+    /**
+     * Writes a photo's id, file, caption, date taken and tags.
+     * 
+     * @param json the writer
+     * @param catalog the catalog of the photo's owner
+     * @param photo the photo
+     * @return the writer
+     */
+    private static JsonWriter writePhoto(JsonWriter json, PhotoCatalog catalog, Photo photo) {
+        json.beginObject()
+                .name("id").value(catalog.idOf(photo))
+                .name("path").value(photo.getFilePath())
+                .name("fileName").value(photo.getFileName())
+                .name("caption").value(photo.getCaption())
+                .name("taken").value(formatTime(photo.getDateTaken().getTimeInMillis()))
+                .name("tags").beginArray();
+        for (Tag tag : photo.getTags()) {
+            json.beginObject().name("name").value(tag.getName()).name("value").value(tag.getValue()).endObject();
+        }
+        return json.endArray().endObject();
+    }
+    
+    /**
+     * Writes one page of a list of photos, with the list's total size.
+     * 
+     * @param catalog the catalog of the photos' owner
+     * @param photos the photos, in order
+     * @param total the number of photos in the list
+     * @param offset the number of photos to skip
+     * @param limit the most photos to write
+     * @return the writer
+     */
+    private static JsonWriter writePage(PhotoCatalog catalog, Iterator<Photo> photos, int total, int offset, int limit) {
+        JsonWriter json = new JsonWriter().beginObject()
+                .name("total").value(total)
+                .name("offset").value(offset)
+                .name("photos").beginArray();
+        for (int i = 0; i < offset && photos.hasNext(); i++) {
+            photos.next();
+        }
+        for (int i = 0; i < limit && photos.hasNext(); i++) {
+            writePhoto(json, catalog, photos.next());
+        }
+        return json.endArray().endObject();
+    }
+    
+    /**
+     * Formats a time as an ISO-8601 instant.
+     * 
+     * @param millis the time in milliseconds since the epoch
+     * @return the formatted time
+     */
+    private static String formatTime(long millis) {
+        return Instant.ofEpochMilli(millis).toString();
+    }
+    
+    /**
+     * Parses a photo id from a path.
+     * 
+     * @param text the id text
+     * @return the id, or -1 if it isn't a number, which no photo has
+     */
+    private static int parseId(String text) {
+        try {
+            return Integer.parseInt(text);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+    
+    /**
+     * Builds the reply for an album that doesn't exist.
+     * 
+     * @param name the album name
+     * @return the reply
+     */
+    private static Reply noAlbum(String name) {
+        return Reply.notFound("No album named " + name);
+    }
+    
+    /**
+     * Builds the reply for a photo that doesn't exist.
+     * 
+     * @param id the photo id as given
+     * @return the reply
+     */
+    private static Reply noPhoto(String id) {
+        return Reply.notFound("No photo " + id);
+    }
+    
+    /**
+     * Builds a reply under a user's read lock.
+     * 
+     * @param user the user being read
+     * @param reader builds the reply
+     * @return the reply
+     */
+    private static Reply read(User user, Supplier<Reply> reader) {
+        Lock lock = user.getLock().readLock();
+        lock.lock();
+        try {
+            return reader.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Makes a change under a user's write lock, and has it saved if the reply is a success.
+     * 
+     * @param user the user being changed
+     * @param change looks up what to change, changes it and builds the reply
+     * @return the reply
+     */
+    private Reply change(User user, Supplier<Reply> change) {
+        Reply reply;
+        Lock lock = user.getLock().writeLock();
+        lock.lock();
+        try {
+            reply = change.get();
+        } finally {
+            lock.unlock();
+        }
+        if (reply.status < 300) {
+            onChange.run();
+        }
+        return reply;
+    }
+    
+    /**
+     * A response built while a lock was held, to send once it is released:
+     * a JSON body for a success, or a message for an error.
+     */
+    private static final class Reply {
+        private final int status;
+        private final String body;
+        private final String allowed;
+        
+        private Reply(int status, String body, String allowed) {
+            this.status = status;
+            this.body = body;
+            this.allowed = allowed;
+        }
+        
+        static Reply ok(JsonWriter json) {
+            return new Reply(200, json.toString(), null);
+        }
+        
+        static Reply created(JsonWriter json) {
+            return new Reply(201, json.toString(), null);
+        }
+        
+        static Reply noContent() {
+            return new Reply(204, null, null);
+        }
+        
+        static Reply notFound(String message) {
+            return error(404, message);
+        }
+        
+        static Reply error(int status, String message) {
+            return new Reply(status, message, null);
+        }
+        
+        static Reply methodNotAllowed(String allowed) {
+            return new Reply(405, null, allowed);
+        }
+        
+        /**
+         * Sends the response.
+         * 
+         * @param exchange the exchange to respond to
+         * @throws IOException if there's an error writing the response
+         */
+        void send(HttpExchange exchange) throws IOException {
+            if (allowed != null) {
+                sendMethodNotAllowed(exchange, allowed);
+            } else if (status == 204) {
+                exchange.sendResponseHeaders(204, -1);
+            } else if (status >= 400) {
+                sendError(exchange, status, body);
+            } else {
+                sendJson(exchange, status, body);
+            }
+        }
+    }
+}
\ No newline at end of file
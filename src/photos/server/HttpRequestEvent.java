@@ -0,0 +1,35 @@
+package photos.server;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event for a request handled by the {@link PhotosServer}.
+ * 
+ * @author Krish Patel, Darshan Surti
+ */
+@Name("photos.HttpRequest")
+@Label("HTTP Request")
+@Category({ "Photos", "Server" })
+@Description("A request to the headless HTTP server")
+@StackTrace(false)
+class HttpRequestEvent extends Event {
+    
+    @Label("Method")
+    String method;
+    
+    @Label("Path")
+    String path;
+    
+    @Label("Status")
+    int status;
+    
+    @Label("Response Bytes")
+    @DataAmount
+    long bytes;
+}
\ No newline at end of file
@@ -0,0 +1,192 @@
+package photos.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import photos.model.Metrics;
+import photos.model.Photo;
+import photos.model.User;
+import photos.model.UserManager;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Streams photo files, under {@code /images/{user}/{id}}, and thumbnails of
+ * them, under {@code /thumbnails/{user}/{id}?size=200}, where the id is the
+ * photo's id in the user's catalog. Only files that are one of the user's
+ * photos can be read this way.
+ * <p>
+ * Files are sent with {@link FileChannel#transferTo}, so an image is never
+ * read into a byte array or held in memory whole, however large it is or
+ * however many are being sent at once. The JDK server gives handlers a
+ * stream rather than the socket itself, so the bytes still pass through a
+ * small buffer on their way to the connection. Thumbnails are made once by
+ * the {@link ThumbnailCache} and then sent from its file the same way.
+ * <p>
+ * Bytes sent are recorded in the {@code server.image.bytes} histogram.
+ * 
+ * @author Krish Patel, Darshan Surti
+ */
+final class ImageHandler extends RequestHandler {
+    
+    /** The path full-size images are served under. */
+    static final String IMAGES_PATH = "/images/";
+    
+    /** The path thumbnails are served under. */
+    static final String THUMBNAILS_PATH = "/thumbnails/";
+    
+    private static final int DEFAULT_THUMBNAIL_SIZE = 200;
+    private static final int MIN_THUMBNAIL_SIZE = 16;
+    private static final int MAX_THUMBNAIL_SIZE = 1024;
+    
+    private final UserManager userManager;
+    private final String prefix;
+    private final ThumbnailCache thumbnails;
+    
+    /**
+     * Creates a handler for full-size images or for thumbnails.
+     * 
+     * @param userManager the users whose photos to serve
+     * @param thumbnails the cache to serve thumbnails from, or null to serve full-size images
+     */
+    ImageHandler(UserManager userManager, ThumbnailCache thumbnails) {
+        super(thumbnails == null ? "image" : "thumbnail");
+        this.userManager = userManager;
+        this.prefix = thumbnails == null ? IMAGES_PATH : THUMBNAILS_PATH;
+        this.thumbnails = thumbnails;
+    }
+    
+    @Override
+    void serve(HttpExchange exchange) throws IOException {
+        if (!exchange.getRequestMethod().equals("GET")) {
+            sendMethodNotAllowed(exchange, "GET");
+            return;
+        }
+        List<String> path = pathSegments(exchange, prefix);
+        if (path.size() != 2) {
+            sendError(exchange, 404, "Use " + prefix + "{user}/{photo id}");
+            return;
+        }
+        User user = userManager.getUser(path.get(0));
+        String filePath = user == null ? null : filePathOf(user, path.get(1));
+        if (filePath == null) {
+            sendError(exchange, 404, "No photo " + path.get(1) + " for user " + path.get(0));
+            return;
+        }
+        
+        File file = new File(filePath);
+        String contentType = contentType(file.getName());
+        if (thumbnails != null) {
+            Map<String, String> parameters = parameters(exchange);
+            int size = intParameter(parameters, "size", DEFAULT_THUMBNAIL_SIZE, MIN_THUMBNAIL_SIZE, MAX_THUMBNAIL_SIZE);
+            try {
+                file = thumbnails.get(file, size);
+            } catch (NoSuchFileException e) {
+                sendError(exchange, 404, "Photo file not found: " + filePath);
+                return;
+            }
+            if (file == null) {
+                sendError(exchange, 415, "Can't make a thumbnail of " + filePath);
+                return;
+            }
+            contentType = ThumbnailCache.CONTENT_TYPE;
+        }
+        sendFile(exchange, file, contentType == null ? "application/octet-stream" : contentType);
+    }
+    
+    /**
+     * Looks up the file of one of a user's photos.
+     * 
+     * @param user the user
+     * @param idText the photo's id in the user's catalog
+     * @return the file path, or null if the user has no such photo
+     */
+    private static String filePathOf(User user, String idText) {
+        int id;
+        try {
+            id = Integer.parseInt(idText);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        Lock lock = user.getLock().readLock();
+        lock.lock();
+        try {
+            Photo photo = user.getCatalog().getPhoto(id);
+            return photo == null ? null : photo.getFilePath();
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Streams a file as the response body.
+     * 
+     * @param exchange the exchange to respond to
+     * @param file the file
+     * @param contentType the file's content type
+     * @throws IOException if there's an error reading the file or writing the response
+     */
+    private static void sendFile(HttpExchange exchange, File file, String contentType) throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
+            sendError(exchange, 404, "Photo file not found: " + file.getPath());
+            return;
+        }
+        
+        try (FileChannel source = channel) {
+            long size = source.size();
+            exchange.getResponseHeaders().set("Content-Type", contentType);
+            exchange.getResponseHeaders().set("Last-Modified", DateTimeFormatter.RFC_1123_DATE_TIME.format(
+                    ZonedDateTime.ofInstant(Instant.ofEpochMilli(file.lastModified()), ZoneOffset.UTC)));
+            exchange.sendResponseHeaders(200, size == 0 ? -1 : size);
+            try (OutputStream body = exchange.getResponseBody()) {
+                WritableByteChannel target = Channels.newChannel(body);
+                long position = 0;
+                while (position < size) {
+                    long sent = source.transferTo(position, size - position, target);
+                    if (sent <= 0) {
+                        // The file shrank after its size was sent; the client sees a short body
+                        break;
+                    }
+                    position += sent;
+                }
+                Metrics.histogram("server.image.bytes").record(position);
+            }
+        }
+    }
+    
+    /**
+     * Gets the content type of an image file from its extension.
+     * 
+     * @param fileName the file name
+     * @return the content type, or null if the file isn't a kind of image the application opens
+     */
+    static String contentType(String fileName) {
+        String name = fileName.toLowerCase(Locale.ROOT);
+        if (name.endsWith(".jpg") || name.endsWith(".jpeg")) {
+            return "image/jpeg";
+        } else if (name.endsWith(".png")) {
+            return "image/png";
+        } else if (name.endsWith(".gif")) {
+            return "image/gif";
+        } else if (name.endsWith(".bmp")) {
+            return "image/bmp";
+        }
+        return null;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,160 @@
+package photos.server;
+
+/**
+ * Builds a JSON document in a string, one value at a time.
+ * Commas between values are added automatically; callers open and close
+ * objects and arrays in matching pairs and name each value in an object.
+ * 
+ * @author Krish Patel, Darshan Surti
+ */
+final class JsonWriter {
+    
+    private final StringBuilder json = new StringBuilder();
+    private boolean needsComma;
+    
+    /**
+     * Starts an object.
+     * 
+     * @return this writer
+     */
+    JsonWriter beginObject() {
+        separate();
+        json.append('{');
+        needsComma = false;
+        return this;
+    }
+    
+    /**
+     * Ends the current object.
+     * 
+     * @return this writer
+     */
+    JsonWriter endObject() {
+        json.append('}');
+        needsComma = true;
+        return this;
+    }
+    
+    /**
+     * Starts an array.
+     * 
+     * @return this writer
+     */
+    JsonWriter beginArray() {
+        separate();
+        json.append('[');
+        needsComma = false;
+        return this;
+    }
+    
+    /**
+     * Ends the current array.
+     * 
+     * @return this writer
+     */
+    JsonWriter endArray() {
+        json.append(']');
+        needsComma = true;
+        return this;
+    }
+    
+    /**
+     * Names the next value in the current object.
+     * 
+     * @param name the member name
+     * @return this writer
+     */
+    JsonWriter name(String name) {
+        separate();
+        appendString(name);
+        json.append(':');
+        needsComma = false;
+        return this;
+    }
+    
+    /**
+     * Writes a string, or null.
+     * 
+     * @param value the string
+     * @return this writer
+     */
+    JsonWriter value(String value) {
+        separate();
+        if (value == null) {
+            json.append("null");
+        } else {
+            appendString(value);
+        }
+        needsComma = true;
+        return this;
+    }
+    
+    /**
+     * Writes a number.
+     * 
+     * @param value the number
+     * @return this writer
+     */
+    JsonWriter value(long value) {
+        separate();
+        json.append(value);
+        needsComma = true;
+        return this;
+    }
+    
+    /**
+     * Adds a comma if a value came before the next one at this level.
+     */
+    private void separate() {
+        if (needsComma) {
+            json.append(',');
+            needsComma = false;
+        }
+    }
+    
+    /**
+     * Appends a quoted string, escaping quotes, backslashes and control characters.
+     * 
+     * @param value the string
+     */
+    private void appendString(String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    json.append("\\\"");
+                    break;
+                case '\\':
+                    json.append("\\\\");
+                    break;
+                case '\n':
+                    json.append("\\n");
+                    break;
+                case '\r':
+                    json.append("\\r");
+                    break;
+                case '\t':
+                    json.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+            }
+        }
+        json.append('"');
+    }
+    
+    /**
+     * Gets the document written so far.
+     * 
+     * @return the JSON text
+     */
+    @Override
+    public String toString() {
+        return json.toString();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,261 @@
+package photos.server;
+
+import com.sun.net.httpserver.HttpServer;
+import photos.model.Metrics;
+import photos.model.StockPhotoManager;
+import photos.model.UserManager;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs the application without its screens, as an HTTP server giving
+ * access to the same users, albums, photos, tags and searches:
+ * <ul>
+ * <li>{@code /api/} answers in JSON (see {@link ApiHandler})</li>
+ * <li>{@code /images/{user}/{id}} streams a photo's file</li>
+ * <li>{@code /thumbnails/{user}/{id}?size=200} streams a thumbnail, made
+ *     once and kept under {@code data/thumbnails}</li>
+ * </ul>
+ * The server reads and saves the users in {@code data/} under the working
+ * directory, as the application does, so run it from the repository root
+ * and not while the application is open. There is no login; by default the
+ * server only accepts connections from the same machine.
+ * <pre>
+ * java -cp bin photos.server.PhotosServer [port=8080] [host=127.0.0.1] [threads=256]
+ * </pre>
+ * Each request runs on its own virtual thread on Java 21 and later, and on
+ * a pool of {@code threads} threads before that. Changes are saved a couple
+ * of seconds after they are made, once for any number of changes in
+ * between, and when the server stops.
+ * <p>
+ * Metrics are available over JMX and appended to {@code data/metrics.log}
+ * every minute, as in the application.
+ * 
+ * @author Krish Patel, Darshan Surti
+ */
+public class PhotosServer {
+    
+    /** The port used when none is given. */
+    public static final int DEFAULT_PORT = 8080;
+    
+    /**
+     * The threads used when virtual threads aren't available and no number is
+     * given. Each image being streamed to a slow client holds one, so there
+     * are enough that small requests don't queue behind them.
+     */
+    public static final int DEFAULT_THREADS = 256;
+    
+    /** Connections waiting to be accepted before new ones are refused. */
+    private static final int BACKLOG = 4096;
+    
+    /**
+     * Idle connections kept open for clients to reuse. The JDK server closes
+     * connections beyond its default of 200 right after answering on them,
+     * and a client that had already sent its next request on one sees it fail.
+     */
+    private static final int MAX_IDLE_CONNECTIONS = 10_000;
+    
+    private static final long SAVE_DELAY_SECONDS = 2;
+    private static final long STOP_WAIT_SECONDS = 60;
+    private static final long METRICS_LOG_SECONDS = 60;
+    
+    private final UserManager userManager;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final ScheduledExecutorService saver;
+    private final AtomicBoolean savePending = new AtomicBoolean();
+    private final boolean virtualThreads;
+    
+    /**
+     * Creates a server for a set of users. It doesn't accept connections until started.
+     * 
+     * @param userManager the users to serve
+     * @param address the address to listen on; port 0 picks a free port
+     * @param thumbnailDirectory the directory to keep thumbnails in
+     * @param threads the threads to handle requests with if virtual threads aren't available
+     * @throws IOException if the address can't be bound
+     */
+    public PhotosServer(UserManager userManager, InetSocketAddress address, File thumbnailDirectory, int threads)
+            throws IOException {
+        this.userManager = userManager;
+        ExecutorService virtual = newVirtualThreadExecutor();
+        this.virtualThreads = virtual != null;
+        this.executor = virtual != null ? virtual : Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "photos-http");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.saver = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "photos-save");
+            thread.setDaemon(true);
+            return thread;
+        });
+        
+        configureJdkServer();
+        server = HttpServer.create(address, BACKLOG);
+        server.setExecutor(executor);
+        server.createContext(ApiHandler.PATH, new ApiHandler(userManager, this::scheduleSave));
+        server.createContext(ImageHandler.IMAGES_PATH, new ImageHandler(userManager, null));
+        server.createContext(ImageHandler.THUMBNAILS_PATH,
+                new ImageHandler(userManager, new ThumbnailCache(thumbnailDirectory)));
+    }
+    
+    /**
+     * Sets the JDK server's connection settings, unless they were given on
+     * the command line. They are read when the first server is created.
+     */
+    private static void configureJdkServer() {
+        if (System.getProperty("sun.net.httpserver.maxIdleConnections") == null) {
+            System.setProperty("sun.net.httpserver.maxIdleConnections", String.valueOf(MAX_IDLE_CONNECTIONS));
+        }
+        // Small JSON responses shouldn't wait to be combined with more data that isn't coming
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+    
+    /**
+     * Creates an executor that runs each task on a new virtual thread.
+     * The model builds with Java 17, so the Java 21 factory is looked up when the server starts.
+     * 
+     * @return the executor, or null if this Java has no virtual threads
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            // Before Java 21, or a preview that isn't enabled
+            return null;
+        }
+    }
+    
+    /**
+     * Starts accepting connections.
+     */
+    public void start() {
+        server.start();
+    }
+    
+    /**
+     * Stops accepting connections, waits for requests in progress to finish,
+     * and saves any changes not saved yet.
+     * 
+     * @param delaySeconds the longest to wait for requests in progress before closing their connections
+     */
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        
+        // A handler still running once its connection is closed can still change a user
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(STOP_WAIT_SECONDS, TimeUnit.SECONDS)) {
+                System.err.println("Requests still running after " + STOP_WAIT_SECONDS
+                        + " seconds; their changes may not be saved");
+            }
+            
+            // Let a save already under way finish rather than wait out a scheduled one
+            saver.shutdownNow();
+            saver.awaitTermination(STOP_WAIT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            saver.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        if (savePending.getAndSet(false)) {
+            userManager.saveUsers();
+        }
+    }
+    
+    /**
+     * Gets the port the server listens on.
+     * 
+     * @return the port
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+    
+    /**
+     * Determines if requests run on virtual threads.
+     * 
+     * @return true on Java 21 and later
+     */
+    public boolean usesVirtualThreads() {
+        return virtualThreads;
+    }
+    
+    /**
+     * Saves the users shortly, unless a save is already waiting to run.
+     * A burst of changes is saved once, after the last one.
+     */
+    void scheduleSave() {
+        if (savePending.compareAndSet(false, true)) {
+            saver.schedule(() -> {
+                // Changes made from here on wait for the next save
+                if (savePending.getAndSet(false)) {
+                    userManager.saveUsers();
+                }
+            }, SAVE_DELAY_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+    
+    /**
+     * Reads the users and serves them until the process is stopped.
+     * 
+     * @param args optional {@code name=value} settings: port, host and threads
+     * @throws IOException if the server can't listen on the address
+     */
+    public static void main(String[] args) throws IOException {
+        int port = DEFAULT_PORT;
+        String host = "127.0.0.1";
+        int threads = DEFAULT_THREADS;
+        for (String arg : args) {
+            String[] pair = arg.split("=", 2);
+            if (pair.length < 2) {
+                System.err.println("Settings are name=value: " + arg);
+                return;
+            }
+            switch (pair[0]) {
+                case "port":
+                    port = Integer.parseInt(pair[1]);
+                    break;
+                case "host":
+                    host = pair[1];
+                    break;
+                case "threads":
+                    threads = Integer.parseInt(pair[1]);
+                    break;
+                default:
+                    System.err.println("Unknown setting: " + arg);
+                    return;
+            }
+        }
+        
+        // Thumbnails are drawn without a display
+        System.setProperty("java.awt.headless", "true");
+        Metrics.registerMBean();
+        Metrics.startLogging(new File("data", "metrics.log"), METRICS_LOG_SECONDS);
+        
+        UserManager userManager = UserManager.getInstance();
+        StockPhotoManager.initializeStockPhotos();
+        
+        PhotosServer server = new PhotosServer(userManager, new InetSocketAddress(host, port),
+                new File("data", "thumbnails"), threads);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop(1);
+            Metrics.stopLogging();
+        }, "photos-server-shutdown"));
+        server.start();
+        System.out.println("Serving " + userManager.getAllUsernames().size() + " users at http://" + host + ":"
+                + server.getPort() + "/api/users on " + (server.usesVirtualThreads() ? "virtual threads"
+                        : threads + " threads"));
+    }
+}
\ No newline at end of file
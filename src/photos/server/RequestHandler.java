@@ -0,0 +1,227 @@
+package photos.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import photos.model.Metrics;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Base for the server's handlers: times each request, records it as a
+ * metric and a flight recorder event, turns unexpected exceptions into a
+ * 500 response, and always closes the exchange.
+ * Also holds the helpers the handlers share for reading requests and
+ * sending responses.
+ * <p>
+ * Each request is timed in the {@code server.<kind>.micros} histogram, where
+ * the kind is set by the subclass. Requests answered with a 5xx status are
+ * counted in {@code server.errors}, and those cut short by an I/O error,
+ * usually a client that went away, in {@code server.io.errors}.
+ * 
+ * @author Krish Patel, Darshan Surti
+ */
+abstract class RequestHandler implements HttpHandler {
+    
+    /** The most a request body is read, since bodies only carry form fields. */
+    private static final int MAX_BODY_BYTES = 64 * 1024;
+    
+    private final String kind;
+    
+    /**
+     * Creates a handler.
+     * 
+     * @param kind the name its requests are timed under
+     */
+    RequestHandler(String kind) {
+        this.kind = kind;
+    }
+    
+    /**
+     * Handles a request.
+     * 
+     * @param exchange the request and its response
+     */
+    @Override
+    public final void handle(HttpExchange exchange) {
+        HttpRequestEvent event = new HttpRequestEvent();
+        event.begin();
+        long start = System.nanoTime();
+        try {
+            serve(exchange);
+        } catch (IOException e) {
+            // Usually the client went away mid-response; there's no one left to tell
+            Metrics.counter("server.io.errors").increment();
+        } catch (RuntimeException e) {
+            System.err.println("Error handling " + exchange.getRequestMethod() + " "
+                    + exchange.getRequestURI() + ": " + e.getMessage());
+            e.printStackTrace();
+            if (exchange.getResponseCode() == -1) {
+                try {
+                    sendError(exchange, 500, "Internal error");
+                } catch (IOException ignored) {
+                    // The response can't be sent either
+                }
+            }
+        } finally {
+            exchange.close();
+            int status = exchange.getResponseCode();
+            Metrics.counter("server.requests").increment();
+            if (status >= 500) {
+                Metrics.counter("server.errors").increment();
+            }
+            Metrics.histogram("server." + kind + ".micros").recordMicrosSince(start);
+            event.end();
+            if (event.shouldCommit()) {
+                event.method = exchange.getRequestMethod();
+                event.path = exchange.getRequestURI().getRawPath();
+                event.status = status;
+                String length = exchange.getResponseHeaders().getFirst("Content-Length");
+                event.bytes = length == null ? 0 : Long.parseLong(length);
+                event.commit();
+            }
+        }
+    }
+    
+    /**
+     * Answers a request. The exchange is closed afterwards.
+     * 
+     * @param exchange the request and its response
+     * @throws IOException if there's an error reading the request or writing the response
+     */
+    abstract void serve(HttpExchange exchange) throws IOException;
+    
+    /**
+     * Splits the request path after a handler's prefix into decoded segments.
+     * Each segment is decoded separately, so {@code %2F} stays inside its segment.
+     * 
+     * @param exchange the request
+     * @param prefix the path the handler is registered at, ending in {@code /}
+     * @return the segments, without empty ones
+     */
+    static List<String> pathSegments(HttpExchange exchange, String prefix) {
+        String path = exchange.getRequestURI().getRawPath();
+        List<String> segments = new ArrayList<>();
+        for (String segment : path.substring(Math.min(prefix.length(), path.length())).split("/")) {
+            if (!segment.isEmpty()) {
+                // A + is a literal plus in a path, unlike in a query string
+                segments.add(URLDecoder.decode(segment.replace("+", "%2B"), StandardCharsets.UTF_8));
+            }
+        }
+        return segments;
+    }
+    
+    /**
+     * Reads the request's parameters from its query string and, for requests
+     * that have one, its form-encoded body. Body values win over query values.
+     * 
+     * @param exchange the request
+     * @return the parameters by name
+     * @throws IOException if there's an error reading the body
+     */
+    static Map<String, String> parameters(HttpExchange exchange) throws IOException {
+        Map<String, String> parameters = new HashMap<>();
+        parseForm(exchange.getRequestURI().getRawQuery(), parameters);
+        
+        String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        if (contentType != null && contentType.startsWith("application/x-www-form-urlencoded")) {
+            try (InputStream body = exchange.getRequestBody()) {
+                byte[] bytes = body.readNBytes(MAX_BODY_BYTES);
+                parseForm(new String(bytes, StandardCharsets.UTF_8), parameters);
+            }
+        }
+        return parameters;
+    }
+    
+    /**
+     * Parses {@code name=value} pairs separated by {@code &}.
+     * 
+     * @param form the encoded pairs, or null
+     * @param parameters the map to add the pairs to
+     */
+    private static void parseForm(String form, Map<String, String> parameters) {
+        if (form == null || form.isEmpty()) {
+            return;
+        }
+        for (String pair : form.split("&")) {
+            int equals = pair.indexOf('=');
+            String name = equals < 0 ? pair : pair.substring(0, equals);
+            String value = equals < 0 ? "" : pair.substring(equals + 1);
+            if (!name.isEmpty()) {
+                parameters.put(URLDecoder.decode(name, StandardCharsets.UTF_8),
+                        URLDecoder.decode(value, StandardCharsets.UTF_8));
+            }
+        }
+    }
+    
+    /**
+     * Reads a whole-number parameter, keeping it within bounds.
+     * 
+     * @param parameters the request's parameters
+     * @param name the parameter name
+     * @param fallback the value if the parameter is missing or not a number
+     * @param min the smallest value allowed
+     * @param max the largest value allowed
+     * @return the value
+     */
+    static int intParameter(Map<String, String> parameters, String name, int fallback, int min, int max) {
+        String text = parameters.get(name);
+        int value = fallback;
+        if (text != null) {
+            try {
+                value = Integer.parseInt(text.trim());
+            } catch (NumberFormatException e) {
+                value = fallback;
+            }
+        }
+        return Math.max(min, Math.min(max, value));
+    }
+    
+    /**
+     * Sends a JSON response.
+     * 
+     * @param exchange the exchange to respond to
+     * @param status the HTTP status
+     * @param json the JSON body
+     * @throws IOException if there's an error writing the response
+     */
+    static void sendJson(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream body = exchange.getResponseBody()) {
+            body.write(bytes);
+        }
+    }
+    
+    /**
+     * Sends an error as a JSON object with an {@code error} message.
+     * 
+     * @param exchange the exchange to respond to
+     * @param status the HTTP status
+     * @param message the message
+     * @throws IOException if there's an error writing the response
+     */
+    static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        sendJson(exchange, status, new JsonWriter().beginObject().name("error").value(message).endObject().toString());
+    }
+    
+    /**
+     * Sends a 405 response listing the methods a path accepts.
+     * 
+     * @param exchange the exchange to respond to
+     * @param allowed the accepted methods, comma separated
+     * @throws IOException if there's an error writing the response
+     */
+    static void sendMethodNotAllowed(HttpExchange exchange, String allowed) throws IOException {
+        exchange.getResponseHeaders().set("Allow", allowed);
+        sendError(exchange, 405, exchange.getRequestMethod() + " is not allowed here; use " + allowed);
+    }
+}
\ No newline at end of file
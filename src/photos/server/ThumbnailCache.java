@@ -0,0 +1,193 @@
+package photos.server;
+
+import photos.model.Metrics;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Makes JPEG thumbnails of photo files and keeps them in a directory, so
+ * each is made once and then served straight from its file.
+ * <p>
+ * A thumbnail's file name is derived from the photo's path, size on disk
+ * and modification time, so replacing a photo's file makes a new thumbnail
+ * rather than serving the old one. When several requests want the same
+ * thumbnail before it exists, one of them makes it and the others wait
+ * for it. Thumbnails are written under a temporary name and moved into
+ * place, so a reader never sees a partial file.
+ * <p>
+ * Decoding a full-size photo takes memory in proportion to its pixels,
+ * about 50 MB for a 12 megapixel image, and requests each run on their own
+ * thread. So that many requests for photos without thumbnails can't run
+ * out of memory together, only one photo per processor is decoded and
+ * scaled at a time; the other requests wait their turn.
+ * <p>
+ * Time spent making thumbnails is recorded in the
+ * {@code server.thumbnail.create.micros} histogram.
+ * 
+ * @author Krish Patel, Darshan Surti
+ */
+final class ThumbnailCache {
+    
+    /** The content type of every thumbnail. */
+    static final String CONTENT_TYPE = "image/jpeg";
+    
+    private final File directory;
+    private final Map<String, CompletableFuture<File>> creating = new ConcurrentHashMap<>();
+    private final Semaphore decoding = new Semaphore(Runtime.getRuntime().availableProcessors(), true);
+    
+    /**
+     * Creates a cache that keeps thumbnails in a directory.
+     * 
+     * @param directory the directory, created when the first thumbnail is made
+     */
+    ThumbnailCache(File directory) {
+        this.directory = directory;
+    }
+    
+    /**
+     * Gets a photo's thumbnail, making it if it doesn't exist yet.
+     * 
+     * @param source the photo file
+     * @param size the most pixels on the thumbnail's longer side
+     * @return the thumbnail file, or null if the photo can't be decoded
+     * @throws NoSuchFileException if the photo file doesn't exist
+     * @throws IOException if there's an error reading the photo or writing the thumbnail
+     */
+    File get(File source, int size) throws IOException {
+        if (!source.isFile()) {
+            throw new NoSuchFileException(source.getPath());
+        }
+        String key = source.getAbsolutePath() + "|" + source.length() + "|" + source.lastModified();
+        String name = UUID.nameUUIDFromBytes(key.getBytes(StandardCharsets.UTF_8)) + "-" + size + ".jpg";
+        File thumbnail = new File(directory, name);
+        if (thumbnail.isFile()) {
+            return thumbnail;
+        }
+        
+        CompletableFuture<File> created = new CompletableFuture<>();
+        CompletableFuture<File> existing = creating.putIfAbsent(name, created);
+        if (existing != null) {
+            try {
+                return existing.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof UncheckedIOException) {
+                    throw ((UncheckedIOException) e.getCause()).getCause();
+                }
+                throw e;
+            }
+        }
+        
+        try {
+            File result = create(source, size, thumbnail);
+            created.complete(result);
+            return result;
+        } catch (IOException e) {
+            created.completeExceptionally(new UncheckedIOException(e));
+            throw e;
+        } catch (RuntimeException e) {
+            created.completeExceptionally(e);
+            throw e;
+        } finally {
+            creating.remove(name, created);
+        }
+    }
+    
+    /**
+     * Scales a photo down to a thumbnail and writes it.
+     * 
+     * @param source the photo file
+     * @param size the most pixels on the thumbnail's longer side
+     * @param thumbnail the file to write
+     * @return the thumbnail file, or null if the photo can't be decoded
+     * @throws IOException if there's an error reading the photo or writing the thumbnail
+     */
+    private File create(File source, int size, File thumbnail) throws IOException {
+        long start = System.nanoTime();
+        BufferedImage scaled = scale(source, size);
+        if (scaled == null) {
+            return null;
+        }
+        
+        if (!directory.exists()) {
+            directory.mkdirs();
+        }
+        File temp = File.createTempFile("thumbnail", ".tmp", directory);
+        try {
+            if (!ImageIO.write(scaled, "jpg", temp)) {
+                throw new IOException("No JPEG writer available");
+            }
+            try {
+                Files.move(temp.toPath(), thumbnail.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp.toPath(), thumbnail.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp.toPath());
+        }
+        Metrics.histogram("server.thumbnail.create.micros").recordMicrosSince(start);
+        return thumbnail;
+    }
+    
+    /**
+     * Decodes a photo and scales it down, once a decoding permit is free.
+     * The full-size image is only held while the permit is.
+     * 
+     * @param source the photo file
+     * @param size the most pixels on the scaled image's longer side
+     * @return the scaled image, or null if the photo can't be decoded
+     * @throws InterruptedIOException if interrupted while waiting for a permit
+     * @throws IOException if there's an error reading the photo
+     */
+    private BufferedImage scale(File source, int size) throws IOException {
+        try {
+            decoding.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Stopped waiting to decode " + source.getName());
+        }
+        try {
+            BufferedImage image = ImageIO.read(source);
+            if (image == null) {
+                return null;
+            }
+            
+            // Photos smaller than the thumbnail are kept at their own size
+            double scale = Math.min(1.0, (double) size / Math.max(image.getWidth(), image.getHeight()));
+            int width = Math.max(1, (int) Math.round(image.getWidth() * scale));
+            int height = Math.max(1, (int) Math.round(image.getHeight() * scale));
+            BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            Graphics2D graphics = scaled.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                // JPEG has no transparency, so transparent areas become white
+                graphics.drawImage(image, 0, 0, width, height, Color.WHITE, null);
+            } finally {
+                graphics.dispose();
+            }
+            return scaled;
+        } finally {
+            decoding.release();
+        }
+    }
+}
\ No newline at end of file